@@ -0,0 +1,175 @@
+package logbook.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import logbook.data.UndefinedData;
+import logbook.server.proxy.TrafficRecorder;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 記録した通信({@link TrafficRecorder})から提督を特定できる値を消して、ベンチマーク用に保存します<br>
+ * レスポンスの提督ID・提督名・コメント・艦隊名を消し、URLのサーバーを置き換えます
+ * (リクエストのapi_tokenは記録するときに取り除かれています)<br>
+ * JSONでないレスポンスは含まれる値が分からないので保存しません
+ * <pre>
+ * AnonymizeTraffic [--out=出力先フォルダ] ファイル...
+ *   --out  出力先のフォルダ(省略時は benchmark/data、ファイル名は元のファイルと同じ)
+ * </pre>
+ */
+public class AnonymizeTraffic {
+
+    /** 消す値のキー(文字列は空に、数値は0にします) */
+    private static final Set<String> PRIVATE_KEYS = new HashSet<>(Arrays.asList(
+            "api_member_id", "api_nickname", "api_nickname_id", "api_cmt", "api_cmt_id",
+            "api_comment", "api_comment_id", "api_name_id"));
+
+    /** 置き換えたURLのサーバー */
+    private static final String HOST = "http://203.104.209.7";
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File outDir = new File("benchmark/data");
+        int count = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                outDir = new File(arg.substring("--out=".length()));
+                continue;
+            }
+            File in = new File(arg);
+            File out = new File(outDir, in.getName());
+            if (out.getCanonicalFile().equals(in.getCanonicalFile())) {
+                throw new IOException("元のファイルには上書きできません: " + in);
+            }
+            // TrafficRecorderは追記するので作り直す
+            if (out.exists() && !out.delete()) {
+                throw new IOException("ファイルを削除できません: " + out);
+            }
+            anonymize(in, out);
+            count++;
+        }
+        if (count == 0) {
+            System.out.println("AnonymizeTraffic [--out=出力先フォルダ] ファイル...");
+        }
+    }
+
+    private static void anonymize(File in, File out) throws IOException {
+        int written = 0;
+        int skipped = 0;
+        try (TrafficRecorder.Reader reader = new TrafficRecorder.Reader(in);
+                TrafficRecorder writer = new TrafficRecorder(out)) {
+            TrafficRecorder.Record record;
+            while ((record = reader.next()) != null) {
+                byte[] response = anonymizeResponse(record.response);
+                if (response == null) {
+                    skipped++;
+                    continue;
+                }
+                writer.write(new UndefinedData(HOST + record.url, record.url,
+                        (record.request != null) ? ByteBuffer.wrap(record.request) : null,
+                        ByteBuffer.wrap(response), new Date(record.time)),
+                        record.contentEncoding, record.serverName);
+                written++;
+            }
+        }
+        System.out.println(String.format("%s: %d件保存しました(JSONでないため%d件を省きました)", out, written, skipped));
+    }
+
+    /**
+     * @param response 受信したままのレスポンス
+     * @return 値を消したレスポンス(受信したときと同じくgzip圧縮します)、JSONでない場合はnull
+     */
+    private static byte[] anonymizeResponse(byte[] response) throws IOException {
+        if (response == null) {
+            return null;
+        }
+        boolean gzip = (response.length > 2) && (response[0] == (byte) 0x1f) && (response[1] == (byte) 0x8b);
+        byte[] bytes = response;
+        if (gzip) {
+            try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(response))) {
+                bytes = IOUtils.toByteArray(stream);
+            }
+        }
+        String body = new String(bytes, StandardCharsets.UTF_8);
+        String prefix = "";
+        if (body.startsWith("svdata=")) {
+            prefix = "svdata=";
+            body = body.substring(prefix.length());
+        }
+        JsonValue json;
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            json = anonymize(reader.read());
+        } catch (JsonException e) {
+            return null;
+        }
+        bytes = (prefix + json.toString()).getBytes(StandardCharsets.UTF_8);
+        if (!gzip) {
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream stream = new GZIPOutputStream(out)) {
+            stream.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static JsonValue anonymize(JsonValue value) {
+        switch (value.getValueType()) {
+        case OBJECT: {
+            JsonObject object = (JsonObject) value;
+            // 艦隊(api_deck_port, api_data_deck)の名前は提督が付けたもの
+            boolean deck = object.containsKey("api_ship") && object.containsKey("api_mission");
+            JsonObjectBuilder builder = Json.createObjectBuilder();
+            for (String key : object.keySet()) {
+                JsonValue child = object.get(key);
+                if (PRIVATE_KEYS.contains(key) && (child.getValueType() == JsonValue.ValueType.STRING)) {
+                    builder.add(key, "");
+                }
+                else if (PRIVATE_KEYS.contains(key) && (child.getValueType() == JsonValue.ValueType.NUMBER)) {
+                    builder.add(key, 0);
+                }
+                else if (deck && key.equals("api_name")) {
+                    builder.add(key, "第" + object.get("api_id") + "艦隊");
+                }
+                else {
+                    builder.add(key, anonymize(child));
+                }
+            }
+            return builder.build();
+        }
+        case ARRAY: {
+            JsonArrayBuilder builder = Json.createArrayBuilder();
+            for (JsonValue child : (JsonArray) value) {
+                builder.add(anonymize(child));
+            }
+            return builder.build();
+        }
+        default:
+            return value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package logbook.benchmark;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.json.JsonObject;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.BattlePhaseKind;
+import logbook.dto.MapCellDto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * BattleExDto.addPhase/setResult/readFromJson<br>
+ * 記録した通常戦(昼戦)を順番に使います
+ */
+public class BattleBenchmark extends BenchmarkBase {
+
+    private List<JsonObject[]> jsons;
+    private BattleExDto[] battles;
+    private Date date;
+    private int next;
+
+    /**
+     * 戦闘(昼戦+戦闘結果)を作ります
+     *
+     * @param json 通常戦(昼戦)のapi_data・戦闘結果のapi_data・出撃マスのapi_data
+     */
+    static BattleExDto createBattle(Date date, JsonObject[] json) {
+        BattleExDto dto = new BattleExDto(date);
+        dto.setBasicInfo(100, 500);
+        dto.addPhase(json[0], BattlePhaseKind.BATTLE, false);
+        dto.setResult(json[1], new MapCellDto(json[2], false));
+        return dto;
+    }
+
+    @Override
+    protected void setup() {
+        this.jsons = this.traffic.battles();
+        this.date = new Date();
+        this.battles = new BattleExDto[this.jsons.size()];
+        for (int i = 0; i < this.battles.length; i++) {
+            this.battles[i] = createBattle(this.date, this.jsons.get(i));
+        }
+    }
+
+    @Benchmark
+    public BattleExDto.Phase addPhase() {
+        JsonObject[] json = this.jsons.get((this.next++) % this.jsons.size());
+        BattleExDto dto = new BattleExDto(this.date);
+        dto.setBasicInfo(100, 500);
+        return dto.addPhase(json[0], BattlePhaseKind.BATTLE, false);
+    }
+
+    @Benchmark
+    public BattleExDto addPhaseAndResult() {
+        return createBattle(this.date, this.jsons.get((this.next++) % this.jsons.size()));
+    }
+
+    @Benchmark
+    public BattleExDto readFromJson() {
+        BattleExDto dto = this.battles[(this.next++) % this.battles.length];
+        dto.readFromJson();
+        return dto;
+    }
+}
@@ -0,0 +1,89 @@
+package logbook.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.util.Calendar;
+import java.util.List;
+
+import javax.json.JsonObject;
+
+import logbook.dto.BattleExDto;
+import logbook.internal.BattleLogDictionary;
+import logbook.internal.BattleResultServer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * BattleResultServer の読み込み(インデックスあり・全て読み込み直し)<br>
+ * 記録した通常戦を繰り返して出撃ログを作ります
+ */
+public class BattleLogBenchmark extends BenchmarkBase {
+
+    /** 出撃ログの戦闘の数 */
+    private static final int NUM_LOG_BATTLES = 2000;
+    /** 出撃ログのファイル数(1日1ファイル) */
+    private static final int NUM_LOG_FILES = 10;
+
+    private File dir;
+    private Constructor<BattleResultServer> constructor;
+    private BattleResultServer server;
+
+    @Override
+    protected void setup() throws Exception {
+        BattleLogDictionary.registerSchemas();
+        Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
+        this.dir = new File("benchmark_battlelog").getAbsoluteFile();
+        FileUtils.deleteQuietly(this.dir);
+        this.dir.mkdirs();
+
+        // 1日1ファイルに分けて書く(出撃ログと同じファイル名)
+        List<JsonObject[]> jsons = this.traffic.battles();
+        BattleLogDictionary dictionary = BattleLogDictionary.forDirectory(this.dir);
+        LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.JANUARY, 1, 0, 0, 0);
+        int count = 0;
+        for (int i = 0; i < NUM_LOG_FILES; i++) {
+            File file = new File(this.dir, String.format("2020-01-%02d.dat", i + 1));
+            try (OutputStream out = new FileOutputStream(file)) {
+                for (int j = 0; j < (NUM_LOG_BATTLES / NUM_LOG_FILES); j++) {
+                    calendar.add(Calendar.MINUTE, 1);
+                    BattleExDto battle = BattleBenchmark.createBattle(calendar.getTime(),
+                            jsons.get((count++) % jsons.size()));
+                    dictionary.writeDelimitedTo(out, battle, schema, buffer);
+                    buffer.clear();
+                }
+            }
+            calendar.add(Calendar.DATE, 1);
+        }
+
+        // 起動時と同じく、インデックスがあればインデックスだけを読む(最初の1回でインデックスが作られる)
+        this.constructor = BattleResultServer.class.getDeclaredConstructor(String.class);
+        this.constructor.setAccessible(true);
+        this.server = this.constructor.newInstance(this.dir.getPath());
+        if (this.server.size() != NUM_LOG_BATTLES) {
+            throw new IllegalStateException("出撃ログの読み込みに失敗しました: " + this.server.size() + "件");
+        }
+    }
+
+    @Benchmark
+    public BattleResultServer load() throws Exception {
+        return this.constructor.newInstance(this.dir.getPath());
+    }
+
+    /**
+     * 全ての出撃ログのデコードとインデックスの作成
+     */
+    @Benchmark
+    public BattleResultServer reloadFiles() {
+        this.server.reloadFiles();
+        return this.server;
+    }
+}
@@ -0,0 +1,68 @@
+package logbook.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import logbook.config.AppConfig;
+import logbook.data.DataType;
+import logbook.data.context.GlobalContext;
+import logbook.internal.LogWriter;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ベンチマークの共通部分<br>
+ * 記録した通信({@link RecordedTraffic})からマスター・装備・母港をGlobalContextに読み込ませてから計測します<br>
+ * ！注意！<br>
+ * GlobalContextを更新するのでログ出力も行います。カレントディレクトリを作業用のフォルダにして実行してください
+ * (ant benchmark は build/benchmark/work で実行します)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class BenchmarkBase {
+
+    RecordedTraffic traffic;
+
+    @Setup(Level.Trial)
+    public void setupContext() throws Exception {
+        AppConfig.load();
+        // ベンチマークの通信を保存・記録しない
+        AppConfig.get().setStoreJson(false);
+        AppConfig.get().setRecordTraffic(false);
+        LogWriter.startup();
+
+        this.traffic = RecordedTraffic.load();
+        // 装備は艦娘より先に必要
+        GlobalContext.updateContext(RecordedTraffic.parse(this.traffic.first(DataType.START2)));
+        GlobalContext.updateContext(RecordedTraffic.parse(this.traffic.first(DataType.SLOTITEM_MEMBER)));
+        GlobalContext.updateContext(RecordedTraffic.parse(this.traffic.first(DataType.PORT)));
+        if (GlobalContext.getDock("1") == null) {
+            throw new IllegalStateException("母港の読み込みに失敗しました");
+        }
+        this.setup();
+    }
+
+    /**
+     * GlobalContextを準備した後に呼ばれます(計測するデータの準備)
+     */
+    protected void setup() throws Exception {
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownContext() {
+        LogWriter.end();
+    }
+}
@@ -0,0 +1,68 @@
+package logbook.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import logbook.data.DataType;
+import logbook.data.context.GlobalContext;
+import logbook.dto.AirbaseDto;
+import logbook.dto.ShipDto;
+import logbook.gui.logic.CalcAA;
+import logbook.gui.logic.SakutekiString;
+import logbook.gui.logic.SeikuString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * CalcAA, SakutekiString, SeikuString, 基地航空隊の制空値(AirPower)<br>
+ * 第1艦隊と記録した基地航空隊を使います
+ */
+public class CalcBenchmark extends BenchmarkBase {
+
+    private List<ShipDto> fleet;
+    private int hqLevel;
+    private CalcAA calcAA;
+    private AirbaseDto airbase;
+
+    @Override
+    protected void setup() {
+        this.fleet = GlobalContext.getDock("1").getShips();
+        this.hqLevel = GlobalContext.hqLevel();
+        this.calcAA = new CalcAA();
+        this.airbase = new AirbaseDto(RecordedTraffic.parse(this.traffic.first(DataType.BASE_AIR_CORPS))
+                .getJsonObject().getJsonArray("api_data"));
+    }
+
+    @Benchmark
+    public double aa() {
+        double sum = this.calcAA.getFleetAirDefenseValue(this.fleet, true, 1);
+        for (ShipDto ship : this.fleet) {
+            sum += this.calcAA.getFinalWeightedAirValue(ship, this.fleet, true, 1);
+            sum += this.calcAA.getPropShotDown(ship, true, false, false, false);
+            sum += this.calcAA.getFixedShotDown(ship, this.fleet, true, false, false, 1, 0, false);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double sakuteki() {
+        return new SakutekiString(this.fleet, this.hqLevel).getValue();
+    }
+
+    @Benchmark
+    public String seiku() {
+        return new SeikuString(this.fleet).toString();
+    }
+
+    @Benchmark
+    public int airbaseAirPower() {
+        int sum = 0;
+        for (Map<Integer, AirbaseDto.AirCorpsDto> area : this.airbase.get().values()) {
+            for (AirbaseDto.AirCorpsDto corps : area.values()) {
+                sum += corps.getAirPower().getMax();
+            }
+            sum += AirbaseDto.getHighAltitudeInterceptionAirPower(area).getMax();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,576 @@
+package logbook.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import logbook.data.DataType;
+import logbook.data.UndefinedData;
+import logbook.server.proxy.TrafficRecorder;
+
+/**
+ * ベンチマーク用の通信を作って、記録した通信({@link TrafficRecorder})と同じ形式で保存します<br>
+ * 実際のアカウントに近い規模(艦娘300隻・装備1500個)のapi_start2/port/ship2/slot_item/出撃を
+ * 乱数の種を固定して作るので、何度実行しても同じ内容になります<br>
+ * benchmark/data/generated.traffic.gz はこれで作ったもので、実際に記録した通信ではありません
+ * <pre>
+ * GenerateSession [出力ファイル]
+ * </pre>
+ */
+public final class GenerateSession {
+
+    /** マスターの艦娘の数 */
+    private static final int NUM_MASTER_SHIPS = 400;
+    /** マスターの装備の数 */
+    private static final int NUM_MASTER_ITEMS = 300;
+    /** マスターの深海棲艦の数 */
+    private static final int NUM_MASTER_ENEMIES = 200;
+    /** マスターの深海棲艦の装備の数 */
+    private static final int NUM_MASTER_ENEMY_ITEMS = 100;
+    /** 保有艦娘の数 */
+    private static final int NUM_SHIPS = 300;
+    /** 保有装備の数 */
+    private static final int NUM_ITEMS = 1500;
+    /** 出撃の回数(1回の出撃で2戦します) */
+    private static final int NUM_SORTIES = 4;
+
+    /** 装備の種類(api_type[2]) 主砲・副砲・魚雷・艦戦・艦爆・艦攻・水偵・電探・機銃・高射装置など */
+    private static final int[] ITEM_TYPES = { 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 13, 14, 18, 21, 36 };
+
+    /** 記録したときのサーバー */
+    private static final String HOST = "http://203.104.209.7";
+
+    /** 記録の開始日時(2020-01-01 00:00 JST) */
+    private static final long START_TIME = 1577804400000L;
+
+    private final JsonObject start2;
+    private final JsonArray slotItems;
+    private final JsonArray ships;
+    private final JsonArray decks;
+    private long time = START_TIME;
+
+    private GenerateSession() {
+        Random random = new Random(1);
+        this.start2 = createStart2(random);
+        this.slotItems = createSlotItems(random);
+        this.ships = createShips(random);
+        this.decks = createDecks();
+    }
+
+    /**
+     * @param args 出力ファイル(省略時は benchmark/data/generated.traffic.gz)
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File((args.length > 0) ? args[0] : "benchmark/data/generated" + TrafficRecorder.EXTENSION);
+        // TrafficRecorderは追記するので作り直す
+        if (file.exists() && !file.delete()) {
+            throw new IOException("ファイルを削除できません: " + file);
+        }
+        new GenerateSession().write(file);
+        System.out.println("保存しました: " + file);
+    }
+
+    /**
+     * 起動して母港に戻り、出撃を繰り返した通信を書き込みます
+     */
+    private void write(File file) throws IOException {
+        Random random = new Random(2);
+        try (TrafficRecorder out = new TrafficRecorder(file)) {
+            this.write(out, DataType.START2, this.start2, null);
+            this.write(out, DataType.SLOTITEM_MEMBER, this.slotItems, null);
+            this.write(out, DataType.PORT, this.port(0), null);
+            this.write(out, DataType.SHIP2, this.ships, Json.createObjectBuilder()
+                    .add("api_data_deck", this.decks).build());
+            this.write(out, DataType.BASE_AIR_CORPS, airBase(), null);
+            for (int i = 0; i < NUM_SORTIES; i++) {
+                this.write(out, DataType.START, mapCell(random), null);
+                this.write(out, DataType.BATTLE, battle(random), null);
+                this.write(out, DataType.BATTLE_RESULT, battleResult(random), null);
+                this.write(out, DataType.NEXT, mapCell(random), null);
+                this.write(out, DataType.BATTLE, battle(random), null);
+                this.write(out, DataType.BATTLE_RESULT, battleResult(random), null);
+                // 戻ってくると全艦の疲労度が変わる
+                this.write(out, DataType.PORT, this.port(i + 1), null);
+            }
+        }
+    }
+
+    private void write(TrafficRecorder out, DataType type, Object apiData, JsonObject extra) throws IOException {
+        this.time += 1000;
+        byte[] request = "api%5Fverno=1".getBytes(StandardCharsets.UTF_8);
+        out.write(new UndefinedData(HOST + type.getUrl(), type.getUrl(), ByteBuffer.wrap(request),
+                ByteBuffer.wrap(toResponse(apiData, extra)), new Date(this.time)), "gzip", "Apache");
+    }
+
+    /**
+     * 受信したままのレスポンス(svdata=付き、gzip圧縮)
+     * @param apiData api_data
+     * @param extra api_data以外に追加する値(不要な場合null)
+     */
+    private static byte[] toResponse(Object apiData, JsonObject extra) {
+        JsonObjectBuilder svdata = Json.createObjectBuilder()
+                .add("api_result", 1)
+                .add("api_result_msg", "成功");
+        if (apiData instanceof JsonObject) {
+            svdata.add("api_data", (JsonObject) apiData);
+        }
+        else {
+            svdata.add("api_data", (JsonArray) apiData);
+        }
+        if (extra != null) {
+            for (String key : extra.keySet()) {
+                svdata.add(key, extra.get(key));
+            }
+        }
+        byte[] json = ("svdata=" + svdata.build().toString()).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** api_port/port (conditionを変えると全艦の疲労度が変わる) */
+    private JsonObject port(int condition) {
+        JsonArrayBuilder ships = Json.createArrayBuilder();
+        for (int i = 0; i < this.ships.size(); i++) {
+            JsonObject ship = this.ships.getJsonObject(i);
+            JsonObjectBuilder builder = Json.createObjectBuilder();
+            for (String key : ship.keySet()) {
+                builder.add(key, ship.get(key));
+            }
+            builder.add("api_cond", 40 + (((ship.getInt("api_cond") - 40) + condition) % 50));
+            ships.add(builder);
+        }
+        JsonArrayBuilder material = Json.createArrayBuilder();
+        for (int i = 1; i <= 8; i++) {
+            material.add(Json.createObjectBuilder().add("api_member_id", 1).add("api_id", i)
+                    .add("api_value", (i <= 4) ? 300000 : 3000));
+        }
+        JsonArrayBuilder ndock = Json.createArrayBuilder();
+        for (int i = 1; i <= 4; i++) {
+            ndock.add(Json.createObjectBuilder().add("api_member_id", 1).add("api_id", i).add("api_state", 0)
+                    .add("api_ship_id", 0).add("api_complete_time", 0).add("api_complete_time_str", "0")
+                    .add("api_item1", 0).add("api_item2", 0).add("api_item3", 0).add("api_item4", 0));
+        }
+        JsonObject basic = Json.createObjectBuilder()
+                .add("api_member_id", "1")
+                .add("api_nickname", "ベンチマーク")
+                .add("api_level", 120)
+                .add("api_rank", 1)
+                .add("api_experience", 12345678)
+                .add("api_max_chara", 400)
+                .add("api_max_slotitem", 2000)
+                .add("api_count_deck", 4)
+                .add("api_count_kdock", 4)
+                .add("api_count_ndock", 4)
+                .add("api_fcoin", 100000)
+                .build();
+        return Json.createObjectBuilder()
+                .add("api_material", material)
+                .add("api_deck_port", this.decks)
+                .add("api_ndock", ndock)
+                .add("api_ship", ships)
+                .add("api_basic", basic)
+                .add("api_combined_flag", 0)
+                .add("api_p_bgm_id", 101)
+                .add("api_parallel_quest_count", 5)
+                .build();
+    }
+
+    /**
+     * 第1艦隊の通常戦(昼戦)のapi_data<br>
+     * 開幕雷撃・砲撃2巡・雷撃戦があります
+     */
+    private static JsonObject battle(Random random) {
+        JsonArrayBuilder fnowhps = Json.createArrayBuilder();
+        JsonArrayBuilder fmaxhps = Json.createArrayBuilder();
+        JsonArrayBuilder fparam = Json.createArrayBuilder();
+        for (int i = 0; i < 6; i++) {
+            fnowhps.add(40 + random.nextInt(40));
+            fmaxhps.add(80);
+            fparam.add(Json.createArrayBuilder().add(50).add(60).add(40).add(50));
+        }
+        JsonArrayBuilder shipKe = Json.createArrayBuilder();
+        JsonArrayBuilder shipLv = Json.createArrayBuilder();
+        JsonArrayBuilder enowhps = Json.createArrayBuilder();
+        JsonArrayBuilder emaxhps = Json.createArrayBuilder();
+        JsonArrayBuilder eslot = Json.createArrayBuilder();
+        JsonArrayBuilder eparam = Json.createArrayBuilder();
+        for (int i = 0; i < 6; i++) {
+            shipKe.add(1501 + random.nextInt(NUM_MASTER_ENEMIES));
+            shipLv.add(1 + random.nextInt(100));
+            int hp = 30 + random.nextInt(60);
+            enowhps.add(hp);
+            emaxhps.add(hp);
+            JsonArrayBuilder slot = Json.createArrayBuilder();
+            for (int j = 0; j < 4; j++) {
+                slot.add(501 + random.nextInt(NUM_MASTER_ENEMY_ITEMS));
+            }
+            eslot.add(slot.add(-1));
+            eparam.add(Json.createArrayBuilder().add(30).add(30).add(20).add(30));
+        }
+        return Json.createObjectBuilder()
+                .add("api_deck_id", 1)
+                .add("api_formation", Json.createArrayBuilder().add(1).add(1).add(1))
+                .add("api_f_nowhps", fnowhps)
+                .add("api_f_maxhps", fmaxhps)
+                .add("api_fParam", fparam)
+                .add("api_ship_ke", shipKe)
+                .add("api_ship_lv", shipLv)
+                .add("api_e_nowhps", enowhps)
+                .add("api_e_maxhps", emaxhps)
+                .add("api_eSlot", eslot)
+                .add("api_eParam", eparam)
+                .add("api_midnight_flag", 1)
+                .add("api_search", Json.createArrayBuilder().add(1).add(1))
+                .add("api_stage_flag", Json.createArrayBuilder().add(0).add(0).add(0))
+                .add("api_support_flag", 0)
+                .add("api_opening_taisen_flag", 0)
+                .add("api_opening_flag", 1)
+                .add("api_opening_atack", raigeki(random))
+                .add("api_hourai_flag", Json.createArrayBuilder().add(1).add(1).add(0).add(1))
+                .add("api_hougeki1", hougeki(random))
+                .add("api_hougeki2", hougeki(random))
+                .add("api_raigeki", raigeki(random))
+                .build();
+    }
+
+    /** 戦闘結果のapi_data */
+    private static JsonObject battleResult(Random random) {
+        JsonObjectBuilder result = Json.createObjectBuilder()
+                .add("api_ship_id", Json.createArrayBuilder().add(-1).add(1501).add(1502))
+                .add("api_win_rank", "S")
+                .add("api_get_exp", 100)
+                .add("api_mvp", 1 + random.nextInt(6))
+                .add("api_member_lv", 120)
+                .add("api_member_exp", 12345678)
+                .add("api_get_base_exp", 100)
+                .add("api_quest_name", "ベンチマーク海域")
+                .add("api_quest_level", 1)
+                .add("api_enemy_info", Json.createObjectBuilder()
+                        .add("api_level", "")
+                        .add("api_rank", "")
+                        .add("api_deck_name", "敵主力艦隊"))
+                .add("api_first_clear", 0);
+        if (random.nextBoolean()) {
+            result.add("api_get_ship", Json.createObjectBuilder()
+                    .add("api_ship_id", 1 + random.nextInt(NUM_MASTER_SHIPS))
+                    .add("api_ship_type", "駆逐艦")
+                    .add("api_ship_name", "艦娘" + random.nextInt(NUM_MASTER_SHIPS))
+                    .add("api_ship_getmes", ""));
+        }
+        return result.build();
+    }
+
+    /** 出撃マスのapi_data(MapCellDto用) */
+    private static JsonObject mapCell(Random random) {
+        int no = 1 + random.nextInt(10);
+        return Json.createObjectBuilder()
+                .add("api_maparea_id", 1 + random.nextInt(6))
+                .add("api_mapinfo_no", 1 + random.nextInt(5))
+                .add("api_no", no)
+                .add("api_enemy", Json.createObjectBuilder().add("api_enemy_id", random.nextInt(1000)))
+                .add("api_color_no", (no == 10) ? 5 : 4)
+                .add("api_bosscell_no", 10)
+                .add("api_event_id", (no == 10) ? 5 : 4)
+                .add("api_event_kind", 1)
+                .build();
+    }
+
+    /**
+     * 基地航空隊(api_air_base)<br>
+     * 2海域に3部隊ずつ、各部隊に保有装備を4つずつ配置します
+     */
+    private static JsonArray airBase() {
+        JsonArrayBuilder airBase = Json.createArrayBuilder();
+        int slotid = 1;
+        for (int area = 1; area <= 2; area++) {
+            for (int rid = 1; rid <= 3; rid++) {
+                JsonArrayBuilder planes = Json.createArrayBuilder();
+                for (int i = 1; i <= 4; i++) {
+                    planes.add(Json.createObjectBuilder()
+                            .add("api_squadron_id", i)
+                            .add("api_state", 1)
+                            .add("api_slotid", slotid++)
+                            .add("api_count", 18)
+                            .add("api_max_count", 18)
+                            .add("api_cond", 1));
+                }
+                airBase.add(Json.createObjectBuilder()
+                        .add("api_area_id", area)
+                        .add("api_rid", rid)
+                        .add("api_name", "第" + rid + "航空隊")
+                        .add("api_distance", Json.createObjectBuilder().add("api_base", 5).add("api_bonus", 0))
+                        .add("api_action_kind", (rid == 3) ? 2 : 1)
+                        .add("api_plane_info", planes));
+            }
+        }
+        return airBase.build();
+    }
+
+    private static JsonObject raigeki(Random random) {
+        JsonArrayBuilder frai = Json.createArrayBuilder();
+        JsonArrayBuilder fcl = Json.createArrayBuilder();
+        JsonArrayBuilder fydam = Json.createArrayBuilder();
+        JsonArrayBuilder fdam = Json.createArrayBuilder();
+        JsonArrayBuilder erai = Json.createArrayBuilder();
+        JsonArrayBuilder ecl = Json.createArrayBuilder();
+        JsonArrayBuilder eydam = Json.createArrayBuilder();
+        JsonArrayBuilder edam = Json.createArrayBuilder();
+        for (int i = 0; i < 6; i++) {
+            boolean fhit = random.nextBoolean();
+            frai.add(fhit ? random.nextInt(6) : -1);
+            fcl.add(fhit ? 1 : 0);
+            fydam.add(fhit ? random.nextInt(10) : 0);
+            fdam.add(0);
+            boolean ehit = random.nextInt(4) == 0;
+            erai.add(ehit ? random.nextInt(6) : -1);
+            ecl.add(ehit ? 1 : 0);
+            eydam.add(ehit ? random.nextInt(5) : 0);
+            edam.add(0);
+        }
+        return Json.createObjectBuilder()
+                .add("api_frai", frai).add("api_fcl", fcl).add("api_fdam", fdam).add("api_fydam", fydam)
+                .add("api_erai", erai).add("api_ecl", ecl).add("api_edam", edam).add("api_eydam", eydam)
+                .build();
+    }
+
+    private static JsonObject hougeki(Random random) {
+        JsonArrayBuilder eflag = Json.createArrayBuilder();
+        JsonArrayBuilder atList = Json.createArrayBuilder();
+        JsonArrayBuilder atType = Json.createArrayBuilder();
+        JsonArrayBuilder dfList = Json.createArrayBuilder();
+        JsonArrayBuilder siList = Json.createArrayBuilder();
+        JsonArrayBuilder clList = Json.createArrayBuilder();
+        JsonArrayBuilder damage = Json.createArrayBuilder();
+        for (int i = 0; i < 12; i++) {
+            int side = i % 2;
+            eflag.add(side);
+            atList.add(i / 2);
+            boolean doubleAttack = random.nextInt(4) == 0;
+            atType.add(doubleAttack ? 2 : 0);
+            int hits = doubleAttack ? 2 : 1;
+            JsonArrayBuilder df = Json.createArrayBuilder();
+            JsonArrayBuilder cl = Json.createArrayBuilder();
+            JsonArrayBuilder dam = Json.createArrayBuilder();
+            int target = random.nextInt(6);
+            for (int j = 0; j < hits; j++) {
+                df.add(target);
+                cl.add(random.nextInt(3));
+                dam.add((side == 0) ? random.nextInt(15) : random.nextInt(3));
+            }
+            dfList.add(df);
+            clList.add(cl);
+            damage.add(dam);
+            siList.add(Json.createArrayBuilder().add(1 + random.nextInt(NUM_MASTER_ITEMS)));
+        }
+        return Json.createObjectBuilder()
+                .add("api_at_eflag", eflag).add("api_at_list", atList).add("api_at_type", atType)
+                .add("api_df_list", dfList).add("api_si_list", siList).add("api_cl_list", clList)
+                .add("api_damage", damage)
+                .build();
+    }
+
+    private static JsonObject createStart2(Random random) {
+        JsonArrayBuilder stype = Json.createArrayBuilder();
+        String[] stypeNames = { "海防艦", "駆逐艦", "軽巡洋艦", "重雷装巡洋艦", "重巡洋艦", "航空巡洋艦", "軽空母",
+                "戦艦", "戦艦", "航空戦艦", "正規空母", "超弩級戦艦", "潜水艦", "潜水空母", "補給艦", "水上機母艦",
+                "揚陸艦", "装甲空母", "工作艦", "潜水母艦", "練習巡洋艦", "補給艦" };
+        for (int i = 0; i < stypeNames.length; i++) {
+            stype.add(Json.createObjectBuilder().add("api_id", i + 1).add("api_sortno", i + 1)
+                    .add("api_name", stypeNames[i]).add("api_scnt", 1).add("api_kcnt", 2));
+        }
+
+        JsonArrayBuilder items = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_MASTER_ITEMS; i++) {
+            items.add(createMasterItem(random, 1 + i, "装備" + i));
+        }
+        for (int i = 0; i < NUM_MASTER_ENEMY_ITEMS; i++) {
+            items.add(createMasterItem(random, 501 + i, "深海装備" + i));
+        }
+
+        JsonArrayBuilder ships = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_MASTER_SHIPS; i++) {
+            int id = 1 + i;
+            // 3隻ごとに改造先がある
+            boolean remodel = (i % 3) != 2;
+            int[] maxeq = { 0, 0, 0, 0, 0 };
+            int stypeId = 2 + (i % 10);
+            if ((stypeId == 7) || (stypeId == 11)) {
+                maxeq = new int[] { 18, 18, 12, 6, 0 };
+            }
+            ships.add(Json.createObjectBuilder()
+                    .add("api_id", id)
+                    .add("api_sortno", id)
+                    .add("api_sort_id", id * 10)
+                    .add("api_name", "艦娘" + i)
+                    .add("api_yomi", "かんむす")
+                    .add("api_stype", stypeId)
+                    .add("api_ctype", 1 + (i / 5))
+                    .add("api_afterlv", remodel ? 20 + (i % 3) * 30 : 0)
+                    .add("api_aftershipid", remodel ? Integer.toString(id + 1) : "0")
+                    .add("api_taik", pair(30 + random.nextInt(60), 99))
+                    .add("api_souk", pair(10 + random.nextInt(40), 99))
+                    .add("api_houg", pair(10 + random.nextInt(60), 99))
+                    .add("api_raig", pair(random.nextInt(80), 99))
+                    .add("api_tyku", pair(10 + random.nextInt(50), 99))
+                    .add("api_luck", pair(10 + random.nextInt(10), 99))
+                    .add("api_soku", 10)
+                    .add("api_leng", 1 + random.nextInt(3))
+                    .add("api_slot_num", 4)
+                    .add("api_maxeq", toArray(maxeq))
+                    .add("api_buildtime", 20)
+                    .add("api_broken", toArray(new int[] { 1, 1, 1, 1 }))
+                    .add("api_powup", toArray(new int[] { 1, 1, 1, 1 }))
+                    .add("api_backs", 3)
+                    .add("api_getmes", "")
+                    .add("api_afterfuel", 100)
+                    .add("api_afterbull", 100)
+                    .add("api_fuel_max", 15 + random.nextInt(85))
+                    .add("api_bull_max", 15 + random.nextInt(85))
+                    .add("api_voicef", 0));
+        }
+        for (int i = 0; i < NUM_MASTER_ENEMIES; i++) {
+            ships.add(Json.createObjectBuilder()
+                    .add("api_id", 1501 + i)
+                    .add("api_sort_id", 0)
+                    .add("api_name", "深海棲艦" + i)
+                    .add("api_yomi", ((i % 3) == 0) ? "flagship" : "-")
+                    .add("api_stype", 2 + (i % 10))
+                    .add("api_ctype", 1)
+                    .add("api_soku", 10)
+                    .add("api_slot_num", 4));
+        }
+
+        return Json.createObjectBuilder()
+                .add("api_mst_stype", stype)
+                .add("api_mst_slotitem", items)
+                .add("api_mst_ship", ships)
+                .build();
+    }
+
+    private static JsonObject createMasterItem(Random random, int id, String name) {
+        int category = ITEM_TYPES[random.nextInt(ITEM_TYPES.length)];
+        JsonObjectBuilder item = Json.createObjectBuilder()
+                .add("api_id", id)
+                .add("api_sortno", id)
+                .add("api_name", name)
+                .add("api_type", toArray(new int[] { 1, 1, category, category, 0 }))
+                .add("api_rare", 0)
+                .add("api_broken", toArray(new int[] { 1, 1, 1, 1 }))
+                .add("api_usebull", "0")
+                .add("api_version", 1);
+        String[] keys = { "api_houg", "api_houk", "api_houm", "api_leng", "api_luck", "api_raig", "api_baku",
+                "api_saku", "api_soku", "api_souk", "api_taik", "api_tais", "api_tyku" };
+        for (String key : keys) {
+            item.add(key, random.nextInt(8));
+        }
+        return item.build();
+    }
+
+    private static JsonArray createSlotItems(Random random) {
+        JsonArrayBuilder items = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            items.add(Json.createObjectBuilder()
+                    .add("api_id", 1 + i)
+                    .add("api_slotitem_id", 1 + random.nextInt(NUM_MASTER_ITEMS))
+                    .add("api_locked", random.nextInt(2))
+                    .add("api_level", random.nextInt(11))
+                    .add("api_alv", random.nextInt(8)));
+        }
+        return items.build();
+    }
+
+    private static JsonArray createShips(Random random) {
+        JsonArrayBuilder ships = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_SHIPS; i++) {
+            int id = 1 + i;
+            int shipId = 1 + random.nextInt(NUM_MASTER_SHIPS);
+            // 装備は艦娘ごとに4つずつ(足りない分は空き)
+            int[] slot = new int[5];
+            for (int j = 0; j < 5; j++) {
+                int itemId = (i * 4) + j + 1;
+                slot[j] = ((j < 4) && (itemId <= NUM_ITEMS)) ? itemId : -1;
+            }
+            int maxhp = 30 + random.nextInt(60);
+            ships.add(Json.createObjectBuilder()
+                    .add("api_id", id)
+                    .add("api_sortno", shipId)
+                    .add("api_ship_id", shipId)
+                    .add("api_lv", 1 + random.nextInt(175))
+                    .add("api_exp", toArray(new int[] { random.nextInt(10000000), random.nextInt(10000), 50 }))
+                    .add("api_nowhp", maxhp - random.nextInt(5))
+                    .add("api_maxhp", maxhp)
+                    .add("api_soku", 10)
+                    .add("api_leng", 1 + random.nextInt(3))
+                    .add("api_slot", toArray(slot))
+                    .add("api_onslot", toArray(new int[] { 18, 18, 12, 6, 0 }))
+                    .add("api_slot_ex", random.nextBoolean() ? 0 : -1)
+                    .add("api_kyouka", toArray(new int[] { 0, 0, 0, 0, 0, 0, 0 }))
+                    .add("api_backs", 3)
+                    .add("api_fuel", 15 + random.nextInt(85))
+                    .add("api_bull", 15 + random.nextInt(85))
+                    .add("api_slotnum", 4)
+                    .add("api_ndock_time", 0)
+                    .add("api_ndock_item", toArray(new int[] { 0, 0 }))
+                    .add("api_srate", 0)
+                    .add("api_cond", 40 + random.nextInt(10))
+                    .add("api_karyoku", pair(10 + random.nextInt(90), 99))
+                    .add("api_raisou", pair(random.nextInt(90), 99))
+                    .add("api_taiku", pair(10 + random.nextInt(90), 99))
+                    .add("api_soukou", pair(10 + random.nextInt(90), 99))
+                    .add("api_kaihi", pair(10 + random.nextInt(90), 99))
+                    .add("api_taisen", pair(random.nextInt(90), 99))
+                    .add("api_sakuteki", pair(10 + random.nextInt(90), 99))
+                    .add("api_lucky", pair(10 + random.nextInt(40), 99))
+                    .add("api_locked", 1)
+                    .add("api_locked_equip", 0));
+        }
+        return ships.build();
+    }
+
+    private static JsonArray createDecks() {
+        JsonArrayBuilder decks = Json.createArrayBuilder();
+        for (int i = 0; i < 4; i++) {
+            int[] ship = new int[6];
+            for (int j = 0; j < 6; j++) {
+                ship[j] = (i * 6) + j + 1;
+            }
+            decks.add(Json.createObjectBuilder()
+                    .add("api_member_id", 1)
+                    .add("api_id", i + 1)
+                    .add("api_name", "第" + (i + 1) + "艦隊")
+                    .add("api_name_id", "")
+                    .add("api_mission", toArray(new int[] { 0, 0, 0, 0 }))
+                    .add("api_flagship", "0")
+                    .add("api_ship", toArray(ship)));
+        }
+        return decks.build();
+    }
+
+    private static JsonArrayBuilder pair(int now, int max) {
+        return Json.createArrayBuilder().add(now).add(Math.max(now, max));
+    }
+
+    private static JsonArrayBuilder toArray(int[] values) {
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        for (int value : values) {
+            array.add(value);
+        }
+        return array;
+    }
+}
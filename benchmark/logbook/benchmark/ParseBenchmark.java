@@ -0,0 +1,39 @@
+package logbook.benchmark;
+
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.server.proxy.TrafficRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * UndefinedData.toDefinedData (gzip解凍とJSON解析)
+ */
+public class ParseBenchmark extends BenchmarkBase {
+
+    private TrafficRecorder.Record portRecord;
+    private TrafficRecorder.Record ship2Record;
+    private TrafficRecorder.Record slotItemRecord;
+
+    @Override
+    protected void setup() {
+        this.portRecord = this.traffic.first(DataType.PORT);
+        this.ship2Record = this.traffic.first(DataType.SHIP2);
+        this.slotItemRecord = this.traffic.first(DataType.SLOTITEM_MEMBER);
+    }
+
+    @Benchmark
+    public Data port() {
+        return RecordedTraffic.parse(this.portRecord);
+    }
+
+    @Benchmark
+    public Data ship2() {
+        return RecordedTraffic.parse(this.ship2Record);
+    }
+
+    @Benchmark
+    public Data slotItem() {
+        return RecordedTraffic.parse(this.slotItemRecord);
+    }
+}
@@ -0,0 +1,139 @@
+package logbook.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.JsonObject;
+
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.server.proxy.TrafficRecorder;
+
+/**
+ * ベンチマークで使う記録した通信<br>
+ * システムプロパティ benchmark.data のフォルダ(省略時は benchmark/data)にある記録した通信({@link TrafficRecorder})を
+ * 全て読み込んで、種類ごとに取り出せるようにします<br>
+ * 実際に記録した通信を使う場合は{@link AnonymizeTraffic}で提督名などを消してから置いてください
+ */
+final class RecordedTraffic {
+
+    /** 記録した通信のフォルダを指定するシステムプロパティ */
+    static final String DATA_PROPERTY = "benchmark.data";
+
+    private static RecordedTraffic instance;
+
+    private final Map<DataType, List<TrafficRecorder.Record>> records = new EnumMap<>(DataType.class);
+
+    /** 通常戦(昼戦)・戦闘結果・出撃マス */
+    private final List<JsonObject[]> battles = new ArrayList<>();
+
+    private RecordedTraffic(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(TrafficRecorder.EXTENSION));
+        if ((files == null) || (files.length == 0)) {
+            throw new IOException("記録した通信がありません: " + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            this.read(file);
+        }
+    }
+
+    /**
+     * 記録した通信を読み込みます(2回目以降は読み込んだものを返します)
+     *
+     * @return 記録した通信
+     * @throws IOException
+     */
+    static synchronized RecordedTraffic load() throws IOException {
+        if (instance == null) {
+            instance = new RecordedTraffic(new File(System.getProperty(DATA_PROPERTY, "benchmark/data")));
+        }
+        return instance;
+    }
+
+    private void read(File file) throws IOException {
+        JsonObject mapCell = null;
+        JsonObject battle = null;
+        try (TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file)) {
+            TrafficRecorder.Record record;
+            while ((record = reader.next()) != null) {
+                DataType type = DataType.TYPEMAP.get(record.url);
+                if (type == null) {
+                    continue;
+                }
+                this.records.computeIfAbsent(type, k -> new ArrayList<>()).add(record);
+                switch (type) {
+                case START:
+                case NEXT:
+                    mapCell = apiData(record);
+                    battle = null;
+                    break;
+                case BATTLE:
+                    battle = apiData(record);
+                    break;
+                case BATTLE_RESULT:
+                    if ((battle != null) && (mapCell != null)) {
+                        this.battles.add(new JsonObject[] { battle, apiData(record), mapCell });
+                    }
+                    battle = null;
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param type 通信の種類
+     * @return 最初に記録した通信
+     * @throws IllegalStateException 記録されていない場合
+     */
+    TrafficRecorder.Record first(DataType type) {
+        return this.all(type).get(0);
+    }
+
+    /**
+     * @param type 通信の種類
+     * @return 記録した順の通信
+     * @throws IllegalStateException 記録されていない場合
+     */
+    List<TrafficRecorder.Record> all(DataType type) {
+        List<TrafficRecorder.Record> list = this.records.get(type);
+        if (list == null) {
+            throw new IllegalStateException("記録した通信に " + type + " がありません");
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return 通常戦(昼戦)のapi_data・戦闘結果のapi_data・出撃マスのapi_data の組
+     * @throws IllegalStateException 記録されていない場合
+     */
+    List<JsonObject[]> battles() {
+        if (this.battles.isEmpty()) {
+            throw new IllegalStateException("記録した通信に通常戦がありません");
+        }
+        return Collections.unmodifiableList(this.battles);
+    }
+
+    /**
+     * 受信したときと同じく解凍・解析します
+     */
+    static Data parse(TrafficRecorder.Record record) {
+        return record.toUndefinedData().toDefinedData();
+    }
+
+    /**
+     * @return api_data
+     */
+    static JsonObject apiData(TrafficRecorder.Record record) {
+        return parse(record).getJsonObject().getJsonObject("api_data");
+    }
+}
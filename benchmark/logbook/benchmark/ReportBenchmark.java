@@ -0,0 +1,32 @@
+package logbook.benchmark;
+
+import java.io.File;
+
+import javax.script.ScriptEngineManager;
+
+import logbook.gui.logic.CreateReportLogic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * CreateReportLogic.getShipListBody<br>
+ * 同梱のスクリプトを使うのでJavaScriptエンジンと、カレントディレクトリに script フォルダが必要です
+ */
+public class ReportBenchmark extends BenchmarkBase {
+
+    @Override
+    protected void setup() {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        if ((manager.getEngineByName("nashorn") == null) && (manager.getEngineByExtension("js") == null)) {
+            throw new IllegalStateException("JavaScriptエンジンがないので計測できません");
+        }
+        if (!new File("script").isDirectory()) {
+            throw new IllegalStateException("script フォルダがないので計測できません");
+        }
+    }
+
+    @Benchmark
+    public Object shipList() {
+        return CreateReportLogic.getShipListBody(0, null);
+    }
+}
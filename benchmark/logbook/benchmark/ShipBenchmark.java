@@ -0,0 +1,37 @@
+package logbook.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.JsonArray;
+
+import logbook.data.DataType;
+import logbook.dto.ShipDto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * ShipDto(JsonObject)
+ */
+public class ShipBenchmark extends BenchmarkBase {
+
+    private JsonArray ships;
+
+    @Override
+    protected void setup() {
+        this.ships = RecordedTraffic.parse(this.traffic.first(DataType.SHIP2)).getJsonObject()
+                .getJsonArray("api_data");
+    }
+
+    /**
+     * 保有艦娘全員分を1回とする
+     */
+    @Benchmark
+    public List<ShipDto> constructorAll() {
+        List<ShipDto> list = new ArrayList<>(this.ships.size());
+        for (int i = 0; i < this.ships.size(); i++) {
+            list.add(new ShipDto(this.ships.getJsonObject(i)));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,60 @@
+package logbook.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.context.GlobalContext;
+import logbook.dto.ItemDto;
+import logbook.dto.ShipDto;
+import logbook.server.proxy.TrafficRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * GlobalContext.updateContext<br>
+ * 母港は艦娘が変わらない場合と、記録した母港を順番に読み込ませる場合(疲労度などが変わる)
+ */
+public class StateBenchmark extends BenchmarkBase {
+
+    private Data[] ports;
+    private Data ship2;
+    private Data slotItem;
+    private int next;
+
+    @Override
+    protected void setup() {
+        List<TrafficRecorder.Record> records = this.traffic.all(DataType.PORT);
+        this.ports = new Data[records.size()];
+        for (int i = 0; i < this.ports.length; i++) {
+            this.ports[i] = RecordedTraffic.parse(records.get(i));
+        }
+        this.ship2 = RecordedTraffic.parse(this.traffic.first(DataType.SHIP2));
+        this.slotItem = RecordedTraffic.parse(this.traffic.first(DataType.SLOTITEM_MEMBER));
+    }
+
+    @Benchmark
+    public Map<Integer, ShipDto> portUnchanged() {
+        GlobalContext.updateContext(this.ports[0]);
+        return GlobalContext.getShipMap();
+    }
+
+    @Benchmark
+    public Map<Integer, ShipDto> portChanged() {
+        GlobalContext.updateContext(this.ports[(this.next++) % this.ports.length]);
+        return GlobalContext.getShipMap();
+    }
+
+    @Benchmark
+    public Map<Integer, ShipDto> ship2() {
+        GlobalContext.updateContext(this.ship2);
+        return GlobalContext.getShipMap();
+    }
+
+    @Benchmark
+    public Map<Integer, ItemDto> slotItem() {
+        GlobalContext.updateContext(this.slotItem);
+        return GlobalContext.getItemMap();
+    }
+}
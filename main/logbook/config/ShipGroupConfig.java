@@ -9,6 +9,7 @@ import logbook.gui.ApplicationMain;
 import logbook.gui.logic.ShipGroupListener;
 import logbook.gui.logic.ShipGroupObserver;
 import logbook.internal.LoggerHolder;
+import logbook.internal.PersistenceService;
 import logbook.util.BeanUtils;
 
 /**
@@ -22,24 +23,25 @@ public class ShipGroupConfig {
     /** 所有艦娘グループ */
     private static ShipGroupListBean group;
 
-    /** 変更があったか */
-    private static boolean modified = false;
+    /** 保存対象(変更があったらPersistenceServiceが書き込む) */
+    private static final PersistenceService.Target PERSISTENCE = PersistenceService.register("グループ",
+            ShipGroupConfig::snapshot);
 
     // 変更検出用
     private static class ChangeListener implements ShipGroupListener {
         @Override
         public void listChanged() {
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
         }
 
         @Override
         public void groupNameChanged(ShipGroupBean group) {
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
         }
 
         @Override
         public void groupShipChanged(ShipGroupBean group) {
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
         }
     }
 
@@ -51,18 +53,22 @@ public class ShipGroupConfig {
     }
 
     /**
-     * 設定ファイルに書き込みます
+     * 変更があれば設定ファイルに今すぐ書き込みます
      */
     public static void store() throws IOException {
-        // 変更があったときだけ書き込む
-        if (modified) {
-            if (group == null) {
-                group = new ShipGroupListBean();
-            }
-            ApplicationMain.sysPrint("グループファイル更新");
-            BeanUtils.writeObject(AppConstants.GROUP_CONFIG_FILE, group);
-            modified = false;
+        PersistenceService.store(PERSISTENCE);
+    }
+
+    private static PersistenceService.Snapshot snapshot() throws IOException {
+        if (group == null) {
+            group = new ShipGroupListBean();
         }
+        final BeanUtils.Encoded encoded = BeanUtils.encodeObject(AppConstants.GROUP_CONFIG_FILE, group);
+        return () -> {
+            ApplicationMain.sysPrint("グループファイル更新");
+            BeanUtils.writeEncoded(AppConstants.GROUP_CONFIG_FILE, encoded);
+            return encoded.size();
+        };
     }
 
     /**
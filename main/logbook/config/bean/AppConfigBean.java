@@ -309,6 +309,9 @@ public final class AppConfigBean {
     /** 開発者オプション-JSONの保存先 */
     private String storeJsonPath = FilenameUtils.concat(new File("").getAbsolutePath(), "json");
 
+    /** 開発者オプション-通信を記録する */
+    private boolean recordTraffic;
+
     /** テーブル列を表示する設定(キー:java.lang.Class.getName()) */
     private Map<String, TableConfigBean> tableConfigMap = new HashMap<String, TableConfigBean>();
 
@@ -425,6 +428,21 @@ public final class AppConfigBean {
     /** イベント基地を使用するか */
     private boolean isUseEventAirbase = true;
 
+    /** スクリプトの1回の呼び出しにかけてよい時間(ミリ秒) 超えたスクリプトは無効にする 0は無制限 */
+    private int scriptCallBudget = 2000;
+
+    /** スクリプトが1回のテーブルの再読み込みにかけてよい時間(ミリ秒) 超えたスクリプトは無効にする 0は無制限 */
+    private int scriptReloadBudget = 10000;
+
+    /** テーブルの再読み込みごとにスクリプトの実行時間をログに出力する */
+    private boolean scriptStatLogging = false;
+
+    /** ゲームの画像・音声などをディスクにキャッシュする */
+    private boolean useAssetCache = false;
+
+    /** ゲームの画像・音声などのキャッシュの最大サイズ(MB) */
+    private int assetCacheSize = 2048;
+
     private static RGB cloneRGB(RGB rgb) {
         return new RGB(rgb.red, rgb.green, rgb.blue);
     }
@@ -1772,6 +1790,22 @@ public final class AppConfigBean {
         this.storeJsonPath = storeJsonPath;
     }
 
+    /**
+     * 開発者オプション-通信を記録するを取得します。
+     * @return 開発者オプション-通信を記録する
+     */
+    public boolean isRecordTraffic() {
+        return this.recordTraffic;
+    }
+
+    /**
+     * 開発者オプション-通信を記録するを設定します。
+     * @param recordTraffic 開発者オプション-通信を記録する
+     */
+    public void setRecordTraffic(boolean recordTraffic) {
+        this.recordTraffic = recordTraffic;
+    }
+
     /**
      * テーブル列を表示する設定(キー:java.lang.Class.getName())を取得します。
      * @return テーブル列を表示する設定(キー:java.lang.Class.getName())
@@ -2377,4 +2411,74 @@ public final class AppConfigBean {
     public void setUseEventAirbase(boolean isUseEventAirbase) {
         this.isUseEventAirbase = isUseEventAirbase;
     }
+
+    /**
+     * @return scriptCallBudget
+     */
+    public int getScriptCallBudget() {
+        return this.scriptCallBudget;
+    }
+
+    /**
+     * @param scriptCallBudget セットする scriptCallBudget
+     */
+    public void setScriptCallBudget(int scriptCallBudget) {
+        this.scriptCallBudget = scriptCallBudget;
+    }
+
+    /**
+     * @return scriptReloadBudget
+     */
+    public int getScriptReloadBudget() {
+        return this.scriptReloadBudget;
+    }
+
+    /**
+     * @param scriptReloadBudget セットする scriptReloadBudget
+     */
+    public void setScriptReloadBudget(int scriptReloadBudget) {
+        this.scriptReloadBudget = scriptReloadBudget;
+    }
+
+    /**
+     * @return scriptStatLogging
+     */
+    public boolean isScriptStatLogging() {
+        return this.scriptStatLogging;
+    }
+
+    /**
+     * @param scriptStatLogging セットする scriptStatLogging
+     */
+    public void setScriptStatLogging(boolean scriptStatLogging) {
+        this.scriptStatLogging = scriptStatLogging;
+    }
+
+    /**
+     * @return useAssetCache
+     */
+    public boolean isUseAssetCache() {
+        return this.useAssetCache;
+    }
+
+    /**
+     * @param useAssetCache セットする useAssetCache
+     */
+    public void setUseAssetCache(boolean useAssetCache) {
+        this.useAssetCache = useAssetCache;
+    }
+
+    /**
+     * @return assetCacheSize
+     */
+    public int getAssetCacheSize() {
+        return this.assetCacheSize;
+    }
+
+    /**
+     * @param assetCacheSize セットする assetCacheSize
+     */
+    public void setAssetCacheSize(int assetCacheSize) {
+        this.assetCacheSize = assetCacheSize;
+    }
 }
@@ -229,6 +229,21 @@ public class AppConstants {
     /** 多重起動検出用 */
     public static final File LOCK_FILE = new File("./config/lock");
 
+    /** 書き込みキューが溢れたときの退避先 */
+    public static final File LOG_WRITER_SPILL_FILE = new File("./config/logwriter-spill.dat");
+
+    /** 外部サーバーへの送信待ちの保存先 */
+    public static final File UPLOAD_QUEUE_DIR = new File("./config/upload-queue");
+
+    /** ゲームの画像・音声などのキャッシュの保存先 */
+    public static final File ASSET_CACHE_DIR = new File("./cache/kcs");
+
+    /** 資材ログを読み込んだ結果のキャッシュ */
+    public static final File RESOURCE_LOG_CACHE_FILE = new File("./config/resourcelog-cache.dat");
+
+    /** 記録した通信の保存先 */
+    public static final File TRAFFIC_DIR = new File("./traffic");
+
     /** 保有資材:燃料 */
     public static final int MATERIAL_FUEL = 1;
 
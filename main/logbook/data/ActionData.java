@@ -1,11 +1,14 @@
 package logbook.data;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.Map;
 
+import javax.json.JsonException;
 import javax.json.JsonObject;
 
 import logbook.dto.AbstractDto;
+import logbook.util.JsonStreamReader;
 
 /**
  * アプリケーションで使用するデータを表します
@@ -17,7 +20,12 @@ public final class ActionData extends AbstractDto implements Data {
 
     private final Date date;
 
-    private final JsonObject json;
+    private JsonObject json;
+
+    /** JSONの木をまだ作っていないレスポンスの内容(作った後はnull) */
+    private ByteBuffer response;
+
+    private final DecodedResponse decoded;
 
     private final Map<String, String> postField;
 
@@ -25,6 +33,27 @@ public final class ActionData extends AbstractDto implements Data {
         this.type = type;
         this.date = createDate;
         this.json = json;
+        this.response = null;
+        this.decoded = null;
+        this.postField = postField;
+    }
+
+    /**
+     * JSONの木を{@link #getJsonObject()}が呼ばれたときに作るデータ
+     *
+     * @param type データの種類
+     * @param createDate 受信した日時
+     * @param decoded 受信時に読み込んだレスポンス
+     * @param response レスポンスの内容(コピーしたもの)
+     * @param postField リクエストのパラメータ
+     */
+    ActionData(DataType type, Date createDate, DecodedResponse decoded, byte[] response,
+            Map<String, String> postField) {
+        this.type = type;
+        this.date = createDate;
+        this.json = null;
+        this.response = ByteBuffer.wrap(response).asReadOnlyBuffer();
+        this.decoded = decoded;
         this.postField = postField;
     }
 
@@ -39,10 +68,25 @@ public final class ActionData extends AbstractDto implements Data {
     }
 
     @Override
-    public JsonObject getJsonObject() {
+    public synchronized JsonObject getJsonObject() {
+        if (this.json == null) {
+            try {
+                this.json = JsonStreamReader.readObject(UndefinedData.openJson(this.response.duplicate()));
+            } catch (Exception e) {
+                throw new JsonException("レスポンスのJSONを読み込めませんでした", e);
+            }
+            this.response = null;
+        }
         return this.json;
     }
 
+    /**
+     * @return 受信時に読み込んだレスポンス(読み込んでいない場合はnull)
+     */
+    DecodedResponse getDecoded() {
+        return this.decoded;
+    }
+
     @Override
     public String getField(String key) {
         if (this.postField != null) {
@@ -51,4 +95,12 @@ public final class ActionData extends AbstractDto implements Data {
         return null;
     }
 
+    /**
+     * リクエストのパラメータを取得します
+     * @return リクエストのパラメータ(ない場合はnull)
+     */
+    public Map<String, String> getPostField() {
+        return this.postField;
+    }
+
 }
@@ -0,0 +1,218 @@
+package logbook.data;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.stream.JsonParser;
+
+import logbook.dto.ItemDto;
+import logbook.dto.ShipFields;
+import logbook.util.JsonStreamReader;
+
+/**
+ * JSONの木を作らずにJsonParserのイベントから読み込んだレスポンス(母港・保有艦・保有装備)<br>
+ * 艦娘と装備の配列は{@link ShipFields}と{@link ItemDto}に直接読み込み、
+ * それ以外の小さい部分(司令部・資材・艦隊など)だけをJsonObjectにします<br>
+ * レスポンス全体のJsonObjectはリスナーやスクリプトが{@link Data#getJsonObject()}を呼んだときに作ります
+ */
+public final class DecodedResponse {
+
+    private final JsonObject root;
+    private final JsonObject apiData;
+    private final List<ShipFields> ships;
+    private final List<ItemDto> items;
+
+    private DecodedResponse(JsonObject root, JsonObject apiData, List<ShipFields> ships, List<ItemDto> items) {
+        this.root = root;
+        this.apiData = apiData;
+        this.ships = ships;
+        this.items = items;
+    }
+
+    /**
+     * @param type データの種類
+     * @return 木を作らずに読み込む種類の場合true
+     */
+    public static boolean isSupported(DataType type) {
+        return (type == DataType.PORT) || (type == DataType.SHIP2) || (type == DataType.SLOTITEM_MEMBER);
+    }
+
+    /**
+     * 受信したデータから読み込んだレスポンスを取得します<br>
+     * 受信時に読み込んでいない場合(テストデータやJSONの保存から読み込んだデータ)はJsonObjectから読み込みます
+     *
+     * @param data データ
+     * @return 読み込んだレスポンス(対応していない種類の場合はnull)
+     */
+    public static DecodedResponse of(Data data) {
+        DataType type = data.getDataType();
+        if (!isSupported(type)) {
+            return null;
+        }
+        if (data instanceof ActionData) {
+            DecodedResponse decoded = ((ActionData) data).getDecoded();
+            if (decoded != null) {
+                return decoded;
+            }
+        }
+        try (JsonParser parser = JsonStreamReader.createParser(data.getJsonObject())) {
+            return read(type, parser);
+        }
+    }
+
+    /**
+     * レスポンスのJSON(svdata=の後)を読み込みます
+     *
+     * @param type データの種類
+     * @param stream UTF-8のJSON
+     * @return 読み込んだレスポンス
+     */
+    static DecodedResponse read(DataType type, InputStream stream) {
+        try (JsonParser parser = JsonStreamReader.createParser(stream)) {
+            return read(type, parser);
+        }
+    }
+
+    private static DecodedResponse read(DataType type, JsonParser parser) {
+        if (!parser.hasNext() || (parser.next() != JsonParser.Event.START_OBJECT)) {
+            throw new JsonException("JSONオブジェクトではありません");
+        }
+        JsonObject[] apiData = new JsonObject[1];
+        List<ShipFields> ships = new ArrayList<>();
+        List<ItemDto> items = new ArrayList<>();
+        boolean[] decoded = new boolean[1];
+        JsonObject root = JsonStreamReader.readObject(parser, (key, p, event) -> {
+            if (!"api_data".equals(key)) {
+                return false;
+            }
+            if ((type == DataType.PORT) && (event == JsonParser.Event.START_OBJECT)) {
+                // 母港は api_ship だけ木を作らない
+                apiData[0] = JsonStreamReader.readObject(p, (key2, p2, event2) -> {
+                    if ("api_ship".equals(key2) && (event2 == JsonParser.Event.START_ARRAY)) {
+                        readShips(p2, ships);
+                        decoded[0] = true;
+                        return true;
+                    }
+                    return false;
+                });
+                return true;
+            }
+            if ((type == DataType.SHIP2) && (event == JsonParser.Event.START_ARRAY)) {
+                readShips(p, ships);
+                decoded[0] = true;
+                return true;
+            }
+            if ((type == DataType.SLOTITEM_MEMBER) && (event == JsonParser.Event.START_ARRAY)) {
+                readItems(p, items);
+                decoded[0] = true;
+                return true;
+            }
+            return false;
+        });
+        // エラーなどで api_data の形が違う場合は何も読み込んでいない
+        if (!decoded[0]) {
+            return new DecodedResponse(root, null, null, null);
+        }
+        return new DecodedResponse(root, apiData[0], Collections.unmodifiableList(ships),
+                Collections.unmodifiableList(items));
+    }
+
+    private static void readShips(JsonParser parser, List<ShipFields> ships) {
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_ARRAY) {
+                return;
+            }
+            if (event != JsonParser.Event.START_OBJECT) {
+                throw new JsonException("艦娘がJSONオブジェクトではありません: " + event);
+            }
+            ships.add(ShipFields.read(parser));
+        }
+        throw new JsonException("JSON配列が閉じられていません");
+    }
+
+    private static void readItems(JsonParser parser, List<ItemDto> items) {
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_ARRAY) {
+                return;
+            }
+            if (event != JsonParser.Event.START_OBJECT) {
+                throw new JsonException("装備がJSONオブジェクトではありません: " + event);
+            }
+            items.add(readItem(parser));
+        }
+        throw new JsonException("JSON配列が閉じられていません");
+    }
+
+    /**
+     * 装備を読み込みます(マスターデータはGlobalContextに追加するときに設定します)
+     */
+    private static ItemDto readItem(JsonParser parser) {
+        ItemDto item = new ItemDto();
+        String key = null;
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.KEY_NAME) {
+                key = parser.getString();
+                continue;
+            }
+            if (event == JsonParser.Event.END_OBJECT) {
+                return item;
+            }
+            switch (key) {
+            case "api_id":
+                item.setId(JsonStreamReader.readInt(parser, event));
+                break;
+            case "api_slotitem_id":
+                item.setSlotitemId(JsonStreamReader.readInt(parser, event));
+                break;
+            case "api_locked":
+                item.setLocked(JsonStreamReader.readInt(parser, event) != 0);
+                break;
+            case "api_level":
+                item.setLevel(JsonStreamReader.readInt(parser, event));
+                break;
+            case "api_alv":
+                item.setAlv(JsonStreamReader.readInt(parser, event));
+                break;
+            default:
+                JsonStreamReader.skipValue(parser, event);
+                break;
+            }
+        }
+        throw new JsonException("装備のJSONが閉じられていません");
+    }
+
+    /**
+     * @return api_data以外(api_result, api_data_deck など)
+     */
+    public JsonObject getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return 母港のapi_data(api_shipを除く、母港以外はnull)
+     */
+    public JsonObject getApiData() {
+        return this.apiData;
+    }
+
+    /**
+     * @return 母港のapi_ship・保有艦のapi_data(読み込めなかった場合はnull)
+     */
+    public List<ShipFields> getShips() {
+        return this.ships;
+    }
+
+    /**
+     * @return 保有装備のapi_data(読み込めなかった場合はnull)
+     */
+    public List<ItemDto> getItems() {
+        return this.items;
+    }
+}
@@ -1,20 +1,20 @@
 package logbook.data;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
-import javax.json.Json;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
 
-import org.apache.commons.io.IOUtils;
+import logbook.util.JsonStreamReader;
 
 /**
  * 同定されていない未加工のデータ
@@ -28,9 +28,11 @@ public class UndefinedData implements Data {
     // "/ksapi/..."
     private final String url;
 
-    private final byte[] request;
+    /** リクエストの内容(読み取り専用、ない場合はnull) */
+    private final ByteBuffer request;
 
-    private final byte[] response;
+    /** レスポンスの内容(読み取り専用) */
+    private final ByteBuffer response;
 
     private final Date date;
 
@@ -41,24 +43,36 @@ public class UndefinedData implements Data {
      * @param response レスポンスのバイト配列
      */
     public UndefinedData(String fullUrl, String url, byte[] request, byte[] response) {
+        this(fullUrl, url, (request != null) ? ByteBuffer.wrap(request) : null, ByteBuffer.wrap(response));
+    }
+
+    /**
+     * 未加工データのコンストラクター(内容をコピーせずに参照します)
+     * 
+     * @param fullUrl URL
+     * @param url URLのパス
+     * @param request リクエストの内容(ない場合はnull)
+     * @param response レスポンスの内容
+     */
+    public UndefinedData(String fullUrl, String url, ByteBuffer request, ByteBuffer response) {
+        this(fullUrl, url, request, response, Calendar.getInstance().getTime());
+    }
+
+    /**
+     * 未加工データのコンストラクター(記録した通信の再生用)
+     * 
+     * @param fullUrl URL
+     * @param url URLのパス
+     * @param request リクエストの内容(ない場合はnull)
+     * @param response レスポンスの内容
+     * @param date 受信した日時
+     */
+    public UndefinedData(String fullUrl, String url, ByteBuffer request, ByteBuffer response, Date date) {
         this.fullUrl = fullUrl;
         this.url = url;
-        this.request = request;
-        this.response = response;
-        this.date = Calendar.getInstance().getTime();
-    }
-
-    public UndefinedData decode(String contentEncoding) {
-        byte[] responseDecoded = this.response;
-        // 圧縮されていたら解凍する
-        if ((contentEncoding != null) && contentEncoding.equals("gzip")) {
-            try {
-                responseDecoded = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(this.response)));
-            } catch (IOException e) {
-                //
-            }
-        }
-        return new UndefinedData(this.fullUrl, this.url, this.request, responseDecoded);
+        this.request = (request != null) ? request.asReadOnlyBuffer() : null;
+        this.response = response.asReadOnlyBuffer();
+        this.date = (Date) date.clone();
     }
 
     @Override
@@ -90,7 +104,7 @@ public class UndefinedData implements Data {
      * @return
      */
     public final Data toDefinedData() {
-        if (this.response.length != 0) {
+        if (this.response.remaining() != 0) {
             DataType type = DataType.TYPEMAP.get(this.url);
 
             if (type != null) {
@@ -98,21 +112,19 @@ public class UndefinedData implements Data {
                     // リクエストのフィールドを復号します
                     Map<String, String> field = null;
                     if (this.request != null) {
-                        field = getQueryMap(URLDecoder.decode(new String(this.request).trim(), "UTF-8"));
+                        field = getQueryMap(URLDecoder.decode(
+                                Charset.defaultCharset().decode(this.request.duplicate()).toString().trim(), "UTF-8"));
                     }
                     // レスポンスのJSONを復号します
-                    InputStream stream = new ByteArrayInputStream(this.response);
-                    if ((this.response[0] == (byte) 0x1f) && (this.response[1] == (byte) 0x8b)) {
-                        // レスポンスの先頭2バイトが0x1f, 0x8bであればgzip圧縮されている
-                        stream = new GZIPInputStream(stream);
-                    }
-                    // レスポンスボディのJSONはsvdata=から始まるので除去します
-                    int read;
-                    while (((read = stream.read()) != -1) && (read != '=')) {
+                    if (DecodedResponse.isSupported(type)) {
+                        // 母港などの大きいレスポンスはJSONの木を作らずにDTOの値を読み込み、
+                        // 木はリスナーやスクリプトが必要とした時に作ります(受信バッファは再利用されるのでコピーします)
+                        byte[] response = toArray(this.response);
+                        DecodedResponse decoded = DecodedResponse.read(type,
+                                openJson(ByteBuffer.wrap(response).asReadOnlyBuffer()));
+                        return new ActionData(type, this.date, decoded, response, field);
                     }
-
-                    JsonReader jsonreader = Json.createReader(stream);
-                    JsonObject json = jsonreader.readObject();
+                    JsonObject json = JsonStreamReader.readObject(openJson(this.response.duplicate()));
 
                     return new ActionData(type, this.date, json, field);
                 } catch (Exception e) {
@@ -123,6 +135,42 @@ public class UndefinedData implements Data {
         return this;
     }
 
+    /**
+     * レスポンスのJSON(svdata=の後)を読むInputStreamを返します
+     *
+     * @param response レスポンスの内容(位置が進みます)
+     * @return JSONを読むInputStream
+     * @throws IOException gzipを解凍できない場合
+     */
+    static InputStream openJson(ByteBuffer response) throws IOException {
+        if ((response.remaining() >= 2) && (response.get(response.position()) == (byte) 0x1f)
+                && (response.get(response.position() + 1) == (byte) 0x8b)) {
+            // レスポンスの先頭2バイトが0x1f, 0x8bであればgzip圧縮されている
+            // 解凍した配列は作らずに、解凍しながら解析する
+            InputStream stream = new BufferedInputStream(new GZIPInputStream(new ByteBufferInputStream(response)));
+            // レスポンスボディのJSONはsvdata=から始まるので除去します
+            int read;
+            while (((read = stream.read()) != -1) && (read != '=')) {
+            }
+            return stream;
+        }
+        // レスポンスボディのJSONはsvdata=から始まるので除去します
+        response.position(indexOfJsonStart(response));
+        return new ByteBufferInputStream(response);
+    }
+
+    /**
+     * svdata=の直後の位置を返します(=がない場合は終端)
+     */
+    private static int indexOfJsonStart(ByteBuffer response) {
+        for (int i = response.position(); i < response.limit(); i++) {
+            if (response.get(i) == '=') {
+                return i + 1;
+            }
+        }
+        return response.limit();
+    }
+
     public static Map<String, String> getQueryMap(String query) {
         String[] params = query.split("&");
         Map<String, String> map = new HashMap<String, String>();
@@ -146,11 +194,71 @@ public class UndefinedData implements Data {
         return this.url;
     }
 
+    /**
+     * @return リクエストの内容のコピー(ない場合はnull)
+     */
     public byte[] getRequest() {
-        return this.request;
+        return (this.request != null) ? toArray(this.request) : null;
     }
 
+    /**
+     * @return レスポンスの内容のコピー
+     */
     public byte[] getResponse() {
-        return this.response;
+        return toArray(this.response);
+    }
+
+    /**
+     * @return リクエストの内容(読み取り専用、コピーしません、ない場合はnull)
+     */
+    public ByteBuffer getRequestBuffer() {
+        return (this.request != null) ? this.request.duplicate() : null;
+    }
+
+    /**
+     * @return レスポンスの内容(読み取り専用、コピーしません)
+     */
+    public ByteBuffer getResponseBuffer() {
+        return this.response.duplicate();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    /**
+     * ByteBufferを読むInputStream
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? (this.buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
     }
 }
@@ -1,9 +1,6 @@
 package logbook.data.context;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -11,6 +8,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -18,6 +16,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -27,8 +26,6 @@ import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.ToolTip;
 
@@ -36,6 +33,7 @@ import logbook.config.AppConfig;
 import logbook.config.UserDataConfig;
 import logbook.constants.AppConstants;
 import logbook.data.Data;
+import logbook.data.DecodedResponse;
 import logbook.data.EventListener;
 import logbook.dto.AirbaseDto;
 import logbook.dto.BasicInfoDto;
@@ -61,6 +59,7 @@ import logbook.dto.PracticeUserDto;
 import logbook.dto.QuestDto;
 import logbook.dto.ResourceItemDto;
 import logbook.dto.ShipDto;
+import logbook.dto.ShipFields;
 import logbook.dto.ShipInfoDto;
 import logbook.gui.ApplicationMain;
 import logbook.gui.logic.CreateReportLogic;
@@ -69,6 +68,7 @@ import logbook.internal.AkashiTimer;
 import logbook.internal.BattleResultServer;
 import logbook.internal.CondTiming;
 import logbook.internal.Item;
+import logbook.internal.JsonArchive;
 import logbook.internal.LoggerHolder;
 import logbook.internal.MasterData;
 import logbook.internal.ResultRecord;
@@ -211,6 +211,9 @@ public final class GlobalContext {
     /** 友軍艦隊種類 */
     private static int requestFriendlyFleetType;
 
+    /** 最後の母港での艦娘情報の差分 */
+    private static ShipChangeSet shipChangeSet = ShipChangeSet.EMPTY;
+
     /** ShipParameterRecord更新ハンドラ */
     private static UpdateShipParameter updateShipParameter = new UpdateShipParameter();
 
@@ -609,6 +612,14 @@ public final class GlobalContext {
         return condTiming;
     }
 
+    /**
+     * 最後の母港での艦娘情報の差分
+     * @return 艦娘情報の差分
+     */
+    public static ShipChangeSet getShipChangeSet() {
+        return shipChangeSet;
+    }
+
     /**
      * @return akashiRepairStart
      */
@@ -652,11 +663,13 @@ public final class GlobalContext {
     public static void updateContext(Data data) {
         // json保存設定
         if (AppConfig.get().isStoreJson()) {
-            doStoreJson(data);
+            JsonArchive.store(data);
         }
 
         try {
-            JsonValue apidata = data.getJsonObject().get("api_data");
+            // 母港・保有艦・保有装備は受信時に読み込んだ値を使う(JSONの木は作らない)
+            DecodedResponse decoded = DecodedResponse.of(data);
+            JsonValue apidata = (decoded == null) ? data.getJsonObject().get("api_data") : null;
             switch (data.getDataType()) {
             // 補給
             case CHARGE:
@@ -672,14 +685,15 @@ public final class GlobalContext {
                 break;
             // 母港
             case PORT:
-                doPort(data, apidata);
+                doPort(data, decoded);
                 break;
             // 友軍艦隊
             case SET_FRIENDLY_REQUEST:
                 doSetFriendlyRequest(data, apidata);
+                break;
             // 保有装備
             case SLOTITEM_MEMBER:
-                doSlotitemMember(data, apidata);
+                doSlotitemMember(data, decoded);
                 break;
             // 保有艦
             case SHIP3:
@@ -687,7 +701,7 @@ public final class GlobalContext {
                 break;
             // 保有艦
             case SHIP2:
-                doShip2(data, apidata);
+                doShip2(data, decoded);
                 break;
             // 出撃中の更新
             case SHIP_DECK:
@@ -967,28 +981,6 @@ public final class GlobalContext {
         return updateCounter;
     }
 
-    /**
-     * JSONオブジェクトを保存する
-     * @param data
-     */
-    private static void doStoreJson(Data data) {
-        try {
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS");
-            Date time = Calendar.getInstance().getTime();
-            // ファイル名
-            String fname = new StringBuilder().append(format.format(time)).append("_").append(data.getDataType())
-                    .append(".json").toString();
-            // ファイルパス
-            File file = new File(FilenameUtils.concat(AppConfig.get().getStoreJsonPath(), fname));
-
-            FileUtils.write(file, data.getJsonObject().toString(), Charset.forName("UTF-8"));
-        } catch (IOException e) {
-            LOG.get().warn("JSONオブジェクトを保存するに失敗しました", e);
-            LOG.get().warn(data);
-        }
-
-    }
-
     /**
      * ログイン時のユーザ情報
      * @param data
@@ -1212,10 +1204,13 @@ public final class GlobalContext {
      * 母港を更新します
      * @param data
      */
-    private static void doPort(Data data, JsonValue json) {
+    private static void doPort(Data data, DecodedResponse decoded) {
         try {
-            if (json instanceof JsonObject) {
-                JsonObject apidata = (JsonObject) json;
+            if ((decoded.getApiData() != null) && (decoded.getShips() != null)) {
+                JsonObject apidata = decoded.getApiData();
+                // 艦隊編成・遠征・入渠の状態(変化の検出用)
+                String oldFleetState = getFleetState();
+
                 // 出撃中ではない
                 boolean endSortie = false;
                 for (int i = 0; i < isSortie.length; ++i) {
@@ -1229,7 +1224,7 @@ public final class GlobalContext {
                         endSortie = true;
                     }
                 }
-                if (endSortie) {
+                if (endSortie && (ApplicationMain.main != null)) {
                     ApplicationMain.main.endSortie();
                 }
                 Arrays.fill(isSortie, false);
@@ -1258,46 +1253,19 @@ public final class GlobalContext {
                 doNdock(data, apidata.get("api_ndock"));
                 //addConsole("入渠情報を更新しました");
 
-                // 保有艦娘を更新する
+                // 保有艦娘を更新する(変化があった艦娘だけ作り直す)
                 sunkShips.clear();
-                boolean condUpdated = false;
-                boolean hpUpdated = false;
-                Map<Integer, ShipDto> oldShipMap = shipMap;
-                shipMap = new TreeMap<>();
-                JsonArray apiShip = apidata.getJsonArray("api_ship");
-                for (int i = 0; i < apiShip.size(); i++) {
-                    ShipDto ship = new ShipDto((JsonObject) apiShip.get(i));
-                    addShip(ship);
-
-                    ShipDto oldShip = oldShipMap.get(ship.getId());
-                    if (oldShip != null) {
-                        // 疲労度に変化があったか
-                        if (oldShip.getCond() != ship.getCond()) {
-                            condUpdated = true;
-                        }
-                        // HPに変化があったか
-                        if (oldShip.getNowhp() != ship.getNowhp()) {
-                            hpUpdated = true;
-                        }
-                    }
-                }
+                ShipChangeSet changes = updateShipMap(decoded.getShips());
+
                 // 疲労回復タイミング更新
-                condTiming.onPort(condUpdated);
+                condTiming.onPort(changes);
 
                 // 泊地修理タイマー更新
-                if (hpUpdated) {
-                    // 実際に回復があったのでリセット
-                    akashiTimer.reset();
-                }
-                else if ((akashiTimer.getStartTime() != null) && (isAkashiRepairEnabled() == false)) {
-                    // 泊地修理していなくてもカウンタは回っているが、泊地修理編成でない場合回復がないので
-                    // 20分経過していたらリセットしておく
-                    // サーバ側で20分経過したかどうかは正確には分からないが知る術がない
-                    long elapsed = new Date().getTime() - akashiTimer.getStartTime().getTime();
-                    if (elapsed > AkashiTimer.MINIMUM_TIME) {
-                        akashiTimer.reset();
-                    }
-                }
+                akashiTimer.onPort(changes, isAkashiRepairEnabled());
+
+                Map<String, DockDto> oldDock = new TreeMap<>(dock);
+                DeckMissionDto[] oldMissions = deckMissions.clone();
+                int oldCombinedKind = combinedKind;
 
                 JsonArray apiDeckPort = apidata.getJsonArray("api_deck_port");
                 doDeck(apiDeckPort);
@@ -1312,6 +1280,13 @@ public final class GlobalContext {
                     //addConsole("連合艦隊を更新しました");
                 }
 
+                // 変化のない艦隊は前のDockDtoを使う(艦隊表示を描き直さないため)
+                if (!endSortie && (oldCombinedKind == combinedKind)) {
+                    restoreUnchangedDocks(oldDock, oldMissions);
+                }
+                changes.setFleetChanged(!oldFleetState.equals(getFleetState()));
+                shipChangeSet = changes;
+
                 // 友軍艦隊情報更新
                 if (apidata.containsKey("api_friendly_setting")) {
                     requestFriendlyFleetFlag = apidata.getJsonObject("api_friendly_setting").getInt("api_request_flag");
@@ -1339,6 +1314,121 @@ public final class GlobalContext {
         }
     }
 
+    /**
+     * 母港で受け取った艦娘情報をshipMapに反映します<br>
+     * 前回から変化のない艦娘はShipDtoを作り直さずにそのまま使います
+     * @param apiShip api_ship
+     * @return 差分
+     */
+    private static ShipChangeSet updateShipMap(List<ShipFields> apiShip) {
+        ShipChangeSet changes = new ShipChangeSet();
+        Set<Integer> received = new HashSet<>();
+        for (ShipFields fields : apiShip) {
+            int id = fields.getId();
+            received.add(id);
+
+            ShipDto oldShip = shipMap.get(id);
+            if ((oldShip != null) && oldShip.isSameRecord(fields)) {
+                // 変化なし 艦隊IDは後でdoDeckで設定し直す
+                oldShip.setFleetid("");
+                oldShip.setFleetpos(0);
+                continue;
+            }
+
+            ShipDto ship = new ShipDto(fields);
+            addShip(ship);
+
+            if (oldShip == null) {
+                changes.addAdded(id);
+            }
+            else {
+                changes.addUpdated(id);
+                // 疲労度に変化があったか
+                if (oldShip.getCond() != ship.getCond()) {
+                    changes.addCondChanged(id);
+                }
+                // HPに変化があったか
+                if (oldShip.getNowhp() != ship.getNowhp()) {
+                    changes.addHpChanged(id);
+                }
+                // 装備に変化があったか
+                if (!Arrays.equals(oldShip.getItemId(), ship.getItemId())
+                        || (oldShip.getSlotEx() != ship.getSlotEx())) {
+                    changes.addItemChanged(id);
+                }
+            }
+        }
+        for (Iterator<Integer> it = shipMap.keySet().iterator(); it.hasNext();) {
+            Integer id = it.next();
+            if (!received.contains(id)) {
+                it.remove();
+                changes.addRemoved(id);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 名前・艦娘・遠征状態がすべて前と同じ艦隊は前のDockDtoに戻します
+     * @param oldDock doDeck前の艦隊
+     * @param oldMissions doDeck前の遠征
+     */
+    private static void restoreUnchangedDocks(Map<String, DockDto> oldDock, DeckMissionDto[] oldMissions) {
+        for (Map.Entry<String, DockDto> entry : oldDock.entrySet()) {
+            DockDto olddto = entry.getValue();
+            DockDto newdto = dock.get(entry.getKey());
+            if ((newdto == null) || (newdto == olddto) || !Objects.equals(olddto.getName(), newdto.getName())) {
+                continue;
+            }
+            // ShipDtoは変化がなければ同じインスタンスなので、参照の比較で良い
+            List<ShipDto> oldShips = olddto.getShips();
+            List<ShipDto> newShips = newdto.getShips();
+            if (oldShips.size() != newShips.size()) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; i < oldShips.size(); i++) {
+                if (oldShips.get(i) != newShips.get(i)) {
+                    same = false;
+                    break;
+                }
+            }
+            int index = Integer.parseInt(entry.getKey()) - 2;
+            if ((index >= 0) && (index < deckMissions.length)) {
+                DeckMissionDto oldMission = oldMissions[index];
+                DeckMissionDto newMission = deckMissions[index];
+                if ((oldMission.getMissionId() != newMission.getMissionId())
+                        || !Objects.equals(oldMission.getMission(), newMission.getMission())
+                        || !Objects.equals(oldMission.getTime(), newMission.getTime())) {
+                    same = false;
+                }
+            }
+            if (same) {
+                dock.put(entry.getKey(), olddto);
+            }
+        }
+    }
+
+    /**
+     * 艦隊編成・遠征・入渠の状態を文字列にします(変化の検出用)
+     * @return 艦隊編成・遠征・入渠の状態
+     */
+    private static String getFleetState() {
+        StringBuilder sb = new StringBuilder();
+        for (DockDto dockdto : dock.values()) {
+            sb.append(dockdto.getId()).append(':').append(dockdto.getName()).append(':');
+            for (ShipDto ship : dockdto.getShips()) {
+                sb.append(ship.getId()).append(',');
+            }
+            sb.append(';');
+        }
+        for (DeckMissionDto mission : deckMissions) {
+            sb.append(mission.getMissionId()).append(':').append(mission.getTime()).append(';');
+        }
+        sb.append(new TreeSet<>(getNDockShipSet())).append(combinedKind);
+        return sb.toString();
+    }
+
     private static void doSetFriendlyRequest(Data data, JsonValue json) {
         try {
             // 友軍艦隊情報更新
@@ -1437,10 +1527,12 @@ public final class GlobalContext {
                         isSortie[index] = true;
                     }
                 }
-                if (needToStart) {
-                    ApplicationMain.main.startSortie();
+                if (ApplicationMain.main != null) {
+                    if (needToStart) {
+                        ApplicationMain.main.startSortie();
+                    }
+                    ApplicationMain.main.updateBattle(battle);
                 }
-                ApplicationMain.main.updateBattle(battle);
             }
 
         } catch (Exception e) {
@@ -1517,7 +1609,9 @@ public final class GlobalContext {
                     }
 
                     resultRecord.update(apidata.getInt("api_member_exp"));
-                    ApplicationMain.main.updateResultRecord();
+                    if (ApplicationMain.main != null) {
+                        ApplicationMain.main.updateResultRecord();
+                    }
                 }
 
                 // 出撃を更新
@@ -1813,6 +1907,28 @@ public final class GlobalContext {
         }
     }
 
+    /**
+     * 保有装備を更新します(受信時に読み込んだ装備から)
+     *
+     * @param data
+     */
+    private static void doSlotitemMember(Data data, DecodedResponse decoded) {
+        try {
+            if (decoded.getItems() != null) {
+                // 破棄
+                itemMap.clear();
+                for (ItemDto item : decoded.getItems()) {
+                    addSlotitem(item);
+                }
+
+                addUpdateLog("保有装備情報を更新しました");
+            }
+        } catch (Exception e) {
+            LOG.get().warn("保有装備を更新しますに失敗しました", e);
+            LOG.get().warn(data);
+        }
+    }
+
     /**
      * 保有艦娘を更新します
      *
@@ -1841,7 +1957,7 @@ public final class GlobalContext {
                 // 艦隊を設定
                 doDeck(apidata.getJsonArray("api_deck_data"));
 
-                if (battle != null) {
+                if ((battle != null) && (ApplicationMain.main != null)) {
                     ApplicationMain.main.updateSortieDock();
                 }
 
@@ -1860,18 +1976,17 @@ public final class GlobalContext {
      *
      * @param data
      */
-    private static void doShip2(Data data, JsonValue json) {
+    private static void doShip2(Data data, DecodedResponse decoded) {
         try {
-            if (json instanceof JsonArray) {
-                JsonArray apidata = (JsonArray) json;
-                for (int i = 0; i < apidata.size(); i++) {
-                    addShip(new ShipDto((JsonObject) apidata.get(i)));
+            if (decoded.getShips() != null) {
+                for (ShipFields fields : decoded.getShips()) {
+                    addShip(new ShipDto(fields));
                 }
 
                 // 艦隊を設定
-                doDeck(data.getJsonObject().getJsonArray("api_data_deck"));
+                doDeck(decoded.getRoot().getJsonArray("api_data_deck"));
 
-                if (battle != null) {
+                if ((battle != null) && (ApplicationMain.main != null)) {
                     ApplicationMain.main.updateSortieDock();
                 }
 
@@ -2264,7 +2379,9 @@ public final class GlobalContext {
                     resultRecord.reset();
                 }
                 Optional.ofNullable(basic).map(BasicInfoDto::getExperience).ifPresent(exp -> resultRecord.update(exp));
-                ApplicationMain.main.updateResultRecord();
+                if (ApplicationMain.main != null) {
+                    ApplicationMain.main.updateResultRecord();
+                }
             }
         } catch (Exception e) {
             LOG.get().warn("司令部を更新するに失敗しました", e);
@@ -2636,8 +2753,10 @@ public final class GlobalContext {
             }
             updateDetailedMaterial("出撃", null, MATERIAL_DIFF.NONE);
 
-            ApplicationMain.main.startSortie();
-            ApplicationMain.main.updateMapCell(mapCellDto);
+            if (ApplicationMain.main != null) {
+                ApplicationMain.main.startSortie();
+                ApplicationMain.main.updateMapCell(mapCellDto);
+            }
 
             addUpdateLog("出撃しました");
             if (AppConfig.get().isPrintSortieLog())
@@ -2662,7 +2781,9 @@ public final class GlobalContext {
 
                 battle = null;
 
-                ApplicationMain.main.updateMapCell(mapCellDto);
+                if (ApplicationMain.main != null) {
+                    ApplicationMain.main.updateMapCell(mapCellDto);
+                }
                 if (AppConfig.get().isPrintSortieLog())
                     addConsole("行先 " + mapCellDto.toString());
             }
@@ -2726,7 +2847,7 @@ public final class GlobalContext {
                     int shipSpace = maxChara - shipMap.size();
                     int itemSpace = maxSlotitem - itemMap.size();
                     // 装備の空き枠が少ない時はバルーンを出す
-                    if (AppConfig.get().isEnableItemFullBalloonNotify() &&
+                    if ((ApplicationMain.main != null) && AppConfig.get().isEnableItemFullBalloonNotify() &&
                             (itemSpace <= AppConfig.get().getItemFullBalloonNotify())) {
                         ToolTip tip = new ToolTip(ApplicationMain.main.getShell(), SWT.BALLOON
                                 | SWT.ICON_ERROR);
@@ -2737,7 +2858,7 @@ public final class GlobalContext {
                         Sound.randomWarningPlay();
                     }
                     // 艦娘の空き枠が少ない時はバルーンを出す
-                    else if (AppConfig.get().isEnableShipFullBalloonNotify() &&
+                    else if ((ApplicationMain.main != null) && AppConfig.get().isEnableShipFullBalloonNotify() &&
                             (shipSpace <= AppConfig.get().getShipFullBalloonNotify())) {
                         ToolTip tip = new ToolTip(ApplicationMain.main.getShell(), SWT.BALLOON
                                 | SWT.ICON_ERROR);
@@ -2768,13 +2889,17 @@ public final class GlobalContext {
                         }
                         return new MapHpInfoDto(mapId, 0, cleared, -1, -1, -1, -1, gaugeIndex, gaugeType);
                     }).collect(Collectors.toList());
-                    ApplicationMain.main.updateMapHpInfo();
+                    if (ApplicationMain.main != null) {
+                        ApplicationMain.main.updateMapHpInfo();
+                    }
                 }
                 JsonValue api_air_base = ((JsonObject) json).get("api_air_base");
                 if (api_air_base instanceof JsonArray) {
                     JsonArray apidata = (JsonArray) api_air_base;
                     airbase = new AirbaseDto(apidata);
-                    ApplicationMain.main.updateAirbase();
+                    if (ApplicationMain.main != null) {
+                        ApplicationMain.main.updateAirbase();
+                    }
                 }
             }
         } catch (Exception e) {
@@ -2878,7 +3003,9 @@ public final class GlobalContext {
                 }
             }
 
-            ApplicationMain.main.updateCalcPracticeExp(dto);
+            if (ApplicationMain.main != null) {
+                ApplicationMain.main.updateCalcPracticeExp(dto);
+            }
             addUpdateLog("演習相手艦隊情報を更新しました");
         } catch (Exception e) {
             LOG.get().warn("演習相手艦隊情報更新に失敗しました", e);
@@ -2956,7 +3083,9 @@ public final class GlobalContext {
                     if (airbase.get().containsKey(area)) {
                         if (airbase.get().get(area).containsKey(base)) {
                             airbase.get().get(area).get(base).setPlane(apidata);
-                            ApplicationMain.main.updateAirbase();
+                            if (ApplicationMain.main != null) {
+                                ApplicationMain.main.updateAirbase();
+                            }
                         }
                     }
                 }
@@ -2982,7 +3111,9 @@ public final class GlobalContext {
                         int actionKind = actionKinds[i];
                         if (airbase.get().get(area).containsKey(base)) {
                             airbase.get().get(area).get(base).setActionKind(actionKind);
-                            ApplicationMain.main.updateAirbase();
+                            if (ApplicationMain.main != null) {
+                                ApplicationMain.main.updateAirbase();
+                            }
                         }
                     }
                 }
@@ -3004,7 +3135,9 @@ public final class GlobalContext {
                     if (airbase.get().containsKey(area)) {
                         if (airbase.get().get(area).containsKey(base)) {
                             airbase.get().get(area).get(base).supply(apidata);
-                            ApplicationMain.main.updateAirbase();
+                            if (ApplicationMain.main != null) {
+                                ApplicationMain.main.updateAirbase();
+                            }
                         }
                     }
                 }
@@ -3025,7 +3158,9 @@ public final class GlobalContext {
                 if (airbase.get().containsKey(area)) {
                     if (airbase.get().get(area).containsKey(base)) {
                         airbase.get().get(area).get(base).setName(name);
-                        ApplicationMain.main.updateAirbase();
+                        if (ApplicationMain.main != null) {
+                            ApplicationMain.main.updateAirbase();
+                        }
                     }
                 }
             }
@@ -3118,6 +3253,20 @@ public final class GlobalContext {
         return null;
     }
 
+    /** 受信時に読み込んだ装備アイテムをitemMapに追加 */
+    private static ItemDto addSlotitem(ItemDto dto) {
+        ItemInfoDto info = Item.get(dto.getSlotitemId());
+        if (info != null) {
+            dto.setInfo(info);
+            itemMap.put(dto.getId(), dto);
+            if (nextSlotitemId <= dto.getId()) {
+                nextSlotitemId = dto.getId() + 1;
+            }
+            return dto;
+        }
+        return null;
+    }
+
     private static void updateDetailedMaterial(String ev, ResourceItemDto res, MATERIAL_DIFF diff) {
         if (material != null) {
             switch (diff) {
@@ -3141,7 +3290,9 @@ public final class GlobalContext {
     }
 
     private static void addConsole(Object message) {
-        ApplicationMain.main.printMessage(message.toString());
+        if (ApplicationMain.main != null) {
+            ApplicationMain.main.printMessage(message.toString());
+        }
     }
 
     private static void addUpdateLog(Object message) {
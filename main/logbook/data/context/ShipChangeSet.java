@@ -0,0 +1,143 @@
+package logbook.data.context;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 母港で受け取った艦娘情報と、それまでの艦娘情報との差分
+ */
+public final class ShipChangeSet {
+
+    /** 変化なし */
+    public static final ShipChangeSet EMPTY = new ShipChangeSet();
+
+    /** 追加された艦娘 */
+    private final Set<Integer> added = new TreeSet<>();
+
+    /** いなくなった艦娘 */
+    private final Set<Integer> removed = new TreeSet<>();
+
+    /** 情報が更新された艦娘(HP・疲労度・装備以外の変化も含む) */
+    private final Set<Integer> updated = new TreeSet<>();
+
+    /** HPが変化した艦娘 */
+    private final Set<Integer> hpChanged = new TreeSet<>();
+
+    /** 疲労度が変化した艦娘 */
+    private final Set<Integer> condChanged = new TreeSet<>();
+
+    /** 装備が変化した艦娘 */
+    private final Set<Integer> itemChanged = new TreeSet<>();
+
+    /** 艦隊編成・遠征・入渠の状態が変化した */
+    private boolean fleetChanged;
+
+    void addAdded(int id) {
+        this.added.add(id);
+    }
+
+    void addRemoved(int id) {
+        this.removed.add(id);
+    }
+
+    void addUpdated(int id) {
+        this.updated.add(id);
+    }
+
+    void addHpChanged(int id) {
+        this.hpChanged.add(id);
+    }
+
+    void addCondChanged(int id) {
+        this.condChanged.add(id);
+    }
+
+    void addItemChanged(int id) {
+        this.itemChanged.add(id);
+    }
+
+    void setFleetChanged(boolean fleetChanged) {
+        this.fleetChanged = fleetChanged;
+    }
+
+    /**
+     * 追加された艦娘
+     * @return 追加された艦娘の個人ID
+     */
+    public Set<Integer> getAdded() {
+        return Collections.unmodifiableSet(this.added);
+    }
+
+    /**
+     * いなくなった艦娘
+     * @return いなくなった艦娘の個人ID
+     */
+    public Set<Integer> getRemoved() {
+        return Collections.unmodifiableSet(this.removed);
+    }
+
+    /**
+     * 情報が更新された艦娘
+     * @return 情報が更新された艦娘の個人ID
+     */
+    public Set<Integer> getUpdated() {
+        return Collections.unmodifiableSet(this.updated);
+    }
+
+    /**
+     * HPが変化した艦娘
+     * @return HPが変化した艦娘の個人ID
+     */
+    public Set<Integer> getHpChanged() {
+        return Collections.unmodifiableSet(this.hpChanged);
+    }
+
+    /**
+     * 疲労度が変化した艦娘
+     * @return 疲労度が変化した艦娘の個人ID
+     */
+    public Set<Integer> getCondChanged() {
+        return Collections.unmodifiableSet(this.condChanged);
+    }
+
+    /**
+     * 装備が変化した艦娘
+     * @return 装備が変化した艦娘の個人ID
+     */
+    public Set<Integer> getItemChanged() {
+        return Collections.unmodifiableSet(this.itemChanged);
+    }
+
+    /**
+     * 艦隊編成・遠征・入渠の状態が変化したか
+     * @return 変化した場合true
+     */
+    public boolean isFleetChanged() {
+        return this.fleetChanged;
+    }
+
+    /**
+     * 艦娘が追加・削除・更新されたか
+     * @param id 艦娘個人ID
+     * @return 追加・削除・更新された場合true
+     */
+    public boolean isChanged(int id) {
+        return this.added.contains(id) || this.removed.contains(id) || this.updated.contains(id);
+    }
+
+    /**
+     * 何も変化がないか
+     * @return 変化がない場合true
+     */
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.removed.isEmpty() && this.updated.isEmpty() && !this.fleetChanged;
+    }
+
+    @Override
+    public String toString() {
+        return "追加:" + this.added.size() + " 削除:" + this.removed.size() + " 更新:" + this.updated.size()
+                + " (HP:" + this.hpChanged.size() + " 疲労度:" + this.condChanged.size()
+                + " 装備:" + this.itemChanged.size() + ") 艦隊:" + this.fleetChanged;
+    }
+}
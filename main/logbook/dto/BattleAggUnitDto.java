@@ -40,6 +40,22 @@ public final class BattleAggUnitDto extends AbstractDto {
         areaAgg.add(rank, area.isStart(), area.isBoss());
     }
 
+    /**
+     * 海域の集計結果を加算する
+     * 
+     * @param areaId 海域ID
+     * @param details 海域の集計結果
+     */
+    public void add(int areaId, BattleAggDetailsDto details) {
+        this.total.add(details);
+        BattleAggDetailsDto areaAgg = this.areaDetails.get(areaId);
+        if (areaAgg == null) {
+            areaAgg = new BattleAggDetailsDto(details.getAreaName());
+            this.areaDetails.put(areaId, areaAgg);
+        }
+        areaAgg.add(details);
+    }
+
     /**
      * 集計結果を取得します
      * 
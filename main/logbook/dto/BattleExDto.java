@@ -9,6 +9,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 
 import javax.json.JsonArray;
@@ -1370,6 +1371,35 @@ public class BattleExDto extends AbstractDto {
         this.itemSpace = itemSpace;
     }
 
+    /**
+     * 味方艦・敵艦のマスター情報を共有のインスタンスに置き換えます(出撃ログの読み込み用)
+     * @param ships 艦のマスター情報を置き換える関数
+     * @param items 装備のマスター情報を置き換える関数
+     */
+    public void internMaster(UnaryOperator<ShipInfoDto> ships, UnaryOperator<ItemInfoDto> items) {
+        if (this.friends != null) {
+            for (DockDto dock : this.friends) {
+                if (dock != null) {
+                    internMaster(dock.getShips(), ships, items);
+                }
+            }
+        }
+        internMaster(this.enemy, ships, items);
+        internMaster(this.enemyCombined, ships, items);
+    }
+
+    private static void internMaster(List<? extends ShipBaseDto> list, UnaryOperator<ShipInfoDto> ships,
+            UnaryOperator<ItemInfoDto> items) {
+        if (list == null) {
+            return;
+        }
+        for (ShipBaseDto ship : list) {
+            if (ship != null) {
+                ship.internMaster(ships, items);
+            }
+        }
+    }
+
     /**
      * 中に保存してあるJSONを使ってフィールドを更新する
      */
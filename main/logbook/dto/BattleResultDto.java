@@ -62,6 +62,26 @@ public class BattleResultDto extends AbstractDto {
         this.extData = extData;
     }
 
+    /**
+     * 出撃ログのインデックスから作成します
+     */
+    public BattleResultDto(Date battleDate, String questName, ResultRank rank, MapCellDto mapCell,
+            String enemyName, boolean dropShip, boolean dropItem, String dropType, String dropName,
+            String dropItemName, boolean noSpaceForShip, Comparable[] extData) {
+        this.battleDate = battleDate;
+        this.questName = questName;
+        this.rank = rank;
+        this.mapCell = mapCell;
+        this.enemyName = enemyName;
+        this.dropShip = dropShip;
+        this.dropItem = dropItem;
+        this.dropType = dropType;
+        this.dropName = dropName;
+        this.dropItemName = dropItemName;
+        this.noSpaceForShip = noSpaceForShip;
+        this.extData = extData;
+    }
+
     /**
      * 日付を取得します。
      * @return 日付
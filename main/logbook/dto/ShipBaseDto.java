@@ -5,6 +5,7 @@ package logbook.dto;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import javax.json.JsonObject;
 
@@ -24,7 +25,7 @@ import logbook.util.JsonUtils;
 public abstract class ShipBaseDto extends AbstractDto {
 
     @Tag(1)
-    protected final ShipInfoDto shipInfo;
+    protected ShipInfoDto shipInfo;
 
     /** 装備
      * 艦娘の場合は 装備個別ID
@@ -59,18 +60,23 @@ public abstract class ShipBaseDto extends AbstractDto {
     @Tag(35)
     private final ItemDto slotExItem;
 
+    /** 検索用テキスト(名前・艦種・装備名) 装備が変わったら作り直す */
+    private transient String[] searchText;
+
+    /** 検索用テキストを改行でつないだもの */
+    private transient String searchKey;
+
     /**
      * 艦娘用コンストラクター
-     * @param object JSON Object
+     * @param fields 艦娘のJSONの値
      */
-    public ShipBaseDto(JsonObject object) {
-        int shipId = object.getJsonNumber("api_ship_id").intValue();
-        ShipInfoDto shipinfo = Ship.get(shipId);
+    public ShipBaseDto(ShipFields fields) {
+        ShipInfoDto shipinfo = Ship.get(fields.getShipId());
         this.shipInfo = shipinfo;
-        this.slotEx = object.containsKey("api_slot_ex") ? object.getInt("api_slot_ex") : -1;
+        this.slotEx = fields.getSlotEx();
         this.slotExItem = GlobalContext.getItem(this.getSlotEx());
-        this.setSlotFromJson(object);
-        ShipParameters[] params = ShipParameters.fromShip(object, this.getItem(), shipinfo);
+        this.setSlot(fields.getSlot());
+        ShipParameters[] params = ShipParameters.fromShip(fields, this.getItem(), shipinfo);
         this.param = params[0];
         this.max = params[1];
         this.slotParam = params[2];
@@ -135,12 +141,32 @@ public abstract class ShipBaseDto extends AbstractDto {
         return items;
     }
 
+    /**
+     * マスター情報を共有のインスタンスに置き換えます(出撃ログの読み込み用)
+     * @param ships 艦のマスター情報を置き換える関数
+     * @param items 装備のマスター情報を置き換える関数
+     */
+    public void internMaster(UnaryOperator<ShipInfoDto> ships, UnaryOperator<ItemInfoDto> items) {
+        this.shipInfo = ships.apply(this.shipInfo);
+        if (this.slotItem != null) {
+            for (int i = 0; i < this.slotItem.size(); i++) {
+                this.slotItem.set(i, items.apply(this.slotItem.get(i)));
+            }
+        }
+    }
+
     /**
      * 装備を設定
      * @param object
      */
     public void setSlotFromJson(JsonObject object) {
-        this.slot = JsonUtils.getIntArray(object, "api_slot");
+        this.setSlot(JsonUtils.getIntArray(object, "api_slot"));
+    }
+
+    private void setSlot(int[] slot) {
+        this.searchText = null;
+        this.searchKey = null;
+        this.slot = slot;
         this.slotItem2 = createItemDtoList(this.slot);
         this.slotItem = new ArrayList<ItemInfoDto>();
         for (ItemDto dto : this.slotItem2) {
@@ -150,6 +176,26 @@ public abstract class ShipBaseDto extends AbstractDto {
         }
     }
 
+    /**
+     * 装備のItemDtoが現在の装備Mapのものと同じか
+     * 艦娘用
+     * @return 同じならtrue
+     */
+    protected boolean isSlotItemCurrent() {
+        if (this.slotExItem != GlobalContext.getItem(this.getSlotEx())) {
+            return false;
+        }
+        if ((this.slot == null) || (this.slotItem2 == null) || (this.slot.length != this.slotItem2.size())) {
+            return false;
+        }
+        for (int i = 0; i < this.slot.length; i++) {
+            if (this.slotItem2.get(i) != GlobalContext.getItem(this.slot[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public boolean isFriend() {
         return !this.shipInfo.isEnemy();
     }
@@ -302,6 +348,42 @@ public abstract class ShipBaseDto extends AbstractDto {
         return this.slotItem2;
     }
 
+    /**
+     * 検索用テキスト
+     * @return 名前・艦種・装備名(装備していないスロットはnull)
+     */
+    public String[] getSearchText() {
+        if (this.searchText == null) {
+            List<ItemDto> items = this.getItem2();
+            String[] text = new String[items.size() + 2];
+            text[0] = this.getName();
+            text[1] = this.getType();
+            for (int i = 0; i < items.size(); i++) {
+                ItemDto item = items.get(i);
+                text[i + 2] = (item == null) ? null : item.getFriendlyName();
+            }
+            this.searchText = text;
+        }
+        return this.searchText;
+    }
+
+    /**
+     * 検索用テキストを改行でつないだもの(部分一致の検索用)
+     * @return 検索用テキスト
+     */
+    public String getSearchKey() {
+        if (this.searchKey == null) {
+            StringBuilder sb = new StringBuilder();
+            for (String text : this.getSearchText()) {
+                if (text != null) {
+                    sb.append(text).append('\n');
+                }
+            }
+            this.searchKey = sb.toString();
+        }
+        return this.searchKey;
+    }
+
     /**
      * 制空値
      * @return 制空値
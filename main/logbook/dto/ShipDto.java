@@ -1,5 +1,6 @@
 package logbook.dto;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -10,6 +11,7 @@ import logbook.config.AppConfig;
 import logbook.constants.AppConstants;
 import logbook.data.context.GlobalContext;
 import logbook.internal.CondTiming;
+import logbook.internal.Ship;
 import logbook.util.JsonUtils;
 
 import com.dyuproject.protostuff.Tag;
@@ -94,8 +96,9 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
     @Tag(27)
     private int[] onslot;
 
+    /** 旧形式のデータとの互換性のため(現在は保存しない。読み込んだ古いデータにのみ入っている) */
     @Tag(40)
-    private final String json;
+    private String json;
 
     @Tag(41)
     /** 速度 */
@@ -105,42 +108,56 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
     /** 札 */
     private final int sallyArea;
 
+    /** 作成に使ったJSONの値(差分更新の比較用、保存しない) */
+    private transient ShipFields source;
+
     /**
      * コンストラクター
      *
      * @param object JSON Object
      */
     public ShipDto(JsonObject object) {
-        super(object);
+        this(ShipFields.of(object));
+    }
+
+    /**
+     * コンストラクター
+     *
+     * @param fields 艦娘のJSONの値
+     */
+    public ShipDto(ShipFields fields) {
+        super(fields);
 
-        this.id = object.getJsonNumber("api_id").intValue();
-        this.locked = object.getJsonNumber("api_locked").intValue() == 1;
+        this.id = fields.getId();
+        this.locked = fields.isLocked();
 
-        this.sortno = object.getInt("api_sortno");
+        this.sortno = fields.getSortno();
 
-        this.lv = object.getJsonNumber("api_lv").intValue();
-        this.cond = object.getJsonNumber("api_cond").intValue();
+        this.lv = fields.getLv();
+        this.cond = fields.getCond();
 
-        this.docktime = object.getJsonNumber("api_ndock_time").longValue();
-        this.dockfuel = object.getJsonArray("api_ndock_item").getJsonNumber(0).intValue();
-        this.dockmetal = object.getJsonArray("api_ndock_item").getJsonNumber(1).intValue();
+        int[] ndockItem = fields.getNdockItem();
+        this.docktime = fields.getNdockTime();
+        this.dockfuel = ndockItem[0];
+        this.dockmetal = ndockItem[1];
 
-        this.bull = object.getJsonNumber("api_bull").intValue();
-        this.fuel = object.getJsonNumber("api_fuel").intValue();
+        this.bull = fields.getBull();
+        this.fuel = fields.getFuel();
 
-        this.exp = object.getJsonArray("api_exp").getInt(0);
-        this.nextexp = object.getJsonArray("api_exp").getInt(1);
-        this.expraito = object.getJsonArray("api_exp").getInt(2) / 100f;
+        int[] exp = fields.getExp();
+        this.exp = exp[0];
+        this.nextexp = exp[1];
+        this.expraito = exp[2] / 100f;
         this.nowhp = this.getParam().getHP();
         this.maxhp = this.getMax().getHP();
-        this.slotnum = object.getJsonNumber("api_slotnum").intValue();
-        this.onslot = JsonUtils.getIntArray(object, "api_onslot");
+        this.slotnum = fields.getSlotnum();
+        this.onslot = fields.getOnslot();
 
-        this.soku = object.getInt("api_soku");
+        this.soku = fields.getSoku();
 
-        this.sallyArea = object.containsKey("api_sally_area") ? object.getInt("api_sally_area") : 0;
+        this.sallyArea = fields.getSallyArea();
 
-        this.json = object.toString();
+        this.source = fields;
     }
 
     /** 新規入手艦 */
@@ -181,8 +198,6 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
         this.soku = shipinfo.getParam().getSoku();
 
         this.sallyArea = 0;
-
-        this.json = null;
     }
 
     /**
@@ -571,8 +586,9 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
     }
 
     /**
-     * データの更新に使ったJSON
-     * @return json
+     * 旧形式のデータに入っているJSON<br>
+     * 母港などから作った艦娘はJSONの木を作らずに読み込んでいるので持っていません
+     * @return json(旧形式の出撃ログから読み込んだ艦娘以外はnull)
      */
     public JsonObject getJson() {
         if (this.json == null)
@@ -581,6 +597,31 @@ public final class ShipDto extends ShipBaseDto implements Comparable<ShipDto> {
         return JsonUtils.fromString(this.json);
     }
 
+    /**
+     * 受け取ったJSONがこの艦娘の現在の状態と同じかどうか<br>
+     * 作成に使ったJSONと同じで、かつその後に書き換えられた値やマスターデータ・装備の参照も変わっていない場合true
+     * @param fields 艦娘のJSONの値
+     * @return 同じ場合true
+     */
+    public boolean isSameRecord(ShipFields fields) {
+        if ((this.source == null) || !this.source.equals(fields)) {
+            return false;
+        }
+        // 母港以外で書き換えられる値
+        if ((this.locked != fields.isLocked())
+                || (this.cond != fields.getCond())
+                || (this.nowhp != fields.getNowhp())
+                || (this.bull != fields.getBull())
+                || (this.fuel != fields.getFuel())
+                || (this.docktime != fields.getNdockTime())
+                || !Arrays.equals(this.onslot, fields.getOnslot())
+                || !Arrays.equals(this.slot, fields.getSlot())) {
+            return false;
+        }
+        // マスターデータや装備が更新されていたら作り直す
+        return (this.shipInfo == Ship.get(fields.getShipId())) && this.isSlotItemCurrent();
+    }
+
     /**
      * @param onslot2
      */
@@ -0,0 +1,357 @@
+package logbook.dto;
+
+import java.util.Arrays;
+
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.stream.JsonParser;
+
+import logbook.util.JsonStreamReader;
+
+/**
+ * 艦娘のJSON(api_ship)のうちShipDtoの作成に使う値<br>
+ * 母港などのレスポンスはJsonParserのイベントから直接読み込むので、艦娘ごとのJsonObjectは作りません
+ */
+public final class ShipFields {
+
+    private int id;
+    private int shipId;
+    private int sortno;
+    private int lv;
+    private int[] exp;
+    private int nowhp;
+    private int maxhp;
+    private int soku;
+    private int leng;
+    private int[] slot;
+    private int[] onslot;
+    private int slotEx = -1;
+    private int fuel;
+    private int bull;
+    private int slotnum;
+    private long ndockTime;
+    private int[] ndockItem;
+    private int cond;
+    private int[] karyoku;
+    private int[] raisou;
+    private int[] taiku;
+    private int[] soukou;
+    private int[] kaihi;
+    private int[] taisen;
+    private int[] sakuteki;
+    private int[] lucky;
+    private boolean locked;
+    private int sallyArea;
+
+    private ShipFields() {
+    }
+
+    /**
+     * START_OBJECTの直後から艦娘のJSONを読み込みます
+     *
+     * @param parser JsonParser
+     * @return 読み込んだ値
+     */
+    public static ShipFields read(JsonParser parser) {
+        ShipFields fields = new ShipFields();
+        String key = null;
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.KEY_NAME) {
+                key = parser.getString();
+            }
+            else if (event == JsonParser.Event.END_OBJECT) {
+                fields.check();
+                return fields;
+            }
+            else {
+                fields.set(key, parser, event);
+            }
+        }
+        throw new JsonException("艦娘のJSONが閉じられていません");
+    }
+
+    /**
+     * 艦娘のJSONオブジェクトから読み込みます
+     *
+     * @param object 艦娘のJSON
+     * @return 読み込んだ値
+     */
+    public static ShipFields of(JsonObject object) {
+        try (JsonParser parser = JsonStreamReader.createParser(object)) {
+            parser.next();
+            return read(parser);
+        }
+    }
+
+    private void set(String key, JsonParser parser, JsonParser.Event event) {
+        switch (key) {
+        case "api_id":
+            this.id = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_ship_id":
+            this.shipId = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_sortno":
+            this.sortno = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_lv":
+            this.lv = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_exp":
+            this.exp = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_nowhp":
+            this.nowhp = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_maxhp":
+            this.maxhp = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_soku":
+            this.soku = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_leng":
+            this.leng = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_slot":
+            this.slot = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_onslot":
+            this.onslot = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_slot_ex":
+            this.slotEx = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_fuel":
+            this.fuel = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_bull":
+            this.bull = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_slotnum":
+            this.slotnum = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_ndock_time":
+            this.ndockTime = JsonStreamReader.readLong(parser, event);
+            break;
+        case "api_ndock_item":
+            this.ndockItem = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_cond":
+            this.cond = JsonStreamReader.readInt(parser, event);
+            break;
+        case "api_karyoku":
+            this.karyoku = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_raisou":
+            this.raisou = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_taiku":
+            this.taiku = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_soukou":
+            this.soukou = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_kaihi":
+            this.kaihi = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_taisen":
+            this.taisen = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_sakuteki":
+            this.sakuteki = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_lucky":
+            this.lucky = JsonStreamReader.readIntArray(parser, event);
+            break;
+        case "api_locked":
+            this.locked = JsonStreamReader.readInt(parser, event) == 1;
+            break;
+        case "api_sally_area":
+            this.sallyArea = JsonStreamReader.readInt(parser, event);
+            break;
+        default:
+            JsonStreamReader.skipValue(parser, event);
+            break;
+        }
+    }
+
+    /**
+     * JsonObjectから作っていたときと同じく、必要な値がない場合は例外にします
+     */
+    private void check() {
+        if ((this.exp == null) || (this.slot == null) || (this.onslot == null) || (this.ndockItem == null)
+                || (this.karyoku == null) || (this.raisou == null) || (this.taiku == null)
+                || (this.soukou == null) || (this.kaihi == null) || (this.taisen == null)
+                || (this.sakuteki == null) || (this.lucky == null)) {
+            throw new JsonException("艦娘のJSONに必要な値がありません: api_id=" + this.id);
+        }
+    }
+
+    /** api_id */
+    public int getId() {
+        return this.id;
+    }
+
+    /** api_ship_id */
+    public int getShipId() {
+        return this.shipId;
+    }
+
+    /** api_sortno */
+    public int getSortno() {
+        return this.sortno;
+    }
+
+    /** api_lv */
+    public int getLv() {
+        return this.lv;
+    }
+
+    /** api_exp (経験値, 次のレベルまで, 割合) */
+    public int[] getExp() {
+        return this.exp.clone();
+    }
+
+    /** api_nowhp */
+    public int getNowhp() {
+        return this.nowhp;
+    }
+
+    /** api_maxhp */
+    public int getMaxhp() {
+        return this.maxhp;
+    }
+
+    /** api_soku */
+    public int getSoku() {
+        return this.soku;
+    }
+
+    /** api_leng */
+    public int getLeng() {
+        return this.leng;
+    }
+
+    /** api_slot */
+    public int[] getSlot() {
+        return this.slot.clone();
+    }
+
+    /** api_onslot */
+    public int[] getOnslot() {
+        return this.onslot.clone();
+    }
+
+    /** api_slot_ex (ない場合は-1) */
+    public int getSlotEx() {
+        return this.slotEx;
+    }
+
+    /** api_fuel */
+    public int getFuel() {
+        return this.fuel;
+    }
+
+    /** api_bull */
+    public int getBull() {
+        return this.bull;
+    }
+
+    /** api_slotnum */
+    public int getSlotnum() {
+        return this.slotnum;
+    }
+
+    /** api_ndock_time */
+    public long getNdockTime() {
+        return this.ndockTime;
+    }
+
+    /** api_ndock_item (燃料, 鋼材) */
+    public int[] getNdockItem() {
+        return this.ndockItem.clone();
+    }
+
+    /** api_cond */
+    public int getCond() {
+        return this.cond;
+    }
+
+    /** api_karyoku (現在, 最大) */
+    public int[] getKaryoku() {
+        return this.karyoku.clone();
+    }
+
+    /** api_raisou (現在, 最大) */
+    public int[] getRaisou() {
+        return this.raisou.clone();
+    }
+
+    /** api_taiku (現在, 最大) */
+    public int[] getTaiku() {
+        return this.taiku.clone();
+    }
+
+    /** api_soukou (現在, 最大) */
+    public int[] getSoukou() {
+        return this.soukou.clone();
+    }
+
+    /** api_kaihi (現在, 最大) */
+    public int[] getKaihi() {
+        return this.kaihi.clone();
+    }
+
+    /** api_taisen (現在, 最大) */
+    public int[] getTaisen() {
+        return this.taisen.clone();
+    }
+
+    /** api_sakuteki (現在, 最大) */
+    public int[] getSakuteki() {
+        return this.sakuteki.clone();
+    }
+
+    /** api_lucky (現在, 最大) */
+    public int[] getLucky() {
+        return this.lucky.clone();
+    }
+
+    /** api_locked */
+    public boolean isLocked() {
+        return this.locked;
+    }
+
+    /** api_sally_area (ない場合は0) */
+    public int getSallyArea() {
+        return this.sallyArea;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ShipFields)) {
+            return false;
+        }
+        ShipFields o = (ShipFields) obj;
+        return (this.id == o.id) && (this.shipId == o.shipId) && (this.sortno == o.sortno) && (this.lv == o.lv)
+                && (this.nowhp == o.nowhp) && (this.maxhp == o.maxhp) && (this.soku == o.soku)
+                && (this.leng == o.leng) && (this.slotEx == o.slotEx) && (this.fuel == o.fuel)
+                && (this.bull == o.bull) && (this.slotnum == o.slotnum) && (this.ndockTime == o.ndockTime)
+                && (this.cond == o.cond) && (this.locked == o.locked) && (this.sallyArea == o.sallyArea)
+                && Arrays.equals(this.exp, o.exp) && Arrays.equals(this.slot, o.slot)
+                && Arrays.equals(this.onslot, o.onslot) && Arrays.equals(this.ndockItem, o.ndockItem)
+                && Arrays.equals(this.karyoku, o.karyoku) && Arrays.equals(this.raisou, o.raisou)
+                && Arrays.equals(this.taiku, o.taiku) && Arrays.equals(this.soukou, o.soukou)
+                && Arrays.equals(this.kaihi, o.kaihi) && Arrays.equals(this.taisen, o.taisen)
+                && Arrays.equals(this.sakuteki, o.sakuteki) && Arrays.equals(this.lucky, o.lucky);
+    }
+
+    @Override
+    public int hashCode() {
+        return (((this.id * 31) + this.shipId) * 31) + Arrays.hashCode(this.exp);
+    }
+}
@@ -183,26 +183,34 @@ public class ShipParameters {
     }
 
     /** 艦娘用 (現在値, MAX, 装備による上昇分) */
-    public static ShipParameters[] fromShip(JsonObject object, List<ItemInfoDto> slotitem, ShipInfoDto masterShip) {
+    public static ShipParameters[] fromShip(ShipFields fields, List<ItemInfoDto> slotitem, ShipInfoDto masterShip) {
         ShipParameters[] ret = new ShipParameters[3];
+        int[] karyoku = fields.getKaryoku();
+        int[] raisou = fields.getRaisou();
+        int[] taiku = fields.getTaiku();
+        int[] soukou = fields.getSoukou();
+        int[] kaihi = fields.getKaihi();
+        int[] taisen = fields.getTaisen();
+        int[] sakuteki = fields.getSakuteki();
+        int[] lucky = fields.getLucky();
         for (int i = 0; i < 2; ++i) {
             ShipParameters param = new ShipParameters();
             if (i == 0) {
-                param.taik = object.getInt("api_nowhp");
+                param.taik = fields.getNowhp();
             }
             else {
-                param.taik = object.getInt("api_maxhp");
+                param.taik = fields.getMaxhp();
             }
-            param.houg = object.getJsonArray("api_karyoku").getInt(i);
-            param.leng = object.getInt("api_leng");
-            param.raig = object.getJsonArray("api_raisou").getInt(i);
-            param.tyku = object.getJsonArray("api_taiku").getInt(i);
-            param.soku = object.getInt("api_soku");
-            param.souk = object.getJsonArray("api_soukou").getInt(i);
-            param.kaih = object.getJsonArray("api_kaihi").getInt(i);
-            param.tais = object.getJsonArray("api_taisen").getInt(i);
-            param.saku = object.getJsonArray("api_sakuteki").getInt(i);
-            param.luck = object.getJsonArray("api_lucky").getInt(i);
+            param.houg = karyoku[i];
+            param.leng = fields.getLeng();
+            param.raig = raisou[i];
+            param.tyku = taiku[i];
+            param.soku = fields.getSoku();
+            param.souk = soukou[i];
+            param.kaih = kaihi[i];
+            param.tais = taisen[i];
+            param.saku = sakuteki[i];
+            param.luck = lucky[i];
             param.distance = 0;
             ret[i] = param;
         }
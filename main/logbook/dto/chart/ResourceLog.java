@@ -1,24 +1,12 @@
 package logbook.dto.chart;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.text.DateFormat;
-import java.text.ParsePosition;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
 
 import javax.annotation.CheckForNull;
 
-import org.apache.commons.io.LineIterator;
-import org.apache.commons.lang3.math.NumberUtils;
-
 import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
 import logbook.dto.AbstractDto;
 
 /**
@@ -45,7 +33,8 @@ public class ResourceLog extends AbstractDto {
     }
 
     /**
-     * 資材ログを読み込む
+     * 資材ログを読み込む<br>
+     * 前回読み込んだ結果をキャッシュしていて、追記された行だけを読み込みます
      * 
      * @param file 資材ログ
      * @return
@@ -53,106 +42,23 @@ public class ResourceLog extends AbstractDto {
      */
     @CheckForNull
     public static ResourceLog getInstance(File file) throws IOException {
-        // 日付フォーマット（複数対応する）
-        SimpleDateFormat[] formats = new SimpleDateFormat[] {
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"), // オリジナルの記録フォーマット
-                new SimpleDateFormat("yyyy/MM/dd HH:mm") // Excelで保存した時のフォーマット
-        };
-
-        List<SortableLog> logs = new ArrayList<>();
-        // データを読み込む
-        try (Reader reader = new BufferedReader(new FileReader(file))) {
-            LineIterator ite = new LineIterator(reader);
-            // ヘッダーを読み飛ばす
-            if (ite.hasNext()) {
-                ite.next();
-            }
-            ParsePosition pos = new ParsePosition(0);
-            while (ite.hasNext()) {
-                String line = ite.next();
-                // 日付,（直前のイベント,）燃料,弾薬,鋼材,ボーキ,高速建造材,高速修復材,開発資材,ネジ
-                // 高速建造材,高速修復材が逆になっているので注意
-                String[] colums;
-                if (line.contains("\t")) {
-                    colums = line.split("\t", -1);
-                }
-                else {
-                    colums = line.split(",", -1);
-                }
-                try {
-                    pos.setIndex(0);
-                    Date date = null;
-                    for (DateFormat format : formats) {
-                        date = format.parse(colums[0], pos);
-                        if (date != null) {
-                            break;
-                        }
-                    }
-                    if (date == null) {
-                        continue;
-                    }
-
-                    int baseIdx;
-                    // 拡張版の方は１列追加してしまったので、両方に対応させる！
-                    if (NumberUtils.isNumber(colums[1])) {
-                        // 本家のログ
-                        baseIdx = 1;
-                    }
-                    else {
-                        // 拡張版のログ
-                        baseIdx = 2;
-                    }
-                    int screw = (colums.length > (baseIdx + 7)) ? Integer.parseInt(colums[baseIdx + 7]) : 0;
-                    logs.add(new SortableLog(date.getTime(),
-                            Integer.parseInt(colums[baseIdx + 0]), Integer.parseInt(colums[baseIdx + 1]),
-                            Integer.parseInt(colums[baseIdx + 2]), Integer.parseInt(colums[baseIdx + 3]),
-                            Integer.parseInt(colums[baseIdx + 5]), Integer.parseInt(colums[baseIdx + 4]),
-                            Integer.parseInt(colums[baseIdx + 6]), screw));
-
-                } catch (Exception e) {
-                    continue;
-                }
-            }
-        }
+        ResourceLogCache.Columns columns = ResourceLogCache.update(file, AppConstants.RESOURCE_LOG_CACHE_FILE);
         // 資材ログが2行以下の場合はグラフを描画出来ないのでnullを返す
-        if (logs.size() <= 2) {
+        if (columns.size() <= 2) {
             return null;
         }
-        // ソート
-        Collections.sort(logs);
-
-        long[] time = new long[logs.size()];
-        int[] fuel = new int[logs.size()];
-        int[] ammo = new int[logs.size()];
-        int[] metal = new int[logs.size()];
-        int[] bauxite = new int[logs.size()];
-        int[] burner = new int[logs.size()];
-        int[] bucket = new int[logs.size()];
-        int[] research = new int[logs.size()];
-        int[] screw = new int[logs.size()];
-        for (int i = 0; i < logs.size(); i++) {
-            SortableLog log = logs.get(i);
-            time[i] = log.time;
-            fuel[i] = log.fuel;
-            ammo[i] = log.ammo;
-            metal[i] = log.metal;
-            bauxite[i] = log.bauxite;
-            burner[i] = log.burner;
-            bucket[i] = log.bucket;
-            research[i] = log.research;
-            screw[i] = log.screw;
-        }
+        int[][] values = columns.values;
         Resource[] resources = new Resource[] {
-                new Resource("燃料", AppConfig.get().getFuelColor(), fuel),
-                new Resource("弾薬", AppConfig.get().getAmmoColor(), ammo),
-                new Resource("鋼材", AppConfig.get().getMetalColor(), metal),
-                new Resource("ボーキ", AppConfig.get().getBauxiteColor(), bauxite),
-                new Resource("バーナー", AppConfig.get().getBurnerColor(), burner),
-                new Resource("バケツ", AppConfig.get().getBucketColor(), bucket),
-                new Resource("開発", AppConfig.get().getResearchColor(), research),
-                new Resource("ネジ", AppConfig.get().getScrewColor(), screw)
+                new Resource("燃料", AppConfig.get().getFuelColor(), values[RESOURCE_FUEL]),
+                new Resource("弾薬", AppConfig.get().getAmmoColor(), values[RESOURCE_AMMO]),
+                new Resource("鋼材", AppConfig.get().getMetalColor(), values[RESOURCE_METAL]),
+                new Resource("ボーキ", AppConfig.get().getBauxiteColor(), values[RESOURCE_BAUXITE]),
+                new Resource("バーナー", AppConfig.get().getBurnerColor(), values[RESOURCE_BURNER]),
+                new Resource("バケツ", AppConfig.get().getBucketColor(), values[RESOURCE_BUCKET]),
+                new Resource("開発", AppConfig.get().getResearchColor(), values[RESOURCE_RESEARCH]),
+                new Resource("ネジ", AppConfig.get().getScrewColor(), values[RESOURCE_SCREW])
         };
-        return new ResourceLog(time, resources);
+        return new ResourceLog(columns.time, resources);
     }
 
     /**
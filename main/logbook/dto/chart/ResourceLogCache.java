@@ -0,0 +1,498 @@
+package logbook.dto.chart;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import logbook.internal.LoggerHolder;
+
+/**
+ * 資材ログ(CSV)を読み込んだ結果のキャッシュです<br>
+ * 読み込んだ行を列ごとの配列で持ち、CSVのどこまで読んだかを覚えておくことで、次からは追記された行だけを読み込みます<br>
+ * キャッシュファイルには読み込んだ行をCSVと同じ順に追記していくので、再読み込みのたびに全体を書き直すことはありません<br>
+ * CSVが短くなった・読み込んだ範囲の先頭か末尾が変わった場合は編集されたものとして全て読み込み直します
+ */
+final class ResourceLogCache {
+
+    private static final LoggerHolder LOG = new LoggerHolder(ResourceLogCache.class);
+
+    /** キャッシュファイルの形式のバージョン */
+    private static final int VERSION = 1;
+
+    /** 編集されていないかを確認する範囲(読み込んだ範囲の先頭と末尾) */
+    private static final int CHECK_SIZE = 4096;
+
+    /** 資材の数 */
+    private static final int NUM_RESOURCES = 8;
+
+    /** 1行のサイズ(日時 + 資材) */
+    private static final int ROW_SIZE = 8 + (4 * NUM_RESOURCES);
+
+    /** 前回読み込んだ結果 */
+    private static SoftReference<ResourceLogCache> last = new SoftReference<>(null);
+
+    /** 読み込んだ資材ログ */
+    static final class Columns {
+        /** 日時(昇順) */
+        final long[] time;
+        /** 資材ごとの値(ResourceLog.RESOURCE_*の順) */
+        final int[][] values;
+
+        Columns(long[] time, int[][] values) {
+            this.time = time;
+            this.values = values;
+        }
+
+        int size() {
+            return this.time.length;
+        }
+    }
+
+    /** 資材ログのパス */
+    private final String path;
+    /** 読み込んだバイト数(次に読み込む位置) */
+    private long offset;
+    /** 読み込んだときの最終更新日時 */
+    private long lastModified;
+    /** 読み込んだ範囲の先頭のCRC */
+    private long headCrc;
+    /** 読み込んだ範囲の末尾のCRC */
+    private long tailCrc;
+    /** キャッシュファイルに書いてある行数 */
+    private int stored;
+    /** 読み込んだ行(並び替え済み) */
+    private Columns columns = new Columns(new long[0], new int[NUM_RESOURCES][0]);
+
+    private ResourceLogCache(String path) {
+        this.path = path;
+    }
+
+    /**
+     * 資材ログの追記された行を読み込んで、全ての行を返します
+     *
+     * @param file 資材ログ
+     * @param cacheFile キャッシュファイル
+     * @return 資材ログの全ての行
+     * @throws IOException 資材ログが読み込めない場合
+     */
+    static synchronized Columns update(File file, File cacheFile) throws IOException {
+        String path = file.getCanonicalPath();
+        ResourceLogCache cache = last.get();
+        if ((cache == null) || !cache.path.equals(path) || !cacheFile.exists()) {
+            cache = load(cacheFile, path);
+        }
+        if ((cache != null) && !cache.isValid(file)) {
+            LOG.get().info("資材ログが編集されているので全て読み込み直します");
+            cache = null;
+        }
+        boolean rebuild = cache == null;
+        if (rebuild) {
+            cache = new ResourceLogCache(path);
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if ((length > cache.offset) || (lastModified != cache.lastModified)) {
+            Columns appended = cache.read(file, length);
+            cache.append(appended);
+            cache.lastModified = lastModified;
+            cache.updateCrc(file);
+            cache.save(cacheFile, rebuild, appended);
+        }
+        last = new SoftReference<>(cache);
+        return cache.columns;
+    }
+
+    /**
+     * キャッシュを読み込んだあとに資材ログが編集されていないか
+     */
+    private boolean isValid(File file) throws IOException {
+        long length = file.length();
+        if (length < this.offset) {
+            return false;
+        }
+        if ((length == this.offset) && (file.lastModified() == this.lastModified)) {
+            return true;
+        }
+        long[] crc = crc(file, this.offset);
+        return (crc[0] == this.headCrc) && (crc[1] == this.tailCrc);
+    }
+
+    private void updateCrc(File file) throws IOException {
+        long[] crc = crc(file, this.offset);
+        this.headCrc = crc[0];
+        this.tailCrc = crc[1];
+    }
+
+    /**
+     * ファイルの先頭から指定位置までの範囲の、先頭と末尾のCRCを求めます
+     */
+    private static long[] crc(File file, long end) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] buf = new byte[CHECK_SIZE];
+            CRC32 head = new CRC32();
+            int len = (int) Math.min(CHECK_SIZE, end);
+            raf.readFully(buf, 0, len);
+            head.update(buf, 0, len);
+            CRC32 tail = new CRC32();
+            raf.seek(end - len);
+            raf.readFully(buf, 0, len);
+            tail.update(buf, 0, len);
+            return new long[] { head.getValue(), tail.getValue() };
+        }
+    }
+
+    /**
+     * 前回読み込んだ位置から指定位置までにある行を読み込みます<br>
+     * 改行で終わっていない最後の行は書き込み途中かもしれないので次回に回します
+     */
+    private Columns read(File file, long end) throws IOException {
+        // 日付フォーマット（複数対応する）
+        SimpleDateFormat[] formats = new SimpleDateFormat[] {
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"), // オリジナルの記録フォーマット
+                new SimpleDateFormat("yyyy/MM/dd HH:mm") // Excelで保存した時のフォーマット
+        };
+        ParsePosition pos = new ParsePosition(0);
+        Charset charset = Charset.defaultCharset();
+
+        RowBuffer rows = new RowBuffer();
+        long position = this.offset;
+        long lineEnd = this.offset;
+        // ヘッダーを読み飛ばす
+        boolean header = this.offset == 0;
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        byte[] buf = new byte[64 * 1024];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(this.offset);
+            while (position < end) {
+                int read = raf.read(buf, 0, (int) Math.min(buf.length, end - position));
+                if (read < 0) {
+                    break;
+                }
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buf[i] != '\n') {
+                        continue;
+                    }
+                    // 前回の読み込みから続いている分と合わせて1行にする
+                    int len = i - start;
+                    byte[] bytes = buf;
+                    int from = start;
+                    if (lineLength > 0) {
+                        line = append(line, lineLength, buf, start, len);
+                        bytes = line;
+                        from = 0;
+                        len += lineLength;
+                        lineLength = 0;
+                    }
+                    start = i + 1;
+                    lineEnd = position + start;
+                    if (header) {
+                        header = false;
+                        continue;
+                    }
+                    if ((len > 0) && (bytes[(from + len) - 1] == '\r')) {
+                        len--;
+                    }
+                    parseLine(new String(bytes, from, len, charset), formats, pos, rows);
+                }
+                line = append(line, lineLength, buf, start, read - start);
+                lineLength += read - start;
+                position += read;
+            }
+        }
+        this.offset = lineEnd;
+        return rows.toColumns();
+    }
+
+    /**
+     * 行の続きを足します(足りなければ大きくした配列を返します)
+     */
+    private static byte[] append(byte[] line, int length, byte[] src, int from, int len) {
+        if (line.length < (length + len)) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + len));
+        }
+        System.arraycopy(src, from, line, length, len);
+        return line;
+    }
+
+    /**
+     * 1行読み込みます(読み込めない行は無視します)
+     */
+    private static void parseLine(String line, DateFormat[] formats, ParsePosition pos, RowBuffer rows) {
+        // 日付,（直前のイベント,）燃料,弾薬,鋼材,ボーキ,高速建造材,高速修復材,開発資材,ネジ
+        // 高速建造材,高速修復材が逆になっているので注意
+        String[] colums;
+        if (line.contains("\t")) {
+            colums = line.split("\t", -1);
+        }
+        else {
+            colums = line.split(",", -1);
+        }
+        try {
+            pos.setIndex(0);
+            Date date = null;
+            for (DateFormat format : formats) {
+                date = format.parse(colums[0], pos);
+                if (date != null) {
+                    break;
+                }
+            }
+            if (date == null) {
+                return;
+            }
+
+            int baseIdx;
+            // 拡張版の方は１列追加してしまったので、両方に対応させる！
+            if (NumberUtils.isNumber(colums[1])) {
+                // 本家のログ
+                baseIdx = 1;
+            }
+            else {
+                // 拡張版のログ
+                baseIdx = 2;
+            }
+            int screw = (colums.length > (baseIdx + 7)) ? Integer.parseInt(colums[baseIdx + 7]) : 0;
+            rows.add(date.getTime(),
+                    Integer.parseInt(colums[baseIdx + 0]), Integer.parseInt(colums[baseIdx + 1]),
+                    Integer.parseInt(colums[baseIdx + 2]), Integer.parseInt(colums[baseIdx + 3]),
+                    Integer.parseInt(colums[baseIdx + 5]), Integer.parseInt(colums[baseIdx + 4]),
+                    Integer.parseInt(colums[baseIdx + 6]), screw);
+        } catch (Exception e) {
+            return;
+        }
+    }
+
+    /**
+     * 読み込んだ行を追加します<br>
+     * 追加する行だけを並び替えてから、並び替え済みの行とマージします<br>
+     * 同じ日時の行はCSVの順のまま(安定ソート)なので、全ての行を並び替えたのと同じ結果になります<br>
+     * 返した配列を書き換えないように、追加する行がある場合は新しい配列を作ります
+     */
+    private void append(Columns appended) {
+        if (appended.size() == 0) {
+            return;
+        }
+        Columns old = this.columns;
+        Columns add = sort(appended);
+        if (old.size() == 0) {
+            this.columns = add;
+            return;
+        }
+        int size = old.size() + add.size();
+        long[] time = new long[size];
+        int[][] values = new int[NUM_RESOURCES][size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            Columns src;
+            int idx;
+            if ((j >= add.size()) || ((i < old.size()) && (old.time[i] <= add.time[j]))) {
+                src = old;
+                idx = i++;
+            }
+            else {
+                src = add;
+                idx = j++;
+            }
+            time[k] = src.time[idx];
+            for (int r = 0; r < NUM_RESOURCES; r++) {
+                values[r][k] = src.values[r][idx];
+            }
+        }
+        this.columns = new Columns(time, values);
+    }
+
+    /**
+     * 日時の順に並び替えます(同じ日時の行は元の順のまま)
+     */
+    private static Columns sort(Columns columns) {
+        final long[] time = columns.time;
+        boolean sorted = true;
+        for (int i = 1; i < time.length; i++) {
+            if (time[i - 1] > time[i]) {
+                sorted = false;
+                break;
+            }
+        }
+        if (sorted) {
+            return columns;
+        }
+        Integer[] index = new Integer[time.length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        Arrays.sort(index, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(time[o1], time[o2]);
+            }
+        });
+        long[] sortedTime = new long[time.length];
+        int[][] sortedValues = new int[NUM_RESOURCES][time.length];
+        for (int i = 0; i < index.length; i++) {
+            int src = index[i];
+            sortedTime[i] = time[src];
+            for (int j = 0; j < NUM_RESOURCES; j++) {
+                sortedValues[j][i] = columns.values[j][src];
+            }
+        }
+        return new Columns(sortedTime, sortedValues);
+    }
+
+    /**
+     * キャッシュファイルを読み込みます
+     *
+     * @return キャッシュ(ないか、別のファイルのキャッシュか、壊れている場合はnull)
+     */
+    private static ResourceLogCache load(File cacheFile, String path) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            long offset = in.readLong();
+            long lastModified = in.readLong();
+            long headCrc = in.readLong();
+            long tailCrc = in.readLong();
+            int count = in.readInt();
+            if (!path.equals(in.readUTF())) {
+                return null;
+            }
+            // 行はCSVの順に書いてある
+            long[] time = new long[count];
+            int[][] values = new int[NUM_RESOURCES][count];
+            for (int i = 0; i < count; i++) {
+                time[i] = in.readLong();
+                for (int j = 0; j < NUM_RESOURCES; j++) {
+                    values[j][i] = in.readInt();
+                }
+            }
+            ResourceLogCache cache = new ResourceLogCache(path);
+            cache.offset = offset;
+            cache.lastModified = lastModified;
+            cache.headCrc = headCrc;
+            cache.tailCrc = tailCrc;
+            cache.stored = count;
+            cache.columns = sort(new Columns(time, values));
+            return cache;
+        } catch (IOException e) {
+            LOG.get().warn("資材ログのキャッシュが読み込めません", e);
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュファイルに保存します<br>
+     * 作り直した場合以外は、追加された行をファイルの終わりに足してからヘッダーを書き換えます
+     * (途中で書き込みに失敗しても、ヘッダーの行数までは読み込めます)
+     */
+    private void save(File cacheFile, boolean rebuild, Columns appended) {
+        // 作り直した場合は全ての行がCSVの順で appended に入っている
+        try {
+            File dir = cacheFile.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException(dir + "を作成できません");
+            }
+            if (rebuild) {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(cacheFile)))) {
+                    // 行を書き終わるまでは読み込んだ位置を0にしておく(途中で失敗したら次は作り直させる)
+                    this.writeHeader(out, 0, 0);
+                    out.writeUTF(this.path);
+                }
+                this.stored = 0;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+                // ヘッダーを読み飛ばして行の先頭の位置を求める
+                raf.seek(4 + (8 * 4) + 4);
+                int pathLength = raf.readUnsignedShort();
+                long rows = raf.getFilePointer() + pathLength;
+                if (appended.size() > 0) {
+                    ByteArrayOutputStream buf = new ByteArrayOutputStream(appended.size() * ROW_SIZE);
+                    DataOutputStream out = new DataOutputStream(buf);
+                    for (int i = 0; i < appended.size(); i++) {
+                        out.writeLong(appended.time[i]);
+                        for (int j = 0; j < NUM_RESOURCES; j++) {
+                            out.writeInt(appended.values[j][i]);
+                        }
+                    }
+                    raf.seek(rows + ((long) this.stored * ROW_SIZE));
+                    raf.write(buf.toByteArray());
+                    raf.setLength(raf.getFilePointer());
+                }
+                this.stored += appended.size();
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                this.writeHeader(new DataOutputStream(buf), this.offset, this.stored);
+                raf.seek(0);
+                raf.write(buf.toByteArray());
+            }
+        } catch (IOException e) {
+            LOG.get().warn("資材ログのキャッシュの保存に失敗しました", e);
+            // 次に読み込んだときに作り直させる
+            cacheFile.delete();
+        }
+    }
+
+    private void writeHeader(DataOutputStream out, long offset, int count) throws IOException {
+        out.writeInt(VERSION);
+        out.writeLong(offset);
+        out.writeLong(this.lastModified);
+        out.writeLong(this.headCrc);
+        out.writeLong(this.tailCrc);
+        out.writeInt(count);
+        out.flush();
+    }
+
+    /**
+     * 読み込んだ行を溜める
+     */
+    private static final class RowBuffer {
+        private long[] time = new long[256];
+        private int[][] values = new int[NUM_RESOURCES][256];
+        private int size;
+
+        void add(long time, int... values) {
+            if (this.size == this.time.length) {
+                int capacity = this.size * 2;
+                this.time = Arrays.copyOf(this.time, capacity);
+                for (int i = 0; i < NUM_RESOURCES; i++) {
+                    this.values[i] = Arrays.copyOf(this.values[i], capacity);
+                }
+            }
+            this.time[this.size] = time;
+            for (int i = 0; i < NUM_RESOURCES; i++) {
+                this.values[i][this.size] = values[i];
+            }
+            this.size++;
+        }
+
+        Columns toColumns() {
+            int[][] values = new int[NUM_RESOURCES][];
+            for (int i = 0; i < NUM_RESOURCES; i++) {
+                values[i] = Arrays.copyOf(this.values[i], this.size);
+            }
+            return new Columns(Arrays.copyOf(this.time, this.size), values);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import logbook.gui.listener.TableToCsvSaveAdapter;
 import logbook.gui.logic.TableItemCreator;
 import logbook.gui.logic.TableRowHeader;
 import logbook.internal.LoggerHolder;
+import logbook.util.ReportUtils;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.eclipse.swt.SWT;
@@ -45,6 +46,7 @@ import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
 
 /**
  * テーブルで構成されるダイアログの基底クラス
@@ -54,8 +56,6 @@ public abstract class AbstractTableDialog extends WindowBase implements EventLis
     /** ロガー */
     private static final LoggerHolder LOG = new LoggerHolder(AbstractTableDialog.class);
 
-    private static int MAX_PRINT_ITEMS = 2000;
-
     private final Shell parent;
 
     /** タイマー */
@@ -90,6 +90,12 @@ public abstract class AbstractTableDialog extends WindowBase implements EventLis
     /** テーブルのメニュー */
     protected Menu tablemenu;
 
+    /** 行の作成用の表示しないテーブル(テーブルは仮想テーブルなのでここで作成した行の内容を写す) */
+    private Table rowFactory;
+
+    /** 表示される行の作成中(TableItemCreatorのbegin～end)か */
+    private boolean creatingRows;
+
     /** ヘッダーのメニュー */
     protected Menu headermenu;
 
@@ -145,7 +151,14 @@ public abstract class AbstractTableDialog extends WindowBase implements EventLis
         }
         this.orderflgs = new boolean[this.header.length];
         // テーブル
-        this.table = new Table(this.getTableParent(), SWT.FULL_SELECTION | SWT.MULTI);
+        // 表示される行だけを作成する仮想テーブル
+        this.table = new Table(this.getTableParent(), SWT.FULL_SELECTION | SWT.MULTI | SWT.VIRTUAL);
+        this.table.addListener(SWT.SetData, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                AbstractTableDialog.this.setTableItem((TableItem) event.item, event.index);
+            }
+        });
         this.table.addKeyListener(new TableKeyShortcutAdapter(this.header, this.table));
         this.table.setLinesVisible(true);
         this.table.setHeaderVisible(true);
@@ -421,33 +434,119 @@ public abstract class AbstractTableDialog extends WindowBase implements EventLis
     }
 
     /**
-     * テーブルボディーをセットする
+     * テーブルボディーをセットする<br>
+     * 行の件数だけをセットして、行の内容は表示されるときに{@link #setTableItem(TableItem, int)}でセットします
      */
     protected void setTableBody() {
-        TableItemCreator creator = this.getTableItemCreator();
-        creator.begin(this.getTableHeader());
-        // 表示最大件数を制限する
-        int numPrintItems = Math.min(MAX_PRINT_ITEMS, this.body.size());
-        for (int i = 0; i < numPrintItems; i++) {
-            Comparable[] line = this.body.get(i);
-            TableRowHeader rowHeader = (TableRowHeader) line[0];
+        // 前の内容で作成中の行があれば終わらせる
+        this.endCreateRows();
+        for (int i = 0; i < this.body.size(); i++) {
+            TableRowHeader rowHeader = (TableRowHeader) this.body.get(i)[0];
             rowHeader.setNumber(i + 1); // ソート順に関係ない番号
-            creator.create(this.table, line, i);
         }
-        creator.end();
+        this.table.setItemCount(this.body.size());
+        this.table.clearAll();
     }
 
     /**
-     * テーブルボディーをクリアする
+     * テーブルボディーをクリアする<br>
+     * 行は削除せずに内容だけをクリアするので、選択状態とスクロール位置はそのままです
      */
     protected void disposeTableBody() {
-        this.table.removeAll();
-        /*
-        TableItem[] items = this.table.getItems();
-        for (int i = 0; i < items.length; i++) {
-            items[i].dispose();
+        this.table.clearAll();
+    }
+
+    /**
+     * 表示される行の内容をセットする<br>
+     * 同時に表示される行(イベントループの1回の間に要求された行)はまとめて、
+     * TableItemCreatorのbegin～endの間で作成します
+     *
+     * @param item 行
+     * @param index 行番号（上から0始まり）
+     */
+    private void setTableItem(TableItem item, int index) {
+        if ((this.body == null) || (index >= this.body.size())) {
+            return;
+        }
+        Comparable[] line = this.body.get(index);
+        if ((this.rowFactory == null) || this.rowFactory.isDisposed()) {
+            // TableItemCreatorは行を新しく作るので、表示しないテーブルに作らせる
+            this.rowFactory = new Table(new Shell(this.shell), SWT.NONE);
+            for (int i = 0; i < this.header.length; i++) {
+                new TableColumn(this.rowFactory, SWT.LEFT);
+            }
+        }
+        try {
+            TableItemCreator creator = this.getTableItemCreator();
+            if (!this.creatingRows) {
+                creator.begin(this.getTableHeader());
+                this.creatingRows = true;
+                this.display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        AbstractTableDialog.this.endCreateRows();
+                    }
+                });
+            }
+            TableItem created = creator.create(this.rowFactory, line, index);
+            copyTableItem(created, item, this.header.length);
+        } catch (Exception e) {
+            LOG.get().warn("テーブルの行の作成でエラー", e);
+            item.setText(ReportUtils.toStringArray(line));
+        } finally {
+            this.rowFactory.removeAll();
         }
-        */
+    }
+
+    /**
+     * 表示される行の作成を終わらせる(TableItemCreatorのend)
+     */
+    private void endCreateRows() {
+        if (this.creatingRows) {
+            this.creatingRows = false;
+            try {
+                this.getTableItemCreator().end();
+            } catch (Exception e) {
+                LOG.get().warn("テーブルの行の作成でエラー", e);
+            }
+        }
+    }
+
+    /**
+     * 行の内容を写す
+     *
+     * @param from 写す元
+     * @param to 写す先
+     * @param columns 列数
+     */
+    private static void copyTableItem(TableItem from, TableItem to, int columns) {
+        to.setData(from.getData());
+        to.setBackground(from.getBackground());
+        to.setForeground(from.getForeground());
+        to.setFont(from.getFont());
+        for (int i = 0; i < columns; i++) {
+            to.setText(i, from.getText(i));
+            to.setImage(i, from.getImage(i));
+            to.setBackground(i, from.getBackground(i));
+            to.setForeground(i, from.getForeground(i));
+            to.setFont(i, from.getFont(i));
+        }
+    }
+
+    /**
+     * 選択されている行に埋め込まれたデータを返します<br>
+     * テーブルは仮想テーブルなので、まだ表示されていない行のTableItemにはデータがセットされていません
+     *
+     * @return 選択されている行のデータ
+     */
+    protected List<Object> getSelectionData() {
+        List<Object> data = new ArrayList<>();
+        for (int index : this.table.getSelectionIndices()) {
+            if (index < this.body.size()) {
+                data.add(((TableRowHeader) this.body.get(index)[0]).get());
+            }
+        }
+        return data;
     }
 
     /**
@@ -654,9 +753,6 @@ public abstract class AbstractTableDialog extends WindowBase implements EventLis
     protected final String getTitle() {
         String title = this.getTitleMain();
         if ((this.body != null) && (this.table != null)) {
-            if (this.table.getItemCount() != this.body.size()) {
-                title += " " + this.body.size() + "件中" + this.table.getItemCount() + "件のみ表示";
-            }
             int selectionCount = this.table.getSelectionCount();
             if (selectionCount > 1) {
                 title += " " + selectionCount + "件選択中";
@@ -41,8 +41,11 @@ import logbook.gui.widgets.FleetComposite;
 import logbook.internal.*;
 import logbook.internal.Item;
 import logbook.scripting.ScriptData;
+import logbook.server.proxy.AssetCache;
+import logbook.server.proxy.DataIngestThread;
 import logbook.server.proxy.DatabaseClient;
 import logbook.server.proxy.ProxyServer;
+import logbook.server.proxy.TrafficRecorder;
 import logbook.server.proxy.TsunDBClient;
 import logbook.thread.ThreadManager;
 import logbook.thread.ThreadStateObserver;
@@ -679,6 +682,15 @@ public final class ApplicationMain extends WindowBase {
                 new CreatePacFileDialog(ApplicationMain.this.subwindowHost).open();
             }
         });
+        // その他-スクリプトの実行時間
+        MenuItem scriptStat = new MenuItem(etcmenu, SWT.NONE);
+        scriptStat.setText("スクリプトの実行時間");
+        scriptStat.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                new ScriptStatDialog(ApplicationMain.this.subwindowHost).open();
+            }
+        });
         // セパレータ
         new MenuItem(etcmenu, SWT.SEPARATOR);
         // その他-ツール
@@ -1751,12 +1763,18 @@ public final class ApplicationMain extends WindowBase {
         ThreadManager.regist(new AsyncExecApplicationMain(this));
         // サウンドを出すスレッド
         ThreadManager.regist(new Sound.PlayerThread());
-        // Push通知を行うスレッド
-        ThreadManager.regist(new PushNotify.PushNotifyThread());
         // スレッドを監視するスレッド
         ThreadManager.regist(new ThreadStateObserver(this.shell));
 
         ThreadManager.start();
+        // 出撃ログ・報告書を書き込むスレッド
+        LogWriter.startup();
+        PersistenceService.startup();
+        // 外部サーバーへ送信するスレッド
+        Uploader.startup();
+        DatabaseClient.startup();
+        TsunDBClient.startup();
+        PushNotify.startup();
     }
 
     private static void endThread() {
@@ -1764,8 +1782,17 @@ public final class ApplicationMain extends WindowBase {
         SWTResourceManager.dispose();
         // プロキシサーバーをシャットダウンする
         ProxyServer.end();
-        DatabaseClient.end();
-        TsunDBClient.end();
+        AssetCache.end();
+        DataIngestThread.end();
+        TrafficRecorder.end();
+        // 保存待ちのJSONを書き込む
+        JsonArchive.end();
+        // 送信待ちはファイルに残して次回送信する
+        Uploader.end();
+        // 書き込み待ちのログを書き込む
+        LogWriter.end();
+        // 保存スレッドを終了(保存されていない変更はシャットダウンフックで保存する)
+        PersistenceService.end();
         // ホットキーを解除
         JIntellitypeWrapper.cleanup();
     }
@@ -249,6 +249,23 @@ public final class ConfigDialog extends Dialog {
         tsunDBLogButton.setText("TsunDBへの送信をログ出力する");
         tsunDBLogButton.setSelection(AppConfig.get().isTsunDBSendLog());
 
+        final Button useAssetCacheButton = new Button(compositeConnection, SWT.CHECK);
+        useAssetCacheButton.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 4, 1));
+        useAssetCacheButton.setText("ゲームの画像・音声をディスクにキャッシュする");
+        useAssetCacheButton.setSelection(AppConfig.get().isUseAssetCache());
+        useAssetCacheButton.setToolTipText("同じバージョンのファイルはサーバーに問い合わせずにキャッシュから返します");
+
+        Label assetCacheSizeLabel = new Label(compositeConnection, SWT.NONE);
+        assetCacheSizeLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        assetCacheSizeLabel.setText("上限(MB):");
+
+        final Spinner assetCacheSizeSpinner = new Spinner(compositeConnection, SWT.BORDER);
+        assetCacheSizeSpinner.setMaximum(64 * 1024);
+        assetCacheSizeSpinner.setMinimum(16);
+        assetCacheSizeSpinner.setSelection(AppConfig.get().getAssetCacheSize());
+        assetCacheSizeSpinner.setLayoutData(SwtUtils.initSpinner(55,
+                new GridData(SWT.LEFT, SWT.CENTER, false, false, 3, 1)));
+
         // システム タブ
         compositeSystem.setLayout(new GridLayout(3, false));
 
@@ -1074,6 +1091,7 @@ public final class ConfigDialog extends Dialog {
         btnJson.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 1, 1));
         btnJson.setText("JSONを保存する");
         btnJson.setSelection(AppConfig.get().isStoreJson());
+        btnJson.setToolTipText("受信したJSONを日ごとに圧縮したファイルにまとめて追記します。テストデータ(TestDataFeeder)として読み込めます");
 
         Label lblJson = new Label(compositeDevelopment, SWT.NONE);
         lblJson.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
@@ -1085,6 +1103,12 @@ public final class ConfigDialog extends Dialog {
         jsonpath.setLayoutData(gdJsonpath);
         jsonpath.setText(AppConfig.get().getStoreJsonPath());
 
+        final Button btnRecordTraffic = new Button(compositeDevelopment, SWT.CHECK);
+        btnRecordTraffic.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
+        btnRecordTraffic.setText("通信を記録する(traffic フォルダ)");
+        btnRecordTraffic.setSelection(AppConfig.get().isRecordTraffic());
+        btnRecordTraffic.setToolTipText("URL・リクエスト・レスポンスを圧縮して追記します(api_tokenは取り除きます)。logbook.test.TrafficReplayで再生できます");
+
         final Button btnTest = new Button(compositeDevelopment, SWT.CHECK);
         btnTest.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 2, 1));
         btnTest.setText("航海日誌開発者向けメニューを追加する*");
@@ -1243,6 +1267,8 @@ public final class ConfigDialog extends Dialog {
                 AppConfig.get().setProxyPort(proxyPortSpinner.getSelection());
                 AppConfig.get().setSendTsunDB(sendTsunDBButton.getSelection());
                 AppConfig.get().setTsunDBSendLog(tsunDBLogButton.getSelection());
+                AppConfig.get().setUseAssetCache(useAssetCacheButton.getSelection());
+                AppConfig.get().setAssetCacheSize(assetCacheSizeSpinner.getSelection());
                 // push notify
                 AppConfig.get().setNotifyProwl(prowl.getSelection());
                 AppConfig.get().setProwlAPIKey(prowlAPIKey.getText());
@@ -1275,6 +1301,7 @@ public final class ConfigDialog extends Dialog {
                 // development
                 AppConfig.get().setStoreJson(btnJson.getSelection());
                 AppConfig.get().setStoreJsonPath(new File(jsonpath.getText()).getAbsolutePath());
+                AppConfig.get().setRecordTraffic(btnRecordTraffic.getSelection());
                 AppConfig.get().setEnableTestWindow(btnTest.getSelection());
                 try {
                     AppConfig.store();
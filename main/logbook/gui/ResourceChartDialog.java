@@ -28,6 +28,7 @@ import logbook.gui.logic.ColorManager;
 import logbook.gui.logic.ResourceChart;
 import logbook.gui.logic.ResourceChart.ActiveLevel;
 import logbook.gui.logic.TableItemCreator;
+import logbook.internal.LogWriter;
 import logbook.internal.LoggerHolder;
 import logbook.scripting.TableItemCreatorProxy;
 import logbook.util.SwtUtils;
@@ -342,6 +343,8 @@ public final class ResourceChartDialog extends WindowBase {
     private void updateContents() {
         File report = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), AppConstants.LOG_RESOURCE));
         try {
+            // 書き込み待ちの資材ログを書き込んでから読む
+            LogWriter.flush(3000);
             this.log = ResourceLog.getInstance(report);
             if (this.log != null) {
                 this.body = createTableBody(this.log);
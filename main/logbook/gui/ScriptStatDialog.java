@@ -0,0 +1,197 @@
+package logbook.gui;
+
+import java.util.List;
+
+import logbook.config.AppConfig;
+import logbook.internal.LatencyStat;
+import logbook.scripting.ScriptLoader;
+import logbook.scripting.ScriptLoader.Script;
+import logbook.scripting.ScriptStat;
+import logbook.util.SwtUtils;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Dialog;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * スクリプトの実行時間
+ * どのスクリプトがテーブルの再読み込みを遅くしているかを調べるためのダイアログです
+ */
+public final class ScriptStatDialog extends Dialog {
+
+    private static final String[] HEADER = { "スクリプト", "状態", "回数", "合計(ms)", "平均(ms)", "p99(ms)",
+            "最大(ms)", "前回の再読み込み(ms)", "再読み込みの最大(ms)", "割り当て(KB)" };
+
+    private Shell shell;
+
+    private Table table;
+
+    /** 表示しているスクリプト */
+    private List<Script> scripts;
+
+    /**
+     * Create the dialog.
+     * @param parent
+     */
+    public ScriptStatDialog(Shell parent) {
+        super(parent, SWT.CLOSE | SWT.TITLE | SWT.MIN | SWT.RESIZE);
+    }
+
+    /**
+     * Open the dialog.
+     */
+    public void open() {
+        this.createContents();
+        this.shell.open();
+        this.shell.layout();
+        Display display = this.getParent().getDisplay();
+        while (!this.shell.isDisposed()) {
+            if (!display.readAndDispatch()) {
+                display.sleep();
+            }
+        }
+    }
+
+    /**
+     * Create contents of the dialog.
+     */
+    private void createContents() {
+        this.shell = new Shell(this.getParent(), this.getStyle());
+        this.shell.setText("スクリプトの実行時間");
+        this.shell.setSize(SwtUtils.DPIAwareSize(new Point(800, 400)));
+        this.shell.setLayout(new GridLayout(1, false));
+
+        this.table = new Table(this.shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI);
+        this.table.setLayoutData(new GridData(GridData.FILL_BOTH));
+        this.table.setHeaderVisible(true);
+        this.table.setLinesVisible(true);
+        for (String header : HEADER) {
+            TableColumn column = new TableColumn(this.table, SWT.NONE);
+            column.setText(header);
+        }
+
+        Composite buttons = new Composite(this.shell, SWT.NONE);
+        buttons.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        buttons.setLayout(new GridLayout(3, false));
+
+        Button reload = new Button(buttons, SWT.NONE);
+        reload.setText("更新");
+        reload.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                ScriptStatDialog.this.reload();
+            }
+        });
+
+        Button reset = new Button(buttons, SWT.NONE);
+        reset.setText("統計をリセット");
+        reset.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                for (Script script : ScriptStatDialog.this.scripts) {
+                    script.getStat().reset();
+                }
+                ScriptStatDialog.this.reload();
+            }
+        });
+
+        Button enable = new Button(buttons, SWT.NONE);
+        enable.setText("選択したスクリプトを有効にする");
+        enable.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                for (int index : ScriptStatDialog.this.table.getSelectionIndices()) {
+                    ScriptStatDialog.this.scripts.get(index).enable();
+                }
+                ScriptStatDialog.this.reload();
+            }
+        });
+
+        Composite budget = new Composite(this.shell, SWT.NONE);
+        budget.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        budget.setLayout(new GridLayout(5, false));
+
+        Label callLabel = new Label(budget, SWT.NONE);
+        callLabel.setText("1回の呼び出し(ms)");
+        final Spinner callBudget = new Spinner(budget, SWT.BORDER);
+        callBudget.setMaximum(600000);
+        callBudget.setSelection(AppConfig.get().getScriptCallBudget());
+        callBudget.addModifyListener(new ModifyListener() {
+            @Override
+            public void modifyText(ModifyEvent e) {
+                AppConfig.get().setScriptCallBudget(callBudget.getSelection());
+            }
+        });
+
+        Label reloadLabel = new Label(budget, SWT.NONE);
+        reloadLabel.setText("1回の再読み込み(ms)");
+        final Spinner reloadBudget = new Spinner(budget, SWT.BORDER);
+        reloadBudget.setMaximum(600000);
+        reloadBudget.setSelection(AppConfig.get().getScriptReloadBudget());
+        reloadBudget.addModifyListener(new ModifyListener() {
+            @Override
+            public void modifyText(ModifyEvent e) {
+                AppConfig.get().setScriptReloadBudget(reloadBudget.getSelection());
+            }
+        });
+
+        final Button logging = new Button(budget, SWT.CHECK);
+        logging.setText("再読み込みごとにログに出力");
+        logging.setSelection(AppConfig.get().isScriptStatLogging());
+        logging.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                AppConfig.get().setScriptStatLogging(logging.getSelection());
+            }
+        });
+
+        Label note = new Label(this.shell, SWT.WRAP);
+        note.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        note.setText("上の時間を超えたスクリプトは無効になります(0は無制限)。スクリプトファイルを更新すると有効に戻ります。");
+
+        this.reload();
+    }
+
+    private void reload() {
+        this.scripts = ScriptLoader.getAllScripts();
+        this.table.setRedraw(false);
+        this.table.removeAll();
+        for (Script script : this.scripts) {
+            ScriptStat stat = script.getStat();
+            LatencyStat latency = stat.getLatency();
+            String state = stat.getDisabledReason();
+            TableItem item = new TableItem(this.table, SWT.NONE);
+            item.setText(new String[] {
+                    script.getName(),
+                    (state == null) ? "有効" : "無効: " + state,
+                    String.valueOf(latency.getCount()),
+                    String.format("%.1f", latency.getTotalMillis()),
+                    String.format("%.3f", latency.getAverageMillis()),
+                    String.format("%.3f", latency.getPercentileMillis(99)),
+                    String.format("%.3f", latency.getMaxMillis()),
+                    String.format("%.1f", stat.getLastReloadMillis()),
+                    String.format("%.1f", stat.getMaxReloadMillis()),
+                    String.format("%,d", stat.getAllocatedBytes() / 1024)
+            });
+        }
+        for (TableColumn column : this.table.getColumns()) {
+            column.pack();
+        }
+        this.table.setRedraw(true);
+    }
+}
@@ -635,11 +635,10 @@ public final class ShipFilterGroupDialog extends AbstractTableDialog implements
         public void widgetSelected(SelectionEvent e) {
             if (this.dialog.property != null) {
                 ShipGroupBean bean = this.dialog.property.getShipGroupBean();
-                TableItem[] items = this.dialog.table.getSelection();
                 List<Integer> ids = new ArrayList<>();
                 List<String> name = new ArrayList<>();
-                for (TableItem tableItem : items) {
-                    ShipDto ship = (ShipDto) tableItem.getData();
+                for (Object data : this.dialog.getSelectionData()) {
+                    ShipDto ship = (ShipDto) data;
                     ids.add(ship.getId());
                     name.add(ship.getFriendlyName());
                 }
@@ -10,6 +10,7 @@ import logbook.config.bean.ShipGroupBean;
 import logbook.constants.AppConstants;
 import logbook.data.Data;
 import logbook.data.DataType;
+import logbook.data.context.GlobalContext;
 import logbook.dto.ShipDto;
 import logbook.dto.ShipFilterDto;
 import logbook.gui.logic.CreateReportLogic;
@@ -39,7 +40,6 @@ import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
-import org.eclipse.swt.widgets.TableItem;
 
 /**
  * 所有艦娘一覧テーブル
@@ -180,11 +180,11 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
             @Override
             public void widgetSelected(SelectionEvent e) {
                 StringBuilder sb = new StringBuilder();
-                for (TableItem item : ShipTable.this.table.getSelection()) {
+                for (ShipDto ship : ShipTable.this.getSelection()) {
                     if (sb.length() > 0) {
                         sb.append(", ");
                     }
-                    sb.append(String.valueOf(((ShipDto) item.getData()).getId()));
+                    sb.append(String.valueOf(ship.getId()));
                 }
                 Clipboard clipboard = new Clipboard(Display.getDefault());
                 clipboard.setContents(new Object[] { sb.toString() }, new Transfer[] { TextTransfer.getInstance() });
@@ -196,11 +196,11 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
             @Override
             public void widgetSelected(SelectionEvent e) {
                 StringBuilder sb = new StringBuilder();
-                for (TableItem item : ShipTable.this.table.getSelection()) {
+                for (ShipDto ship : ShipTable.this.getSelection()) {
                     if (sb.length() > 0) {
                         sb.append(", ");
                     }
-                    sb.append(((ShipDto) item.getData()).getName());
+                    sb.append(ship.getName());
                 }
                 Clipboard clipboard = new Clipboard(Display.getDefault());
                 clipboard.setContents(new Object[] { sb.toString() }, new Transfer[] { TextTransfer.getInstance() });
@@ -353,10 +353,8 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
 
     private List<ShipDto> getSelection() {
         List<ShipDto> ships = new ArrayList<>();
-        TableItem[] tableItems = ShipTable.this.table.getSelection();
-        for (int i = 0; i < tableItems.length; i++) {
-            ShipDto dto = (ShipDto) tableItems[i].getData();
-            ships.add(dto);
+        for (Object data : this.getSelectionData()) {
+            ships.add((ShipDto) data);
         }
         return ships;
     }
@@ -659,7 +657,13 @@ public final class ShipTable extends AbstractTableDialog implements ShipGroupLis
      */
     @Override
     public void update(DataType type, Data data) {
-        if (ReportUtils.isShipUpdate(type)) {
+        if (type == DataType.PORT) {
+            // 母港で艦娘・艦隊に変化がなければ更新しない
+            if (!GlobalContext.getShipChangeSet().isEmpty()) {
+                this.needsUpdate = true;
+            }
+        }
+        else if (ReportUtils.isShipUpdate(type)) {
             this.needsUpdate = true;
         }
     }
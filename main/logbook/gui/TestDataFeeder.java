@@ -7,11 +7,13 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.Arrays;
+import java.util.List;
 
 import logbook.data.Data;
 import logbook.data.DataType;
 import logbook.data.TestData;
 import logbook.data.context.GlobalContext;
+import logbook.internal.JsonArchive;
 import logbook.util.SwtUtils;
 
 import org.eclipse.swt.SWT;
@@ -31,6 +33,7 @@ import org.eclipse.swt.widgets.Text;
  * 
  * テストデータを食べさせる
  * JSON保存先のパスをセットしてリセットを押すと準備ができます。
+ * 保存先にJSONの保存ファイル(JsonArchive)があればそれを、なければ古い形式の1レスポンス1ファイルのJSONを読み込みます。
  * マウスホイールを回すとJSONファイルを食べさせます。
  * 各種ボタンで一気に食べさせることもできます。
  * 
@@ -38,14 +41,17 @@ import org.eclipse.swt.widgets.Text;
  * 動作テスト用なのでログ出力も行います。
  * 古いログが追加されていくので本番使用環境では使わないでください。
  * 食べさせたログは艦これ統計データベースへの送信は行いません。
- * アクセスしたURLの情報が必要な建造や開発、艦の入れ替えなどはテストできません。
+ * 古い形式のJSONはリクエストのパラメータがないので、建造や開発、艦の入れ替えなどはテストできません。
  */
 public class TestDataFeeder extends WindowBase {
 
     private Text filepathText;
     private Label statusLabel;
     private String[] fileList;
+    /** JSONの保存ファイルを読み込む場合 */
+    private JsonArchive.Reader archive;
     private int currentIndex;
+    private int total;
 
     public TestDataFeeder(WindowBase parent) {
         this.createContents(parent, SWT.CLOSE | SWT.TITLE | SWT.MIN | SWT.RESIZE, false);
@@ -149,41 +155,110 @@ public class TestDataFeeder extends WindowBase {
     }
 
     private void updateLabel() {
-        this.statusLabel.setText(String.valueOf(this.currentIndex) + "/" + this.fileList.length);
+        this.statusLabel.setText(String.valueOf(this.currentIndex) + "/" + this.total);
         this.getShell().layout();
     }
 
     private void resetFilePath() {
         File dir = new File(this.filepathText.getText());
-        File[] files = dir.listFiles();
-        this.fileList = new String[files.length];
-        for (int i = 0; i < files.length; ++i) {
-            this.fileList[i] = files[i].getAbsolutePath();
-        }
-        Arrays.sort(this.fileList);
+        this.closeArchive();
+        this.fileList = null;
         this.currentIndex = 0;
+        this.total = 0;
+        List<File> segments = JsonArchive.listSegments(dir);
+        if (!segments.isEmpty()) {
+            this.archive = new JsonArchive.Reader(dir);
+            for (File segment : segments) {
+                try {
+                    this.total += JsonArchive.readIndex(segment).size();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        else {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            this.fileList = new String[files.length];
+            for (int i = 0; i < files.length; ++i) {
+                this.fileList[i] = files[i].getAbsolutePath();
+            }
+            Arrays.sort(this.fileList);
+            this.total = this.fileList.length;
+        }
 
         this.updateLabel();
     }
 
+    private void closeArchive() {
+        if (this.archive != null) {
+            try {
+                this.archive.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.archive = null;
+        }
+    }
+
+    private boolean isReady() {
+        return (this.fileList != null) || (this.archive != null);
+    }
+
+    private boolean hasNext() {
+        return (this.archive != null) || (this.currentIndex < this.fileList.length);
+    }
+
+    /**
+     * 次のデータを読み込みます
+     * @return 次のデータ(終わりの場合はnull)
+     */
+    private Data nextData() throws ParseException, IOException {
+        if (this.archive != null) {
+            Data data;
+            try {
+                data = this.archive.next();
+            } catch (IOException e) {
+                // 壊れたファイルは読み飛ばせないのでここで終わりにする
+                data = null;
+                e.printStackTrace();
+            }
+            if (data == null) {
+                this.closeArchive();
+                this.fileList = new String[0];
+                return null;
+            }
+            this.currentIndex++;
+            // インデックスにない分(書き込み中に終了した場合)
+            this.total = Math.max(this.total, this.currentIndex);
+            return data;
+        }
+        if (this.currentIndex < this.fileList.length) {
+            return new TestData(this.fileList[this.currentIndex++]);
+        }
+        return null;
+    }
+
     private void readAll() {
-        if (this.fileList == null) {
+        if (!this.isReady()) {
             return;
         }
-        // まずは100個
-        int end = Math.min(this.currentIndex + 1000, this.fileList.length);
-        for (; this.currentIndex < end;) {
-            String filepath = this.fileList[this.currentIndex++];
+        // まずは1000個
+        for (int i = 0; (i < 1000) && this.hasNext(); i++) {
             try {
-                Data data = new TestData(filepath);
-                GlobalContext.updateContext(data);
+                Data data = this.nextData();
+                if (data != null) {
+                    GlobalContext.updateContext(data);
+                }
             } catch (ParseException | IOException | IllegalArgumentException e) {
                 e.printStackTrace();
             }
         }
         this.updateLabel();
         // 末尾再帰？？
-        if (this.currentIndex < this.fileList.length) {
+        if (this.hasNext()) {
             this.getShell().getDisplay().asyncExec(new Runnable() {
                 @Override
                 public void run() {
@@ -199,12 +274,14 @@ public class TestDataFeeder extends WindowBase {
     }
 
     private void nextUntil(DataType type) {
-        if (this.fileList == null)
+        if (!this.isReady())
             return;
-        for (; this.currentIndex < this.fileList.length;) {
-            String filepath = this.fileList[this.currentIndex++];
+        while (this.hasNext()) {
             try {
-                Data data = new TestData(filepath);
+                Data data = this.nextData();
+                if (data == null) {
+                    break;
+                }
                 GlobalContext.updateContext(data);
                 this.updateLabel();
                 if (data.getDataType() == type) {
@@ -217,11 +294,12 @@ public class TestDataFeeder extends WindowBase {
     }
 
     private void feedJson() {
-        if ((this.fileList != null) && (this.currentIndex < this.fileList.length)) {
-            String filepath = this.fileList[this.currentIndex++];
+        if (this.isReady() && this.hasNext()) {
             try {
-                Data data = new TestData(filepath);
-                GlobalContext.updateContext(data);
+                Data data = this.nextData();
+                if (data != null) {
+                    GlobalContext.updateContext(data);
+                }
                 this.updateLabel();
             } catch (ParseException | IOException | IllegalArgumentException e) {
                 e.printStackTrace();
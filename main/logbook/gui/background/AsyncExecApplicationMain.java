@@ -1,7 +1,6 @@
 package logbook.gui.background;
 
 import logbook.config.AppConfig;
-import logbook.config.ShipGroupConfig;
 import logbook.constants.AppConstants;
 import logbook.data.context.GlobalContext;
 import logbook.data.context.TimerContext;
@@ -12,7 +11,6 @@ import logbook.gui.logic.*;
 import logbook.gui.widgets.FleetComposite;
 import logbook.internal.*;
 import logbook.internal.MasterData.MissionDto;
-import logbook.scripting.ScriptData;
 import logbook.util.SwtUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.swt.SWT;
@@ -21,7 +19,6 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.widgets.*;
 import org.eclipse.wb.swt.SWTResourceManager;
 
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -40,8 +37,27 @@ public final class AsyncExecApplicationMain extends Thread {
 
     private static final int ONE_MINUTES = 60;
 
+    /** 画面が見えているときに残り時間の表示を更新する間隔 */
+    private static final long DISPLAY_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    /** ウィンドウ位置を記憶する間隔 */
+    private static final long SAVE_WINDOWS_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
     private final ApplicationMain main;
 
+    /** 通知の期限(UIスレッドからのみ使用) */
+    private final DeadlineQueue deadlines = new DeadlineQueue();
+
+    private final UpdateItemCountTask itemCountTask;
+    private final UpdateShipCountTask shipCountTask;
+    private final UpdateFleetTabTask fleetTabTask;
+    private final UpdateDeckNdockTask deckNdockTask;
+
+    private final Object lock = new Object();
+
+    /** 通信データを受け取った・ウィンドウが表示されたなどですぐに更新が必要 */
+    private boolean updateRequested = true;
+
     /**
      * 非同期にメイン画面を更新するスレッドのコンストラクター
      *
@@ -50,71 +66,71 @@ public final class AsyncExecApplicationMain extends Thread {
     public AsyncExecApplicationMain(ApplicationMain main) {
         this.main = main;
         this.setName("logbook_async_exec_application_main");
+        this.itemCountTask = new UpdateItemCountTask(main);
+        this.shipCountTask = new UpdateShipCountTask(main);
+        this.fleetTabTask = new UpdateFleetTabTask(main);
+        this.deckNdockTask = new UpdateDeckNdockTask(main, this.deadlines);
+
+        // 通信データを受け取ったときと、ウィンドウが表示されたときはすぐに更新する
+        GlobalContext.addEventListener((type, data) -> this.requestUpdate());
+        Listener showListener = e -> this.requestUpdate();
+        Display.getDefault().addFilter(SWT.Show, showListener);
+        Display.getDefault().addFilter(SWT.Deiconify, showListener);
     }
 
     /**
-     * 現在のメイン画面を更新します
+     * メイン画面を更新します<br>
+     * 画面が見えている間は1秒ごとに残り時間の表示を更新します<br>
+     * 見えていない間(最小化・タスクトレイ)は、遠征の帰投や入渠の完了などの通知の期限と、
+     * 通信データを受け取ったときだけ更新します
      */
     @Override
     public void run() {
 
         try {
-            long nextUpdateTime = 0;
-            long counter = 1;
-            final ApplicationMain main = this.main;
+            long nextDisplayTime = 0;
+            long nextSaveWindowsTime = System.currentTimeMillis() + SAVE_WINDOWS_INTERVAL;
+            // [0]: 次の通知の期限, [1]: 画面が見えているか(1 or 0)
+            final long[] state = new long[2];
 
             while (true) {
-                final long current = counter++;
-
-                Display.getDefault().syncExec(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            // タイマー更新
-                            TimerContext.get().update();
-                        } catch (Exception e) {
-                            LOG.get().warn("タイマー更新でエラー", e);
-                        }
-
-                        try {
-                            // 保有アイテム数を更新する
-                            new UpdateItemCountTask(main).run();
-                            // 保有艦娘数を更新する
-                            new UpdateShipCountTask(main).run();
-                            // 艦隊タブを更新する
-                            new UpdateFleetTabTask(main).run();
-                            // 遠征と入渠を更新する
-                            new UpdateDeckNdockTask(main).run();
-                        } catch (Exception e) {
-                            LOG.get().warn("GUI更新で不明なエラー", e);
-                        }
-
-                        try {
-                            // 更新日時が実装されているファイルたちはすぐに保存
-                            ShipGroupConfig.store();
-                            MasterData.store();
-                            EnemyData.store();
-                            ShipParameterRecord.store();
-                            ScriptData.store();
-
-                            if ((current % 10) == 0) {
-                                // メニューから終了しなかった場合を考慮して定期的にウィンドウ位置を記憶
-                                main.saveWindows();
-                            }
+                final boolean requested;
+                synchronized (this.lock) {
+                    requested = this.updateRequested;
+                    this.updateRequested = false;
+                }
+                final boolean saveWindows = System.currentTimeMillis() >= nextSaveWindowsTime;
 
-                        } catch (IOException e) {
-                            LOG.get().fatal("ファイル更新に失敗しました", e);
-                        }
+                Display.getDefault().syncExec(() -> {
+                    boolean visible = this.isDisplayVisible();
+                    boolean due = this.deadlines.pollDue(System.currentTimeMillis());
+                    if (visible || due || requested) {
+                        this.update();
                     }
+                    if (saveWindows && visible) {
+                        // メニューから終了しなかった場合を考慮して定期的にウィンドウ位置を記憶
+                        // (マスターデータなどの更新されたファイルはPersistenceServiceが保存する)
+                        this.main.saveWindows();
+                    }
+                    state[0] = this.deadlines.next();
+                    state[1] = visible ? 1 : 0;
                 });
 
-                long currentTime = Calendar.getInstance().getTimeInMillis();
-                // 次のアップデートは1秒後
-                nextUpdateTime += TimeUnit.SECONDS.toMillis(1);
-                if (nextUpdateTime < currentTime)
-                    nextUpdateTime = currentTime + TimeUnit.SECONDS.toMillis(1);
-
-                Thread.sleep(nextUpdateTime - currentTime);
+                long currentTime = System.currentTimeMillis();
+                if (saveWindows) {
+                    nextSaveWindowsTime = currentTime + SAVE_WINDOWS_INTERVAL;
+                }
+                long wakeTime = state[0];
+                if (state[1] != 0) {
+                    // 次の表示の更新は1秒後
+                    if (nextDisplayTime <= currentTime) {
+                        nextDisplayTime += DISPLAY_INTERVAL;
+                        if (nextDisplayTime <= currentTime)
+                            nextDisplayTime = currentTime + DISPLAY_INTERVAL;
+                    }
+                    wakeTime = Math.min(wakeTime, Math.min(nextDisplayTime, nextSaveWindowsTime));
+                }
+                this.waitUntil(wakeTime);
             }
         } catch (Exception e) {
             LOG.get().fatal("スレッドが異常終了しました", e);
@@ -122,6 +138,74 @@ public final class AsyncExecApplicationMain extends Thread {
         }
     }
 
+    /**
+     * すぐに更新します(どのスレッドからでも呼び出せます)
+     */
+    private void requestUpdate() {
+        synchronized (this.lock) {
+            this.updateRequested = true;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * 指定時刻まで待ちます(更新が要求されたらすぐに戻ります)
+     */
+    private void waitUntil(long time) throws InterruptedException {
+        synchronized (this.lock) {
+            while (!this.updateRequested) {
+                long wait = time - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return;
+                }
+                this.lock.wait(wait);
+            }
+        }
+    }
+
+    /**
+     * メイン画面か艦隊ウィンドウが見えているか
+     */
+    private boolean isDisplayVisible() {
+        Shell shell = this.main.getShell();
+        if (shell.isDisposed()) {
+            return false;
+        }
+        if (shell.isVisible() && !shell.getMinimized()) {
+            return true;
+        }
+        for (FleetWindow window : this.main.getFleetWindows()) {
+            Shell fleetShell = window.getShell();
+            if ((fleetShell != null) && !fleetShell.isDisposed() && fleetShell.isVisible()
+                    && !fleetShell.getMinimized()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void update() {
+        try {
+            // タイマー更新
+            TimerContext.get().update();
+        } catch (Exception e) {
+            LOG.get().warn("タイマー更新でエラー", e);
+        }
+
+        try {
+            // 保有アイテム数を更新する
+            this.itemCountTask.run();
+            // 保有艦娘数を更新する
+            this.shipCountTask.run();
+            // 艦隊タブを更新する
+            this.fleetTabTask.run();
+            // 遠征と入渠を更新する
+            this.deckNdockTask.run();
+        } catch (Exception e) {
+            LOG.get().warn("GUI更新で不明なエラー", e);
+        }
+    }
+
     /**
      * 保有アイテム数を更新する
      */
@@ -227,6 +311,9 @@ public final class AsyncExecApplicationMain extends Thread {
 
         private final ApplicationMain main;
 
+        /** 通知の期限 */
+        private final DeadlineQueue deadlines;
+
         /**
          * 日付フォーマット
          */
@@ -236,14 +323,59 @@ public final class AsyncExecApplicationMain extends Thread {
         private final List<String> noticeNdock = new ArrayList<String>();
         private final List<String> noticeCond = new ArrayList<String>();
         private final List<String> noticeAkashi = new ArrayList<String>();
-        private final Date now = new Date();
+        private Date now = new Date();
         private static final ZoneId TIME_ZONE = ZoneId.of("Asia/Tokyo");
 
         /**
          * コンストラクター
          */
-        public UpdateDeckNdockTask(ApplicationMain main) {
+        public UpdateDeckNdockTask(ApplicationMain main, DeadlineQueue deadlines) {
             this.main = main;
+            this.deadlines = deadlines;
+        }
+
+        /**
+         * TimeLogic.getRest(now, time)が秒数seconds以下になる時刻
+         */
+        private static long whenRestReaches(Date time, long seconds) {
+            // getRestは0に向かって切り捨てる
+            if (seconds >= 0) {
+                return (time.getTime() - ((seconds + 1) * 1000)) + 1;
+            }
+            return time.getTime() - (seconds * 1000);
+        }
+
+        /**
+         * 期限が未来なら登録し、過ぎていれば取り消します
+         */
+        private void schedule(String key, long time) {
+            if (time > this.now.getTime()) {
+                this.deadlines.schedule(key, time);
+            }
+            else {
+                this.deadlines.cancel(key);
+            }
+        }
+
+        /**
+         * 遠征の帰投通知とリマインドの期限
+         */
+        private long getDeckDeadline(Date time) {
+            long notice = whenRestReaches(time, ONE_MINUTES);
+            if ((notice > this.now.getTime()) || !AppConfig.get().isMissionRemind()) {
+                return notice;
+            }
+            // 次のリマインド(残り時間が-interval*k秒になったとき)
+            long interval = AppConfig.get().getRemindInterbal();
+            if (interval <= 0) {
+                return notice;
+            }
+            long k = Math.max((2 + interval - 1) / interval,
+                    ((this.now.getTime() - time.getTime()) / (interval * 1000)) + 1);
+            while (whenRestReaches(time, -k * interval) <= this.now.getTime()) {
+                k++;
+            }
+            return whenRestReaches(time, -k * interval);
         }
 
         private void addNotice(List<String> notices, List<String> titles, List<String> notice, String title) {
@@ -258,8 +390,13 @@ public final class AsyncExecApplicationMain extends Thread {
             if (this.main.getShell().isDisposed()) {
                 return;
             }
+            this.noticeMission.clear();
+            this.noticeNdock.clear();
+            this.noticeCond.clear();
+            this.noticeAkashi.clear();
+            // 現在時刻
+            this.now = new Date();
             try {
-                // 現在時刻
                 boolean visibleHome = false;
                 // 遠征を更新する
                 this.updateDeck();
@@ -469,6 +606,12 @@ public final class AsyncExecApplicationMain extends Thread {
                 Color backColor = SWTResourceManager.getColor(SWT.COLOR_WHITE);
 
                 DockDto dock = GlobalContext.getDock(String.valueOf(i + 1));
+                String deckKey = "deck" + i;
+                String condKey = "cond" + i;
+                String akashiKey = "akashi" + i;
+                boolean deckScheduled = false;
+                boolean condScheduled = false;
+                boolean akashiScheduled = false;
 
                 if (dock != null) {
                     String dockName = dock.getName();
@@ -488,6 +631,10 @@ public final class AsyncExecApplicationMain extends Thread {
 
                             // 通知生成
                             this.updateNoticeDeck(dispname, i - 1, rest);
+                            if (this.main.getDeckNotice().getSelection()) {
+                                this.schedule(deckKey, this.getDeckDeadline(mission.getTime()));
+                                deckScheduled = true;
+                            }
 
                             time = TimeLogic.toDateRestString(rest);
                             if (time == null) {
@@ -514,6 +661,10 @@ public final class AsyncExecApplicationMain extends Thread {
                         if (condClearTime != null) {
                             // 疲労回復通知生成
                             this.updateNoticeCond(dockName, i, condRest);
+                            if (this.main.getCondNotice().getSelection()) {
+                                this.schedule(condKey, whenRestReaches(condClearTime, 0));
+                                condScheduled = true;
+                            }
                         }
 
                         // 泊地修理タイマー更新
@@ -547,6 +698,19 @@ public final class AsyncExecApplicationMain extends Thread {
                             }
 
                             this.updateNoticeAkashi(dock, repairState);
+                            if (this.main.getAkashiNotice().getSelection()) {
+                                // 次にHPが回復する時刻
+                                long next = Long.MAX_VALUE;
+                                for (AkashiTimer.ShipState state : repairState.get()) {
+                                    if (state != null) {
+                                        next = Math.min(next, state.getNext());
+                                    }
+                                }
+                                if (next != Long.MAX_VALUE) {
+                                    this.schedule(akashiKey, this.now.getTime() + next);
+                                    akashiScheduled = true;
+                                }
+                            }
                         }
                         else if (!GlobalContext.isSortie(dock.getId()) && (condClearTime != null)) {
                             dispname = dockName + " (疲労回復中)";
@@ -565,6 +729,16 @@ public final class AsyncExecApplicationMain extends Thread {
                     }
                 }
 
+                if (!deckScheduled) {
+                    this.deadlines.cancel(deckKey);
+                }
+                if (!condScheduled) {
+                    this.deadlines.cancel(condKey);
+                }
+                if (!akashiScheduled) {
+                    this.deadlines.cancel(akashiKey);
+                }
+
                 deckNameLabels[i].setText(dispname);
                 deckNameLabels[i].setToolTipText(dispname);
                 deckTimeTexts[i].setText(time);
@@ -607,6 +781,8 @@ public final class AsyncExecApplicationMain extends Thread {
             for (int i = 0; i < ndocks.length; i++) {
                 String name = "";
                 String time = "";
+                String ndockKey = "ndock" + i;
+                boolean ndockScheduled = false;
 
                 if (ndocks[i].getNdockid() != 0) {
                     ShipDto ship = shipMap.get(ndocks[i].getNdockid());
@@ -622,6 +798,10 @@ public final class AsyncExecApplicationMain extends Thread {
 
                         // 通知生成
                         this.updateNdockNotice(name, i, rest);
+                        if (this.main.getNdockNotice().getSelection()) {
+                            this.schedule(ndockKey, whenRestReaches(ndocks[i].getNdocktime(), ONE_MINUTES));
+                            ndockScheduled = true;
+                        }
 
                         time = TimeLogic.toDateRestString(rest);
                         if (time == null) {
@@ -633,6 +813,9 @@ public final class AsyncExecApplicationMain extends Thread {
                     ndockTimeTexts[i].setBackground(SWTResourceManager.getColor(SWT.COLOR_WHITE));
                     ndockTimeTexts[i].setToolTipText(null);
                 }
+                if (!ndockScheduled) {
+                    this.deadlines.cancel(ndockKey);
+                }
                 ndockNameLabels[i].setText(name);
                 ndockTimeTexts[i].setText(time);
             }
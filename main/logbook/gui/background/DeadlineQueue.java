@@ -0,0 +1,97 @@
+package logbook.gui.background;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 遠征の帰投・入渠の完了・疲労回復・泊地修理の回復などの期限を、早い順に管理します<br>
+ * 期限はキーごとに1つで、同じキーで登録し直すと前の期限は置き換えられます<br>
+ * UIスレッドからのみ使用してください
+ */
+final class DeadlineQueue {
+
+    private static final class Deadline implements Comparable<Deadline> {
+        final String key;
+        final long time;
+
+        Deadline(String key, long time) {
+            this.key = key;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Deadline o) {
+            return Long.compare(this.time, o.time);
+        }
+    }
+
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>();
+
+    /** キー → 有効な期限(置き換えられた期限はキューに残るがここには無い) */
+    private final Map<String, Deadline> current = new HashMap<>();
+
+    /**
+     * 期限を登録します
+     *
+     * @param key キー
+     * @param time 期限(ミリ秒)
+     */
+    void schedule(String key, long time) {
+        Deadline old = this.current.get(key);
+        if ((old != null) && (old.time == time)) {
+            return;
+        }
+        Deadline deadline = new Deadline(key, time);
+        this.current.put(key, deadline);
+        this.queue.add(deadline);
+        if (this.queue.size() > (this.current.size() * 4)) {
+            // 置き換えられた期限を掃除する
+            this.queue.clear();
+            this.queue.addAll(this.current.values());
+        }
+    }
+
+    /**
+     * 期限を取り消します
+     *
+     * @param key キー
+     */
+    void cancel(String key) {
+        this.current.remove(key);
+    }
+
+    /**
+     * 期限を過ぎたものを取り除きます
+     *
+     * @param now 現在時刻(ミリ秒)
+     * @return 期限を過ぎたものがあった場合true
+     */
+    boolean pollDue(long now) {
+        boolean due = false;
+        while (!this.queue.isEmpty() && (this.queue.peek().time <= now)) {
+            Deadline deadline = this.queue.poll();
+            if (this.current.get(deadline.key) == deadline) {
+                this.current.remove(deadline.key);
+                due = true;
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 次の期限
+     *
+     * @return 次の期限(ミリ秒) 無い場合はLong.MAX_VALUE
+     */
+    long next() {
+        while (!this.queue.isEmpty()) {
+            Deadline deadline = this.queue.peek();
+            if (this.current.get(deadline.key) == deadline) {
+                return deadline.time;
+            }
+            this.queue.poll();
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,190 @@
+package logbook.gui.logic;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import logbook.dto.ShipDto;
+import logbook.dto.ShipFilterDto;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 艦娘のフィルタ({@link ShipFilterDto})を検索語・正規表現の準備まで済ませたもの<br>
+ * {@link ShipFilterIndex}のビットセットで艦隊所属・鍵・遠征・要修理・艦種・グループを絞り込んでから、
+ * 残った艦娘だけをテキストで検索します
+ */
+public final class CompiledShipFilter {
+
+    private final ShipFilterDto filter;
+
+    /** 検索ワード(テキストで絞り込まない場合はnull) */
+    private final String[] words;
+
+    /** 正規表現(正規表現で検索しない場合はnull) */
+    private final Pattern[] patterns;
+
+    /** 無効な正規表現が含まれている */
+    private final boolean invalid;
+
+    private CompiledShipFilter(ShipFilterDto filter) {
+        this.filter = filter;
+        String[] words = null;
+        Pattern[] patterns = null;
+        boolean invalid = false;
+        if (!StringUtils.isEmpty(filter.nametext)) {
+            words = StringUtils.split(filter.nametext, " ");
+            if (filter.regexp) {
+                patterns = new Pattern[words.length];
+                try {
+                    for (int i = 0; i < words.length; i++) {
+                        patterns[i] = Pattern.compile(words[i]);
+                    }
+                } catch (PatternSyntaxException e) {
+                    // 無効な正規表現は何にもマッチしない
+                    invalid = true;
+                }
+            }
+        }
+        this.words = words;
+        this.patterns = patterns;
+        this.invalid = invalid;
+    }
+
+    /**
+     * フィルタを準備します
+     *
+     * @param filter フィルター
+     * @return 準備したフィルター
+     */
+    public static CompiledShipFilter compile(ShipFilterDto filter) {
+        return new CompiledShipFilter(filter);
+    }
+
+    /**
+     * フィルタに合う艦娘を返します
+     *
+     * @param index インデックス
+     * @return 艦娘(艦娘Mapの順)
+     */
+    public List<ShipDto> apply(ShipFilterIndex index) {
+        List<ShipDto> result = new ArrayList<>();
+        if (this.invalid) {
+            return result;
+        }
+        BitSet candidates = this.candidates(index);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            ShipDto ship = index.ship(i);
+            if (this.matchText(ship)) {
+                result.add(ship);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ビットセットで絞り込む
+     */
+    private BitSet candidates(ShipFilterIndex index) {
+        ShipFilterDto filter = this.filter;
+        BitSet candidates = index.all();
+        // 艦隊に所属
+        if (!filter.onfleet) {
+            candidates.andNot(index.onFleet());
+        }
+        // 艦隊に非所属
+        if (!filter.notonfleet) {
+            candidates.and(index.onFleet());
+        }
+        // 鍵付き
+        if (!filter.locked) {
+            candidates.andNot(index.locked());
+        }
+        // 鍵付きではない
+        if (!filter.notlocked) {
+            candidates.and(index.locked());
+        }
+        // 遠征中
+        if (!filter.mission) {
+            candidates.andNot(index.mission());
+        }
+        // 遠征中ではない
+        if (!filter.notmission) {
+            candidates.and(index.mission());
+        }
+        // 要修理
+        if (!filter.needbath) {
+            candidates.andNot(index.needBath());
+        }
+        // 修理の必要なし
+        if (!filter.notneedbath) {
+            candidates.and(index.needBath());
+        }
+
+        if (filter.groupMode == 1) {
+            // 艦種でフィルタ
+            boolean[] enabledType = filter.enabledType;
+            if (enabledType != null) {
+                BitSet stypes = new BitSet();
+                for (Map.Entry<Integer, BitSet> entry : index.stypes().entrySet()) {
+                    int stype = entry.getKey();
+                    if ((enabledType.length <= stype) || enabledType[stype]) {
+                        stypes.or(entry.getValue());
+                    }
+                }
+                candidates.and(stypes);
+            }
+        }
+        else if (filter.groupMode == 0) {
+            // グループでフィルタ
+            if (filter.group != null) {
+                BitSet group = new BitSet();
+                for (Integer id : filter.group.getShips()) {
+                    Integer position = index.position(id);
+                    if (position != null) {
+                        group.set(position);
+                    }
+                }
+                candidates.and(group);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * テキストで検索する(検索ワードはすべて名前・艦種・装備名のいずれかにマッチする必要がある)
+     */
+    private boolean matchText(ShipDto ship) {
+        if (this.words == null) {
+            return true;
+        }
+        if (this.patterns != null) {
+            // 正規表現で検索
+            String[] text = ship.getSearchText();
+            for (Pattern pattern : this.patterns) {
+                boolean find = false;
+                for (int i = 0; !find && (i < text.length); i++) {
+                    find = (text[i] != null) && pattern.matcher(text[i]).find();
+                }
+                if (!find) {
+                    // どれにもマッチしない場合
+                    return false;
+                }
+            }
+        }
+        else {
+            // 部分一致で検索する
+            String key = ship.getSearchKey();
+            for (String word : this.words) {
+                if (key.indexOf(word) == -1) {
+                    // どれにもマッチしない場合
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -1,13 +1,10 @@
 package logbook.gui.logic;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -15,8 +12,6 @@ import java.text.DateFormat;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import logbook.internal.*;
 import org.apache.commons.io.FileUtils;
@@ -46,12 +41,10 @@ import logbook.dto.ShipFilterDto;
 import logbook.dto.UseItemDto;
 import logbook.internal.MasterData.MissionDto;
 import logbook.scripting.BattleLogProxy;
-import logbook.scripting.ItemInfoListener;
 import logbook.scripting.ItemInfoProxy;
 import logbook.scripting.MissionProxy;
 import logbook.scripting.QuestListener;
 import logbook.scripting.QuestProxy;
-import logbook.scripting.ShipItemListener;
 import logbook.scripting.ShipItemProxy;
 import logbook.util.ReportUtils;
 
@@ -64,6 +57,9 @@ public final class CreateReportLogic {
     /** ロガー */
     private static final LoggerHolder LOG = new LoggerHolder(CreateReportLogic.class);
 
+    /** 報告書を読み込む前に書き込みを待つ時間(ミリ秒) */
+    private static final long FLUSH_TIMEOUT = 3000;
+
     /**
      * ドロップ報告書のヘッダー
      *
@@ -347,12 +343,14 @@ public final class CreateReportLogic {
         });
 
         List<Comparable[]> body = new ArrayList<Comparable[]>();
-        ItemInfoListener script = ItemInfoProxy.get();
+        ItemInfoProxy script = ItemInfoProxy.get();
         script.begin();
-        for (ItemInfo itemInfo : countitems) {
+        ItemInfo[] rows = countitems.toArray(new ItemInfo[countitems.size()]);
+        Comparable[][] bodies = script.bodies(rows);
+        for (int i = 0; i < rows.length; i++) {
             body.add(ArrayUtils.addAll(new Comparable[] {
-                    new TableRowHeader(1, itemInfo) },
-                    script.body(itemInfo)));
+                    new TableRowHeader(1, rows[i]) },
+                    bodies[i]));
         }
         script.end();
         return body;
@@ -378,17 +376,19 @@ public final class CreateReportLogic {
      */
     public static List<Comparable[]> getShipListBody(int specdisp, ShipFilterDto filter) {
         //ApplicationMain.sysPrint("ShipListBody Start");
-        Set<Integer> missionSet = GlobalContext.getMissionShipSet();
         List<Comparable[]> body = new ArrayList<Comparable[]>();
-        ShipItemListener script = ShipItemProxy.get();
+        ShipItemProxy script = ShipItemProxy.get();
         script.begin(specdisp == 0, filter, specdisp);
-        for (ShipDto ship : GlobalContext.getShipMap().values()) {
-            if ((filter != null) && !shipFilter(ship, filter, missionSet)) {
-                continue;
-            }
+        Collection<ShipDto> ships = (filter != null)
+                ? CompiledShipFilter.compile(filter).apply(ShipFilterIndex.get())
+                : GlobalContext.getShipMap().values();
+        ShipDto[] rows = ships.toArray(new ShipDto[ships.size()]);
+        // スクリプトの呼び出しはまとめて行う
+        Comparable[][] bodies = script.bodies(rows);
+        for (int i = 0; i < rows.length; i++) {
             body.add(ArrayUtils.addAll(new Comparable[] {
-                    new TableRowHeader(1, ship)
-            }, script.body(ship)));
+                    new TableRowHeader(1, rows[i])
+            }, bodies[i]));
         }
         script.end();
         return body;
@@ -656,151 +656,6 @@ public final class CreateReportLogic {
         }
     }
 
-    /**
-     * 艦娘をフィルタします
-     *
-     * @param ship 艦娘
-     * @param filter フィルターオブジェクト
-     * @return フィルタ結果
-     */
-    private static boolean shipFilter(ShipDto ship, ShipFilterDto filter, Set<Integer> missionSet) {
-        // テキストでフィルタ
-        if (!StringUtils.isEmpty(filter.nametext)) {
-            // 検索ワード
-            String[] words = StringUtils.split(filter.nametext, " ");
-            // 検索対象
-            // 名前
-            String name = ship.getName();
-            // 艦種
-            String type = ship.getType();
-            // 装備
-            List<ItemDto> item = ship.getItem2();
-
-            // テキストが入力されている場合処理する
-            if (filter.regexp) {
-                // 正規表現で検索
-                for (int i = 0; i < words.length; i++) {
-                    Pattern pattern;
-                    try {
-                        pattern = Pattern.compile(words[i]);
-                    } catch (PatternSyntaxException e) {
-                        // 無効な正規表現はfalseを返す
-                        return false;
-                    }
-                    boolean find = false;
-
-                    // 名前で検索
-                    find = find ? find : pattern.matcher(name).find();
-                    // 艦種で検索
-                    find = find ? find : pattern.matcher(type).find();
-                    // 装備で検索
-                    for (ItemDto itemDto : item) {
-                        if ((itemDto == null) || (itemDto.getFriendlyName() == null)) {
-                            find = find ? find : false;
-                        }
-                        else {
-                            find = find ? find : pattern.matcher(itemDto.getFriendlyName()).find();
-                        }
-                    }
-
-                    if (!find) {
-                        // どれにもマッチしない場合
-                        return false;
-                    }
-                }
-            }
-            else {
-                // 部分一致で検索する
-                for (int i = 0; i < words.length; i++) {
-                    boolean find = false;
-
-                    // 名前で検索
-                    find = find ? find : name.indexOf(words[i]) != -1;
-                    // 艦種で検索
-                    find = find ? find : type.indexOf(words[i]) != -1;
-                    // 装備で検索
-                    for (ItemDto itemDto : item) {
-                        if ((itemDto == null) || (itemDto.getFriendlyName() == null)) {
-                            find = find ? find : false;
-                        }
-                        else {
-                            find = find ? find : itemDto.getFriendlyName().indexOf(words[i]) != -1;
-                        }
-                    }
-
-                    if (!find) {
-                        // どれにもマッチしない場合
-                        return false;
-                    }
-                }
-            }
-        }
-        // 艦隊に所属
-        if (!filter.onfleet) {
-            if (!StringUtils.isEmpty(ship.getFleetid())) {
-                return false;
-            }
-        }
-        // 艦隊に非所属
-        if (!filter.notonfleet) {
-            if (StringUtils.isEmpty(ship.getFleetid())) {
-                return false;
-            }
-        }
-        // 鍵付き
-        if (!filter.locked) {
-            if (ship.getLocked()) {
-                return false;
-            }
-        }
-        // 鍵付きではない
-        if (!filter.notlocked) {
-            if (!ship.getLocked()) {
-                return false;
-            }
-        }
-        if (!filter.mission || !filter.notmission) {
-            boolean isMission = missionSet.contains(ship.getId());
-            // 遠征中
-            if (!filter.mission && isMission) {
-                return false;
-            }
-            // 遠征中ではない
-            if (!filter.notmission && !isMission) {
-                return false;
-            }
-        }
-        if (!filter.needbath || !filter.notneedbath) {
-            boolean needBath = (ship.getDocktime() > 0) && !GlobalContext.isNdock(ship.getId());
-            // 要修理
-            if (!filter.needbath && needBath) {
-                return false;
-            }
-            // 修理の必要なし
-            if (!filter.notneedbath && !needBath) {
-                return false;
-            }
-        }
-
-        if (filter.groupMode == 1) {
-            // 艦種でフィルタ
-            if ((filter.enabledType != null) &&
-                    (filter.enabledType.length > ship.getStype()) &&
-                    (filter.enabledType[ship.getStype()] == false)) {
-                return false;
-            }
-        }
-        else if (filter.groupMode == 0) {
-            // グループでフィルタ
-            if (filter.group != null) {
-                if (!filter.group.getShips().contains(ship.getId())) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
     private static List<String[]> parseCSV(BufferedReader br) throws IOException {
         List<String[]> ret = new ArrayList<String[]>();
         br.readLine(); // skip header
@@ -828,12 +683,10 @@ public final class CreateReportLogic {
         try {
             List<BattleExDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_BATTLE_RESULT, AppConstants.LOG_BATTLE_RESULT_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
+            appendCsvStripFirstColumn(AppConstants.LOG_BATTLE_RESULT, AppConstants.LOG_BATTLE_RESULT_ALT,
                     CreateReportLogic.getBattleResultStoreHeader(),
-                    CreateReportLogic.getBattleResultStoreBody(dtoList), true);
-        } catch (IOException e) {
+                    CreateReportLogic.getBattleResultStoreBody(dtoList));
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
@@ -847,12 +700,10 @@ public final class CreateReportLogic {
         try {
             List<GetShipDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_CREATE_SHIP, AppConstants.LOG_CREATE_SHIP_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
+            appendCsvStripFirstColumn(AppConstants.LOG_CREATE_SHIP, AppConstants.LOG_CREATE_SHIP_ALT,
                     CreateReportLogic.getCreateShipHeader(),
-                    CreateReportLogic.getCreateShipBody(dtoList), true);
-        } catch (IOException e) {
+                    CreateReportLogic.getCreateShipBody(dtoList));
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
@@ -865,6 +716,8 @@ public final class CreateReportLogic {
     public static List<GetShipDto> loadCreateShipReport() {
         List<GetShipDto> dtoList = null;
         try {
+            // 書き込み待ちの報告書を書き込んでから読む
+            LogWriter.flush(FLUSH_TIMEOUT);
             File file = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), AppConstants.LOG_CREATE_SHIP));
             if (file.exists()) {
                 try (BufferedReader br = Files.newBufferedReader(file.toPath(), AppConstants.CHARSET)) {
@@ -886,12 +739,10 @@ public final class CreateReportLogic {
         try {
             List<CreateItemDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_CREATE_ITEM, AppConstants.LOG_CREATE_ITEM_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
+            appendCsvStripFirstColumn(AppConstants.LOG_CREATE_ITEM, AppConstants.LOG_CREATE_ITEM_ALT,
                     CreateReportLogic.getCreateItemHeader(),
-                    CreateReportLogic.getCreateItemBody(dtoList), true);
-        } catch (IOException e) {
+                    CreateReportLogic.getCreateItemBody(dtoList));
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
@@ -904,6 +755,8 @@ public final class CreateReportLogic {
     public static List<CreateItemDto> loadCreateItemReport() {
         List<CreateItemDto> dtoList = null;
         try {
+            // 書き込み待ちの報告書を書き込んでから読む
+            LogWriter.flush(FLUSH_TIMEOUT);
             File file = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), AppConstants.LOG_CREATE_ITEM));
             if (file.exists()) {
                 try (BufferedReader br = Files.newBufferedReader(file.toPath(), AppConstants.CHARSET)) {
@@ -925,12 +778,10 @@ public final class CreateReportLogic {
         try {
             List<MissionResultDto> dtoList = Collections.singletonList(dto);
 
-            File report = getStoreFile(AppConstants.LOG_MISSION, AppConstants.LOG_MISSION_ALT);
-
-            CreateReportLogic.writeCsvStripFirstColumn(report,
+            appendCsvStripFirstColumn(AppConstants.LOG_MISSION, AppConstants.LOG_MISSION_ALT,
                     CreateReportLogic.getMissionResultHeader(),
-                    CreateReportLogic.getMissionResultBody(dtoList), true);
-        } catch (IOException e) {
+                    CreateReportLogic.getMissionResultBody(dtoList));
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
@@ -943,6 +794,8 @@ public final class CreateReportLogic {
     public static List<MissionResultDto> loadMissionReport() {
         List<MissionResultDto> dtoList = null;
         try {
+            // 書き込み待ちの報告書を書き込んでから読む
+            LogWriter.flush(FLUSH_TIMEOUT);
             File file = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), AppConstants.LOG_MISSION));
             if (file.exists()) {
                 try (BufferedReader br = Files.newBufferedReader(file.toPath(), AppConstants.CHARSET)) {
@@ -963,13 +816,11 @@ public final class CreateReportLogic {
     public static void storeMaterialReport(MaterialDto material, BasicInfoDto basic) {
         try {
             if (material != null) {
-                File report = getStoreFile(AppConstants.LOG_RESOURCE, AppConstants.LOG_RESOURCE_ALT);
-
-                CreateReportLogic.writeCsvStripFirstColumn(report,
+                appendCsvStripFirstColumn(AppConstants.LOG_RESOURCE, AppConstants.LOG_RESOURCE_ALT,
                         CreateReportLogic.getMaterialHeader(),
-                        CreateReportLogic.getMaterialStoreBody(material, basic), true);
+                        CreateReportLogic.getMaterialStoreBody(material, basic));
             }
-        } catch (IOException e) {
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
@@ -982,73 +833,36 @@ public final class CreateReportLogic {
     public static void storeLostReport(List<LostEntityDto> dtoList) {
         try {
             if (dtoList != null) {
-                File report = getStoreFile("解体・廃棄ログ.csv", "解体・廃棄ログ_alternativefile.csv");
-
-                CreateReportLogic.writeCsvStripFirstColumn(report,
+                appendCsvStripFirstColumn("解体・廃棄ログ.csv", "解体・廃棄ログ_alternativefile.csv",
                         CreateReportLogic.getLostHeader(),
-                        CreateReportLogic.getLostStoreBody(dtoList), true);
+                        CreateReportLogic.getLostStoreBody(dtoList));
             }
-        } catch (IOException e) {
+        } catch (Exception e) {
             LOG.get().warn("報告書の保存に失敗しました", e);
         }
     }
 
     /**
-     * 書き込み先のファイルを返します
+     * 報告書に追記する(最初の列を取り除く)<br>
+     * 書き込みは{@link LogWriter}が行うので、ファイルのロック確認や代替ファイルのマージもそちらで行われます
      *
      * @param name ファイル名
      * @param altername 代替ファイル名
-     * @return File
-     * @throws IOException
+     * @param header ヘッダー
+     * @param body 内容
      */
-    private static File getStoreFile(String name, String altername) throws IOException {
-        // 報告書の保存先にファイルを保存します
+    private static void appendCsvStripFirstColumn(String name, String altername, String[] header,
+            List<Comparable[]> body) {
         File report = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), name));
-        File dir = report.getParentFile();
-        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
-            // 報告書の保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
-            report = new File(name);
-        }
-        if (ReportUtils.isLocked(report)) {
-            // ロックされている場合は代替ファイルに書き込みます
-            report = new File(FilenameUtils.concat(report.getParent(), altername));
-        }
-        else {
-            File alt_report = new File(FilenameUtils.concat(report.getParent(), altername));
-            if (alt_report.exists() && !ReportUtils.isLocked(alt_report) && (FileUtils.sizeOf(alt_report) > 0)) {
-                mergeAltFile(report, alt_report);
-            }
-        }
-        return report;
-    }
-
-    /**
-     * alternativeファイルを本体にマージして削除します
-     *
-     * @param report ファイル本体
-     * @param alt_report alternativeファイル
-     * @return
-     * @throws IOException
-     */
-    private static void mergeAltFile(File report, File alt_report) throws IOException {
-        // report が空ファイルの場合は、alt ファイルをリネームして終了
-        if (!report.exists() || (FileUtils.sizeOf(report) <= 0)) {
-            report.delete();
-            alt_report.renameTo(report);
-            return;
-        }
-        OutputStream report_stream = new BufferedOutputStream(new FileOutputStream(report, true));
-        InputStream alt_stream = new BufferedInputStream(new FileInputStream(alt_report));
-        try {
-            List<String> lines = IOUtils.readLines(alt_stream, AppConstants.CHARSET);
-            // タイトル行は削除
-            lines.remove(0);
-            IOUtils.writeLines(lines, "\r\n", report_stream, AppConstants.CHARSET);
-        } finally {
-            report_stream.close();
-            alt_stream.close();
-        }
-        alt_report.delete();
+        File altReport = new File(FilenameUtils.concat(AppConfig.get().getReportPath(), altername));
+        String headerLine = StringUtils.join(Arrays.copyOfRange(header, 1, header.length), '\t') + "\r\n";
+        StringBuilder sb = new StringBuilder();
+        for (Comparable[] colums : body) {
+            sb.append(StringUtils.join(ReportUtils.toStringArray(Arrays.copyOfRange(colums, 1, colums.length)), '\t'))
+                    .append("\r\n");
+        }
+        LogWriter.append(report, altReport, headerLine.getBytes(AppConstants.CHARSET),
+                sb.toString().getBytes(AppConstants.CHARSET), true, null);
     }
 
     private static SimpleDateFormat[] dateFormats = new SimpleDateFormat[] {
@@ -18,6 +18,22 @@ public class IntegerPair implements Comparable<IntegerPair> {
         this.format = format;
     }
 
+    /**
+     * 1つ目の値
+     * @return 1つ目の値
+     */
+    public int getNow() {
+        return this.now;
+    }
+
+    /**
+     * 2つ目の値
+     * @return 2つ目の値
+     */
+    public int getMax() {
+        return this.max;
+    }
+
     @Override
     public String toString() {
         return String.format(this.format, this.now, this.max);
@@ -1,32 +1,19 @@
 package logbook.gui.logic;
 
-import static javax.json.stream.JsonParser.Event.VALUE_STRING;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
-
-import javax.json.Json;
-import javax.json.stream.JsonParser;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import logbook.config.AppConfig;
 import logbook.constants.AppConstants;
 import logbook.internal.LoggerHolder;
+import logbook.internal.Uploader;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
+import org.eclipse.jetty.util.UrlEncoded;
 
 /**
  * Push通知
@@ -34,29 +21,57 @@ import org.xml.sax.InputSource;
  */
 public final class PushNotify {
 
-    /** 通知処理のキュー*/
-    private static Queue<String[]> notifyQueue = new ArrayBlockingQueue<String[]>(10);
-
     /** ロガー */
     private static final LoggerHolder LOG = new LoggerHolder(PushNotify.class);
 
+    /** 送信先の名前 */
+    private static final String PROWL = "prowl";
+    private static final String IMKAYAC = "imkayac";
+    private static final String PUSHOVER = "pushover";
+    private static final String LINE = "line";
+
+    /** これより古い通知は送らない(ミリ秒) */
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+
+    /** LINEで1回にまとめる通知の最大数 */
+    private static final int LINE_MAX_BATCH = 10;
+
     /**
-     * 通知メッセージを処理待ちキューに入れます
-     * 
-     * @param String メッセージ
-     * @param Sgring イベント名
-     * @param int    priority
+     * 送信先を登録します(前回送信できなかった通知があれば送信します)
      */
-    public static void add(String notifymsg, String eventname, int priority) {
-        notifyQueue.offer(new String[] { notifymsg, eventname, String.valueOf(priority) });
+    public static void startup() {
+        Uploader.Listener listener = new Uploader.Listener() {
+            @Override
+            public void sent(Uploader.Item item, String content) {
+            }
+
+            @Override
+            public void dropped(Uploader.Item item, String reason) {
+                LOG.get().warn(item.getLabel() + " による Push 通知に失敗しました。" + reason);
+            }
+        };
+        // APIキーなどは送信待ちに保存されないように、送信するときに設定から付ける
+        Uploader.register(new Uploader.Destination(PROWL, 1).maxAge(MAX_AGE).listener(listener)
+                .credentials(PushNotify::authorizeProwl));
+        Uploader.register(new Uploader.Destination(IMKAYAC, 1).maxAge(MAX_AGE).listener(listener)
+                .credentials(PushNotify::authorizeImKayac));
+        Uploader.register(new Uploader.Destination(PUSHOVER, 1).maxAge(MAX_AGE).listener(listener)
+                .credentials(PushNotify::authorizePushover));
+        // LINEは溜まった通知を1つのメッセージにまとめて送る
+        Uploader.register(new Uploader.Destination(LINE, 1).maxAge(MAX_AGE).listener(listener)
+                .batch(LINE_MAX_BATCH, PushNotify::mergeLINE)
+                .credentials(PushNotify::authorizeLINE));
     }
 
     /**
-     * 通知を実行します
-     * 
-     * @param String 通知メッセージ
+     * 通知メッセージを送信待ちにします
+     *
+     * @param String メッセージ
+     * @param Sgring イベント名
+     * @param int    priority
      */
-    public static void push(String[] msg) {
+    public static void add(String notifymsg, String eventname, int priority) {
+        String[] msg = new String[] { notifymsg, eventname, String.valueOf(priority) };
 
         if (AppConfig.get().getNotifyProwl()) {
             pushProwl(msg);
@@ -78,267 +93,159 @@ public final class PushNotify {
 
     /**
      * Prowlによる通知
-     * 
+     *
      * @param String 通知メッセージ
      */
     private static void pushProwl(String[] msg) {
 
         StringBuilder postdata = new StringBuilder();
-        String result = null;
 
-        addPOSTData(postdata, "apikey", AppConfig.get().getProwlAPIKey());
         addPOSTData(postdata, "application", AppConstants.PUSH_NOTIFY_APPNAME);
         addPOSTData(postdata, "description", msg[0]);
         addPOSTData(postdata, "event", msg[1]);
         addPOSTData(postdata, "priority", msg[2]);
 
-        try {
-            result = HttpPOSTRequest(AppConstants.PUSH_NOTIFY_PROWL_URI, postdata);
-
-            if (result != "") {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder db = factory.newDocumentBuilder();
-                InputSource inStream = new InputSource();
-                inStream.setCharacterStream(new StringReader(result));
-                Document doc = db.parse(inStream);
-                Element root = doc.getDocumentElement();
-                if (root.getTagName().equals("prowl")) {
-                    Node item = root.getFirstChild();
-                    String childName = item.getNodeName();
-                    if (!childName.equals("success")) {
-                        LOG.get().warn("Prowl による Push 通知に失敗しました。", result);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.get().warn("Prowl による Push 通知に失敗しました。", e);
-        }
-
+        Uploader.submit(PROWL, createItem(AppConstants.PUSH_NOTIFY_PROWL_URI, postdata).label("Prowl"));
     }
 
     /**
      * ImKayacによる通知
-     * 
+     *
      * @param String 通知メッセージ
      */
     private static void pushImKayac(String msg[]) {
 
         StringBuilder postdata = new StringBuilder();
-        String result = null;
-
-        try {
-            if (AppConfig.get().getImKayacPrivateKey() != "") {
-                MessageDigest md = MessageDigest.getInstance("SHA-1");
-                String sigstr = msg[0] + AppConfig.get().getImKayacPrivateKey();
-                StringBuffer buffer = new StringBuffer();
-                md.update(sigstr.getBytes("UTF-8"));
-                byte[] digest = md.digest();
-                for (int i = 0; i < digest.length; i++) {
-                    String tmpStr = Integer.toHexString(digest[i] & 0xff);
-                    if (tmpStr.length() == 1) {
-                        buffer.append('0').append(tmpStr);
-                    } else {
-                        buffer.append(tmpStr);
-                    }
-                }
-                String sig = buffer.toString();
-                addPOSTData(postdata, "sig", sig);
-                addPOSTData(postdata, "message", msg[0]);
-                result = HttpPOSTRequest(AppConstants.PUSH_NOTIFY_IMKAYAC_URI + AppConfig.get().getImKayacUserName(),
-                        postdata);
-            } else {
-                addPOSTData(postdata, "message", msg[0]);
-                addPOSTData(postdata, "password", AppConfig.get().getImKayacPasswd());
-                result = HttpPOSTRequest(AppConstants.PUSH_NOTIFY_IMKAYAC_URI + AppConfig.get().getImKayacUserName(),
-                        postdata);
-            }
-            JsonParser parser = Json.createParser(new StringReader(result));
-            boolean postflag = false;
-            while (parser.hasNext()) {
-                JsonParser.Event event = parser.next();
-                if (event == VALUE_STRING) {
-                    if (parser.getString() == "posted") {
-                        postflag = true;
-                    }
-                }
-            }
-            if (postflag = false) {
-                LOG.get().warn("ImKayac による Push 通知に失敗しました", result);
-            }
-        } catch (Exception e) {
-            LOG.get().warn("ImKayac による Push 通知に失敗しました", e);
-        }
 
+        addPOSTData(postdata, "message", msg[0]);
+        Uploader.submit(IMKAYAC, createItem(
+                AppConstants.PUSH_NOTIFY_IMKAYAC_URI + AppConfig.get().getImKayacUserName(), postdata)
+                .label("ImKayac"));
     }
 
     /**
      * Pushoverによる通知
-     * 
+     *
      * @param String 通知メッセージ
      */
     private static void pushPushover(String msg[]) {
 
         StringBuilder postdata = new StringBuilder();
-        String result = null;
 
-        try {
-                addPOSTData(postdata, "token", AppConfig.get().getPushoverApitoken());
-                addPOSTData(postdata, "user", AppConfig.get().getPushoverUserKey());
-                addPOSTData(postdata, "message", msg[0]);
-                addPOSTData(postdata, "title", msg[1]);
-                addPOSTData(postdata, "priority", msg[2]);
-                if (msg[2].equals("2")) {
-                        addPOSTData(postdata, "expire", "1800");
-                        addPOSTData(postdata, "retry", "300");
-                }
-
-                result = HttpPOSTRequest(AppConstants.PUSH_NOTIFY_PUSHOVER_URI ,
-                        postdata);
-            
-            JsonParser parser = Json.createParser(new StringReader(result));
-            boolean postflag = false;
-            while (parser.hasNext()) {
-                JsonParser.Event event = parser.next();
-                if (event == VALUE_STRING) {
-                    if (parser.getString() == "posted") {
-                        postflag = true;
-                    }
-                }
-            }
-            if (postflag = false) {
-                LOG.get().warn("Pushover による Push 通知に失敗しました", result);
-            }
-        } catch (Exception e) {
-            LOG.get().warn("Pushover による Push 通知に失敗しました", e);
+        addPOSTData(postdata, "message", msg[0]);
+        addPOSTData(postdata, "title", msg[1]);
+        addPOSTData(postdata, "priority", msg[2]);
+        if (msg[2].equals("2")) {
+            addPOSTData(postdata, "expire", "1800");
+            addPOSTData(postdata, "retry", "300");
         }
 
+        Uploader.submit(PUSHOVER, createItem(AppConstants.PUSH_NOTIFY_PUSHOVER_URI, postdata).label("Pushover"));
     }
 
     /**
      * LINE Notify APIによる通知
-     * 
+     *
      * @param String 通知メッセージ
      */
     private static void pushLINE(String msg[]) {
         StringBuilder postdata = new StringBuilder();
-        String result = null;
-        try {
-                String token = AppConfig.get().getLINEApitoken();
-                addPOSTData(postdata, "message", msg[1]+" "+msg[0]);
-                result = HttpPOSTRequestLINE(AppConstants.NOTIFY_LINE_URI ,
-                        postdata, token);
-            
-            JsonParser parser = Json.createParser(new StringReader(result));
-            boolean postflag = false;
-            while (parser.hasNext()) {
-                JsonParser.Event event = parser.next();
-                if (event == VALUE_STRING) {
-                    if (parser.getString() == "ok") {
-                        postflag = true;
-                    }
-                }
-            }
-            if (postflag = false) {
-                LOG.get().warn("LINE による 通知に失敗しました", result);
-            }
-        } catch (Exception e) {
-            LOG.get().warn("LINE による 通知に失敗しました", e);
+        addPOSTData(postdata, "message", msg[1] + " " + msg[0]);
+        Uploader.submit(LINE, createItem(AppConstants.NOTIFY_LINE_URI, postdata)
+                .label("LINE"));
+    }
+
+    /**
+     * 溜まったLINEの通知を改行でつないで1つにします
+     */
+    private static Uploader.Item mergeLINE(List<Uploader.Item> items) {
+        List<String> messages = new ArrayList<>();
+        for (Uploader.Item item : items) {
+            UrlEncoded fields = new UrlEncoded();
+            fields.decode(new String(item.getBody(), StandardCharsets.US_ASCII), StandardCharsets.UTF_8);
+            messages.add(fields.getString("message"));
         }
+        StringBuilder postdata = new StringBuilder();
+        addPOSTData(postdata, "message", String.join("\n", messages));
+        return items.get(items.size() - 1).withBody(postdata.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     /**
-     * HTTP POSTリクエストの送信
-     * 
-     * @param String URL
-     * @param StringBuilder POSTデータ
-     * 
+     * ProwlのAPIキーを付けます
      */
-    private static String HttpPOSTRequest(String posturi, StringBuilder postsb) {
-        HttpURLConnection connection = null;
-        URL url = null;
-        String postdata = postsb.toString();
-        try {
-            url = new URL(posturi);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setDoOutput(true);
-            connection.setRequestMethod("POST");
-            connection.setUseCaches(false);
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-
-            OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-            writer.write(postdata);
-            writer.flush();
-            writer.close();
-
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream()));
-
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                StringBuffer response = new StringBuffer();
-                String line = null;
-                while ((line = in.readLine()) != null) {
-                    response.append(line);
+    private static Uploader.Item authorizeProwl(Uploader.Item item) {
+        StringBuilder postdata = new StringBuilder();
+        addPOSTData(postdata, "apikey", AppConfig.get().getProwlAPIKey());
+        return prepend(item, postdata);
+    }
+
+    /**
+     * ImKayacの署名(秘密鍵を設定している場合)かパスワードを付けます
+     */
+    private static Uploader.Item authorizeImKayac(Uploader.Item item) throws Exception {
+        UrlEncoded fields = new UrlEncoded();
+        fields.decode(new String(item.getBody(), StandardCharsets.US_ASCII), StandardCharsets.UTF_8);
+        String message = fields.getString("message");
+        StringBuilder postdata = new StringBuilder();
+        if (!AppConfig.get().getImKayacPrivateKey().isEmpty()) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            String sigstr = message + AppConfig.get().getImKayacPrivateKey();
+            StringBuffer buffer = new StringBuffer();
+            md.update(sigstr.getBytes("UTF-8"));
+            byte[] digest = md.digest();
+            for (int i = 0; i < digest.length; i++) {
+                String tmpStr = Integer.toHexString(digest[i] & 0xff);
+                if (tmpStr.length() == 1) {
+                    buffer.append('0').append(tmpStr);
+                } else {
+                    buffer.append(tmpStr);
                 }
-                String resultStr = response.toString();
-                return resultStr;
-            } else {
-                LOG.get().warn("Push 通知に失敗しました。HTTPレスポンスコード:" + connection.getResponseCode());
-                return "";
             }
-        } catch (Exception e) {
-            LOG.get().warn("Push 通知に失敗しました", e);
-            return "";
+            addPOSTData(postdata, "sig", buffer.toString());
+            addPOSTData(postdata, "message", message);
+        } else {
+            addPOSTData(postdata, "message", message);
+            addPOSTData(postdata, "password", AppConfig.get().getImKayacPasswd());
         }
+        return item.withBody(postdata.toString().getBytes(StandardCharsets.US_ASCII));
+    }
 
+    /**
+     * PushoverのAPIトークンとユーザーキーを付けます
+     */
+    private static Uploader.Item authorizePushover(Uploader.Item item) {
+        StringBuilder postdata = new StringBuilder();
+        addPOSTData(postdata, "token", AppConfig.get().getPushoverApitoken());
+        addPOSTData(postdata, "user", AppConfig.get().getPushoverUserKey());
+        return prepend(item, postdata);
     }
 
     /**
-     * HTTP POSTリクエストの送信(for LINE Notify API)
-     * 
+     * LINE NotifyのアクセストークンをAuthorizationに付けます
+     */
+    private static Uploader.Item authorizeLINE(Uploader.Item item) {
+        return item.withBody(item.getBody())
+                .header("Authorization", "Bearer" + " " + AppConfig.get().getLINEApitoken());
+    }
+
+    /**
+     * POSTデータの前に項目を足した送信を作ります
+     */
+    private static Uploader.Item prepend(Uploader.Item item, StringBuilder postdata) {
+        postdata.append('&').append(new String(item.getBody(), StandardCharsets.US_ASCII));
+        return item.withBody(postdata.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * HTTP POSTリクエストの作成
+     *
      * @param String URL
      * @param StringBuilder POSTデータ
-     * 
+     *
      */
-    private static String HttpPOSTRequestLINE(String posturi, StringBuilder postsb, String token) {
-        HttpURLConnection connection = null;
-        URL url = null;
-        String Auth_data = "Bearer"+" "+token;
-        String postdata = postsb.toString();
-        try {
-            url = new URL(posturi);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setDoOutput(true);
-            connection.setRequestMethod("POST");
-            connection.setUseCaches(false);
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setRequestProperty("Authorization", Auth_data);
-
-
-            OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-            writer.write(postdata);
-            writer.flush();
-            writer.close();
-
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream()));
-
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                StringBuffer response = new StringBuffer();
-                String line = null;
-                while ((line = in.readLine()) != null) {
-                    response.append(line);
-                }
-                String resultStr = response.toString();
-                return resultStr;
-            } else {
-                LOG.get().warn("LINE 通知に失敗しました。HTTPレスポンスコード:" + connection.getResponseCode());
-                return "";
-            }
-        } catch (Exception e) {
-            LOG.get().warn("LINE 通知に失敗しました", e);
-            return "";
-        }
-
+    private static Uploader.Item createItem(String posturi, StringBuilder postsb) {
+        return new Uploader.Item("POST", posturi, "application/x-www-form-urlencoded",
+                postsb.toString().getBytes(StandardCharsets.US_ASCII));
     }
 
     /**
@@ -360,37 +267,4 @@ public final class PushNotify {
             LOG.get().warn("POSTデータの生成に失敗しました。", e);
         }
     }
-
-    /**
-     * Push通知用スレッド
-     * 
-     */
-    public static class PushNotifyThread extends Thread {
-
-        /** ロガー */
-        private static final LoggerHolder LOG = new LoggerHolder(PushNotifyThread.class);
-
-        /**
-         * 通知スレッド
-         */
-        public PushNotifyThread() {
-            this.setName("logbook_pushnotify.push_thread");
-        }
-
-        @Override
-        public void run() {
-            try {
-                while (true) {
-                    String msg[] = notifyQueue.poll();
-                    if (msg != null) {
-                        push(msg);
-                    }
-                    Thread.sleep(500);
-                }
-            } catch (Exception e) {
-                LOG.get().fatal("スレッドが異常終了しました", e);
-                throw new RuntimeException(e);
-            }
-        }
-    }
 }
@@ -0,0 +1,164 @@
+package logbook.gui.logic;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.EventListener;
+import logbook.data.context.GlobalContext;
+import logbook.dto.ShipDto;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 艦娘のフィルタ用のインデックス<br>
+ * 艦娘の並び順(艦娘Mapの順)を位置として、艦種・艦隊所属・鍵・遠征・要修理をビットセットで持ちます<br>
+ * 通信データを受け取ったら次に使われるときに作り直します<br>
+ * UIスレッドからのみ使用してください
+ */
+public final class ShipFilterIndex {
+
+    private static ShipFilterIndex current;
+
+    private static boolean dirty = true;
+
+    static {
+        GlobalContext.addEventListener(new EventListener() {
+            @Override
+            public void update(DataType type, Data data) {
+                dirty = true;
+            }
+        });
+    }
+
+    /** 艦娘(艦娘Mapの順) */
+    private final ShipDto[] ships;
+
+    /** 艦娘ID → 位置 */
+    private final Map<Integer, Integer> positions = new HashMap<>();
+
+    /** 艦種 → 艦娘 */
+    private final Map<Integer, BitSet> stypes = new HashMap<>();
+
+    /** 艦隊に所属 */
+    private final BitSet onFleet = new BitSet();
+
+    /** 鍵付き */
+    private final BitSet locked = new BitSet();
+
+    /** 遠征中 */
+    private final BitSet mission = new BitSet();
+
+    /** 要修理(入渠中を除く) */
+    private final BitSet needBath = new BitSet();
+
+    private ShipFilterIndex() {
+        List<ShipDto> list = new ArrayList<>(GlobalContext.getShipMap().values());
+        this.ships = list.toArray(new ShipDto[list.size()]);
+        Set<Integer> missionSet = GlobalContext.getMissionShipSet();
+        Set<Integer> ndockSet = GlobalContext.getNDockShipSet();
+        for (int i = 0; i < this.ships.length; i++) {
+            ShipDto ship = this.ships[i];
+            this.positions.put(ship.getId(), i);
+            BitSet stype = this.stypes.get(ship.getStype());
+            if (stype == null) {
+                stype = new BitSet(this.ships.length);
+                this.stypes.put(ship.getStype(), stype);
+            }
+            stype.set(i);
+            if (!StringUtils.isEmpty(ship.getFleetid())) {
+                this.onFleet.set(i);
+            }
+            if (ship.getLocked()) {
+                this.locked.set(i);
+            }
+            if (missionSet.contains(ship.getId())) {
+                this.mission.set(i);
+            }
+            if ((ship.getDocktime() > 0) && !ndockSet.contains(ship.getId())) {
+                this.needBath.set(i);
+            }
+        }
+    }
+
+    /**
+     * 現在のインデックスを取得します
+     *
+     * @return インデックス
+     */
+    public static ShipFilterIndex get() {
+        if (dirty || (current == null) || (current.ships.length != GlobalContext.getShipMap().size())) {
+            current = new ShipFilterIndex();
+            dirty = false;
+        }
+        return current;
+    }
+
+    /**
+     * すべての艦娘
+     * @return 艦娘の位置のビットセット(新しいインスタンス)
+     */
+    BitSet all() {
+        BitSet all = new BitSet(this.ships.length);
+        all.set(0, this.ships.length);
+        return all;
+    }
+
+    /**
+     * 艦娘
+     * @param position 位置
+     * @return 艦娘
+     */
+    ShipDto ship(int position) {
+        return this.ships[position];
+    }
+
+    /**
+     * 艦娘の位置
+     * @param id 艦娘ID
+     * @return 位置 いない場合はnull
+     */
+    Integer position(int id) {
+        return this.positions.get(id);
+    }
+
+    /**
+     * @return 艦種 → 艦娘
+     */
+    Map<Integer, BitSet> stypes() {
+        return this.stypes;
+    }
+
+    /**
+     * @return 艦隊に所属
+     */
+    BitSet onFleet() {
+        return this.onFleet;
+    }
+
+    /**
+     * @return 鍵付き
+     */
+    BitSet locked() {
+        return this.locked;
+    }
+
+    /**
+     * @return 遠征中
+     */
+    BitSet mission() {
+        return this.mission;
+    }
+
+    /**
+     * @return 要修理(入渠中を除く)
+     */
+    BitSet needBath() {
+        return this.needBath;
+    }
+}
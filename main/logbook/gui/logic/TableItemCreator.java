@@ -8,13 +8,16 @@ import org.eclipse.swt.widgets.TableItem;
  */
 public interface TableItemCreator {
     /**
-     * テーブルリロード時に行作成前に呼び出されます。
+     * テーブルリロード時に行作成前に呼び出されます。<br>
+     * 仮想テーブルでは表示される行をまとめて作成するたびに呼び出されるので、1回のリロードで複数回呼び出されることがあります
      * @param header テーブルのヘッダ
      */
     void begin(String[] header);
 
     /**
-     * 行作成時に呼び出されます
+     * 行作成時に呼び出されます<br>
+     * 仮想テーブルでは行が表示されるときに{@link #begin(String[])}～{@link #end()}の間で呼び出されます<br>
+     * その場合tableは作成した行の内容を写すための表示しないテーブルです
      * @param table テーブル
      * @param data 該当行の項目データ
      * @param index 行番号（上から0始まり）
@@ -23,7 +26,8 @@ public interface TableItemCreator {
     TableItem create(Table table, Comparable[] data, int index);
 
     /**
-     * テーブルリロード時に行作成が終了したときに呼び出されます。
+     * テーブルリロード時に行作成が終了したときに呼び出されます。<br>
+     * 仮想テーブルでは{@link #begin(String[])}で始めた行作成が終わるたびに呼び出されます
      */
     void end();
 }
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import logbook.data.context.ShipChangeSet;
 import logbook.dto.DockDto;
 import logbook.dto.ShipDto;
 
@@ -129,6 +130,27 @@ public class AkashiTimer {
         this.stateMap.clear();
     }
 
+    /**
+     * 母港での艦娘情報の変化を反映
+     * @param changes 艦娘情報の差分
+     * @param repairEnabled 泊地修理編成があるか
+     */
+    public void onPort(ShipChangeSet changes, boolean repairEnabled) {
+        if (!changes.getHpChanged().isEmpty()) {
+            // 実際に回復があったのでリセット
+            this.reset();
+        }
+        else if ((this.startTime != null) && (repairEnabled == false)) {
+            // 泊地修理していなくてもカウンタは回っているが、泊地修理編成でない場合回復がないので
+            // 20分経過していたらリセットしておく
+            // サーバ側で20分経過したかどうかは正確には分からないが知る術がない
+            long elapsed = new Date().getTime() - this.startTime.getTime();
+            if (elapsed > MINIMUM_TIME) {
+                this.reset();
+            }
+        }
+    }
+
     public Date getStartTime() {
         return this.startTime;
     }
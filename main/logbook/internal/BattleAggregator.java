@@ -0,0 +1,132 @@
+package logbook.internal;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import logbook.constants.AppConstants;
+import logbook.dto.BattleAggDetailsDto;
+import logbook.dto.BattleAggUnitDto;
+import logbook.dto.BattleResultDto;
+import logbook.dto.MapCellDto;
+
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * 出撃統計の日ごとの集計<br>
+ * 任務の更新タイミング(05:00)で区切った日ごと・海域ごとに集計しておき、
+ * デイリー・ウィークリーなどの集計はその日の範囲を合計するだけで作ります<br>
+ * 出撃ログが追加されるたびに{@link #add(BattleResultDto)}で更新します
+ */
+public final class BattleAggregator {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** 日 → 海域ID → 集計 */
+    private final NavigableMap<Integer, Map<Integer, BattleAggDetailsDto>> days = new TreeMap<>();
+
+    /**
+     * 全て削除します
+     */
+    void clear() {
+        this.days.clear();
+    }
+
+    /**
+     * 出撃ログを集計に加えます(演習は除く)
+     *
+     * @param dto 出撃ログ
+     */
+    void add(BattleResultDto dto) {
+        MapCellDto mapCell = dto.getMapCell();
+        if ((mapCell == null) || (dto.getRank() == null)) {
+            return;
+        }
+        int day = toDay(dto.getBattleDate().getTime());
+        Map<Integer, BattleAggDetailsDto> areas = this.days.get(day);
+        if (areas == null) {
+            areas = new TreeMap<>();
+            this.days.put(day, areas);
+        }
+        BattleAggDetailsDto details = areas.get(mapCell.getAreaId());
+        if (details == null) {
+            details = new BattleAggDetailsDto(mapCell.getAreaString());
+            areas.put(mapCell.getAreaId(), details);
+        }
+        details.add(dto.getRank(), mapCell.isStart(), mapCell.isBoss());
+    }
+
+    /**
+     * 任意の期間の集計
+     *
+     * @param from 開始日時(この日時を含む日から)
+     * @param to 終了日時(この日時を含む日まで)
+     * @return 集計結果(出撃がない場合はnull)
+     */
+    public BattleAggUnitDto aggregate(Date from, Date to) {
+        return this.aggregateDays(toDay(from.getTime()), toDay(to.getTime()));
+    }
+
+    /**
+     * デイリー・ウィークリー・マンスリー・先週・先月の集計
+     *
+     * @return 集計結果(出撃がない単位は含まない)
+     */
+    public Map<BattleAggUnit, BattleAggUnitDto> aggregateUnits() {
+        Calendar today = BattleAggDate.TODAY.get();
+        Calendar thisWeek = (Calendar) today.clone();
+        thisWeek.set(Calendar.DAY_OF_WEEK, thisWeek.getFirstDayOfWeek());
+        if (thisWeek.after(today)) {
+            thisWeek.add(Calendar.WEEK_OF_YEAR, -1);
+        }
+        Calendar thisMonth = DateUtils.truncate(today, Calendar.MONTH);
+        Calendar lastMonth = BattleAggDate.LAST_MONTH.get();
+
+        int todayDay = toDay(today.getTimeInMillis());
+        int weekDay = toDay(thisWeek.getTimeInMillis());
+        int monthDay = toDay(thisMonth.getTimeInMillis());
+
+        Map<BattleAggUnit, BattleAggUnitDto> aggMap = new EnumMap<>(BattleAggUnit.class);
+        put(aggMap, BattleAggUnit.DAILY, this.aggregateDays(todayDay, Integer.MAX_VALUE));
+        put(aggMap, BattleAggUnit.WEEKLY, this.aggregateDays(weekDay, Integer.MAX_VALUE));
+        put(aggMap, BattleAggUnit.MONTHLY, this.aggregateDays(monthDay, Integer.MAX_VALUE));
+        put(aggMap, BattleAggUnit.LAST_WEEK, this.aggregateDays(weekDay - 7, weekDay - 1));
+        put(aggMap, BattleAggUnit.LAST_MONTH,
+                this.aggregateDays(toDay(lastMonth.getTimeInMillis()), monthDay - 1));
+        return aggMap;
+    }
+
+    private BattleAggUnitDto aggregateDays(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return null;
+        }
+        BattleAggUnitDto result = null;
+        for (Map<Integer, BattleAggDetailsDto> areas : this.days.subMap(fromDay, true, toDay, true).values()) {
+            for (Map.Entry<Integer, BattleAggDetailsDto> entry : areas.entrySet()) {
+                if (result == null) {
+                    result = new BattleAggUnitDto();
+                }
+                result.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static void put(Map<BattleAggUnit, BattleAggUnitDto> aggMap, BattleAggUnit unit, BattleAggUnitDto dto) {
+        if (dto != null) {
+            aggMap.put(unit, dto);
+        }
+    }
+
+    /**
+     * 任務の更新タイミングで区切った日の番号
+     */
+    private static int toDay(long time) {
+        long local = time + AppConstants.TIME_ZONE_MISSION.getOffset(time);
+        return (int) Math.floorDiv(local, DAY_MILLIS);
+    }
+}
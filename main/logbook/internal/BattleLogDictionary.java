@@ -0,0 +1,474 @@
+package logbook.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.ItemInfoDto;
+import logbook.dto.ShipInfoDto;
+
+import com.dyuproject.protostuff.CustomSchema;
+import com.dyuproject.protostuff.FilterInput;
+import com.dyuproject.protostuff.Input;
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.Output;
+import com.dyuproject.protostuff.ProtostuffIOUtil;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * 出撃ログのマスター情報(艦・装備)の辞書<br>
+ * 出撃ログのレコードには艦・装備のマスター情報をIDとキー(内容のハッシュ)だけで書き、
+ * 内容は出撃ログのフォルダの辞書ファイルに1回だけ書きます<br>
+ * 読み込むときはキーから辞書のインスタンスに置き換えるので、同じマスター情報は全ての戦闘で共有されます<br>
+ * マスター情報を全部書いた旧形式のレコードもそのまま読め、読み込んだマスター情報は同じように共有されます<br>
+ * <br>
+ * 辞書ファイル形式: ヘッダ(MAGIC, VERSION), エントリ(種類, キー, 長さ, protostuff形式のマスター情報), ...
+ */
+public final class BattleLogDictionary {
+    /** ロガー */
+    private static final LoggerHolder LOG = new LoggerHolder(BattleLogDictionary.class);
+
+    /** 辞書ファイル名 */
+    public static final String FILE_NAME = "battlelog-master.dic";
+
+    private static final int MAGIC = 0x4C42444D;
+
+    /** 辞書ファイルの形式のバージョン */
+    private static final int VERSION = 1;
+
+    /** 参照を表すフィールド番号(ShipInfoDto・ItemInfoDtoのフィールドと重ならないこと) */
+    private static final int REF_FIELD = 127;
+
+    /** IDのフィールド番号(ShipInfoDto・ItemInfoDtoとも1) 辞書がなくても現在のマスターから復元できるように書く */
+    private static final int ID_FIELD = 1;
+
+    private static final byte KIND_SHIP = 1;
+    private static final byte KIND_ITEM = 2;
+
+    /** 書き込み用のキャッシュの上限 */
+    private static final int MAX_KEY_CACHE = 8192;
+
+    /** マスター情報を全部書くスキーマ */
+    private static final Schema<ShipInfoDto> SHIP_SCHEMA = RuntimeSchema.createFrom(ShipInfoDto.class);
+    private static final Schema<ItemInfoDto> ITEM_SCHEMA = RuntimeSchema.createFrom(ItemInfoDto.class);
+
+    private static boolean registered = false;
+
+    /** 読み書き中の辞書 */
+    private static final ThreadLocal<BattleLogDictionary> ACTIVE = new ThreadLocal<>();
+
+    /** 読み込み中のレコードで参照から復元したインスタンス → 辞書のインスタンス */
+    private static final ThreadLocal<IdentityHashMap<Object, Object>> RESOLVED =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
+    /** キーの計算用 */
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(4096));
+
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * ShipInfoDto・ItemInfoDtoのスキーマを登録します<br>
+     * これらを含むクラスのスキーマを作る前に呼ぶこと
+     */
+    public static synchronized void registerSchemas() {
+        if (!registered) {
+            registered = true;
+            if (!RuntimeSchema.register(ShipInfoDto.class, new DefinitionSchema<>(SHIP_SCHEMA, KIND_SHIP))
+                    | !RuntimeSchema.register(ItemInfoDto.class, new DefinitionSchema<>(ITEM_SCHEMA, KIND_ITEM))) {
+                LOG.get().warn("出撃ログのマスター情報のスキーマを登録できませんでした");
+            }
+        }
+    }
+
+    /** 辞書ファイル(nullの場合はメモリ上の共有だけ行う) */
+    private final File file;
+
+    /** キー → 艦 */
+    private final ConcurrentMap<Long, ShipInfoDto> ships = new ConcurrentHashMap<>();
+
+    /** キー → 艦(2017/04/05以前の敵艦IDで読み込んだもの) */
+    private final ConcurrentMap<Long, ShipInfoDto> oldEnemyShips = new ConcurrentHashMap<>();
+
+    /** キー → 装備 */
+    private final ConcurrentMap<Long, ItemInfoDto> items = new ConcurrentHashMap<>();
+
+    /** 辞書ファイルに書いてあるキー */
+    private final Set<Long> stored = new HashSet<>();
+
+    /** 書き込み用 マスター情報のインスタンス → キー */
+    private final Map<Object, Long> keyCache = new IdentityHashMap<>();
+
+    /**
+     * 辞書ファイルを読み込みます
+     *
+     * @param file 辞書ファイル(nullの場合は辞書ファイルを使わない)
+     */
+    public BattleLogDictionary(File file) {
+        this.file = file;
+        if ((file != null) && file.exists()) {
+            this.load();
+        }
+    }
+
+    /**
+     * 出撃ログのフォルダの辞書
+     *
+     * @param dir 出撃ログのフォルダ
+     * @return 辞書
+     */
+    public static BattleLogDictionary forDirectory(File dir) {
+        return new BattleLogDictionary(new File(dir, FILE_NAME));
+    }
+
+    /**
+     * マスター情報を辞書の参照にしてレコードを書き込みます
+     *
+     * @param out 出力先
+     * @param battle 戦闘
+     * @param schema スキーマ
+     * @param buffer バッファ
+     */
+    public void writeDelimitedTo(OutputStream out, BattleExDto battle, Schema<BattleExDto> schema,
+            LinkedBuffer buffer) throws IOException {
+        ACTIVE.set(this);
+        try {
+            ProtostuffIOUtil.writeDelimitedTo(out, battle, schema, buffer);
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    /**
+     * レコードを読み込みます<br>
+     * 読み込んだ後(readFromJsonの後)に {@link #intern(BattleExDto)} を呼ぶこと
+     *
+     * @param in 入力
+     * @param battle 戦闘
+     * @param schema スキーマ
+     * @param buffer バッファ
+     */
+    public void mergeDelimitedFrom(InputStream in, BattleExDto battle, Schema<BattleExDto> schema,
+            LinkedBuffer buffer) throws IOException {
+        RESOLVED.get().clear();
+        ACTIVE.set(this);
+        try {
+            ProtostuffIOUtil.mergeDelimitedFrom(in, battle, schema, buffer);
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    /**
+     * 読み込んだ戦闘のマスター情報を共有のインスタンスに置き換えます
+     *
+     * @param battle 戦闘
+     */
+    public void intern(BattleExDto battle) {
+        final IdentityHashMap<Object, Object> resolved = RESOLVED.get();
+        try {
+            battle.internMaster(info -> {
+                if (info == null) {
+                    return null;
+                }
+                Object canonical = resolved.get(info);
+                if (canonical != null) {
+                    return (ShipInfoDto) canonical;
+                }
+                return this.internShip(info);
+            }, info -> {
+                if (info == null) {
+                    return null;
+                }
+                Object canonical = resolved.get(info);
+                if (canonical != null) {
+                    return (ItemInfoDto) canonical;
+                }
+                return this.internItem(info);
+            });
+        } finally {
+            resolved.clear();
+        }
+    }
+
+    /**
+     * @return 辞書のマスター情報の数
+     */
+    public int size() {
+        return this.ships.size() + this.items.size();
+    }
+
+    private ShipInfoDto internShip(ShipInfoDto info) {
+        // 2017/04/05以前の敵艦IDのエミュレーションは読み込み後に設定されるので別に共有する
+        ConcurrentMap<Long, ShipInfoDto> map = info.isBefore20170405() ? this.oldEnemyShips : this.ships;
+        ShipInfoDto canonical = map.putIfAbsent(keyOf(KIND_SHIP, serialize(info, SHIP_SCHEMA)), info);
+        return (canonical != null) ? canonical : info;
+    }
+
+    private ItemInfoDto internItem(ItemInfoDto info) {
+        ItemInfoDto canonical = this.items.putIfAbsent(keyOf(KIND_ITEM, serialize(info, ITEM_SCHEMA)), info);
+        return (canonical != null) ? canonical : info;
+    }
+
+    /**
+     * 書き込むマスター情報のキーを返します(辞書ファイルになければ追記します)
+     *
+     * @return キー(辞書ファイルに書けない場合はnull)
+     */
+    private synchronized Long keyForWrite(Object message, byte kind) {
+        if (this.file == null) {
+            return null;
+        }
+        Long key = this.keyCache.get(message);
+        if (key != null) {
+            return key;
+        }
+        byte[] bytes = (kind == KIND_SHIP)
+                ? serialize((ShipInfoDto) message, SHIP_SCHEMA)
+                : serialize((ItemInfoDto) message, ITEM_SCHEMA);
+        key = keyOf(kind, bytes);
+        if (!this.stored.contains(key)) {
+            try {
+                this.append(kind, key, bytes);
+            } catch (IOException e) {
+                LOG.get().warn("出撃ログの辞書ファイルに書き込めませんでした", e);
+                return null;
+            }
+            this.stored.add(key);
+            if (kind == KIND_SHIP) {
+                this.ships.putIfAbsent(key, (ShipInfoDto) message);
+            }
+            else {
+                this.items.putIfAbsent(key, (ItemInfoDto) message);
+            }
+        }
+        if (this.keyCache.size() >= MAX_KEY_CACHE) {
+            this.keyCache.clear();
+        }
+        this.keyCache.put(message, key);
+        return key;
+    }
+
+    private Object lookup(byte kind, long key) {
+        return (kind == KIND_SHIP) ? this.ships.get(key) : this.items.get(key);
+    }
+
+    private void append(byte kind, long key, byte[] bytes) throws IOException {
+        File dir = this.file.getParentFile();
+        if ((dir != null) && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException(dir + "を作成できません");
+        }
+        boolean header = !this.file.exists() || (this.file.length() == 0);
+        // 途中で失敗しても壊れたエントリが残りにくいように1回で書き込む
+        ByteArrayOutputStream entry = new ByteArrayOutputStream(bytes.length + 21);
+        try (DataOutputStream out = new DataOutputStream(entry)) {
+            if (header) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.writeByte(kind);
+            out.writeLong(key);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+            entry.writeTo(out);
+        }
+    }
+
+    private void load() {
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                LOG.get().warn("出撃ログの辞書ファイルの形式が違います: " + this.file);
+                return;
+            }
+            good = 8;
+            while (true) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                long key = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if (kind == KIND_SHIP) {
+                    ShipInfoDto info = SHIP_SCHEMA.newMessage();
+                    ProtostuffIOUtil.mergeFrom(bytes, info, SHIP_SCHEMA);
+                    this.ships.put(key, info);
+                }
+                else if (kind == KIND_ITEM) {
+                    ItemInfoDto info = ITEM_SCHEMA.newMessage();
+                    ProtostuffIOUtil.mergeFrom(bytes, info, ITEM_SCHEMA);
+                    this.items.put(key, info);
+                }
+                this.stored.add(key);
+                good += 1 + 8 + 4 + bytes.length;
+            }
+            return;
+        } catch (EOFException e) {
+            // 書き込み途中で終了した
+        } catch (IOException | RuntimeException e) {
+            LOG.get().warn("出撃ログの辞書ファイルの読み込みに失敗しました", e);
+        }
+        // 壊れた末尾を切り詰めて、続きに追記できるようにする
+        if (good > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+                raf.setLength(good);
+            } catch (IOException e) {
+                LOG.get().warn("出撃ログの辞書ファイルを修復できませんでした", e);
+            }
+        }
+    }
+
+    private static <T> byte[] serialize(T message, Schema<T> schema) {
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            return ProtostuffIOUtil.toByteArray(message, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /** FNV-1a (64bit) */
+    private static long keyOf(byte kind, byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ kind) * 0x100000001b3L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** 辞書のインスタンスの内容をコピーします(置き換えられなかった場合でも正しい内容になるように) */
+    private static void copyFields(Object from, Object to) {
+        try {
+            for (Field field : FIELDS.computeIfAbsent(from.getClass(), BattleLogDictionary::instanceFields)) {
+                field.set(to, field.get(from));
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Field[] instanceFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    /**
+     * 書き込み中は辞書の参照を書き、読み込み時は参照・旧形式の両方を読むスキーマ
+     */
+    private static final class DefinitionSchema<T> extends CustomSchema<T> {
+        private final byte kind;
+
+        DefinitionSchema(Schema<T> schema, byte kind) {
+            super(schema);
+            this.kind = kind;
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException {
+            BattleLogDictionary dictionary = ACTIVE.get();
+            // 2017/04/05以前のエミュレーション中のものは辞書に入れない
+            if ((dictionary != null) && !((message instanceof ShipInfoDto) && ((ShipInfoDto) message).isBefore20170405())) {
+                Long key = dictionary.keyForWrite(message, this.kind);
+                if (key != null) {
+                    output.writeFixed64(REF_FIELD, key, false);
+                    output.writeInt32(ID_FIELD, idOf(message), false);
+                    return;
+                }
+            }
+            super.writeTo(output, message);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException {
+            int number = input.readFieldNumber(this);
+            if (number == REF_FIELD) {
+                long key = input.readFixed64();
+                super.mergeFrom(input, message);
+                this.resolve(key, message);
+            }
+            else if (number != 0) {
+                // 旧形式(マスター情報を全部書いたもの)
+                super.mergeFrom(new PushbackInput(input, number), message);
+            }
+        }
+
+        private void resolve(long key, T message) {
+            BattleLogDictionary dictionary = ACTIVE.get();
+            Object canonical = (dictionary != null) ? dictionary.lookup(this.kind, key) : null;
+            if (canonical == null) {
+                // 辞書がない場合は現在のマスターで代用する
+                if (message instanceof ShipInfoDto) {
+                    ShipInfoDto master = Ship.get(((ShipInfoDto) message).getShipId());
+                    canonical = (master != ShipInfoDto.EMPTY) ? master : null;
+                }
+                else {
+                    canonical = Item.get(((ItemInfoDto) message).getId());
+                }
+            }
+            if (canonical != null) {
+                copyFields(canonical, message);
+                RESOLVED.get().put(message, canonical);
+            }
+        }
+
+        private static int idOf(Object message) {
+            return (message instanceof ShipInfoDto)
+                    ? ((ShipInfoDto) message).getShipId()
+                    : ((ItemInfoDto) message).getId();
+        }
+    }
+
+    /**
+     * 先に読んでしまったフィールド番号を1つ戻すInput
+     */
+    private static final class PushbackInput extends FilterInput<Input> {
+        private int pushback;
+
+        PushbackInput(Input input, int pushback) {
+            super(input);
+            this.pushback = pushback;
+        }
+
+        @Override
+        public <T> int readFieldNumber(Schema<T> schema) throws IOException {
+            if (this.pushback != 0) {
+                int number = this.pushback;
+                this.pushback = 0;
+                return number;
+            }
+            return this.input.readFieldNumber(schema);
+        }
+    }
+}
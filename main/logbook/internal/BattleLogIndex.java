@@ -0,0 +1,326 @@
+package logbook.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import logbook.dto.BattleResultDto;
+import logbook.dto.MapCellDto;
+import logbook.dto.ResultRank;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.ProtostuffIOUtil;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.Tag;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * 出撃ログファイルごとのインデックス<br>
+ * 出撃ログ一覧に必要な情報(日付・マップ・ランク・ドロップ・スクリプトの拡張カラム)と、
+ * 出撃ログファイル内のレコードの位置を保持します<br>
+ * 起動時はこれだけを読み込み、戦闘の詳細は必要になったときにレコードの位置から読み込みます<br>
+ * <br>
+ * ファイル形式: ヘッダ, エントリ, エントリ, ... (それぞれprotostuffのdelimited形式)<br>
+ * エントリは出撃ログファイルのレコードと同じ順序で並び、戦闘が追加されると末尾に追記されます
+ */
+final class BattleLogIndex {
+    /** ロガー */
+    private static final LoggerHolder LOG = new LoggerHolder(BattleLogIndex.class);
+
+    /** インデックスの形式のバージョン(形式を変えたら上げること) */
+    private static final int VERSION = 1;
+
+    /** インデックスファイルの拡張子 */
+    static final String EXTENSION = "idx";
+
+    private static final Schema<Header> HEADER_SCHEMA = RuntimeSchema.getSchema(Header.class);
+
+    private static final Schema<Entry> ENTRY_SCHEMA = RuntimeSchema.getSchema(Entry.class);
+
+    /**
+     * インデックスのヘッダ
+     */
+    static class Header {
+        /** 形式のバージョン */
+        @Tag(1)
+        int version;
+        /** 拡張カラムを作ったスクリプトの構成 */
+        @Tag(2)
+        String scriptSignature;
+    }
+
+    /**
+     * 出撃ログファイルのレコード1つ分
+     */
+    static class Entry {
+        /** レコードの開始位置 */
+        @Tag(1)
+        long offset;
+        /** レコードの終了位置 */
+        @Tag(2)
+        long end;
+        /** このレコードを書き込んだ後の出撃ログファイルの更新日時 */
+        @Tag(3)
+        long dataLastModified;
+        /** 読み込みに失敗したレコード */
+        @Tag(4)
+        boolean failed;
+        /** 完全な戦闘結果か(falseの場合は一覧に表示しない) */
+        @Tag(5)
+        boolean complete;
+        @Tag(6)
+        Date battleDate;
+        @Tag(7)
+        String questName;
+        @Tag(8)
+        ResultRank rank;
+        @Tag(9)
+        MapCellDto mapCell;
+        @Tag(10)
+        String enemyName;
+        @Tag(11)
+        boolean dropShip;
+        @Tag(12)
+        boolean dropItem;
+        @Tag(13)
+        String dropType;
+        @Tag(14)
+        String dropName;
+        @Tag(15)
+        String dropItemName;
+        @Tag(16)
+        boolean noSpaceForShip;
+        /** 拡張カラム(型を表す1文字+値の文字列) */
+        @Tag(17)
+        List<String> extData;
+
+        /**
+         * 読み込みに失敗したレコードのエントリ
+         */
+        static Entry failed(long offset, long end) {
+            Entry entry = new Entry();
+            entry.offset = offset;
+            entry.end = end;
+            entry.failed = true;
+            return entry;
+        }
+
+        /**
+         * 戦闘結果のエントリ
+         */
+        static Entry of(BattleResultDto dto, boolean complete, long offset, long end) {
+            Entry entry = new Entry();
+            entry.offset = offset;
+            entry.end = end;
+            entry.complete = complete;
+            entry.battleDate = dto.getBattleDate();
+            entry.questName = dto.getQuestName();
+            entry.rank = dto.getRank();
+            entry.mapCell = dto.getMapCell();
+            entry.enemyName = dto.getEnemyName();
+            entry.dropShip = dto.isDropShip();
+            entry.dropItem = dto.isDropItem();
+            entry.dropType = dto.getDropType();
+            entry.dropName = dto.getDropName();
+            entry.dropItemName = dto.getDropItemName();
+            entry.noSpaceForShip = dto.isNoSpaceForShip();
+            entry.extData = encodeExtData(dto.getExtData());
+            return entry;
+        }
+    }
+
+    /**
+     * インデックスを読み込みます
+     *
+     * @param indexFile インデックスファイル
+     * @param scriptSignature 現在のスクリプトの構成
+     * @param dataLength 出撃ログファイル(zipの場合はエントリ)のサイズ
+     * @param dataLastModified 出撃ログファイルの更新日時
+     * @return エントリ(インデックスが無いか、出撃ログファイルやスクリプトが変わっている場合はnull)
+     */
+    static List<Entry> read(File indexFile, String scriptSignature, long dataLength, long dataLastModified) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        LinkedBuffer buffer = LinkedBuffer.allocate(4 * 1024);
+        List<Entry> entries = new ArrayList<>();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(indexFile))) {
+            Header header = HEADER_SCHEMA.newMessage();
+            ProtostuffIOUtil.mergeDelimitedFrom(input, header, HEADER_SCHEMA, buffer);
+            if ((header.version != VERSION) || !scriptSignature.equals(header.scriptSignature)) {
+                return null;
+            }
+            try {
+                while (input.available() > 0) {
+                    Entry entry = ENTRY_SCHEMA.newMessage();
+                    ProtostuffIOUtil.mergeDelimitedFrom(input, entry, ENTRY_SCHEMA, buffer);
+                    entries.add(entry);
+                }
+            } catch (EOFException e) {
+                // 書き込み途中で終了した場合
+                return null;
+            }
+        } catch (Exception e) {
+            LOG.get().warn("出撃ログのインデックスの読み込みに失敗しました (" + indexFile.getPath() + ")", e);
+            return null;
+        }
+        // 最後のレコードまでインデックスに載っていて、その後ファイルが変更されていないこと
+        if (entries.isEmpty()) {
+            return (dataLength == 0) ? entries : null;
+        }
+        Entry last = entries.get(entries.size() - 1);
+        if ((last.end != dataLength) || (last.dataLastModified != dataLastModified)) {
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * インデックスを作り直します
+     *
+     * @param indexFile インデックスファイル
+     * @param scriptSignature 現在のスクリプトの構成
+     * @param entries エントリ
+     * @param dataLastModified 出撃ログファイルの更新日時
+     */
+    static void write(File indexFile, String scriptSignature, List<Entry> entries, long dataLastModified) {
+        if (!entries.isEmpty()) {
+            entries.get(entries.size() - 1).dataLastModified = dataLastModified;
+        }
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        LinkedBuffer buffer = LinkedBuffer.allocate(4 * 1024);
+        try {
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+                Header header = new Header();
+                header.version = VERSION;
+                header.scriptSignature = scriptSignature;
+                ProtostuffIOUtil.writeDelimitedTo(output, header, HEADER_SCHEMA, buffer);
+                buffer.clear();
+                for (Entry entry : entries) {
+                    ProtostuffIOUtil.writeDelimitedTo(output, entry, ENTRY_SCHEMA, buffer);
+                    buffer.clear();
+                }
+            }
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IOException("古いインデックスを削除できません");
+            }
+            if (!tmpFile.renameTo(indexFile)) {
+                throw new IOException("インデックスの名前を変更できません");
+            }
+        } catch (IOException e) {
+            LOG.get().warn("出撃ログのインデックスの書き込みに失敗しました (" + indexFile.getPath() + ")", e);
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * インデックスの末尾にエントリを追加します<br>
+     * インデックスが無い場合はヘッダも書き込みます
+     *
+     * @param indexFile インデックスファイル
+     * @param scriptSignature 現在のスクリプトの構成
+     * @param entry エントリ
+     * @param buffer 作業用のバッファ
+     */
+    static void append(File indexFile, String scriptSignature, Entry entry, LinkedBuffer buffer) {
+        boolean newFile = !indexFile.exists();
+        try (OutputStream output = new FileOutputStream(indexFile, true)) {
+            if (newFile) {
+                Header header = new Header();
+                header.version = VERSION;
+                header.scriptSignature = scriptSignature;
+                ProtostuffIOUtil.writeDelimitedTo(output, header, HEADER_SCHEMA, buffer);
+                buffer.clear();
+            }
+            ProtostuffIOUtil.writeDelimitedTo(output, entry, ENTRY_SCHEMA, buffer);
+        } catch (IOException e) {
+            LOG.get().warn("出撃ログのインデックスの書き込みに失敗しました (" + indexFile.getPath() + ")", e);
+            indexFile.delete();
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * インデックスを削除します(次回起動時に作り直されます)
+     *
+     * @param indexFile インデックスファイル
+     */
+    static void invalidate(File indexFile) {
+        if (indexFile.exists() && !indexFile.delete()) {
+            LOG.get().warn("出撃ログのインデックスを削除できません (" + indexFile.getPath() + ")");
+        }
+    }
+
+    private static List<String> encodeExtData(Comparable[] extData) {
+        if (extData == null) {
+            return null;
+        }
+        List<String> result = new ArrayList<>(extData.length);
+        for (Comparable value : extData) {
+            if (value == null) {
+                result.add("N");
+            } else if (value instanceof Integer) {
+                result.add("I" + value);
+            } else if (value instanceof Long) {
+                result.add("J" + value);
+            } else if (value instanceof Double) {
+                result.add("D" + value);
+            } else if (value instanceof Boolean) {
+                result.add("B" + value);
+            } else if (value instanceof Date) {
+                result.add("T" + ((Date) value).getTime());
+            } else {
+                result.add("S" + value);
+            }
+        }
+        return result;
+    }
+
+    static Comparable[] decodeExtData(List<String> extData) {
+        if (extData == null) {
+            return null;
+        }
+        Comparable[] result = new Comparable[extData.size()];
+        for (int i = 0; i < result.length; ++i) {
+            String value = extData.get(i);
+            String body = value.substring(1);
+            switch (value.charAt(0)) {
+            case 'I':
+                result[i] = Integer.valueOf(body);
+                break;
+            case 'J':
+                result[i] = Long.valueOf(body);
+                break;
+            case 'D':
+                result[i] = Double.valueOf(body);
+                break;
+            case 'B':
+                result[i] = Boolean.valueOf(body);
+                break;
+            case 'T':
+                result[i] = new Date(Long.parseLong(body));
+                break;
+            case 'S':
+                result[i] = body;
+                break;
+            default:
+                result[i] = null;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private BattleLogIndex() {
+    }
+}
@@ -3,16 +3,23 @@
  */
 package logbook.internal;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -23,16 +30,15 @@ import logbook.gui.logic.DateTimeString;
 import logbook.gui.logic.IntegerPair;
 import logbook.scripting.BattleLogListener;
 import logbook.scripting.BattleLogProxy;
-import logbook.util.ReportUtils;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.swt.widgets.Display;
 
 import com.dyuproject.protostuff.LinkedBuffer;
-import com.dyuproject.protostuff.ProtostuffIOUtil;
 import com.dyuproject.protostuff.Schema;
 import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
@@ -46,17 +52,48 @@ public class BattleResultServer {
 
     private static DateFormat format = new SimpleDateFormat(AppConstants.BATTLE_LOGFILE_DATE_FORMAT);
 
+    static {
+        // 艦・装備のマスター情報は辞書の参照で書く
+        BattleLogDictionary.registerSchemas();
+    }
+
     private static Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
 
     private static class BattleResult extends BattleResultDto {
         public DataFile file;
         public int index;
+        /** ファイル内のレコードの位置(不明な場合は-1) */
+        public volatile long offset = -1;
+        /** ファイルに書き込まれるまで保持しておく詳細 */
+        public volatile BattleExDto pending;
 
         BattleResult(BattleExDto dto, DataFile file, int index, Comparable[] extData) {
             super(dto, extData);
             this.file = file;
             this.index = index;
         }
+
+        BattleResult(BattleLogIndex.Entry entry, DataFile file, int index) {
+            super(entry.battleDate, entry.questName, entry.rank, entry.mapCell, entry.enemyName,
+                    entry.dropShip, entry.dropItem, entry.dropType, entry.dropName, entry.dropItemName,
+                    entry.noSpaceForShip, BattleLogIndex.decodeExtData(entry.extData));
+            this.file = file;
+            this.index = index;
+            this.offset = entry.offset;
+        }
+    }
+
+    /** 出撃ログファイルのレコード(読み込みに失敗した場合dtoはnull) */
+    private static class Record {
+        public final BattleExDto dto;
+        public final long offset;
+        public final long end;
+
+        Record(BattleExDto dto, long offset, long end) {
+            this.dto = dto;
+            this.offset = offset;
+            this.end = end;
+        }
     }
 
     private static String logPath = null;
@@ -109,6 +146,8 @@ public class BattleResultServer {
     // member
     private final String path;
     private final LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+    /** 艦・装備のマスター情報の辞書 */
+    private final BattleLogDictionary dictionary;
 
     // フィルタ用
     private Date firstBattleTime;
@@ -118,6 +157,10 @@ public class BattleResultServer {
     private final Set<Integer> cellList = new TreeSet<Integer>();
 
     private final List<BattleResult> resultList = new ArrayList<BattleResult>();
+    /** フィルタ用(resultListと同じ順序) */
+    private final BattleResultTable table = new BattleResultTable();
+    /** 出撃統計 */
+    private final BattleAggregator aggregator = new BattleAggregator();
     private final Map<String, DataFile> fileMap = new HashMap<>();
 
     // 重複検出用
@@ -130,17 +173,33 @@ public class BattleResultServer {
     // 一時ストア
     private List<BattleExDto> tmpDat = null;
 
-    private int failCount = 0;
+    private final AtomicInteger failCount = new AtomicInteger();
 
     private abstract class DataFile {
         final File file;
         int numRecords = 0;
+        /** インデックスに載っている範囲の終端(インデックスとファイルが一致していない場合は-1) */
+        volatile long indexedEnd = -1;
 
         public DataFile(File file) {
             this.file = file;
         }
 
+        /** 全レコードを読み込む(読み込みに失敗したレコードはnull) */
         public List<BattleExDto> readAll() throws IOException {
+            List<BattleExDto> result = new ArrayList<>();
+            for (Record record : this.readRecords(BattleResultServer.this.buffer)) {
+                result.add(record.dto);
+            }
+            return result;
+        }
+
+        public List<Record> readRecords(LinkedBuffer buffer) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        /** 指定位置のレコードを1つだけ読み込む */
+        public BattleExDto readRecord(long offset) throws IOException {
             throw new UnsupportedOperationException();
         }
 
@@ -148,7 +207,21 @@ public class BattleResultServer {
             throw new UnsupportedOperationException();
         }
 
-        public void addToFile(BattleExDto dto) {
+        public File getIndexFile() {
+            throw new UnsupportedOperationException();
+        }
+
+        /** データのサイズ */
+        public long getDataLength() {
+            throw new UnsupportedOperationException();
+        }
+
+        /** データの更新日時 */
+        public long getDataLastModified() {
+            return this.file.lastModified();
+        }
+
+        public void addToFile(BattleExDto dto, BattleResult result) {
             throw new UnsupportedOperationException();
         }
 
@@ -156,13 +229,17 @@ public class BattleResultServer {
             return this.numRecords;
         }
 
-        List<BattleExDto> load(InputStream input) throws IOException {
-            List<BattleExDto> result = BattleResultServer.this.loadFromInputStream(input,
-                    BattleResultServer.this.buffer);
+        List<Record> load(InputStream input, LinkedBuffer buffer) throws IOException {
+            List<Record> result = BattleResultServer.this.loadFromInputStream(input, buffer);
             this.numRecords = result.size();
             return result;
         }
 
+        BattleExDto loadRecord(InputStream input) throws IOException {
+            BattleExDto battle = schema.newMessage();
+            BattleResultServer.this.readBattle(input, battle, BattleResultServer.this.buffer);
+            return battle;
+        }
     }
 
     private class NormalDataFile extends DataFile {
@@ -172,9 +249,17 @@ public class BattleResultServer {
         }
 
         @Override
-        public List<BattleExDto> readAll() throws IOException {
-            try (InputStream input = new FileInputStream(this.file)) {
-                return this.load(input);
+        public List<Record> readRecords(LinkedBuffer buffer) throws IOException {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(this.file))) {
+                return this.load(input, buffer);
+            }
+        }
+
+        @Override
+        public BattleExDto readRecord(long offset) throws IOException {
+            try (FileInputStream input = new FileInputStream(this.file)) {
+                input.getChannel().position(offset);
+                return this.loadRecord(new BufferedInputStream(input));
             }
         }
 
@@ -184,32 +269,88 @@ public class BattleResultServer {
         }
 
         @Override
-        public void addToFile(BattleExDto dto) {
-            // ファイルとリストに追加
-            try (FileOutputStream output = new FileOutputStream(getStoreFile(this.file), true)) {
-                ProtostuffIOUtil.writeDelimitedTo(output, dto, schema, BattleResultServer.this.buffer);
-                BattleResultServer.this.buffer.clear();
+        public File getIndexFile() {
+            return new File(FilenameUtils.removeExtension(this.file.getPath()) + "." + BattleLogIndex.EXTENSION);
+        }
+
+        @Override
+        public long getDataLength() {
+            return this.file.length();
+        }
+
+        @Override
+        public void addToFile(BattleExDto dto, final BattleResult result) {
+            // 書き込みはLogWriterで行い、書き込めたらインデックスに追加する
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                BattleResultServer.this.dictionary.writeDelimitedTo(bytes, dto, schema,
+                        BattleResultServer.this.buffer);
             } catch (IOException e) {
                 LOG.get().warn("出撃ログの書き込みに失敗しました", e);
+                return;
+            } finally {
+                BattleResultServer.this.buffer.clear();
             }
+            final BattleLogIndex.Entry entry = BattleLogIndex.Entry.of(result, true, 0, 0);
+            final String signature = BattleLogProxy.get().signature();
+            File altFile = new File(FilenameUtils.removeExtension(this.file.getPath()) + "_alternativefile.dat");
+            LogWriter.append(this.file, altFile, null, bytes.toByteArray(), false, new LogWriter.Listener() {
+                @Override
+                public void written(File file, long offset, long end) {
+                    NormalDataFile.this.written(file, offset, end, entry, signature, result);
+                }
+            });
             ++this.numRecords;
         }
+
+        /** 書き込みスレッドから呼ばれる */
+        private void written(File file, long offset, long end, BattleLogIndex.Entry entry, String signature,
+                BattleResult result) {
+            File indexFile = this.getIndexFile();
+            // 代替ファイルに書き込んだ場合や、代替ファイルがマージされた場合はインデックスと一致しなくなる
+            if (file.equals(this.file) && (offset == this.indexedEnd)) {
+                entry.offset = offset;
+                entry.end = end;
+                entry.dataLastModified = file.lastModified();
+                BattleLogIndex.append(indexFile, signature, entry, LinkedBuffer.allocate(4 * 1024));
+                this.indexedEnd = end;
+                result.offset = offset;
+                result.pending = null;
+            }
+            else {
+                // 次回起動時に作り直す
+                BattleLogIndex.invalidate(indexFile);
+                this.indexedEnd = -1;
+            }
+        }
     }
 
     private class ZipDataFile extends DataFile {
 
         private final String zipName;
+        private final long size;
 
-        public ZipDataFile(File file, String zipName) {
+        public ZipDataFile(File file, ZipEntry entry) {
             super(file);
-            this.zipName = zipName;
+            this.zipName = entry.getName();
+            this.size = entry.getSize();
         }
 
         @Override
-        public List<BattleExDto> readAll() throws IOException {
+        public List<Record> readRecords(LinkedBuffer buffer) throws IOException {
+            try (ZipFile zipFile = new ZipFile(this.file)) {
+                try (InputStream input = zipFile.getInputStream(zipFile.getEntry(this.zipName))) {
+                    return this.load(input, buffer);
+                }
+            }
+        }
+
+        @Override
+        public BattleExDto readRecord(long offset) throws IOException {
             try (ZipFile zipFile = new ZipFile(this.file)) {
                 try (InputStream input = zipFile.getInputStream(zipFile.getEntry(this.zipName))) {
-                    return this.load(input);
+                    IOUtils.skipFully(input, offset);
+                    return this.loadRecord(input);
                 }
             }
         }
@@ -218,20 +359,35 @@ public class BattleResultServer {
         public String getPath() {
             return this.file.getAbsolutePath() + ":" + this.zipName;
         }
+
+        @Override
+        public File getIndexFile() {
+            String entryName = FilenameUtils.removeExtension(this.zipName).replace('/', '_').replace('\\', '_');
+            return new File(FilenameUtils.removeExtension(this.file.getPath()) + "_" + entryName + "."
+                    + BattleLogIndex.EXTENSION);
+        }
+
+        @Override
+        public long getDataLength() {
+            return this.size;
+        }
     }
 
-    private List<BattleExDto> loadFromInputStream(InputStream input, LinkedBuffer buffer) throws IOException {
-        List<BattleExDto> result = new ArrayList<BattleExDto>();
+    private List<Record> loadFromInputStream(InputStream input, LinkedBuffer buffer) throws IOException {
+        List<Record> result = new ArrayList<Record>();
+        CountingInputStream counting = new CountingInputStream(input);
         try {
-            while (input.available() > 0) {
+            while (counting.available() > 0) {
+                long offset = counting.getByteCount();
                 BattleExDto battle = schema.newMessage();
                 try {
-                    ProtostuffIOUtil.mergeDelimitedFrom(input, battle, schema, buffer);
-                    battle.readFromJson();
-                    result.add(battle);
+                    this.readBattle(counting, battle, buffer);
+                    result.add(new Record(battle, offset, counting.getByteCount()));
+                } catch (EOFException e) {
+                    throw e;
                 } catch (Exception e) {
-                    this.failCount++;
-                    if (this.failCount <= 1) {
+                    result.add(new Record(null, offset, counting.getByteCount()));
+                    if (this.failCount.incrementAndGet() <= 1) {
                         Date battleDate = battle.getBattleDate();
                         if (battleDate != null) {
                             LOG.get().warn("戦闘ログの読み込みに失敗しました(" + new DateTimeString(battle.getBattleDate()) + ")", e);
@@ -247,8 +403,18 @@ public class BattleResultServer {
         return result;
     }
 
+    /**
+     * 1レコード読み込みます
+     */
+    private void readBattle(InputStream input, BattleExDto battle, LinkedBuffer buffer) throws IOException {
+        this.dictionary.mergeDelimitedFrom(input, battle, schema, buffer);
+        battle.readFromJson();
+        this.dictionary.intern(battle);
+    }
+
     private BattleResultServer() {
         this.path = null;
+        this.dictionary = new BattleLogDictionary(null);
         this.firstBattleTime = new Date();
         this.lastBattleTime = new Date();
         // とりあえず貯める
@@ -257,6 +423,7 @@ public class BattleResultServer {
 
     private BattleResultServer(String path) {
         this.path = path;
+        this.dictionary = BattleLogDictionary.forDirectory(new File(path));
         // ファイルを読み込んで resultList を作成
         File dir = new File(path);
         if (dir.exists()) {
@@ -272,7 +439,7 @@ public class BattleResultServer {
                             Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
                             while (enumeration.hasMoreElements()) {
                                 ZipEntry entry = enumeration.nextElement();
-                                DataFile dataFile = new ZipDataFile(file, entry.getName());
+                                DataFile dataFile = new ZipDataFile(file, entry);
                                 this.fileMap.put(dataFile.getPath(), dataFile);
                             }
                         }
@@ -281,7 +448,7 @@ public class BattleResultServer {
                     LOG.get().warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e);
                 }
             }
-            this.reloadFiles();
+            this.loadFiles(true);
         }
 
         // フィルタ用パラメータを計算
@@ -292,31 +459,121 @@ public class BattleResultServer {
         }
     }
 
+    /**
+     * 全ての出撃ログファイルを読み込み直し、インデックスを作り直します
+     */
     public void reloadFiles() {
+        this.loadFiles(false);
+    }
+
+    /**
+     * 出撃ログを読み込みます<br>
+     * インデックスが有効なファイルはインデックスだけを読み込みます
+     *
+     * @param useIndex インデックスを使うか(falseの場合は全て読み込み直す)
+     */
+    private void loadFiles(boolean useIndex) {
         this.resultDateSet.clear();
         this.resultList.clear();
-        this.failCount = 0;
+        this.cachedFile = null;
+        this.cachedResult = null;
+        this.failCount.set(0);
 
-        BattleLogListener battleLogScript = BattleLogProxy.get();
+        BattleLogProxy battleLogScript = BattleLogProxy.get();
+        String signature = battleLogScript.signature();
+        int indexedFiles = 0;
 
-        battleLogScript.begin();
-        // 全部読み込む
-        for (DataFile file : this.fileMap.values()) {
-            try {
-                List<BattleExDto> result = file.readAll();
-                for (int i = 0; i < result.size(); ++i) {
-                    BattleExDto dto = result.get(i);
-                    if (dto.isCompleteResult() && !this.resultDateSet.contains(dto.getBattleDate())) {
-                        this.resultDateSet.add(dto.getBattleDate());
-                        this.resultList.add(new BattleResult(dto, file, i,
-                                battleLogScript.body(dto)));
+        // 重複は先に読んだ方を採用するのでファイルの順序を固定する
+        List<DataFile> files = new ArrayList<>(this.fileMap.values());
+        Collections.sort(files, new Comparator<DataFile>() {
+            @Override
+            public int compare(DataFile o1, DataFile o2) {
+                return o1.getPath().compareTo(o2.getPath());
+            }
+        });
+
+        // インデックスの読み込みと出撃ログのデコードはファイルごとに並列に行い、
+        // スクリプトの呼び出しと一覧への追加はこのスレッドでファイルの順に行う
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "logbook_battlelog_loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Deque<Future<LoadedFile>> pending = new ArrayDeque<>();
+        List<Future<?>> writing = new ArrayList<>();
+        int next = 0;
+        // スクリプトを呼び出すのはインデックスを作り直すときだけなので、再読み込みはそこから始める
+        boolean scriptBegun = false;
+
+        try {
+            for (DataFile file : files) {
+                // デコード済みのレコードを溜め込みすぎないように先読みは制限する
+                while ((next < files.size()) && (pending.size() < (threads * 2))) {
+                    pending.add(executor.submit(new FileLoader(files.get(next++), useIndex, signature)));
+                }
+                LoadedFile loaded;
+                try {
+                    loaded = pending.poll().get();
+                } catch (ExecutionException e) {
+                    LOG.get().warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e.getCause());
+                    continue;
+                }
+                List<BattleLogIndex.Entry> entries = loaded.entries;
+                boolean fromIndex = (entries != null);
+                if (fromIndex) {
+                    ++indexedFiles;
+                } else {
+                    // インデックスが無いか古いので作り直す
+                    if (!scriptBegun) {
+                        battleLogScript.begin();
+                        scriptBegun = true;
                     }
+                    entries = this.buildIndex(loaded.records, battleLogScript);
+                    // 作っている途中でスクリプトが無効にされた場合は次回作り直す
+                    final String indexSignature = battleLogScript.signature();
+                    final File indexFile = file.getIndexFile();
+                    final List<BattleLogIndex.Entry> indexEntries = entries;
+                    final long lastModified = file.getDataLastModified();
+                    writing.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            BattleLogIndex.write(indexFile, indexSignature, indexEntries, lastModified);
+                        }
+                    }));
                 }
-            } catch (IOException e) {
-                LOG.get().warn("出撃ログの読み込みに失敗しました (" + file.getPath() + ")", e);
+                file.numRecords = entries.size();
+                file.indexedEnd = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).end;
+                for (int i = 0; i < entries.size(); ++i) {
+                    BattleLogIndex.Entry entry = entries.get(i);
+                    if (entry.failed) {
+                        // 読み込み直した場合はloadFromInputStreamで数えている
+                        if (fromIndex) {
+                            this.failCount.incrementAndGet();
+                        }
+                    }
+                    else if (entry.complete && !this.resultDateSet.contains(entry.battleDate)) {
+                        this.resultDateSet.add(entry.battleDate);
+                        this.resultList.add(new BattleResult(entry, file, i));
+                    }
+                }
+            }
+            for (Future<?> future : writing) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            LOG.get().warn("出撃ログの読み込みが中断されました", e);
+        } finally {
+            executor.shutdownNow();
+            if (scriptBegun) {
+                battleLogScript.end();
             }
         }
-        battleLogScript.end();
+        LOG.get().info("出撃ログ " + this.fileMap.size() + "ファイル (インデックス使用:" + indexedFiles + ") "
+                + this.resultList.size() + "件");
 
         // 時刻でソート
         Collections.sort(this.resultList, new Comparator<BattleResult>() {
@@ -326,10 +583,89 @@ public class BattleResultServer {
                         arg0.getBattleDate().getTime(), arg1.getBattleDate().getTime());
             }
         });
+        this.table.clear();
+        this.aggregator.clear();
+        for (BattleResult result : this.resultList) {
+            this.table.add(result);
+            this.aggregator.add(result);
+        }
 
         fireEvent();
     }
 
+    /** 1ファイル分の読み込み結果(インデックスが使えた場合はentries、それ以外はrecords) */
+    private static class LoadedFile {
+        public List<BattleLogIndex.Entry> entries;
+        public List<Record> records;
+    }
+
+    /** ワーカースレッドごとのバッファ */
+    private static final ThreadLocal<LinkedBuffer> LOADER_BUFFER = new ThreadLocal<LinkedBuffer>() {
+        @Override
+        protected LinkedBuffer initialValue() {
+            return LinkedBuffer.allocate(128 * 1024);
+        }
+    };
+
+    /**
+     * ワーカースレッドで1ファイルを読み込みます
+     */
+    private static class FileLoader implements Callable<LoadedFile> {
+        private final DataFile file;
+        private final boolean useIndex;
+        private final String signature;
+
+        FileLoader(DataFile file, boolean useIndex, String signature) {
+            this.file = file;
+            this.useIndex = useIndex;
+            this.signature = signature;
+        }
+
+        @Override
+        public LoadedFile call() throws IOException {
+            LoadedFile loaded = new LoadedFile();
+            if (this.useIndex) {
+                loaded.entries = BattleLogIndex.read(this.file.getIndexFile(), this.signature,
+                        this.file.getDataLength(), this.file.getDataLastModified());
+            }
+            if (loaded.entries == null) {
+                loaded.records = this.file.readRecords(LOADER_BUFFER.get());
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * デコードしたレコードからインデックスのエントリを作ります(スクリプトの拡張カラムもここで作る)
+     */
+    private List<BattleLogIndex.Entry> buildIndex(List<Record> records, BattleLogProxy battleLogScript) {
+        // スクリプトの呼び出しはファイルごとにまとめて行う
+        List<BattleExDto> complete = new ArrayList<>(records.size());
+        for (Record record : records) {
+            if ((record.dto != null) && record.dto.isCompleteResult()) {
+                complete.add(record.dto);
+            }
+        }
+        Comparable[][] bodies = battleLogScript.bodies(complete.toArray(new BattleExDto[complete.size()]));
+        int next = 0;
+        List<BattleLogIndex.Entry> entries = new ArrayList<>(records.size());
+        for (Record record : records) {
+            BattleExDto dto = record.dto;
+            if (dto == null) {
+                entries.add(BattleLogIndex.Entry.failed(record.offset, record.end));
+            }
+            else if (dto.isCompleteResult()) {
+                BattleResultDto summary = new BattleResultDto(dto, bodies[next++]);
+                entries.add(BattleLogIndex.Entry.of(summary, true, record.offset, record.end));
+            }
+            else {
+                entries.add(BattleLogIndex.Entry.of(new BattleResultDto(dto, null), false,
+                        record.offset, record.end));
+            }
+        }
+        return entries;
+    }
+
     private void update(BattleResultDto battle) {
         Date battleDate = battle.getBattleDate();
         if (battleDate.before(this.firstBattleTime)) {
@@ -363,6 +699,11 @@ public class BattleResultServer {
                 DataFile dataFile = this.fileMap.get(file.getAbsolutePath());
                 if (dataFile == null) {
                     dataFile = new NormalDataFile(file);
+                    if (!file.exists()) {
+                        // 残っている古いインデックスは使わない
+                        BattleLogIndex.invalidate(dataFile.getIndexFile());
+                        dataFile.indexedEnd = 0;
+                    }
                     this.fileMap.put(dataFile.getPath(), dataFile);
                 }
 
@@ -371,8 +712,11 @@ public class BattleResultServer {
                         battleLogScript.body(dto));
                 this.update(resultEntry);
                 this.resultList.add(resultEntry);
+                this.table.add(resultEntry);
+                this.aggregator.add(resultEntry);
 
-                dataFile.addToFile(dto);
+                resultEntry.pending = dto;
+                dataFile.addToFile(dto, resultEntry);
 
                 // キャッシュされているときはキャッシュにも追加
                 if ((this.cachedFile != null) && (dataFile == this.cachedFile)) {
@@ -393,82 +737,29 @@ public class BattleResultServer {
     }
 
     public List<BattleResultDto> getFilteredList(BattleResultFilter filter) {
-        List<BattleResultDto> list = new ArrayList<BattleResultDto>();
-        for (BattleResult result : this.resultList) {
-            BattleResultDto dto = result;
-            if (this.matchFilter(filter, dto)) {
-                list.add(dto);
-            }
+        BitSet selected = this.table.select(filter);
+        List<BattleResultDto> list = new ArrayList<BattleResultDto>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            list.add(this.resultList.get(i));
         }
         return list;
     }
 
-    /** 出撃ログがフィルタにマッチしているかどうか
-     * @param filter
-     * @param dto
-     * @return
-     */
-    private boolean matchFilter(BattleResultFilter filter, BattleResultDto dto) {
-        if ((filter.fromTime != null) && filter.fromTime.after(dto.getBattleDate())) {
-            return false;
-        }
-        if ((filter.toTime != null) && filter.toTime.before(dto.getBattleDate())) {
-            return false;
-        }
-        if ((filter.dropShip != null) &&
-                (filter.dropShip.equals(dto.getDropName()) == false) &&
-                (filter.dropShip.equals(dto.getDropItemName()) == false)) {
-            return false;
-        }
-        if (filter.timeSpan != null) {
-            Date from = filter.timeSpan.getFrom();
-            Date to = filter.timeSpan.getTo();
-            if (from.after(dto.getBattleDate())) {
-                return false;
-            }
-            if (to.before(dto.getBattleDate())) {
-                return false;
-            }
-        }
-        if ((filter.map != null)) {
-            if (dto.isPractice()) {
-                return false;
-            }
-            int[] battleMap = dto.getMapCell().getMap();
-            if (filter.map.compareTo(new IntegerPair(battleMap[0], battleMap[1], "%d-%d")) != 0) {
-                return false;
-            }
-        }
-        if ((filter.cell != null)) {
-            if (dto.isPractice()) {
-                return false;
-            }
-            int[] battleMap = dto.getMapCell().getMap();
-            if (filter.cell != battleMap[2]) {
-                return false;
-            }
-        }
-        if ((filter.rankCombo != null) &&
-                (filter.rankCombo.indexOf(dto.getRank().rank().charAt(0)) == -1)) {
-            return false;
-        }
-        if (filter.printPractice != null) {
-            // 排他的論理和です
-            if (dto.isPractice() ^ filter.printPractice) {
-                return false;
-            }
-        }
-        if (Objects.nonNull(filter.printBoss)){
-            if (dto.isBoss() ^ filter.printBoss) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /** 詳細を読み込む（失敗したら null ） */
     public BattleExDto getBattleDetail(BattleResultDto summary) {
         BattleResult result = (BattleResult) summary;
+        BattleExDto pending = result.pending;
+        if (pending != null) {
+            return pending;
+        }
+        if (result.offset >= 0) {
+            // 位置が分かっている場合はそのレコードだけ読み込む
+            try {
+                return result.file.readRecord(result.offset);
+            } catch (Exception e) {
+                LOG.get().warn("出撃ログの読み込みに失敗しました (" + result.file.getPath() + ")", e);
+            }
+        }
         if ((this.cachedFile == null) || (result.file != this.cachedFile)) {
             try {
                 this.cachedResult = result.file.readAll();
@@ -483,6 +774,14 @@ public class BattleResultServer {
         return this.cachedResult.get(result.index);
     }
 
+    /**
+     * 出撃統計
+     * @return 出撃統計
+     */
+    public BattleAggregator getAggregator() {
+        return this.aggregator;
+    }
+
     public Date getFirstBattleTime() {
         return this.firstBattleTime;
     }
@@ -503,54 +802,11 @@ public class BattleResultServer {
         return new ArrayList<Integer>(this.cellList);
     }
 
-    private static File getStoreFile(File file) throws IOException {
-        // 報告書の保存先にファイルを保存します
-        File dir = file.getParentFile();
-        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
-            // 報告書の保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
-            file = new File(file.getName());
-        }
-        File altFile = new File(FilenameUtils.removeExtension(file.getPath()) + "_alternativefile.dat");
-        if (ReportUtils.isLocked(file)) {
-            // ロックされている場合は代替ファイルに書き込みます
-            file = altFile;
-        }
-        else {
-            if (altFile.exists() && !ReportUtils.isLocked(altFile) && (FileUtils.sizeOf(altFile) > 0)) {
-                mergeAltFile(file, altFile);
-            }
-        }
-        return file;
-    }
-
-    /**
-     * alternativeファイルを本体にマージして削除します
-     * 
-     * @param report ファイル本体
-     * @param alt_report alternativeファイル
-     * @return
-     * @throws IOException
-     */
-    private static void mergeAltFile(File report, File alt_report) throws IOException {
-        // report が空ファイルの場合は、alt ファイルをリネームして終了
-        if (!report.exists() || (FileUtils.sizeOf(report) <= 0)) {
-            report.delete();
-            alt_report.renameTo(report);
-            return;
-        }
-        try (OutputStream report_stream = new FileOutputStream(report, true)) {
-            try (InputStream alt_stream = new FileInputStream(alt_report)) {
-                IOUtils.copy(alt_stream, report_stream);
-            }
-        }
-        alt_report.delete();
-    }
-
     /**
      * 読み取りに失敗した戦闘数
      * @return failCount
      */
     public int getFailCount() {
-        return this.failCount;
+        return this.failCount.get();
     }
 }
@@ -0,0 +1,244 @@
+package logbook.internal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import logbook.dto.BattleResultDto;
+import logbook.dto.MapCellDto;
+import logbook.dto.ResultRank;
+
+/**
+ * 出撃ログ一覧のフィルタ用の列指向テーブル<br>
+ * 行は{@link BattleResultServer}の一覧と同じ順序で、フィルタの結果は行番号のビットセットで返します<br>
+ * 日付はミリ秒、マップとマスは1つのint、ランクはbyte、ドロップ名は辞書の番号で持つので、
+ * フィルタの評価でオブジェクトを作りません
+ */
+final class BattleResultTable {
+
+    /** マップ・マスがない(演習など) */
+    private static final int NO_MAP = -1;
+
+    /** ドロップなし・ランクなし */
+    private static final int NONE = -1;
+
+    private int size = 0;
+
+    /** 戦闘日時(ミリ秒) */
+    private long[] dates = new long[1024];
+
+    /** マップ・マス({@link #packMap(int, int, int)}) */
+    private int[] mapCells = new int[1024];
+
+    /** ランク(ResultRankのordinal) */
+    private byte[] ranks = new byte[1024];
+
+    /** ドロップ艦娘(辞書の番号) */
+    private int[] dropNames = new int[1024];
+
+    /** ドロップアイテム(辞書の番号) */
+    private int[] dropItemNames = new int[1024];
+
+    /** 演習 */
+    private final BitSet practice = new BitSet();
+
+    /** ボスマス */
+    private final BitSet boss = new BitSet();
+
+    /** ドロップ名の辞書 */
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    /** 日付順に並んでいるか(並んでいれば期間は二分探索で絞り込む) */
+    private boolean sorted = true;
+
+    /**
+     * 全ての行を削除します
+     */
+    void clear() {
+        this.size = 0;
+        this.practice.clear();
+        this.boss.clear();
+        this.dictionary.clear();
+        this.sorted = true;
+    }
+
+    /**
+     * 行数
+     * @return 行数
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * 末尾に行を追加します
+     *
+     * @param dto 出撃ログ
+     */
+    void add(BattleResultDto dto) {
+        if (this.size == this.dates.length) {
+            int capacity = this.size * 2;
+            this.dates = Arrays.copyOf(this.dates, capacity);
+            this.mapCells = Arrays.copyOf(this.mapCells, capacity);
+            this.ranks = Arrays.copyOf(this.ranks, capacity);
+            this.dropNames = Arrays.copyOf(this.dropNames, capacity);
+            this.dropItemNames = Arrays.copyOf(this.dropItemNames, capacity);
+        }
+        int row = this.size++;
+        long date = dto.getBattleDate().getTime();
+        if ((row > 0) && (this.dates[row - 1] > date)) {
+            this.sorted = false;
+        }
+        this.dates[row] = date;
+        MapCellDto mapCell = dto.getMapCell();
+        if (dto.isPractice() || (mapCell == null)) {
+            this.mapCells[row] = NO_MAP;
+        } else {
+            int[] map = mapCell.getMap();
+            this.mapCells[row] = packMap(map[0], map[1], map[2]);
+        }
+        ResultRank rank = dto.getRank();
+        this.ranks[row] = (byte) ((rank != null) ? rank.ordinal() : NONE);
+        this.dropNames[row] = this.intern(dto.getDropName());
+        this.dropItemNames[row] = this.intern(dto.getDropItemName());
+        this.practice.set(row, dto.isPractice());
+        this.boss.set(row, dto.isBoss());
+    }
+
+    /**
+     * フィルタにマッチする行
+     *
+     * @param filter フィルタ
+     * @return マッチする行番号
+     */
+    BitSet select(BattleResultFilter filter) {
+        // 期間
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (filter.fromTime != null) {
+            from = filter.fromTime.getTime();
+        }
+        if (filter.toTime != null) {
+            to = filter.toTime.getTime();
+        }
+        if (filter.timeSpan != null) {
+            Date spanFrom = filter.timeSpan.getFrom();
+            Date spanTo = filter.timeSpan.getTo();
+            from = Math.max(from, spanFrom.getTime());
+            to = Math.min(to, spanTo.getTime());
+        }
+        BitSet result = new BitSet(this.size);
+        if (this.sorted) {
+            int begin = this.lowerBound(from);
+            int end = (to == Long.MAX_VALUE) ? this.size : this.lowerBound(to + 1);
+            if (begin < end) {
+                result.set(begin, end);
+            }
+        } else {
+            for (int i = 0; i < this.size; ++i) {
+                if ((this.dates[i] >= from) && (this.dates[i] <= to)) {
+                    result.set(i);
+                }
+            }
+        }
+
+        // 演習・ボス
+        if (filter.printPractice != null) {
+            if (filter.printPractice) {
+                result.and(this.practice);
+            } else {
+                result.andNot(this.practice);
+            }
+        }
+        if (filter.printBoss != null) {
+            if (filter.printBoss) {
+                result.and(this.boss);
+            } else {
+                result.andNot(this.boss);
+            }
+        }
+
+        // 残りは絞り込まれた行だけを調べる
+        int dropShip = NONE;
+        if (filter.dropShip != null) {
+            Integer id = this.dictionary.get(filter.dropShip);
+            if (id == null) {
+                result.clear();
+                return result;
+            }
+            dropShip = id;
+        }
+        int mapMask = 0;
+        int mapValue = 0;
+        if (filter.map != null) {
+            mapMask |= packMap(-1, -1, 0);
+            mapValue |= packMap(filter.map.getNow(), filter.map.getMax(), 0);
+        }
+        if (filter.cell != null) {
+            mapMask |= packMap(0, 0, -1);
+            mapValue |= packMap(0, 0, filter.cell);
+        }
+        boolean[] acceptRank = null;
+        if (filter.rankCombo != null) {
+            ResultRank[] values = ResultRank.values();
+            acceptRank = new boolean[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                acceptRank[i] = (filter.rankCombo.indexOf(values[i].rank().charAt(0)) != -1);
+            }
+        }
+        if ((dropShip == NONE) && (mapMask == 0) && (acceptRank == null)) {
+            return result;
+        }
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            if ((dropShip != NONE) && (this.dropNames[i] != dropShip) && (this.dropItemNames[i] != dropShip)) {
+                result.clear(i);
+            }
+            else if ((mapMask != 0) &&
+                    ((this.mapCells[i] == NO_MAP) || ((this.mapCells[i] & mapMask) != mapValue))) {
+                result.clear(i);
+            }
+            else if ((acceptRank != null) && ((this.ranks[i] == NONE) || !acceptRank[this.ranks[i]])) {
+                result.clear(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 日時がtime以上の最初の行
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.dates[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int intern(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Integer id = this.dictionary.get(name);
+        if (id == null) {
+            id = this.dictionary.size();
+            this.dictionary.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * マップ・マスを1つのintにします(海域・マップ・マスはそれぞれ11ビット・10ビット・10ビット)
+     */
+    private static int packMap(int area, int no, int cell) {
+        return ((area & 0x7FF) << 20) | ((no & 0x3FF) << 10) | (cell & 0x3FF);
+    }
+}
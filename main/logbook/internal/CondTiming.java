@@ -5,6 +5,8 @@ package logbook.internal;
 
 import java.util.Date;
 
+import logbook.data.context.ShipChangeSet;
+
 /**
  * 疲労回復時刻計算
  * @author Nekopanda
@@ -187,6 +189,14 @@ public class CondTiming {
         this.ignoreNextPort = true;
     }
 
+    /**
+     * 母港での艦娘情報の変化を反映
+     * @param changes 艦娘情報の差分
+     */
+    public void onPort(ShipChangeSet changes) {
+        this.onPort(!changes.getCondChanged().isEmpty());
+    }
+
     public void onPort(boolean updated) {
         if ((updated == false) || this.ignoreNextPort) {
             this.ignoreNextPort = false;
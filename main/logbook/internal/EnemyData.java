@@ -39,8 +39,9 @@ public class EnemyData {
     private static final LoggerHolder LOG = new LoggerHolder(EnemyData.class);
     private static Map<Integer, EnemyData> ENEMY = new TreeMap<Integer, EnemyData>();
 
-    /** 変更があったか */
-    private static boolean modified = false;
+    /** 保存対象(変更があったらPersistenceServiceが書き込む) */
+    private static final PersistenceService.Target PERSISTENCE = PersistenceService.register("敵編成",
+            EnemyData::snapshot);
 
     // 始めてアクセスがあった時に読み込む
     public static final boolean INIT_COMPLETE;
@@ -95,7 +96,7 @@ public class EnemyData {
             return;
         }
         ENEMY.put(id, item);
-        modified = true;
+        PersistenceService.markDirty(PERSISTENCE);
     }
 
     /**
@@ -123,16 +124,23 @@ public class EnemyData {
         };
     }
 
+    /**
+     * 変更があればファイルに今すぐ書き込みます
+     */
     public static void store() throws IOException {
-        // 変更があったときだけ書き込む
-        if (modified) {
-            try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(new BufferedOutputStream(
-                    new FileOutputStream(AppConstants.ENEMY_DATA_FILE)), AppConstants.CHARSET),
-                    CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER)) {
+        PersistenceService.store(PERSISTENCE);
+    }
+
+    private static PersistenceService.Snapshot snapshot() {
+        // EnemyDataは変更されないのでリストのコピーだけでよい
+        final List<EnemyData> enemies = new ArrayList<>(ENEMY.values());
+        return () -> {
+            long bytes = PersistenceService.writeAtomically(AppConstants.ENEMY_DATA_FILE, out -> {
+                CSVWriter writer = new CSVWriter(new OutputStreamWriter(out, AppConstants.CHARSET),
+                        CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER);
                 List<String> flatten = new ArrayList<String>();
                 writer.writeNext(getHeader());
-                for (Entry<Integer, EnemyData> e : ENEMY.entrySet()) {
-                    EnemyData data = e.getValue();
+                for (EnemyData data : enemies) {
                     flatten.add(String.valueOf(data.getEnemyId()));
                     flatten.add(data.getEnemyName());
                     flatten.add(String.valueOf(BattleExDto.fromFormation(data.getFormation())));
@@ -142,10 +150,11 @@ public class EnemyData {
                     writer.writeNext(flatten.toArray(new String[flatten.size()]));
                     flatten.clear();
                 }
-            }
+                writer.flush();
+            });
             ApplicationMain.sysPrint("Enemyファイル更新");
-            modified = false;
-        }
+            return bytes;
+        };
     }
 
     private static void readOldfile() {
@@ -179,7 +188,7 @@ public class EnemyData {
                 for (EnemyData data : TMP.values()) {
                     if (!ENEMY.containsKey(data.enemyId)) {
                         ENEMY.put(data.enemyId, data);
-                        modified = true;
+                        PersistenceService.markDirty(PERSISTENCE);
                     }
                 }
             } catch (IOException e) {
@@ -206,7 +215,7 @@ public class EnemyData {
                             enemyShipsId[i] = Integer.parseInt(entry[i + 3]);
                         }
                         if (ENEMY.containsKey(id)) {
-                            modified = true;
+                            PersistenceService.markDirty(PERSISTENCE);
                         }
                         ENEMY.put(id, new EnemyData(id, name, enemyShipsId, formation));
                     }
@@ -0,0 +1,550 @@
+package logbook.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import logbook.config.AppConfig;
+import logbook.data.ActionData;
+import logbook.data.Data;
+import logbook.data.DataType;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * 受信したJSONを保存するスレッド(開発者オプション-JSONを保存する)<br>
+ * 1レスポンスごとにファイルを作らず、セグメントファイルにまとめて追記します<br>
+ * <ul>
+ * <li>セグメントファイル(*.jsonl.gz)は1行1レスポンスのJSON Linesをgzipで圧縮したもので、zcatなどで展開すればそのまま読めます</li>
+ * <li>gzipのメンバーの中は1つのdeflateストリームなので、続けて書き込んだ似たレスポンスは前のレスポンスを参照して小さくなります。
+ * メンバーは一定の大きさごとに区切ります。書き込むたびにフラッシュするので、途中で落ちても書き込んだところまでは読めます</li>
+ * <li>セグメントファイルの名前は書き込みを始めた日時で、書き込んでいる日付が変わるか一定の大きさを超えたら次のセグメントファイルに切り替えます</li>
+ * <li>セグメントファイルごとにインデックス(*.idx)を作るので、時刻やDataTypeで探して、そのメンバーだけを展開して読み込めます</li>
+ * </ul>
+ * 1行の形式: {"time":受信日時(ミリ秒),"type":"DataType名","url":"URL","post":{リクエストのパラメータ},"json":{レスポンス}}<br>
+ * インデックスの形式: 受信日時(ミリ秒) TAB DataType名 TAB メンバーの開始位置 TAB メンバー内の行番号 (1行1件)
+ */
+public final class JsonArchive extends Thread {
+    private static final LoggerHolder LOG = new LoggerHolder(JsonArchive.class);
+    private static JsonArchive instance = null;
+
+    /** セグメントファイルの拡張子 */
+    public static final String SEGMENT_SUFFIX = ".jsonl.gz";
+
+    /** インデックスファイルの拡張子 */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /** セグメントファイルの最大の大きさ */
+    private static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /** gzipのメンバーを区切る大きさ(展開後、1件だけ読むときはここまで展開する) */
+    private static final long MAX_MEMBER_SIZE = 1024 * 1024;
+
+    /** キューの長さ */
+    private static final int QUEUE_CAPACITY = 1024;
+
+    /** 保存しないリクエストのパラメータ */
+    private static final String[] SECRET_FIELDS = { "api_token" };
+
+    /** 保存するレスポンス */
+    private static final class Request {
+        final Data data;
+        final String dir;
+
+        Request(Data data, String dir) {
+            this.data = data;
+            this.dir = dir;
+        }
+    }
+
+    /** スレッド終了の要求 */
+    private static final Request END_REQUEST = new Request(null, null);
+
+    private static synchronized JsonArchive getInstance() {
+        if (instance == null) {
+            instance = new JsonArchive();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * レスポンスを保存します(保存はこのスレッドで行います)
+     *
+     * @param data レスポンス
+     */
+    public static void store(Data data) {
+        Request request = new Request(data, AppConfig.get().getStoreJsonPath());
+        try {
+            // 保存が追いつかない場合は待つ(レスポンスを取りこぼさない)
+            getInstance().queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * キューに残っている分を保存してから終了します
+     */
+    public static synchronized void end() {
+        if (instance != null) {
+            try {
+                instance.queue.put(END_REQUEST);
+                instance.join();
+                instance = null;
+            } catch (InterruptedException e) {
+                LOG.get().fatal("JSON保存スレッド終了時に何かのエラー", e);
+            }
+        }
+    }
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** 書き込み中のセグメント */
+    private String segmentDir;
+    private CountingOutputStream segment;
+    /** 開いたときのファイルの大きさ */
+    private long segmentOffset;
+    private OutputStream index;
+    /** 書き込み中のメンバー */
+    private OutputStream member;
+    private long memberOffset;
+    private long memberSize;
+    private int memberLines;
+    /** このセグメントに書き込んでよい期限(書き込んでいる日付が変わるまで) */
+    private long segmentLimit;
+
+    private JsonArchive() {
+        this.setName("logbook_json_archive");
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        List<Request> batch = new ArrayList<>();
+        boolean end = false;
+        while (!end) {
+            try {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch);
+                for (Request request : batch) {
+                    if (request == END_REQUEST) {
+                        end = true;
+                    }
+                    else {
+                        // 1件の失敗で残りのレスポンスを失わないようにする
+                        try {
+                            this.write(request);
+                        } catch (IOException e) {
+                            LOG.get().warn("JSONの保存で何かのエラー", e);
+                            this.closeSegment();
+                        } catch (RuntimeException e) {
+                            LOG.get().warn("保存できないレスポンスなので飛ばします", e);
+                        }
+                    }
+                }
+                this.flush();
+            } catch (InterruptedException e) {
+                end = true;
+            } catch (Exception e) {
+                LOG.get().warn("JSONの保存で何かのエラー", e);
+                this.closeSegment();
+            }
+            batch.clear();
+        }
+        this.closeSegment();
+    }
+
+    private void write(Request request) throws IOException {
+        Data data = request.data;
+        long time = data.getCreateDate().getTime();
+        // ファイルに書き込む前に作る(作れない場合は書きかけにならない)
+        byte[] line = toLine(data);
+
+        // セグメントはレスポンスの日時ではなく書き込んでいる日時で切り替える
+        long now = System.currentTimeMillis();
+        if ((this.segment == null) || !request.dir.equals(this.segmentDir)
+                || (this.segment.getByteCount() > MAX_SEGMENT_SIZE)
+                || (now >= this.segmentLimit)) {
+            this.openSegment(request.dir, new Date(now));
+        }
+        if ((this.member == null) || (this.memberSize > MAX_MEMBER_SIZE)) {
+            this.openMember();
+        }
+        this.member.write(line);
+        this.memberSize += line.length;
+
+        String entry = new StringBuilder()
+                .append(time).append('\t')
+                .append(data.getDataType().name()).append('\t')
+                .append(this.memberOffset).append('\t')
+                .append(this.memberLines++).append('\n')
+                .toString();
+        this.index.write(entry.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void flush() throws IOException {
+        if (this.segment != null) {
+            // SYNC_FLUSHなのでここまで書いた分は展開できる
+            this.member.flush();
+            this.index.flush();
+        }
+    }
+
+    private void openMember() throws IOException {
+        this.closeMember();
+        this.memberOffset = this.segmentOffset + this.segment.getByteCount();
+        this.memberSize = 0;
+        this.memberLines = 0;
+        // メンバーを閉じてもファイルは閉じない
+        this.member = new GZIPOutputStream(new CloseShieldOutputStream(this.segment), 64 * 1024, true) {
+            {
+                this.def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private void closeMember() throws IOException {
+        if (this.member != null) {
+            this.member.close();
+            this.member = null;
+        }
+    }
+
+    private void openSegment(String dir, Date date) throws IOException {
+        this.closeSegment();
+        File parent = new File(dir);
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("フォルダを作成できません: " + parent);
+        }
+        String name = new SimpleDateFormat("yyyy-MM-dd_HHmmss.SSS").format(date);
+        File file = new File(parent, name + SEGMENT_SUFFIX);
+        File indexFile = new File(parent, name + INDEX_SUFFIX);
+        this.segment = new CountingOutputStream(new FileOutputStream(file, true));
+        this.segment.resetByteCount();
+        // インデックスはセグメントファイルをフラッシュしてから書き込む
+        this.index = new BufferedOutputStream(new FileOutputStream(indexFile, true));
+        this.segmentDir = dir;
+        // 同じ名前のファイルがあった場合は追記になる
+        this.segmentOffset = file.length();
+        this.segmentLimit = DateUtils.truncate(date, Calendar.DATE).getTime()
+                + TimeUnit.DAYS.toMillis(1);
+        LOG.get().info("JSONの保存先: " + file.getPath());
+    }
+
+    private void closeSegment() {
+        if (this.segment != null) {
+            try {
+                this.closeMember();
+                this.segment.close();
+                this.index.close();
+            } catch (IOException e) {
+                LOG.get().warn("JSONの保存ファイルを閉じるのに失敗しました", e);
+            }
+            this.member = null;
+            this.segment = null;
+            this.index = null;
+        }
+    }
+
+    /**
+     * 1行分のJSON
+     */
+    private static byte[] toLine(Data data) {
+        JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("time", data.getCreateDate().getTime())
+                .add("type", data.getDataType().name());
+        if (data.getDataType().getUrl() != null) {
+            builder.add("url", data.getDataType().getUrl());
+        }
+        if ((data instanceof ActionData) && (((ActionData) data).getPostField() != null)) {
+            JsonObjectBuilder post = Json.createObjectBuilder();
+            for (Map.Entry<String, String> field : ((ActionData) data).getPostField().entrySet()) {
+                if (!Arrays.asList(SECRET_FIELDS).contains(field.getKey()) && (field.getValue() != null)) {
+                    post.add(field.getKey(), field.getValue());
+                }
+            }
+            builder.add("post", post);
+        }
+        builder.add("json", data.getJsonObject());
+        return (builder.build().toString() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 1行分のJSONからデータを作ります
+     *
+     * @param line 1行
+     * @return データ(今のバージョンにないDataTypeの場合はnull)
+     */
+    public static Data parse(String line) {
+        JsonObject object;
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            object = reader.readObject();
+        }
+        DataType type = toDataType(object.getString("type"));
+        if (type == null) {
+            return null;
+        }
+        Map<String, String> post = new LinkedHashMap<>();
+        JsonObject postObject = object.getJsonObject("post");
+        if (postObject != null) {
+            for (Map.Entry<String, JsonValue> field : postObject.entrySet()) {
+                post.put(field.getKey(), ((JsonString) field.getValue()).getString());
+            }
+        }
+        return new ActionData(type, new Date(object.getJsonNumber("time").longValue()),
+                object.getJsonObject("json"), post);
+    }
+
+    private static DataType toDataType(String name) {
+        try {
+            return DataType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * フォルダにあるセグメントファイルを古い順に返します
+     *
+     * @param dir 保存先フォルダ
+     * @return セグメントファイル
+     */
+    public static List<File> listSegments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        // ファイル名は日時なので名前順 = 古い順
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * セグメントファイルのインデックスのファイル
+     */
+    private static File indexFileOf(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(),
+                name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * インデックスの1件
+     */
+    public static final class Entry {
+        /** セグメントファイル */
+        public final File segment;
+        /** 受信日時(ミリ秒) */
+        public final long time;
+        /** DataType名(今のバージョンにない場合もある) */
+        public final String type;
+        /** gzipのメンバーの開始位置 */
+        public final long offset;
+        /** メンバー内の行番号 */
+        public final int line;
+
+        Entry(File segment, long time, String type, long offset, int line) {
+            this.segment = segment;
+            this.time = time;
+            this.type = type;
+            this.offset = offset;
+            this.line = line;
+        }
+
+        /**
+         * @return DataType(今のバージョンにない場合はnull)
+         */
+        public DataType getDataType() {
+            return toDataType(this.type);
+        }
+
+        /**
+         * このレスポンスだけを読み込みます
+         *
+         * @return データ(今のバージョンにないDataTypeの場合はnull)
+         * @throws IOException
+         */
+        public Data read() throws IOException {
+            try (FileInputStream in = new FileInputStream(this.segment)) {
+                in.getChannel().position(this.offset);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(in, 64 * 1024), StandardCharsets.UTF_8));
+                for (int i = 0; i < this.line; i++) {
+                    if (reader.readLine() == null) {
+                        throw new EOFException(this.segment.getPath());
+                    }
+                }
+                String text = reader.readLine();
+                if (text == null) {
+                    throw new EOFException(this.segment.getPath());
+                }
+                return parse(text);
+            }
+        }
+    }
+
+    /**
+     * セグメントファイルのインデックスを読み込みます<br>
+     * 書き込み中に終了した場合は最後の数件がインデックスにないことがあります(Readerでは読めます)
+     *
+     * @param segment セグメントファイル
+     * @return インデックス(インデックスファイルがない場合は空)
+     * @throws IOException
+     */
+    public static List<Entry> readIndex(File segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        File indexFile = indexFileOf(segment);
+        if (!indexFile.exists()) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.split("\t");
+                // 途中で途切れた行は無視する
+                if (cols.length == 4) {
+                    try {
+                        entries.add(new Entry(segment, Long.parseLong(cols[0]), cols[1],
+                                Long.parseLong(cols[2]), Integer.parseInt(cols[3])));
+                    } catch (NumberFormatException e) {
+                        // 途切れた行
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 保存したレスポンスを探します
+     *
+     * @param dir 保存先フォルダ
+     * @param from この時刻以降(nullの場合は最初から)
+     * @param to この時刻より前(nullの場合は最後まで)
+     * @param type DataType(nullの場合は全て)
+     * @return 見つかったレスポンスのインデックス(古い順)
+     * @throws IOException
+     */
+    public static List<Entry> find(File dir, Date from, Date to, DataType type) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        for (File segment : listSegments(dir)) {
+            for (Entry entry : readIndex(segment)) {
+                if ((from != null) && (entry.time < from.getTime())) {
+                    continue;
+                }
+                if ((to != null) && (entry.time >= to.getTime())) {
+                    continue;
+                }
+                if ((type != null) && !type.name().equals(entry.type)) {
+                    continue;
+                }
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 保存したレスポンスを先頭から順に読み込みます
+     */
+    public static final class Reader implements Closeable {
+        private final List<File> segments;
+        private int next;
+        private BufferedReader current;
+
+        /**
+         * @param file 保存先フォルダ(中のセグメントファイルを古い順に全て読む)またはセグメントファイル
+         */
+        public Reader(File file) {
+            this.segments = file.isDirectory() ? listSegments(file) : new ArrayList<>(Arrays.asList(file));
+        }
+
+        /**
+         * @return 読み込むセグメントファイル
+         */
+        public List<File> getSegments() {
+            return this.segments;
+        }
+
+        /**
+         * 次の1件を読み込みます(今のバージョンにないDataTypeは飛ばします)
+         *
+         * @return データ(終わりの場合はnull)
+         * @throws IOException
+         */
+        public Data next() throws IOException {
+            while (true) {
+                if (this.current == null) {
+                    if (this.next >= this.segments.size()) {
+                        return null;
+                    }
+                    File segment = this.segments.get(this.next++);
+                    InputStream in = new GZIPInputStream(new FileInputStream(segment), 64 * 1024);
+                    this.current = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                }
+                String line;
+                try {
+                    line = this.current.readLine();
+                } catch (EOFException e) {
+                    // 書き込み中に終了した場合は最後の1件が途切れている
+                    line = null;
+                }
+                if (line == null) {
+                    this.current.close();
+                    this.current = null;
+                    continue;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Data data = parse(line);
+                if (data != null) {
+                    return data;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.current != null) {
+                this.current.close();
+                this.current = null;
+            }
+        }
+    }
+}
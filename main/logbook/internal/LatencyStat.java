@@ -0,0 +1,152 @@
+package logbook.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 処理時間の統計(回数・合計・最大・パーセンタイル)を集計します<br>
+ * パーセンタイルは2のべき乗ごとに8つに分けたヒストグラムから求めるので、誤差は1割程度です
+ *
+ */
+public final class LatencyStat {
+
+    /** 名前 */
+    private final String name;
+
+    /** 回数 */
+    private long count;
+
+    /** 合計時間(ナノ秒) */
+    private long totalNanos;
+
+    /** 最大時間(ナノ秒) */
+    private long maxNanos;
+
+    /** 2のべき乗ごとの分割数のビット数 */
+    private static final int SUB_BITS = 3;
+
+    /** 処理時間のヒストグラム */
+    private final long[] histogram = new long[64 << SUB_BITS];
+
+    /**
+     * コンストラクター
+     *
+     * @param name 名前
+     */
+    public LatencyStat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 処理時間を追加します
+     *
+     * @param nanos 処理時間(ナノ秒)
+     */
+    public synchronized void add(long nanos) {
+        this.count++;
+        this.totalNanos += nanos;
+        if (this.maxNanos < nanos) {
+            this.maxNanos = nanos;
+        }
+        this.histogram[bucket(nanos)]++;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < (1 << SUB_BITS)) {
+            return (int) Math.max(nanos, 0);
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (msb - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((msb - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    /** バケットに入る最大の時間(ナノ秒) */
+    private static long bucketMax(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int msb = ((bucket >>> SUB_BITS) + SUB_BITS) - 1;
+        int sub = bucket & ((1 << SUB_BITS) - 1);
+        return ((((1 << SUB_BITS) | sub) + 1L) << (msb - SUB_BITS)) - 1;
+    }
+
+    /**
+     * 統計をリセットします
+     */
+    public synchronized void reset() {
+        this.count = 0;
+        this.totalNanos = 0;
+        this.maxNanos = 0;
+        Arrays.fill(this.histogram, 0);
+    }
+
+    /**
+     * 名前
+     * @return 名前
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 回数
+     * @return 回数
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * 合計時間(ミリ秒)
+     * @return 合計時間(ミリ秒)
+     */
+    public synchronized double getTotalMillis() {
+        return this.totalNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 平均時間(ミリ秒)
+     * @return 平均時間(ミリ秒)
+     */
+    public synchronized double getAverageMillis() {
+        if (this.count == 0) {
+            return 0;
+        }
+        return (this.totalNanos / (double) this.count) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 最大時間(ミリ秒)
+     * @return 最大時間(ミリ秒)
+     */
+    public synchronized double getMaxMillis() {
+        return this.maxNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * パーセンタイル(ミリ秒)
+     * @param percent パーセント(99なら99パーセンタイル)
+     * @return パーセンタイル(ミリ秒)
+     */
+    public synchronized double getPercentileMillis(double percent) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil((this.count * percent) / 100);
+        long seen = 0;
+        for (int i = 0; i < this.histogram.length; i++) {
+            seen += this.histogram[i];
+            if (seen >= rank) {
+                return Math.min(bucketMax(i), this.maxNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        }
+        return this.getMaxMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d回 平均%.2fms p99 %.2fms 最大%.2fms 合計%.1fms",
+                this.name, this.count, this.getAverageMillis(), this.getPercentileMillis(99), this.getMaxMillis(),
+                this.getTotalMillis());
+    }
+}
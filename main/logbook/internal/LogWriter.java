@@ -0,0 +1,565 @@
+package logbook.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import logbook.constants.AppConstants;
+import logbook.util.ReportUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 出撃ログ・報告書への追記をまとめて行うスレッド<br>
+ * 呼び出し側(UIスレッド)はキューに入れるだけで、ファイルのロック確認・代替ファイルのマージ・書き込みはこのスレッドで行います<br>
+ * <ul>
+ * <li>キューに溜まった書き込みはまとめて書き込み、ファイルごとに1回だけflushします</li>
+ * <li>報告書のファイルは開いたままにし、一定時間ごとにディスクに同期、しばらく書き込みがなければ閉じます</li>
+ * <li>キューが一杯のときは少しだけ待ち、それでも空かなければ退避ファイルに書き出して後で書き込みます
+ * (退避している間の書き込みも順番が変わらないように退避し、キューが空になったら書き込みます)</li>
+ * </ul>
+ */
+public final class LogWriter extends Thread {
+    private static final LoggerHolder LOG = new LoggerHolder(LogWriter.class);
+    private static LogWriter instance = null;
+
+    /** キューの長さ */
+    private static final int QUEUE_CAPACITY = 1024;
+
+    /** キューが一杯のときに待つ時間(ミリ秒) */
+    private static final long OFFER_TIMEOUT = 50;
+
+    /** ディスクに同期する間隔(ミリ秒) */
+    private static final long SYNC_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    /** この時間書き込みがなければファイルを閉じる(ミリ秒) */
+    private static final long IDLE_CLOSE = TimeUnit.SECONDS.toMillis(30);
+
+    /** 一度にまとめる書き込みの最大数 */
+    private static final int MAX_BATCH = 256;
+
+    /** 退避ファイルと退避中の書き込みのロック */
+    private static final Object SPILL_LOCK = new Object();
+
+    /** 退避中の書き込み(完了通知を後で呼ぶため、退避した順に持つ) */
+    private static final List<Request> spilled = new ArrayList<>();
+
+    /** spilledのうち退避ファイルに書き出せた数 */
+    private static int spilledInFile = 0;
+
+    /**
+     * 書き込み完了の通知を受け取ります(書き込みスレッドから呼ばれます)
+     */
+    public interface Listener {
+        /**
+         * 書き込みが完了した
+         *
+         * @param file 実際に書き込んだファイル(代替ファイルの場合もある)
+         * @param offset 書き込んだ位置
+         * @param end 書き込んだ後のファイルの終端
+         */
+        void written(File file, long offset, long end);
+    }
+
+    /**
+     * 追記要求
+     */
+    private static class Request {
+        /** 書き込むファイル */
+        final File file;
+        /** ロックされているときに書き込む代替ファイル */
+        final File altFile;
+        /** ファイルが空のときに書き込むヘッダ(CSV以外はnull) */
+        final byte[] header;
+        /** 書き込む内容 */
+        final byte[] data;
+        /** 書き込み後もファイルを開いたままにするか */
+        final boolean keepOpen;
+        final Listener listener;
+        /** flush()の完了待ち用 */
+        final CountDownLatch latch;
+
+        Request(File file, File altFile, byte[] header, byte[] data, boolean keepOpen, Listener listener,
+                CountDownLatch latch) {
+            this.file = file;
+            this.altFile = altFile;
+            this.header = header;
+            this.data = data;
+            this.keepOpen = keepOpen;
+            this.listener = listener;
+            this.latch = latch;
+        }
+    }
+
+    /** スレッド終了の要求 */
+    private static final Request END_REQUEST = new Request(null, null, null, null, false, null, null);
+
+    /** 書き込んだ結果 */
+    private static class Written {
+        final Request request;
+        final File file;
+        final long offset;
+
+        Written(Request request, File file, long offset) {
+            this.request = request;
+            this.file = file;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * 開いているファイル
+     */
+    private static class Handle {
+        /** 実際に書き込んでいるファイル */
+        File file;
+        FileOutputStream stream;
+        OutputStream output;
+        /** 書き込み位置 */
+        long position;
+        long lastUsed;
+        boolean dirty;
+        boolean keepOpen;
+    }
+
+    private static synchronized LogWriter getInstance() {
+        if (instance == null) {
+            instance = new LogWriter();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * スレッドを開始します(退避ファイルがあれば書き込みます)
+     */
+    public static void startup() {
+        getInstance();
+    }
+
+    /**
+     * ファイルに追記します
+     *
+     * @param file 書き込むファイル
+     * @param altFile ロックされているときに書き込む代替ファイル
+     * @param header ファイルが空のときに書き込むヘッダ(不要な場合null)
+     * @param data 書き込む内容
+     * @param keepOpen 書き込み後もファイルを開いたままにするか
+     * @param listener 書き込み完了の通知(不要な場合null)
+     */
+    public static void append(File file, File altFile, byte[] header, byte[] data, boolean keepOpen,
+            Listener listener) {
+        Request request = new Request(file, altFile, header, data, keepOpen, listener, null);
+        LogWriter writer = getInstance();
+        synchronized (SPILL_LOCK) {
+            // 退避中は順番が変わらないように続けて退避する
+            if (spilled.isEmpty()) {
+                try {
+                    if (writer.queue.offer(request, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // キューが空かないので退避ファイルに書き出す
+            spill(request);
+        }
+    }
+
+    /**
+     * それまでに追加した書き込みが完了するまで待ちます
+     *
+     * @param timeout 最大の待ち時間(ミリ秒)
+     */
+    public static void flush(long timeout) {
+        LogWriter writer;
+        synchronized (LogWriter.class) {
+            writer = instance;
+        }
+        if ((writer == null) || (Thread.currentThread() == writer)) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (writer.queue.offer(new Request(null, null, null, null, false, null, latch), timeout,
+                    TimeUnit.MILLISECONDS)) {
+                latch.await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void end() {
+        LogWriter writer;
+        // 書き込みスレッドの終了を待つ間はロックを持たない
+        synchronized (LogWriter.class) {
+            writer = instance;
+            instance = null;
+        }
+        if (writer != null) {
+            writer.endRequested = true;
+            try {
+                writer.queue.put(END_REQUEST);
+                writer.join();
+            } catch (InterruptedException e) {
+                LOG.get().fatal("LogWriterスレッド終了時に何かのエラー", e);
+            }
+        }
+    }
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** 要求されたファイル → 開いているファイル */
+    private final Map<File, Handle> handles = new HashMap<>();
+
+    private volatile boolean endRequested = false;
+
+    private long lastSync = System.currentTimeMillis();
+
+    private LogWriter() {
+        this.setName("logbook_log_writer");
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        this.replaySpill();
+        List<Request> batch = new ArrayList<>();
+        while (!this.endRequested) {
+            try {
+                Request first = this.queue.poll(SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch, MAX_BATCH - 1);
+                    this.process(batch);
+                    batch.clear();
+                }
+                if (this.queue.isEmpty()) {
+                    this.replaySpill();
+                }
+                this.maintenance();
+            } catch (Exception e) {
+                LOG.get().warn("ログの書き込みで何かのエラー", e);
+                batch.clear();
+            }
+        }
+        // 残りを全部書き込んでから終了する
+        try {
+            this.queue.drainTo(batch);
+            this.process(batch);
+            this.replaySpill();
+        } catch (Exception e) {
+            LOG.get().warn("ログの書き込みで何かのエラー", e);
+        }
+        this.closeAll();
+    }
+
+    /**
+     * まとめて書き込み、ファイルごとに1回だけflushする
+     */
+    private void process(List<Request> batch) {
+        List<Written> written = new ArrayList<>();
+        List<CountDownLatch> latches = new ArrayList<>();
+        for (Request request : batch) {
+            if (request == END_REQUEST) {
+                continue;
+            }
+            if (request.latch != null) {
+                latches.add(request.latch);
+                continue;
+            }
+            Written result = this.write(request);
+            if (result != null) {
+                written.add(result);
+            }
+        }
+        // flush(開いたままにしないものは閉じる)
+        Iterator<Handle> it = this.handles.values().iterator();
+        while (it.hasNext()) {
+            Handle handle = it.next();
+            if (handle.dirty) {
+                try {
+                    handle.output.flush();
+                } catch (IOException e) {
+                    LOG.get().warn("ログの書き込みに失敗しました (" + handle.file.getPath() + ")", e);
+                }
+            }
+            if (!handle.keepOpen) {
+                this.close(handle);
+                it.remove();
+            }
+        }
+        for (Written result : written) {
+            Request request = result.request;
+            if (request.listener != null) {
+                try {
+                    request.listener.written(result.file, result.offset, result.offset + request.data.length);
+                } catch (Exception e) {
+                    LOG.get().warn("ログの書き込み後の処理に失敗しました", e);
+                }
+            }
+        }
+        if (!latches.isEmpty() && this.queue.isEmpty()) {
+            // 退避していた分も書き込んでから完了を通知する
+            this.replaySpill();
+        }
+        for (CountDownLatch latch : latches) {
+            this.syncAll();
+            latch.countDown();
+        }
+    }
+
+    /**
+     * 1件書き込む
+     * @return 書き込んだ結果(失敗した場合はnull)
+     */
+    private Written write(Request request) {
+        for (int retry = 0; retry < 2; ++retry) {
+            Handle handle = null;
+            try {
+                handle = this.open(request);
+                long offset = handle.position;
+                if ((offset == 0) && (request.header != null)) {
+                    handle.output.write(request.header);
+                    offset += request.header.length;
+                }
+                handle.output.write(request.data);
+                handle.position = offset + request.data.length;
+                handle.dirty = true;
+                handle.lastUsed = System.currentTimeMillis();
+                handle.keepOpen &= request.keepOpen;
+                return new Written(request, handle.file, offset);
+            } catch (IOException e) {
+                // ロックされたなどの場合は開き直して(代替ファイルになるかもしれない)もう一度
+                if (handle != null) {
+                    this.close(handle);
+                    this.handles.remove(request.file);
+                }
+                if (retry > 0) {
+                    LOG.get().warn("ログの書き込みに失敗しました (" + request.file.getPath() + ")", e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Handle open(Request request) throws IOException {
+        Handle handle = this.handles.get(request.file);
+        if (handle == null) {
+            File file = getStoreFile(request);
+            handle = new Handle();
+            handle.file = file;
+            handle.stream = new FileOutputStream(file, true);
+            handle.output = new BufferedOutputStream(handle.stream);
+            handle.position = handle.stream.getChannel().size();
+            handle.keepOpen = request.keepOpen;
+            this.handles.put(request.file, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * 書き込み先のファイルを返します(ロックされている場合は代替ファイル)
+     */
+    private static File getStoreFile(Request request) throws IOException {
+        File file = request.file;
+        File altFile = request.altFile;
+        File dir = file.getParentFile();
+        if ((dir == null) || !(dir.exists() || dir.mkdirs())) {
+            // 保存先ディレクトリが無く、ディレクトリの作成に失敗した場合はカレントフォルダにファイルを保存
+            file = new File(file.getName());
+            altFile = new File(altFile.getName());
+        }
+        if (ReportUtils.isLocked(file)) {
+            // ロックされている場合は代替ファイルに書き込みます
+            return altFile;
+        }
+        if (altFile.exists() && !ReportUtils.isLocked(altFile) && (FileUtils.sizeOf(altFile) > 0)) {
+            mergeAltFile(file, altFile, request.header != null);
+        }
+        return file;
+    }
+
+    /**
+     * 代替ファイルを本体にマージして削除します
+     *
+     * @param file ファイル本体
+     * @param altFile 代替ファイル
+     * @param hasHeader 代替ファイルの先頭行がヘッダか
+     */
+    private static void mergeAltFile(File file, File altFile, boolean hasHeader) throws IOException {
+        // 本体が空ファイルの場合は、代替ファイルをリネームして終了
+        if (!file.exists() || (FileUtils.sizeOf(file) <= 0)) {
+            file.delete();
+            altFile.renameTo(file);
+            return;
+        }
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file, true))) {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(altFile))) {
+                if (hasHeader) {
+                    List<String> lines = IOUtils.readLines(input, AppConstants.CHARSET);
+                    // タイトル行は削除
+                    lines.remove(0);
+                    IOUtils.writeLines(lines, "\r\n", output, AppConstants.CHARSET);
+                } else {
+                    IOUtils.copy(input, output);
+                }
+            }
+        }
+        altFile.delete();
+    }
+
+    /**
+     * 定期的な同期と、使われていないファイルを閉じる
+     */
+    private void maintenance() {
+        long now = System.currentTimeMillis();
+        if ((now - this.lastSync) >= SYNC_INTERVAL) {
+            this.syncAll();
+            Iterator<Handle> it = this.handles.values().iterator();
+            while (it.hasNext()) {
+                Handle handle = it.next();
+                if ((now - handle.lastUsed) >= IDLE_CLOSE) {
+                    this.close(handle);
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void syncAll() {
+        for (Handle handle : this.handles.values()) {
+            if (handle.dirty) {
+                try {
+                    handle.output.flush();
+                    handle.stream.getFD().sync();
+                    handle.dirty = false;
+                } catch (IOException e) {
+                    LOG.get().warn("ログの同期に失敗しました (" + handle.file.getPath() + ")", e);
+                }
+            }
+        }
+        this.lastSync = System.currentTimeMillis();
+    }
+
+    private void close(Handle handle) {
+        try {
+            handle.output.flush();
+            if (handle.dirty) {
+                handle.stream.getFD().sync();
+            }
+        } catch (IOException e) {
+            LOG.get().warn("ログの書き込みに失敗しました (" + handle.file.getPath() + ")", e);
+        } finally {
+            IOUtils.closeQuietly(handle.stream);
+        }
+    }
+
+    private void closeAll() {
+        for (Handle handle : this.handles.values()) {
+            this.close(handle);
+        }
+        this.handles.clear();
+    }
+
+    /**
+     * キューに入らなかった書き込みを退避ファイルに書き出す(SPILL_LOCKを持って呼ぶこと)<br>
+     * 退避ファイルに書き出せなくても、起動している間はメモリに持っておいて書き込みます
+     */
+    private static void spill(Request request) {
+        spilled.add(request);
+        File spillFile = AppConstants.LOG_WRITER_SPILL_FILE;
+        try {
+            FileUtils.forceMkdir(spillFile.getParentFile());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(spillFile, true)))) {
+                output.writeUTF(request.file.getPath());
+                output.writeUTF(request.altFile.getPath());
+                output.writeInt((request.header != null) ? request.header.length : -1);
+                if (request.header != null) {
+                    output.write(request.header);
+                }
+                output.writeInt(request.data.length);
+                output.write(request.data);
+                output.writeBoolean(request.keepOpen);
+            }
+            spilledInFile++;
+            LOG.get().warn("書き込みキューが一杯のため退避しました (" + request.file.getPath() + ")");
+        } catch (IOException e) {
+            LOG.get().warn("ログを退避できませんでした (" + request.file.getPath() + ")", e);
+        }
+    }
+
+    /**
+     * 退避ファイルの内容を書き込む<br>
+     * 退避ファイルのうち、この起動中に退避したものは完了通知を持っているメモリの方を使います
+     */
+    private void replaySpill() {
+        List<Request> requests = new ArrayList<>();
+        synchronized (SPILL_LOCK) {
+            File spillFile = AppConstants.LOG_WRITER_SPILL_FILE;
+            if (spilled.isEmpty() && !spillFile.exists()) {
+                return;
+            }
+            if (spillFile.exists()) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(spillFile)))) {
+                    while (true) {
+                        File file;
+                        try {
+                            file = new File(input.readUTF());
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        File altFile = new File(input.readUTF());
+                        int headerLength = input.readInt();
+                        byte[] header = null;
+                        if (headerLength >= 0) {
+                            header = new byte[headerLength];
+                            input.readFully(header);
+                        }
+                        byte[] data = new byte[input.readInt()];
+                        input.readFully(data);
+                        boolean keepOpen = input.readBoolean();
+                        requests.add(new Request(file, altFile, header, data, keepOpen, null, null));
+                    }
+                } catch (IOException e) {
+                    LOG.get().warn("退避したログの読み込みに失敗しました", e);
+                }
+                if (!spillFile.delete()) {
+                    LOG.get().warn("退避ファイルを削除できません (" + spillFile.getPath() + ")");
+                }
+            }
+            // 前回の起動中に退避したもの + この起動中に退避したもの
+            int previous = Math.max(0, requests.size() - spilledInFile);
+            requests = new ArrayList<>(requests.subList(0, previous));
+            requests.addAll(spilled);
+            spilled.clear();
+            spilledInFile = 0;
+        }
+        if (!requests.isEmpty()) {
+            LOG.get().info("退避していたログを書き込みます (" + requests.size() + "件)");
+            this.process(requests);
+        }
+    }
+}
@@ -39,23 +39,28 @@ public class MasterData {
         public static MasterData instance = null;
     }
 
-    /** 変更があったか */
-    private static boolean modified = false;
+    /** 保存対象(変更があったらPersistenceServiceが書き込む) */
+    private static final PersistenceService.Target PERSISTENCE = PersistenceService.register("マスターデータ",
+            MasterData::snapshot);
 
     /**
      * 
-     * 設定ファイルに書き込みます
+     * 変更があれば設定ファイルに今すぐ書き込みます
      */
     public static void store() throws IOException {
         if (Holder.instance == null) {
             return;
         }
-        // 最終更新日時がファイル更新日時より新しい時だけ書き込む
-        if (modified) {
+        PersistenceService.store(PERSISTENCE);
+    }
+
+    private static PersistenceService.Snapshot snapshot() throws IOException {
+        final BeanUtils.Encoded encoded = BeanUtils.encodeObject(AppConstants.MASTER_DATA_CONFIG, Holder.instance);
+        return () -> {
             ApplicationMain.sysPrint("マスターファイル更新");
-            BeanUtils.writeObject(AppConstants.MASTER_DATA_CONFIG, Holder.instance);
-            modified = false;
-        }
+            BeanUtils.writeEncoded(AppConstants.MASTER_DATA_CONFIG, encoded);
+            return encoded.size();
+        };
     }
 
     private static void load() {
@@ -126,7 +131,7 @@ public class MasterData {
     private void doMater(JsonObject data) {
         this.start2 = new Start2Dto(data);
         this.lastUpdateTime = new Date();
-        modified = true;
+        PersistenceService.markDirty(PERSISTENCE);
     }
 
     /** 艦種情報を取得 */
@@ -154,7 +159,7 @@ public class MasterData {
             if (newState.equals(this.mapState) == false) {
                 this.mapState = newState;
                 this.lastUpdateTime = new Date();
-                modified = true;
+                PersistenceService.markDirty(PERSISTENCE);
             }
         }
     }
@@ -169,7 +174,7 @@ public class MasterData {
             if (newState.equals(this.missionState) == false) {
                 this.missionState = newState;
                 this.lastUpdateTime = new Date();
-                modified = true;
+                PersistenceService.markDirty(PERSISTENCE);
             }
         }
     }
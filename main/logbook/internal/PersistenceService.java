@@ -0,0 +1,449 @@
+package logbook.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * マスターデータ・敵編成・艦パラメータ・グループ・スクリプトデータなどのファイルを保存するスレッド<br>
+ * 変更があったことだけを{@link #markDirty(Target)}で通知してもらい、
+ * 変更が落ち着いてから(変更が続く場合でも一定時間ごとに)まとめて保存します<br>
+ * 保存する内容はUIスレッドで作り({@link Snapshotter})、ファイルへの書き込みはこのスレッドで行います<br>
+ * 保存対象ごとに通知回数・書き込み回数・書き込んだバイト数・処理時間を集計します
+ */
+public final class PersistenceService extends Thread {
+    private static final LoggerHolder LOG = new LoggerHolder(PersistenceService.class);
+    private static PersistenceService instance = null;
+
+    /** 最後の変更からこの時間変更がなければ保存する(ミリ秒) */
+    private static final long DEBOUNCE = TimeUnit.SECONDS.toMillis(2);
+
+    /** 変更が続いていても最初の変更からこの時間で保存する(ミリ秒) */
+    private static final long MAX_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    /** UIスレッドを待つときに終了の要求を確認する間隔(ミリ秒) */
+    private static final long UI_WAIT_INTERVAL = 100;
+
+    /** 変更の状態のロック */
+    private static final Object LOCK = new Object();
+
+    /** 保存対象 */
+    private static final List<Target> TARGETS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 保存する内容を作ります(UIスレッドで呼ばれます)
+     */
+    public interface Snapshotter {
+        /**
+         * 現在の内容を保存する内容を作ります<br>
+         * 返されたSnapshotは別スレッドで書き込まれるので、その後に変更されるオブジェクトを参照しないでください
+         *
+         * @return 保存する内容
+         * @throws IOException IOException
+         */
+        Snapshot snapshot() throws IOException;
+    }
+
+    /**
+     * 保存する内容
+     */
+    public interface Snapshot {
+        /**
+         * ファイルに書き込みます
+         *
+         * @return 書き込んだバイト数
+         * @throws IOException IOException
+         */
+        long write() throws IOException;
+    }
+
+    /**
+     * ファイルの内容を書き込みます
+     */
+    public interface OutputAction {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 保存対象
+     */
+    public static final class Target {
+        private final String name;
+        private final Snapshotter snapshotter;
+
+        /** 同じ対象の書き込みを順番に行うためのロック */
+        private final Object writeLock = new Object();
+
+        /** 最初の変更の時刻(変更がなければ0) LOCKで保護 */
+        private long firstDirty;
+        /** 最後の変更の時刻 LOCKで保護 */
+        private long lastDirty;
+        /** 保存する内容を作った回数 LOCKで保護 */
+        private long snapshotSeq;
+        /** 書き込んだ内容の番号 writeLockで保護 */
+        private long writtenSeq;
+
+        /** 変更の通知回数 */
+        private volatile long notifyCount;
+        /** 書き込み回数 */
+        private volatile long writeCount;
+        /** 書き込んだバイト数 */
+        private volatile long writtenBytes;
+        /** 保存する内容を作る時間(UIスレッド) */
+        private final LatencyStat snapshotStat;
+        /** 書き込み時間 */
+        private final LatencyStat writeStat;
+
+        private Target(String name, Snapshotter snapshotter) {
+            this.name = name;
+            this.snapshotter = snapshotter;
+            this.snapshotStat = new LatencyStat(name + " 準備");
+            this.writeStat = new LatencyStat(name + " 書き込み");
+        }
+
+        /**
+         * 名前
+         * @return 名前
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * 変更の通知回数
+         * @return 変更の通知回数
+         */
+        public long getNotifyCount() {
+            return this.notifyCount;
+        }
+
+        /**
+         * 書き込み回数
+         * @return 書き込み回数
+         */
+        public long getWriteCount() {
+            return this.writeCount;
+        }
+
+        /**
+         * 書き込んだバイト数の合計
+         * @return 書き込んだバイト数の合計
+         */
+        public long getWrittenBytes() {
+            return this.writtenBytes;
+        }
+
+        /**
+         * 保存する内容を作る時間(UIスレッド)の統計
+         * @return 統計
+         */
+        public LatencyStat getSnapshotStat() {
+            return this.snapshotStat;
+        }
+
+        /**
+         * 書き込み時間の統計
+         * @return 統計
+         */
+        public LatencyStat getWriteStat() {
+            return this.writeStat;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 通知%d回 書き込み%d回 %dバイト / %s / %s", this.name, this.notifyCount,
+                    this.writeCount, this.writtenBytes, this.snapshotStat, this.writeStat);
+        }
+    }
+
+    /**
+     * 保存対象を登録します
+     *
+     * @param name 名前
+     * @param snapshotter 保存する内容を作る
+     * @return 保存対象
+     */
+    public static Target register(String name, Snapshotter snapshotter) {
+        Target target = new Target(name, snapshotter);
+        TARGETS.add(target);
+        return target;
+    }
+
+    /**
+     * 登録されている保存対象
+     * @return 保存対象
+     */
+    public static List<Target> getTargets() {
+        return Collections.unmodifiableList(TARGETS);
+    }
+
+    /**
+     * 変更があったことを通知します(どのスレッドからでも呼び出せます)
+     *
+     * @param target 保存対象
+     */
+    public static void markDirty(Target target) {
+        long now = System.currentTimeMillis();
+        synchronized (LOCK) {
+            if (target.firstDirty == 0) {
+                target.firstDirty = now;
+            }
+            target.lastDirty = now;
+            target.notifyCount++;
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * 変更があれば呼び出したスレッドで今すぐ保存します<br>
+     * UIスレッドか、UIスレッドが終了した後に呼び出してください
+     *
+     * @param target 保存対象
+     * @throws IOException IOException
+     */
+    public static void store(Target target) throws IOException {
+        long seq;
+        synchronized (LOCK) {
+            if (target.firstDirty == 0) {
+                return;
+            }
+            target.firstDirty = 0;
+            seq = ++target.snapshotSeq;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = takeSnapshot(target);
+        } catch (IOException | RuntimeException e) {
+            markDirty(target);
+            throw e;
+        }
+        write(target, snapshot, seq);
+    }
+
+    /**
+     * スレッドを開始します(UIスレッドから呼び出してください)
+     */
+    public static synchronized void startup() {
+        if (instance == null) {
+            instance = new PersistenceService();
+            instance.start();
+        }
+    }
+
+    /**
+     * スレッドを終了します<br>
+     * 保存されていない変更は残るので、終了処理で{@link #store(Target)}を呼び出してください
+     */
+    public static synchronized void end() {
+        if (instance != null) {
+            synchronized (LOCK) {
+                instance.endRequested = true;
+                LOCK.notifyAll();
+            }
+            try {
+                instance.join();
+                instance = null;
+            } catch (InterruptedException e) {
+                LOG.get().fatal("PersistenceServiceスレッド終了時に何かのエラー", e);
+            }
+        }
+    }
+
+    /**
+     * ファイルを一時ファイルに書き込んでから置き換えます<br>
+     * 書き込み途中で終了しても元のファイルは壊れません
+     *
+     * @param file ファイル
+     * @param action 書き込む内容
+     * @return 書き込んだバイト数
+     * @throws IOException IOException
+     */
+    public static long writeAtomically(File file, OutputAction action) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        File parent = file.getAbsoluteFile().getParentFile();
+        if ((parent != null) && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Directory '" + parent + "' could not be created");
+        }
+        try {
+            long bytes;
+            try (CountingOutputStream out = new CountingOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                action.write(out);
+                out.flush();
+                bytes = out.getByteCount();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return bytes;
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private static Snapshot takeSnapshot(Target target) throws IOException {
+        long start = System.nanoTime();
+        Snapshot snapshot = target.snapshotter.snapshot();
+        target.snapshotStat.add(System.nanoTime() - start);
+        return snapshot;
+    }
+
+    private static void write(Target target, Snapshot snapshot, long seq) throws IOException {
+        synchronized (target.writeLock) {
+            if (seq < target.writtenSeq) {
+                // より新しい内容が既に書き込まれている
+                return;
+            }
+            long start = System.nanoTime();
+            long bytes = snapshot.write();
+            long elapsed = System.nanoTime() - start;
+            target.writtenSeq = seq;
+            target.writeStat.add(elapsed);
+            target.writeCount++;
+            target.writtenBytes += bytes;
+            LOG.get().debug(target.name + "を保存しました(" + bytes + "バイト "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms)");
+        }
+    }
+
+    private volatile boolean endRequested = false;
+
+    private final Display display;
+
+    private PersistenceService() {
+        this.display = Display.getDefault();
+        this.setName("logbook_persistence");
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                List<Target> due = new ArrayList<>();
+                final long[] seqs;
+                synchronized (LOCK) {
+                    long wait = this.collectDue(due);
+                    while (!this.endRequested && due.isEmpty()) {
+                        LOCK.wait(wait);
+                        wait = this.collectDue(due);
+                    }
+                    if (this.endRequested) {
+                        // 残りは終了処理で保存される
+                        for (Target target : due) {
+                            target.firstDirty = target.lastDirty;
+                        }
+                        return;
+                    }
+                    seqs = new long[due.size()];
+                    for (int i = 0; i < seqs.length; ++i) {
+                        seqs[i] = ++due.get(i).snapshotSeq;
+                    }
+                }
+                // 保存する内容はUIスレッドでまとめて作る
+                final Snapshot[] snapshots = new Snapshot[due.size()];
+                if (!this.snapshotOnUiThread(due, snapshots)) {
+                    // UIスレッドが終了した(残りは終了処理で保存される)
+                    for (Target target : due) {
+                        markDirty(target);
+                    }
+                    return;
+                }
+                for (int i = 0; i < snapshots.length; ++i) {
+                    if (snapshots[i] == null) {
+                        continue;
+                    }
+                    try {
+                        write(due.get(i), snapshots[i], seqs[i]);
+                    } catch (Exception e) {
+                        LOG.get().warn(due.get(i).getName() + "の保存に失敗しました", e);
+                        markDirty(due.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (!this.endRequested) {
+                LOG.get().fatal("スレッドが異常終了しました", e);
+            }
+        }
+    }
+
+    /**
+     * UIスレッドで保存する内容を作ります<br>
+     * 終了処理でUIスレッドがこのスレッドの終了を待っている場合があるので、syncExecは使わずに終了の要求を確認しながら待ちます
+     *
+     * @return 作れた場合true(UIスレッドが終了した場合false)
+     */
+    private boolean snapshotOnUiThread(final List<Target> due, final Snapshot[] snapshots)
+            throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        try {
+            this.display.asyncExec(() -> {
+                try {
+                    for (int i = 0; i < snapshots.length; ++i) {
+                        try {
+                            snapshots[i] = takeSnapshot(due.get(i));
+                        } catch (Exception e) {
+                            LOG.get().warn(due.get(i).getName() + "の保存の準備に失敗しました", e);
+                            // 変更は保存されていないので次の機会に保存し直す
+                            markDirty(due.get(i));
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        } catch (SWTException e) {
+            return false;
+        }
+        while (!done.await(UI_WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (this.endRequested || this.display.isDisposed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 保存する時刻になった対象を取り出します(LOCKを持って呼び出すこと)
+     *
+     * @param due 保存する時刻になった対象
+     * @return 次に保存する対象までの時間(ミリ秒) 無い場合は0
+     */
+    private long collectDue(List<Target> due) {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (Target target : TARGETS) {
+            if (target.firstDirty == 0) {
+                continue;
+            }
+            long time = Math.min(target.lastDirty + DEBOUNCE, target.firstDirty + MAX_DELAY);
+            if (time <= now) {
+                target.firstDirty = 0;
+                due.add(target);
+            } else {
+                next = Math.min(next, time);
+            }
+        }
+        return (next == Long.MAX_VALUE) ? 0 : Math.max(1, next - now);
+    }
+}
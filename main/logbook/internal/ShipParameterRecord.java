@@ -3,9 +3,7 @@
  */
 package logbook.internal;
 
-import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -38,8 +36,9 @@ public class ShipParameterRecord {
     private static final LoggerHolder LOG = new LoggerHolder(ShipParameterRecord.class);
     private static Map<Integer, ShipParameterRecord> SHIP = new TreeMap<Integer, ShipParameterRecord>();
 
-    /** 変更があったか */
-    private static boolean modified = false;
+    /** 保存対象(変更があったらPersistenceServiceが書き込む) */
+    private static final PersistenceService.Target PERSISTENCE = PersistenceService.register("艦パラメータ",
+            ShipParameterRecord::snapshot);
 
     // 始めてアクセスがあった時に読み込む
     public static final boolean INIT_COMPLETE;
@@ -151,7 +150,7 @@ public class ShipParameterRecord {
         if (Arrays.equals(record.defaultSlot, itemId) == false) {
             record.defaultSlot = itemId;
             SHIP.put(ship.getShipId(), record);
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
             ApplicationMain.main.printMessage(ship.getFullName() + "の装備データを更新");
         }
     }
@@ -175,7 +174,7 @@ public class ShipParameterRecord {
         }
         if (updated) {
             SHIP.put(ship.getShipId(), record);
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
         }
     }
 
@@ -192,42 +191,52 @@ public class ShipParameterRecord {
         };
     }
 
+    /**
+     * 変更があればファイルに今すぐ書き込みます
+     */
     public static void store() throws IOException {
-        // 変更があったときだけ書き込む
-        if (modified) {
-            try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(new BufferedOutputStream(
-                    new FileOutputStream(AppConstants.SHIP_PARAMETER_FILE)), AppConstants.CHARSET),
-                    CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER)) {
-                List<String> flatten = new ArrayList<String>();
-                writer.writeNext(getHeader());
-                for (Entry<Integer, ShipParameterRecord> e : SHIP.entrySet()) {
-                    ShipParameterRecord data = e.getValue();
-                    flatten.add(String.valueOf(data.shipId));
-                    flatten.add(data.shipName);
-                    addToString(flatten, data.ASW);
-                    addToString(flatten, data.Evasion);
-                    addToString(flatten, data.LOS);
-                    if (data.defaultSlot != null) {
-                        addToString(flatten, data.defaultSlot);
-                    }
-                    else {
-                        flatten.addAll(Arrays.asList(new String[] { "null", "null", "null", "null", "null" }));
-                    }
-                    flatten.add(data.albumMessage);
-                    if (data.maxeq != null) {
-                        addToString(flatten, data.maxeq);
-                    }
-                    else {
-                        flatten.addAll(Arrays.asList(new String[] { "null", "null", "null", "null", "null" }));
-                    }
-                    flatten.add(data.seiku != null ? String.valueOf(data.seiku) : "null");
-                    writer.writeNext(flatten.toArray(new String[0]));
-                    flatten.clear();
-                }
+        PersistenceService.store(PERSISTENCE);
+    }
+
+    private static PersistenceService.Snapshot snapshot() {
+        // レコードは変更されるので行の文字列にしておく
+        final List<String[]> rows = new ArrayList<>(SHIP.size() + 1);
+        rows.add(getHeader());
+        List<String> flatten = new ArrayList<String>();
+        for (Entry<Integer, ShipParameterRecord> e : SHIP.entrySet()) {
+            ShipParameterRecord data = e.getValue();
+            flatten.add(String.valueOf(data.shipId));
+            flatten.add(data.shipName);
+            addToString(flatten, data.ASW);
+            addToString(flatten, data.Evasion);
+            addToString(flatten, data.LOS);
+            if (data.defaultSlot != null) {
+                addToString(flatten, data.defaultSlot);
             }
-            ApplicationMain.sysPrint("艦パラメータファイル更新");
-            modified = false;
+            else {
+                flatten.addAll(Arrays.asList(new String[] { "null", "null", "null", "null", "null" }));
+            }
+            flatten.add(data.albumMessage);
+            if (data.maxeq != null) {
+                addToString(flatten, data.maxeq);
+            }
+            else {
+                flatten.addAll(Arrays.asList(new String[] { "null", "null", "null", "null", "null" }));
+            }
+            flatten.add(data.seiku != null ? String.valueOf(data.seiku) : "null");
+            rows.add(flatten.toArray(new String[0]));
+            flatten.clear();
         }
+        return () -> {
+            long bytes = PersistenceService.writeAtomically(AppConstants.SHIP_PARAMETER_FILE, out -> {
+                CSVWriter writer = new CSVWriter(new OutputStreamWriter(out, AppConstants.CHARSET),
+                        CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER);
+                writer.writeAll(rows);
+                writer.flush();
+            });
+            ApplicationMain.sysPrint("艦パラメータファイル更新");
+            return bytes;
+        };
     }
 
     public static void load() throws IOException {
@@ -242,7 +251,7 @@ public class ShipParameterRecord {
                 if (entry.length >= 17) {
                     ShipParameterRecord record = new ShipParameterRecord(entry);
                     if (SHIP.containsKey(record.shipId)) {
-                        modified = true;
+                        PersistenceService.markDirty(PERSISTENCE);
                     }
                     SHIP.put(record.shipId, record);
                 }
@@ -0,0 +1,833 @@
+package logbook.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import logbook.constants.AppConstants;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * 外部サーバーへの送信をまとめて行うスレッド<br>
+ * 艦これ統計データベース・TsunDB・Push通知はここに送信先を登録して送信します<br>
+ * <ul>
+ * <li>送信は1つのHttpClientで非同期に行い、送信先ごとに同時に送る数を制限します</li>
+ * <li>送信待ちは送信先ごとのディレクトリにファイルで保存し、再起動後も続きから送信します</li>
+ * <li>失敗したときは捨てずに、送信先ごとに待ち時間を倍々に伸ばして再送します</li>
+ * <li>送信先がまとめて受け付ける場合は、溜まった送信を1回にまとめて送ります</li>
+ * <li>APIキーなどの認証情報は送信待ちに保存せず、送信するときに送信先ごとに付けます</li>
+ * </ul>
+ */
+public final class Uploader extends Thread {
+    private static final LoggerHolder LOG = new LoggerHolder(Uploader.class);
+    private static Uploader instance = null;
+
+    /** ファイルのバージョン(1は認証情報を含んでいるので読み込まずに消す) */
+    private static final int FILE_VERSION = 2;
+
+    /** 送信待ちファイルの拡張子 */
+    private static final String FILE_SUFFIX = ".item";
+
+    /** 1回の送信のタイムアウト(秒) */
+    private static final long REQUEST_TIMEOUT = 60;
+
+    /** 最初の再送までの待ち時間(ミリ秒) */
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+
+    /** 再送までの最大の待ち時間(ミリ秒) */
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+
+    /** ファイル名の重複を避けるための連番 */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * 送信
+     */
+    public static final class Item {
+        final String method;
+        final String url;
+        final String contentType;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final byte[] body;
+        /** 送信を受け付けた時刻 */
+        final long created;
+        /** ログに出す名前 */
+        String label;
+        /** 保存したファイル(保存できなかったときはnull) */
+        volatile File file;
+        /** 保存が済んだか(保存に失敗した場合も含む) */
+        volatile boolean saved;
+        /** 捨てられたか */
+        volatile boolean dropped;
+
+        /**
+         * コンストラクター
+         *
+         * @param method メソッド(POST, PUTなど)
+         * @param url 送信先URL
+         * @param contentType Content-Type
+         * @param body 送信する内容
+         */
+        public Item(String method, String url, String contentType, byte[] body) {
+            this(method, url, contentType, body, System.currentTimeMillis());
+        }
+
+        private Item(String method, String url, String contentType, byte[] body, long created) {
+            this.method = method;
+            this.url = url;
+            this.contentType = contentType;
+            this.body = body;
+            this.created = created;
+        }
+
+        /**
+         * ヘッダを追加します
+         *
+         * @param name 名前
+         * @param value 値
+         * @return this
+         */
+        public Item header(String name, String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * ログに出す名前を設定します
+         *
+         * @param label 名前
+         * @return this
+         */
+        public Item label(String label) {
+            this.label = label;
+            return this;
+        }
+
+        /**
+         * @return ログに出す名前
+         */
+        public String getLabel() {
+            return this.label;
+        }
+
+        /**
+         * @return 送信先URL
+         */
+        public String getUrl() {
+            return this.url;
+        }
+
+        /**
+         * @return 送信する内容
+         */
+        public byte[] getBody() {
+            return this.body;
+        }
+
+        /**
+         * @return 送信を受け付けた時刻
+         */
+        public long getCreated() {
+            return this.created;
+        }
+
+        /**
+         * 同じメソッド・URL・ヘッダで内容だけ違う送信を作ります(まとめて送るとき用)
+         *
+         * @param body 送信する内容
+         * @return 送信
+         */
+        public Item withBody(byte[] body) {
+            Item item = new Item(this.method, this.url, this.contentType, body, this.created);
+            item.headers.putAll(this.headers);
+            item.label = this.label;
+            return item;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(FILE_VERSION);
+            out.writeLong(this.created);
+            out.writeUTF(this.method);
+            out.writeUTF(this.url);
+            out.writeUTF(this.contentType);
+            out.writeUTF(this.label != null ? this.label : "");
+            out.writeInt(this.headers.size());
+            for (Entry<String, String> header : this.headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(this.body.length);
+            out.write(this.body);
+        }
+
+        private static Item read(DataInputStream in) throws IOException {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("未対応のバージョン: " + version);
+            }
+            long created = in.readLong();
+            String method = in.readUTF();
+            String url = in.readUTF();
+            String contentType = in.readUTF();
+            String label = in.readUTF();
+            int numHeaders = in.readInt();
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 0; i < numHeaders; i++) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            Item item = new Item(method, url, contentType, body, created);
+            item.headers.putAll(headers);
+            item.label = label.isEmpty() ? null : label;
+            return item;
+        }
+    }
+
+    /**
+     * 溜まった送信を1つにまとめます
+     */
+    public interface Merger {
+        /**
+         * @param items まとめる送信(2つ以上、古い順)
+         * @return まとめた送信
+         */
+        Item merge(List<Item> items);
+    }
+
+    /**
+     * 送信するときに認証情報を付けます(HttpClientを呼び出すスレッドから呼ばれます)
+     */
+    public interface Credentials {
+        /**
+         * @param item 送信(認証情報を含まない)
+         * @return 認証情報を付けた送信
+         */
+        Item apply(Item item) throws Exception;
+    }
+
+    /**
+     * 送信結果の通知を受け取ります(HttpClientのスレッドから呼ばれます)
+     */
+    public interface Listener {
+        /**
+         * 送信に成功した
+         *
+         * @param item 送信
+         * @param content レスポンス
+         */
+        void sent(Item item, String content);
+
+        /**
+         * 送信を諦めた(サーバーに拒否された、古くなった、溜まりすぎた)
+         *
+         * @param item 送信
+         * @param reason 理由
+         */
+        void dropped(Item item, String reason);
+    }
+
+    /**
+     * 送信先
+     */
+    public static final class Destination {
+        final String name;
+        final int concurrency;
+        int maxBatch = 1;
+        Merger merger;
+        long maxAge = TimeUnit.DAYS.toMillis(7);
+        long maxBytes = 64L * 1024 * 1024;
+        Listener listener;
+        Credentials credentials;
+
+        /**
+         * コンストラクター
+         *
+         * @param name 名前(送信待ちを保存するディレクトリ名)
+         * @param concurrency 同時に送る数
+         */
+        public Destination(String name, int concurrency) {
+            this.name = name;
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * 溜まった送信をまとめて送るようにします
+         *
+         * @param maxBatch 1回にまとめる最大数
+         * @param merger まとめ方
+         * @return this
+         */
+        public Destination batch(int maxBatch, Merger merger) {
+            this.maxBatch = maxBatch;
+            this.merger = merger;
+            return this;
+        }
+
+        /**
+         * この時間より古い送信は送らずに捨てます
+         *
+         * @param maxAge 時間(ミリ秒)
+         * @return this
+         */
+        public Destination maxAge(long maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * 送信待ちがこの大きさを超えたら古いものから捨てます
+         *
+         * @param maxBytes 大きさ(バイト)
+         * @return this
+         */
+        public Destination maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param listener 送信結果の通知
+         * @return this
+         */
+        public Destination listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param credentials 送信するときに認証情報を付ける処理
+         * @return this
+         */
+        public Destination credentials(Credentials credentials) {
+            this.credentials = credentials;
+            return this;
+        }
+
+        /**
+         * @return 名前
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    /**
+     * 送信先ごとの状態
+     */
+    private static class Lane {
+        final Destination destination;
+        final File dir;
+        /** 送信待ち(古い順) */
+        final ArrayDeque<Item> pending = new ArrayDeque<>();
+        /** 送信待ちの大きさの合計 */
+        long bytes;
+        /** 送信中の数 */
+        int inflight;
+        /** 続けて失敗した回数 */
+        int failures;
+        /** 次に送信してよい時刻 */
+        long nextAttempt;
+        long sentCount;
+        long retryCount;
+        long droppedCount;
+
+        Lane(Destination destination, File dir) {
+            this.destination = destination;
+            this.dir = dir;
+        }
+    }
+
+    private static synchronized Uploader getInstance() {
+        if (instance == null) {
+            instance = new Uploader(AppConstants.UPLOAD_QUEUE_DIR);
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * スレッドを開始します
+     */
+    public static void startup() {
+        getInstance();
+    }
+
+    /**
+     * 送信先を登録します(保存されている送信待ちがあれば送信を再開します)
+     *
+     * @param destination 送信先
+     */
+    public static void register(Destination destination) {
+        getInstance().addDestination(destination);
+    }
+
+    /**
+     * 送信します
+     *
+     * @param destination 送信先の名前
+     * @param item 送信
+     */
+    public static void submit(String destination, Item item) {
+        getInstance().offer(destination, item);
+    }
+
+    public static synchronized void end() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /** 送信待ちを保存するディレクトリ */
+    private final File baseDir;
+
+    /** 送信先の名前 → 状態 */
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+
+    /** まだファイルに保存していない送信 */
+    private final List<Item> unsaved = new ArrayList<>();
+
+    private HttpClient httpClient = null;
+
+    private volatile boolean endRequested = false;
+
+    /**
+     * コンストラクター(スレッドはstart()で開始します)
+     *
+     * @param baseDir 送信待ちを保存するディレクトリ
+     */
+    public Uploader(File baseDir) {
+        this.baseDir = baseDir;
+        this.setName("logbook_uploader");
+        this.setDaemon(true);
+    }
+
+    /**
+     * 送信先を登録します
+     *
+     * @param destination 送信先
+     */
+    public void addDestination(Destination destination) {
+        File dir = new File(this.baseDir, destination.name);
+        List<Item> saved = load(dir);
+        synchronized (this) {
+            if (this.lanes.containsKey(destination.name)) {
+                return;
+            }
+            Lane lane = new Lane(destination, dir);
+            for (Item item : saved) {
+                lane.pending.add(item);
+                lane.bytes += item.body.length;
+            }
+            this.lanes.put(destination.name, lane);
+            this.notifyAll();
+        }
+        if (saved.size() > 0) {
+            LOG.get().info(destination.name + "の送信待ち" + saved.size() + "件を読み込みました");
+        }
+    }
+
+    /**
+     * 送信します
+     *
+     * @param destination 送信先の名前
+     * @param item 送信
+     */
+    public void offer(String destination, Item item) {
+        List<Item> dropped = new ArrayList<>();
+        Lane lane;
+        synchronized (this) {
+            lane = this.lanes.get(destination);
+            if (lane == null) {
+                LOG.get().warn("登録されていない送信先です: " + destination);
+                return;
+            }
+            lane.pending.add(item);
+            lane.bytes += item.body.length;
+            this.unsaved.add(item);
+            // 溜まりすぎたら古いものから捨てる
+            while ((lane.bytes > lane.destination.maxBytes) && (lane.pending.size() > 1)) {
+                Item old = lane.pending.poll();
+                lane.bytes -= old.body.length;
+                lane.droppedCount++;
+                old.dropped = true;
+                this.unsaved.remove(old);
+                dropped.add(old);
+            }
+            this.notifyAll();
+        }
+        for (Item old : dropped) {
+            this.drop(lane, old, "送信待ちが多すぎます");
+        }
+    }
+
+    /**
+     * 送信待ちの数を取得します
+     *
+     * @param destination 送信先の名前
+     * @return 送信待ち(送信中を含む)の数
+     */
+    public synchronized int getPendingCount(String destination) {
+        Lane lane = this.lanes.get(destination);
+        return lane != null ? lane.pending.size() + lane.inflight : 0;
+    }
+
+    /**
+     * 送信先ごとの送信数を取得します
+     *
+     * @return 送信先の名前 → {送信成功, 再送, 破棄, 送信待ち}
+     */
+    public synchronized Map<String, long[]> getStats() {
+        Map<String, long[]> stats = new LinkedHashMap<>();
+        for (Lane lane : this.lanes.values()) {
+            stats.put(lane.destination.name, new long[] {
+                    lane.sentCount, lane.retryCount, lane.droppedCount, lane.pending.size() + lane.inflight });
+        }
+        return stats;
+    }
+
+    /**
+     * スレッドを終了します<br>
+     * 送信中の送信は中断し、ファイルに残して次回起動時に送信します
+     */
+    public void shutdown() {
+        this.endRequested = true;
+        synchronized (this) {
+            this.notifyAll();
+        }
+        try {
+            this.join();
+        } catch (InterruptedException e) {
+            LOG.get().fatal("Uploaderスレッド終了時に何かのエラー", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            QueuedThreadPool executor = new QueuedThreadPool(8, 1);
+            executor.setName("logbook_uploader_http");
+            SslContextFactory sslContextFactory = new SslContextFactory();
+            // ホスト名が証明書と一致するか確認する
+            sslContextFactory.setEndpointIdentificationAlgorithm("HTTPS");
+            this.httpClient = new HttpClient(sslContextFactory);
+            this.httpClient.setExecutor(executor);
+            this.httpClient.setConnectTimeout(TimeUnit.SECONDS.toMillis(15));
+            this.httpClient.start();
+
+            while (!this.endRequested) {
+                this.save();
+                long wait;
+                synchronized (this) {
+                    wait = this.dispatch(System.currentTimeMillis());
+                    if (!this.endRequested && this.unsaved.isEmpty()) {
+                        this.wait(wait);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (!this.endRequested) {
+                LOG.get().fatal("スレッドが異常終了しました", e);
+            }
+        } finally {
+            // 受け付けた送信は全部ファイルに残す
+            this.save();
+            if (this.httpClient != null) {
+                try {
+                    this.httpClient.stop();
+                } catch (Exception e) {
+                    LOG.get().fatal("HttpClientの終了に失敗", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 送信できるものを送信します(ロックを持って呼び出すこと)
+     *
+     * @return 次に送信できるようになるまでの時間(ミリ秒、0は無制限)
+     */
+    private long dispatch(long now) {
+        long wait = 0;
+        for (Lane lane : this.lanes.values()) {
+            Destination destination = lane.destination;
+            // 古くなったものは捨てる
+            Iterator<Item> it = lane.pending.iterator();
+            while (it.hasNext()) {
+                Item item = it.next();
+                if (item.saved && ((item.created + destination.maxAge) < now)) {
+                    it.remove();
+                    item.dropped = true;
+                    lane.bytes -= item.body.length;
+                    lane.droppedCount++;
+                    this.drop(lane, item, "古くなりました");
+                }
+            }
+            // 送信がすぐに失敗した場合はnextAttemptが進むのでそこで止める
+            while ((lane.inflight < destination.concurrency) && !lane.pending.isEmpty()
+                    && (lane.nextAttempt <= now)) {
+                // 保存が終わっていないものはまだ送らない
+                if (!lane.pending.peek().saved) {
+                    break;
+                }
+                List<Item> items = new ArrayList<>();
+                while ((items.size() < destination.maxBatch) && !lane.pending.isEmpty()
+                        && lane.pending.peek().saved) {
+                    Item item = lane.pending.poll();
+                    lane.bytes -= item.body.length;
+                    items.add(item);
+                }
+                lane.inflight++;
+                // 完了の通知はこの中で呼ばれることもある
+                this.send(lane, items);
+            }
+            if ((lane.nextAttempt > now) && !lane.pending.isEmpty()) {
+                long remain = lane.nextAttempt - now;
+                wait = (wait == 0) ? remain : Math.min(wait, remain);
+            }
+        }
+        return wait;
+    }
+
+    private void send(Lane lane, List<Item> items) {
+        Item item = items.get(0);
+        if ((items.size() > 1) && (lane.destination.merger != null)) {
+            item = lane.destination.merger.merge(items);
+        }
+        Item sending = item;
+        try {
+            if (lane.destination.credentials != null) {
+                sending = lane.destination.credentials.apply(item);
+            }
+            Request request = this.httpClient.newRequest(sending.url)
+                    .method(sending.method)
+                    .timeout(REQUEST_TIMEOUT, TimeUnit.SECONDS);
+            for (Entry<String, String> header : sending.headers.entrySet()) {
+                if ("User-Agent".equalsIgnoreCase(header.getKey())) {
+                    request.agent(header.getValue());
+                }
+                else {
+                    request.header(header.getKey(), header.getValue());
+                }
+            }
+            request.content(new BytesContentProvider(sending.body), sending.contentType);
+            final Item sent = sending;
+            request.send(new BufferingResponseListener() {
+                @Override
+                public void onComplete(Result result) {
+                    if (result.isFailed()) {
+                        Uploader.this.completed(lane, items, sent, 0, result.getFailure().toString(), null);
+                    }
+                    else {
+                        int status = result.getResponse().getStatus();
+                        Uploader.this.completed(lane, items, sent, status, result.getResponse().getReason(),
+                                this.getContentAsString(StandardCharsets.UTF_8.name()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            this.completed(lane, items, sending, 0, e.toString(), null);
+        }
+    }
+
+    /**
+     * 送信が完了した(HttpClientのスレッドから呼ばれます)
+     */
+    private void completed(Lane lane, List<Item> items, Item sending, int status, String reason, String content) {
+        Listener listener = lane.destination.listener;
+        boolean success = HttpStatus.isSuccess(status);
+        // サーバーに拒否されたもの(4xx)は何度送っても同じなので捨てる
+        boolean rejected = HttpStatus.isClientError(status)
+                && (status != HttpStatus.REQUEST_TIMEOUT_408) && (status != 429);
+        if (success || rejected) {
+            for (Item item : items) {
+                deleteFile(item);
+            }
+            synchronized (this) {
+                lane.inflight--;
+                if (success) {
+                    lane.failures = 0;
+                    lane.nextAttempt = 0;
+                    lane.sentCount += items.size();
+                }
+                else {
+                    lane.droppedCount += items.size();
+                }
+                this.notifyAll();
+            }
+            if (listener != null) {
+                try {
+                    if (success) {
+                        listener.sent(sending, content);
+                    }
+                    else {
+                        listener.dropped(sending, status + " " + reason);
+                    }
+                } catch (Exception e) {
+                    LOG.get().warn("送信結果の通知でエラー", e);
+                }
+            }
+            if (rejected) {
+                LOG.get().warn(lane.destination.name + "への送信が拒否されました. " + status + " " + reason);
+            }
+        }
+        else {
+            long backoff;
+            synchronized (this) {
+                lane.inflight--;
+                lane.retryCount += items.size();
+                // 元の順番で先頭に戻す
+                for (int i = items.size() - 1; i >= 0; i--) {
+                    lane.pending.addFirst(items.get(i));
+                    lane.bytes += items.get(i).body.length;
+                }
+                lane.failures++;
+                backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(lane.failures - 1, 20));
+                // 同時に失敗した送信が一斉に再送しないように少しずらす
+                backoff += ThreadLocalRandom.current().nextLong((backoff / 4) + 1);
+                lane.nextAttempt = Math.max(lane.nextAttempt, System.currentTimeMillis() + backoff);
+                this.notifyAll();
+            }
+            if (!this.endRequested) {
+                LOG.get().warn(lane.destination.name + "への送信に失敗しました. " + reason
+                        + " (" + (backoff / 1000) + "秒後に再送します)");
+            }
+        }
+    }
+
+    private void drop(Lane lane, Item item, String reason) {
+        deleteFile(item);
+        LOG.get().warn(lane.destination.name + "への送信を破棄しました. " + reason);
+        if (lane.destination.listener != null) {
+            try {
+                lane.destination.listener.dropped(item, reason);
+            } catch (Exception e) {
+                LOG.get().warn("送信結果の通知でエラー", e);
+            }
+        }
+    }
+
+    /**
+     * まだ保存していない送信をファイルに書き込みます
+     */
+    private void save() {
+        List<Item> items;
+        Map<Item, Lane> itemLanes = new IdentityHashMap<>();
+        synchronized (this) {
+            if (this.unsaved.isEmpty()) {
+                return;
+            }
+            items = new ArrayList<>(this.unsaved);
+            this.unsaved.clear();
+            for (Lane lane : this.lanes.values()) {
+                for (Item item : lane.pending) {
+                    if (!item.saved) {
+                        itemLanes.put(item, lane);
+                    }
+                }
+            }
+        }
+        for (Item item : items) {
+            Lane lane = itemLanes.get(item);
+            if ((lane == null) || item.dropped) {
+                continue;
+            }
+            File file = new File(lane.dir, String.format("%016x-%08x", item.created,
+                    SEQUENCE.incrementAndGet() & 0xffffffffL) + FILE_SUFFIX);
+            try {
+                write(file, item);
+                item.file = file;
+            } catch (IOException e) {
+                // 保存できなくても送信はする
+                LOG.get().warn("送信待ちの保存に失敗しました", e);
+            }
+            item.saved = true;
+            if (item.dropped) {
+                // 書き込んでいる間に捨てられた
+                deleteFile(item);
+            }
+        }
+    }
+
+    private static void write(File file, Item item) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException(dir + "を作成できません");
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            item.write(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 保存されている送信待ちを読み込みます
+     */
+    private static List<Item> load(File dir) {
+        List<Item> items = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return items;
+        }
+        // ファイル名は作成時刻順
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                // 書き込み途中で終了したもの
+                file.delete();
+                continue;
+            }
+            if (!file.getName().endsWith(FILE_SUFFIX)) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                Item item = Item.read(in);
+                item.file = file;
+                item.saved = true;
+                items.add(item);
+            } catch (IOException e) {
+                LOG.get().warn("送信待ちファイルが読み込めません: " + file, e);
+                file.delete();
+            }
+        }
+        return items;
+    }
+
+    private static void deleteFile(Item item) {
+        File file = item.file;
+        if ((file != null) && file.exists() && !file.delete()) {
+            LOG.get().warn("送信待ちファイルを削除できません: " + file);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package logbook.scripting;
+
+import logbook.dto.BattleExDto;
+
+/**
+ * ドロップ報告書のカラム拡張スクリプトが追加で実装できる、複数の行をまとめて処理するインターフェース<br>
+ * 実装していないスクリプトは{@link BattleLogListener#body}で1行ずつ呼び出されます
+ */
+public interface BattleLogBatchListener {
+    /**
+     * 複数の戦闘結果に対する拡張表示内容をまとめて返します
+     * @param battles 戦闘結果
+     * @return 表示内容(battlesと同じ順序で1行ごとに{@link BattleLogListener#body}と同じ内容)
+     */
+    public Comparable[][] bodies(BattleExDto[] battles);
+}
@@ -5,6 +5,7 @@ package logbook.scripting;
 
 import logbook.constants.AppConstants;
 import logbook.dto.BattleExDto;
+import logbook.scripting.ScriptLoader.BatchInvoke;
 import logbook.scripting.ScriptLoader.MethodInvoke;
 import logbook.scripting.ScriptLoader.TableScriptCollection;
 
@@ -12,7 +13,7 @@ import logbook.scripting.ScriptLoader.TableScriptCollection;
  * @author Nekopanda
  *
  */
-public class BattleLogProxy implements BattleLogListener {
+public class BattleLogProxy implements BattleLogListener, BattleLogBatchListener {
 
     private class BodyMethod implements MethodInvoke {
         public BattleExDto battle;
@@ -23,6 +24,18 @@ public class BattleLogProxy implements BattleLogListener {
         }
     }
 
+    private static final BatchInvoke BODIES_METHOD = new BatchInvoke() {
+        @Override
+        public Comparable[][] invokeBatch(Object arg, Object[] rows) {
+            return ((BattleLogBatchListener) arg).bodies((BattleExDto[]) rows);
+        }
+
+        @Override
+        public Object invoke(Object arg, Object row) {
+            return ((BattleLogListener) arg).body((BattleExDto) row);
+        }
+    };
+
     private TableScriptCollection script;
     private final BodyMethod bodyMethod = new BodyMethod();
 
@@ -45,10 +58,18 @@ public class BattleLogProxy implements BattleLogListener {
 
     public static BattleLogProxy get() {
         instance.script = ScriptLoader.getTableScript(
-                AppConstants.DROPTABLE_PREFIX, BattleLogListener.class);
+                AppConstants.DROPTABLE_PREFIX, BattleLogListener.class, BattleLogBatchListener.class);
         return instance;
     }
 
+    /**
+     * スクリプトの構成(ファイル名と更新日時)を表す文字列
+     * @return スクリプトの構成
+     */
+    public String signature() {
+        return this.script.signature();
+    }
+
     @Override
     public String[] header() {
         return this.script.header();
@@ -60,14 +81,21 @@ public class BattleLogProxy implements BattleLogListener {
         return this.script.body(this.bodyMethod);
     }
 
+    @Override
+    public Comparable[][] bodies(BattleExDto[] battles) {
+        return this.script.bodies(battles, BODIES_METHOD);
+    }
+
     @Override
     public void begin() {
+        this.script.beginReload();
         this.script.invoke(this.beginMethod);
     }
 
     @Override
     public void end() {
         this.script.invoke(this.endMethod);
+        this.script.endReload();
     }
 
 }
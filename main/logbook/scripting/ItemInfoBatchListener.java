@@ -0,0 +1,16 @@
+package logbook.scripting;
+
+import logbook.gui.logic.ItemInfo;
+
+/**
+ * 装備一覧のカラム拡張スクリプトが追加で実装できる、複数の行をまとめて処理するインターフェース<br>
+ * 実装していないスクリプトは{@link ItemInfoListener#body}で1行ずつ呼び出されます
+ */
+public interface ItemInfoBatchListener {
+    /**
+     * 複数の装備データに対する拡張表示内容をまとめて返します
+     * @param items 装備データ
+     * @return 表示内容(itemsと同じ順序で1行ごとに{@link ItemInfoListener#body}と同じ内容)
+     */
+    public Comparable[][] bodies(ItemInfo[] items);
+}
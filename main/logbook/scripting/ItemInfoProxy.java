@@ -5,6 +5,7 @@ package logbook.scripting;
 
 import logbook.constants.AppConstants;
 import logbook.gui.logic.ItemInfo;
+import logbook.scripting.ScriptLoader.BatchInvoke;
 import logbook.scripting.ScriptLoader.MethodInvoke;
 import logbook.scripting.ScriptLoader.TableScriptCollection;
 
@@ -12,7 +13,7 @@ import logbook.scripting.ScriptLoader.TableScriptCollection;
  * @author Nekopanda
  *
  */
-public class ItemInfoProxy implements ItemInfoListener {
+public class ItemInfoProxy implements ItemInfoListener, ItemInfoBatchListener {
 
     private class BodyMethod implements MethodInvoke {
         public ItemInfo data;
@@ -23,6 +24,18 @@ public class ItemInfoProxy implements ItemInfoListener {
         }
     }
 
+    private static final BatchInvoke BODIES_METHOD = new BatchInvoke() {
+        @Override
+        public Comparable[][] invokeBatch(Object arg, Object[] rows) {
+            return ((ItemInfoBatchListener) arg).bodies((ItemInfo[]) rows);
+        }
+
+        @Override
+        public Object invoke(Object arg, Object row) {
+            return ((ItemInfoListener) arg).body((ItemInfo) row);
+        }
+    };
+
     private TableScriptCollection script;
     private final BodyMethod bodyMethod = new BodyMethod();
 
@@ -30,7 +43,7 @@ public class ItemInfoProxy implements ItemInfoListener {
 
     public static ItemInfoProxy get() {
         instance.script = ScriptLoader.getTableScript(
-                AppConstants.ITEMTABLE_PREFIX, ItemInfoListener.class);
+                AppConstants.ITEMTABLE_PREFIX, ItemInfoListener.class, ItemInfoBatchListener.class);
         return instance;
     }
 
@@ -41,6 +54,7 @@ public class ItemInfoProxy implements ItemInfoListener {
 
     @Override
     public void begin() {
+        this.script.beginReload();
         this.script.invoke(new MethodInvoke() {
             @Override
             public Object invoke(Object arg) {
@@ -56,6 +70,11 @@ public class ItemInfoProxy implements ItemInfoListener {
         return this.script.body(this.bodyMethod);
     }
 
+    @Override
+    public Comparable[][] bodies(ItemInfo[] items) {
+        return this.script.bodies(items, BODIES_METHOD);
+    }
+
     @Override
     public void end() {
         this.script.invoke(new MethodInvoke() {
@@ -65,6 +84,7 @@ public class ItemInfoProxy implements ItemInfoListener {
                 return null;
             }
         });
+        this.script.endReload();
     }
 
 }
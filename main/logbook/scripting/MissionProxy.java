@@ -41,6 +41,7 @@ public class MissionProxy implements MissionListener {
 
     @Override
     public void begin(final int fleetid) {
+        this.script.beginReload();
         this.script.invoke(new MethodInvoke() {
             @Override
             public Object invoke(Object arg) {
@@ -65,6 +66,7 @@ public class MissionProxy implements MissionListener {
                 return null;
             }
         });
+        this.script.endReload();
     }
 
 }
@@ -41,6 +41,7 @@ public class QuestProxy implements QuestListener {
 
     @Override
     public void begin() {
+        this.script.beginReload();
         this.script.invoke(new MethodInvoke() {
             @Override
             public Object invoke(Object arg) {
@@ -65,6 +66,7 @@ public class QuestProxy implements QuestListener {
                 return null;
             }
         });
+        this.script.endReload();
     }
 
 }
@@ -4,9 +4,8 @@
 package logbook.scripting;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -20,6 +19,7 @@ import java.util.zip.ZipOutputStream;
 
 import logbook.constants.AppConstants;
 import logbook.internal.LoggerHolder;
+import logbook.internal.PersistenceService;
 
 /**
  * スクリプトデータ永続化
@@ -48,7 +48,9 @@ public class ScriptData {
 
     private static ConcurrentHashMap<String, DataObject> dataMap = new ConcurrentHashMap<>();
 
-    private static boolean modified = false;
+    /** 保存対象(変更があったらPersistenceServiceが書き込む) */
+    private static final PersistenceService.Target PERSISTENCE = PersistenceService.register("スクリプトデータ",
+            ScriptData::snapshot);
 
     // 始めてアクセスがあった時に読み込む
     static {
@@ -95,7 +97,7 @@ public class ScriptData {
             dataMap.put(key, new DataObject(value, persist));
         }
         if (persist) {
-            modified = true;
+            PersistenceService.markDirty(PERSISTENCE);
         }
     }
 
@@ -119,33 +121,39 @@ public class ScriptData {
      * @throws IOException
      */
     public static void store() throws IOException {
-        if (!modified) {
-            return;
-        }
+        PersistenceService.store(PERSISTENCE);
+    }
+
+    private static PersistenceService.Snapshot snapshot() {
+        // データはスクリプトから変更されるのでここでシリアライズしておく
         Date time = new Date();
-        try (ZipOutputStream zos = new ZipOutputStream(
-                new BufferedOutputStream(new FileOutputStream(AppConstants.SCRIPT_DATA_FILE))))
-        {
-            for (Map.Entry<String, DataObject> entry : dataMap.entrySet()) {
-                DataObject data = entry.getValue();
-                if (data.persist == false) {
-                    continue;
-                }
-                if (data.lastAccessed == null) {
-                    data.lastAccessed = time;
-                }
-                try {
-                    ZipEntry zipentry = new ZipEntry(entry.getKey());
-                    zos.putNextEntry(zipentry);
-                    ObjectOutputStream oos = new ObjectOutputStream(zos);
-                    oos.writeObject(data);
-                    oos.flush();
-                } catch (IOException e) {
-                    LOG.get().warn("データの保存に失敗(" + entry.getKey() + ")", e);
-                }
+        final Map<String, byte[]> serialized = new LinkedHashMap<>();
+        for (Map.Entry<String, DataObject> entry : dataMap.entrySet()) {
+            DataObject data = entry.getValue();
+            if (data.persist == false) {
+                continue;
+            }
+            if (data.lastAccessed == null) {
+                data.lastAccessed = time;
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bytes);
+                oos.writeObject(data);
+                oos.flush();
+                serialized.put(entry.getKey(), bytes.toByteArray());
+            } catch (IOException e) {
+                LOG.get().warn("データの保存に失敗(" + entry.getKey() + ")", e);
             }
-            modified = false;
         }
+        return () -> PersistenceService.writeAtomically(AppConstants.SCRIPT_DATA_FILE, out -> {
+            ZipOutputStream zos = new ZipOutputStream(out);
+            for (Map.Entry<String, byte[]> entry : serialized.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+            }
+            zos.finish();
+        });
     }
 
     /**
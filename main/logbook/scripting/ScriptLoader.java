@@ -9,14 +9,17 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.script.Compilable;
 import javax.script.Invocable;
@@ -24,7 +27,9 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
+import logbook.config.AppConfig;
 import logbook.constants.AppConstants;
+import logbook.gui.ApplicationMain;
 import logbook.gui.logic.TableItemCreator;
 import logbook.internal.LoggerHolder;
 
@@ -46,6 +51,28 @@ public class ScriptLoader {
         public Object invoke(Object arg);
     }
 
+    /**
+     * 複数の行をまとめて処理するメソッドの呼び出し
+     * スクリプトが一括処理のインターフェースを実装していない場合は1行ずつ呼び出します
+     */
+    public static interface BatchInvoke {
+        /**
+         * 一括処理のインターフェースを呼び出します
+         * @param arg 一括処理のインターフェースの実装
+         * @param rows 行
+         * @return 1行ごとの表示内容
+         */
+        public Comparable[][] invokeBatch(Object arg, Object[] rows);
+
+        /**
+         * 1行分を呼び出します
+         * @param arg インターフェースの実装
+         * @param row 行
+         * @return 表示内容
+         */
+        public Object invoke(Object arg, Object row);
+    }
+
     public class Script {
 
         private final File scriptFile;
@@ -53,20 +80,35 @@ public class ScriptLoader {
         private ScriptEngine engine;
         private final Class<?> type;
         private Object listener;
+        /** 一括処理のインターフェース */
+        private final Class<?> batchType;
+        /** 一括処理のインターフェースの実装(実装していないスクリプトはnull) */
+        private Object batchListener;
+        /** 実行時間の統計 */
+        private final ScriptStat stat;
+        /** 時間をかけすぎたので無効にした */
+        private volatile boolean disabled = false;
 
         public boolean exception = false;
         public int errorCounter = 0;
 
         public Script(File scriptFile, Class<?> type, boolean load) {
+            this(scriptFile, type, null, load);
+        }
+
+        public Script(File scriptFile, Class<?> type, Class<?> batchType, boolean load) {
             this.scriptFile = scriptFile;
             this.lastModified = scriptFile.lastModified();
             this.type = type;
+            this.batchType = batchType;
+            this.stat = new ScriptStat(scriptFile.getName());
             try {
                 if (load) {
                     this.reload_();
                 }
             } catch (ScriptException | IOException e) {
                 this.listener = null;
+                this.batchListener = null;
                 LOG.get().warn("スクリプトファイル " + scriptFile.getPath() + " を読み込み中にエラー", e);
             }
             ScriptLoader.this.allScripts.put(scriptFile.getName(), this);
@@ -81,15 +123,19 @@ public class ScriptLoader {
         }
 
         public void reload() {
+            // 書き換えられたら無効にしたスクリプトも実行し直す
+            this.enable();
             try {
                 this.lastModified = this.scriptFile.lastModified();
                 if (!this.scriptFile.exists()) {
                     this.listener = null;
+                    this.batchListener = null;
                     return;
                 }
                 this.reload_();
             } catch (ScriptException | IOException e) {
                 this.listener = null;
+                this.batchListener = null;
                 LOG.get().warn("スクリプトファイル " + this.scriptFile.getPath() + "  を読み込み中にエラー", e);
             }
         }
@@ -113,17 +159,44 @@ public class ScriptLoader {
                 if (this.listener == null) {
                     throw new ScriptException("スクリプトが " + this.type.getName() + " インターフェースを実装していません");
                 }
+                // 一括処理は実装していなくてもよい
+                this.batchListener = (this.batchType != null)
+                        ? ((Invocable) this.engine).getInterface(this.batchType) : null;
             }
             this.errorCounter = 0;
         }
 
         public Object invoke(MethodInvoke invokable) {
+            return this.invoke(invokable, this.listener, 1);
+        }
+
+        /**
+         * 一括処理のインターフェースの実装を呼び出します
+         * @param invokable 実行するメソッド
+         * @param rows 行数(1回の呼び出しにかけてよい時間は1行あたりで判定します)
+         * @return 結果 一括処理を実装していない場合はnull
+         */
+        public Object invokeBatch(MethodInvoke invokable, int rows) {
+            return this.invoke(invokable, this.batchListener, rows);
+        }
+
+        /**
+         * 一括処理のインターフェースを実装しているか
+         * @return 実装している場合true
+         */
+        public boolean hasBatch() {
+            return this.batchListener != null;
+        }
+
+        private Object invoke(MethodInvoke invokable, Object target, int rows) {
+            if ((target == null) || this.disabled) {
+                return null;
+            }
+            long allocated = ScriptStat.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
             try {
-                if (this.listener == null) {
-                    return null;
-                }
                 this.exception = false;
-                return invokable.invoke(this.listener);
+                return invokable.invoke(target);
             } catch (Exception e) {
                 this.exception = true;
                 if (this.errorCounter++ < 20) {
@@ -132,9 +205,80 @@ public class ScriptLoader {
                         LOG.get().warn(this.scriptFile.getPath() + " はこれ以上エラーを記録しません");
                     }
                 }
+            } finally {
+                long nanos = System.nanoTime() - start;
+                long reloadNanos = this.stat.add(nanos, ScriptStat.currentThreadAllocatedBytes() - allocated);
+                this.checkBudget(nanos / Math.max(rows, 1), reloadNanos);
             }
             return null;
         }
+
+        /**
+         * かけてよい時間を超えていたらスクリプトを無効にします
+         * @param callNanos 1回(1行)の呼び出しの時間(ナノ秒)
+         * @param reloadNanos 今の再読み込みでの時間(ナノ秒)
+         */
+        private void checkBudget(long callNanos, long reloadNanos) {
+            int callBudget = AppConfig.get().getScriptCallBudget();
+            int reloadBudget = AppConfig.get().getScriptReloadBudget();
+            if ((callBudget > 0) && (callNanos > TimeUnit.MILLISECONDS.toNanos(callBudget))) {
+                this.disable(String.format("1回の呼び出しに%dms以上かかりました(%.1fms)",
+                        callBudget, callNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+            else if ((reloadBudget > 0) && (reloadNanos > TimeUnit.MILLISECONDS.toNanos(reloadBudget))) {
+                this.disable(String.format("1回の再読み込みに%dms以上かかりました",
+                        reloadBudget));
+            }
+        }
+
+        /**
+         * スクリプトを無効にします
+         * @param reason 理由
+         */
+        public void disable(String reason) {
+            if (this.disabled) {
+                return;
+            }
+            this.disabled = true;
+            this.stat.setDisabledReason(reason);
+            String message = "スクリプト " + this.scriptFile.getName() + " を無効にしました: " + reason;
+            LOG.get().warn(message);
+            if (ApplicationMain.main != null) {
+                ApplicationMain.logPrint(message);
+            }
+        }
+
+        /**
+         * 無効にしたスクリプトを有効に戻します
+         */
+        public void enable() {
+            this.disabled = false;
+            this.stat.setDisabledReason(null);
+        }
+
+        /**
+         * 無効にしているか
+         * @return 無効にしている場合true
+         */
+        public boolean isDisabled() {
+            return this.disabled;
+        }
+
+        /**
+         * スクリプトのファイル名
+         * @return ファイル名
+         */
+        public String getName() {
+            return this.scriptFile.getName();
+        }
+
+        /**
+         * 実行時間の統計
+         * @return 実行時間の統計
+         */
+        public ScriptStat getStat() {
+            return this.stat;
+        }
     }
 
     /**
@@ -144,11 +288,17 @@ public class ScriptLoader {
     public class ScriptCollection {
         private final String prefix;
         private final Class<?> type;
+        protected final Class<?> batchType;
         private Map<String, Script> scripts = new TreeMap<>();
 
         public ScriptCollection(String prefix, Class<?> type) {
+            this(prefix, type, null);
+        }
+
+        public ScriptCollection(String prefix, Class<?> type, Class<?> batchType) {
             this.prefix = prefix;
             this.type = type;
+            this.batchType = batchType;
             this.loadScripts();
         }
 
@@ -231,6 +381,29 @@ public class ScriptLoader {
                 script.invoke(invokable);
             }
         }
+
+        /**
+         * テーブルの再読み込み(begin～end)の開始
+         * 再読み込みにかけてよい時間は、ここからこのスレッドで呼び出したスクリプトの時間だけを数えます
+         */
+        public void beginReload() {
+            for (Script script : this.get()) {
+                script.stat.beginReload();
+            }
+        }
+
+        /**
+         * テーブルの再読み込みの終了
+         */
+        public void endReload() {
+            boolean logging = AppConfig.get().isScriptStatLogging();
+            for (Script script : this.get()) {
+                script.stat.endReload();
+                if (logging) {
+                    LOG.get().info(this.prefix + ": " + script.stat);
+                }
+            }
+        }
     }
 
     /**
@@ -249,7 +422,11 @@ public class ScriptLoader {
         private final Comparable[] exceptionBody;
 
         public TableScript(File scriptFile, Class<?> type) {
-            super(scriptFile, type);
+            this(scriptFile, type, null);
+        }
+
+        public TableScript(File scriptFile, Class<?> type, Class<?> batchType) {
+            super(scriptFile, type, batchType, true);
             this.header = (String[]) this.invoke(this.headerMethod);
             if (this.header != null) {
                 this.exceptionBody = new Comparable[this.header.length];
@@ -281,6 +458,42 @@ public class ScriptLoader {
             return this.resize(raw);
         }
 
+        /**
+         * 複数の行の表示内容をまとめて取得します
+         * 一括処理を実装していないスクリプトや、一括処理が失敗した場合は1行ずつ呼び出します
+         * @param rows 行
+         * @param invokable 実行するメソッド
+         * @return 1行ごとの表示内容 ヘッダーが無い場合はnull
+         */
+        public Comparable[][] bodies(final Object[] rows, final BatchInvoke invokable) {
+            if (this.header == null) {
+                return null;
+            }
+            Comparable[][] result = new Comparable[rows.length][];
+            if (this.hasBatch()) {
+                Comparable[][] raw = (Comparable[][]) this.invokeBatch(new MethodInvoke() {
+                    @Override
+                    public Object invoke(Object arg) {
+                        return invokable.invokeBatch(arg, rows);
+                    }
+                }, rows.length);
+                if (!this.exception && (raw != null) && (raw.length == rows.length)) {
+                    for (int i = 0; i < rows.length; ++i) {
+                        result[i] = ((raw[i] != null) && (raw[i].length == this.header.length))
+                                ? raw[i] : this.resize(raw[i]);
+                    }
+                    return result;
+                }
+                // 1行ずつ呼び出し直す
+            }
+            RowMethod rowMethod = new RowMethod(invokable);
+            for (int i = 0; i < rows.length; ++i) {
+                rowMethod.row = rows[i];
+                result[i] = this.body(rowMethod);
+            }
+            return result;
+        }
+
         private Comparable[] resize(Comparable[] raw) {
             Comparable[] ret = new Comparable[this.header.length];
             if (raw == null) {
@@ -295,6 +508,23 @@ public class ScriptLoader {
         }
     }
 
+    /**
+     * {@link BatchInvoke}の1行分の呼び出し
+     */
+    private static class RowMethod implements MethodInvoke {
+        private final BatchInvoke invokable;
+        public Object row;
+
+        public RowMethod(BatchInvoke invokable) {
+            this.invokable = invokable;
+        }
+
+        @Override
+        public Object invoke(Object arg) {
+            return this.invokable.invoke(arg, this.row);
+        }
+    }
+
     /**
      * テーブルカラム拡張用スクリプトの集合
      * テーブルヘッダは起動中変更できないので、reloadでファイルが増減しないようになっています
@@ -306,9 +536,13 @@ public class ScriptLoader {
             super(prefix, type);
         }
 
+        public TableScriptCollection(String prefix, Class<?> type, Class<?> batchType) {
+            super(prefix, type, batchType);
+        }
+
         @Override
         public Script makeScript(File file, Class<?> type) {
-            return new TableScript(file, type);
+            return new TableScript(file, type, this.batchType);
         }
 
         @Override
@@ -340,6 +574,24 @@ public class ScriptLoader {
             return false;
         }
 
+        /**
+         * スクリプトの構成(ファイル名と更新日時)を表す文字列
+         * 拡張カラムの値をキャッシュする際に、スクリプトが変わっていないかの判定に使います
+         * @return スクリプトの構成
+         */
+        public String signature() {
+            StringBuilder sb = new StringBuilder();
+            for (Script script : this.get()) {
+                sb.append(script.scriptFile.getName()).append('@').append(script.lastModified);
+                if (script.isDisabled()) {
+                    // 無効にしている間の値はキャッシュしても使わない
+                    sb.append('!');
+                }
+                sb.append(';');
+            }
+            return sb.toString();
+        }
+
         public String[] header() {
             String[] result = null;
             for (Script script : this.get()) {
@@ -355,6 +607,38 @@ public class ScriptLoader {
             }
             return result;
         }
+
+        /**
+         * 複数の行の表示内容をまとめて取得します
+         * @param rows 行
+         * @param invokable 実行するメソッド
+         * @return 1行ごとの表示内容(各スクリプトの表示内容をつないだもの)
+         */
+        public Comparable[][] bodies(Object[] rows, BatchInvoke invokable) {
+            List<Comparable[][]> blocks = new ArrayList<>();
+            int width = 0;
+            for (Script script : this.get()) {
+                Comparable[][] block = ((TableScript) script).bodies(rows, invokable);
+                if (block != null) {
+                    blocks.add(block);
+                    width += ((TableScript) script).header().length;
+                }
+            }
+            Comparable[][] result = new Comparable[rows.length][];
+            if (blocks.isEmpty()) {
+                return result;
+            }
+            for (int i = 0; i < rows.length; ++i) {
+                Comparable[] line = new Comparable[width];
+                int pos = 0;
+                for (Comparable[][] block : blocks) {
+                    System.arraycopy(block[i], 0, line, pos, block[i].length);
+                    pos += block[i].length;
+                }
+                result[i] = line;
+            }
+            return result;
+        }
     }
 
     private final ScriptEngineManager manager = new ScriptEngineManager();
@@ -413,7 +697,18 @@ public class ScriptLoader {
      * @return
      */
     public static TableScriptCollection getTableScript(String prefix, Class<?> type) {
-        return instance.getTableScript_(prefix, type);
+        return instance.getTableScript_(prefix, type, null);
+    }
+
+    /**
+     * prefixにマッチするテーブルカラム拡張用スクリプト集合を取得
+     * @param prefix
+     * @param type
+     * @param batchType 複数の行をまとめて処理するインターフェース
+     * @return
+     */
+    public static TableScriptCollection getTableScript(String prefix, Class<?> type, Class<?> batchType) {
+        return instance.getTableScript_(prefix, type, batchType);
     }
 
     /**
@@ -435,10 +730,22 @@ public class ScriptLoader {
         return instance.getTableStyleScript_(prefix);
     }
 
-    private synchronized TableScriptCollection getTableScript_(String prefix, Class<?> type) {
+    /**
+     * 読み込んだすべてのスクリプトを取得
+     * @return スクリプト(ファイル名順)
+     */
+    public static List<Script> getAllScripts() {
+        return instance.getAllScripts_();
+    }
+
+    private synchronized List<Script> getAllScripts_() {
+        return new ArrayList<>(new TreeMap<>(this.allScripts).values());
+    }
+
+    private synchronized TableScriptCollection getTableScript_(String prefix, Class<?> type, Class<?> batchType) {
         ScriptCollection script = this.scriptCollections.get(prefix);
         if (script == null) {
-            script = new TableScriptCollection(prefix, type);
+            script = new TableScriptCollection(prefix, type, batchType);
             this.scriptCollections.put(prefix, script);
         }
         else if (script.isUpdated()) {
@@ -0,0 +1,161 @@
+package logbook.scripting;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import logbook.internal.LatencyStat;
+
+/**
+ * スクリプトごとの実行時間の統計<br>
+ * 呼び出し回数・時間・メモリの割り当て量と、テーブルの再読み込み1回あたりの時間を集計します
+ */
+public final class ScriptStat {
+
+    /** スレッドごとのメモリの割り当て量を取得できる場合のThreadMXBean */
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+    /** 呼び出しごとの時間 */
+    private final LatencyStat latency;
+
+    /** メモリの割り当て量の合計(バイト) */
+    private long allocatedBytes;
+
+    /** 再読み込みを行っているスレッド(再読み込み中でない場合はnull) */
+    private Thread reloadThread;
+
+    /** 今の再読み込みでの時間(ナノ秒) */
+    private long reloadNanos;
+
+    /** 前回の再読み込みでの時間(ナノ秒) */
+    private long lastReloadNanos;
+
+    /** 再読み込みでの時間の最大(ナノ秒) */
+    private long maxReloadNanos;
+
+    /** 無効にした理由(有効な場合はnull) */
+    private String disabledReason;
+
+    ScriptStat(String name) {
+        this.latency = new LatencyStat(name);
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean;
+                }
+            }
+        } catch (Throwable e) {
+            // 取得できない場合は割り当て量を集計しない
+        }
+        return null;
+    }
+
+    /**
+     * 現在のスレッドのメモリの割り当て量
+     * @return 割り当て量(バイト) 取得できない場合は0
+     */
+    static long currentThreadAllocatedBytes() {
+        if (THREAD_BEAN == null) {
+            return 0;
+        }
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 呼び出しを記録します<br>
+     * 再読み込みの時間には、再読み込みを行っているスレッドからの呼び出しだけを数えます
+     * @param nanos 時間(ナノ秒)
+     * @param allocated メモリの割り当て量(バイト)
+     * @return 今の再読み込みでの時間(ナノ秒) 再読み込み中でない場合は0
+     */
+    synchronized long add(long nanos, long allocated) {
+        this.latency.add(nanos);
+        this.allocatedBytes += allocated;
+        if (this.reloadThread == Thread.currentThread()) {
+            this.reloadNanos += nanos;
+            return this.reloadNanos;
+        }
+        return 0;
+    }
+
+    synchronized void beginReload() {
+        this.reloadThread = Thread.currentThread();
+        this.reloadNanos = 0;
+    }
+
+    /**
+     * @return 今の再読み込みでの時間(ナノ秒)
+     */
+    synchronized long endReload() {
+        this.reloadThread = null;
+        this.lastReloadNanos = this.reloadNanos;
+        this.maxReloadNanos = Math.max(this.maxReloadNanos, this.reloadNanos);
+        return this.reloadNanos;
+    }
+
+    synchronized void setDisabledReason(String disabledReason) {
+        this.disabledReason = disabledReason;
+    }
+
+    /**
+     * 統計をリセットします
+     */
+    public synchronized void reset() {
+        this.latency.reset();
+        this.allocatedBytes = 0;
+        this.reloadNanos = 0;
+        this.lastReloadNanos = 0;
+        this.maxReloadNanos = 0;
+    }
+
+    /**
+     * 呼び出しごとの時間
+     * @return 呼び出しごとの時間
+     */
+    public LatencyStat getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * メモリの割り当て量の合計
+     * @return 割り当て量(バイト) 取得できない環境では0
+     */
+    public synchronized long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * 前回の再読み込みでの時間
+     * @return 時間(ミリ秒)
+     */
+    public synchronized double getLastReloadMillis() {
+        return this.lastReloadNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 再読み込みでの時間の最大
+     * @return 時間(ミリ秒)
+     */
+    public synchronized double getMaxReloadMillis() {
+        return this.maxReloadNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 無効にした理由
+     * @return 理由 有効な場合はnull
+     */
+    public synchronized String getDisabledReason() {
+        return this.disabledReason;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s 割り当て%,dKB 再読み込み 前回%.1fms 最大%.1fms",
+                this.latency, this.allocatedBytes / 1024, this.getLastReloadMillis(), this.getMaxReloadMillis());
+    }
+}
@@ -0,0 +1,16 @@
+package logbook.scripting;
+
+import logbook.dto.ShipDto;
+
+/**
+ * 艦娘一覧のカラム拡張スクリプトが追加で実装できる、複数の行をまとめて処理するインターフェース<br>
+ * 実装していないスクリプトは{@link ShipItemListener#body}で1行ずつ呼び出されます
+ */
+public interface ShipItemBatchListener {
+    /**
+     * 複数の艦娘データに対する拡張表示内容をまとめて返します
+     * @param ships 艦娘データ
+     * @return 表示内容(shipsと同じ順序で1行ごとに{@link ShipItemListener#body}と同じ内容)
+     */
+    public Comparable[][] bodies(ShipDto[] ships);
+}
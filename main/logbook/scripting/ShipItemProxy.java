@@ -6,6 +6,7 @@ package logbook.scripting;
 import logbook.constants.AppConstants;
 import logbook.dto.ShipDto;
 import logbook.dto.ShipFilterDto;
+import logbook.scripting.ScriptLoader.BatchInvoke;
 import logbook.scripting.ScriptLoader.MethodInvoke;
 import logbook.scripting.ScriptLoader.TableScriptCollection;
 
@@ -13,7 +14,7 @@ import logbook.scripting.ScriptLoader.TableScriptCollection;
  * @author Nekopanda
  *
  */
-public class ShipItemProxy implements ShipItemListener {
+public class ShipItemProxy implements ShipItemListener, ShipItemBatchListener {
 
     private class BodyMethod implements MethodInvoke {
         public ShipDto ship;
@@ -24,6 +25,18 @@ public class ShipItemProxy implements ShipItemListener {
         }
     }
 
+    private static final BatchInvoke BODIES_METHOD = new BatchInvoke() {
+        @Override
+        public Comparable[][] invokeBatch(Object arg, Object[] rows) {
+            return ((ShipItemBatchListener) arg).bodies((ShipDto[]) rows);
+        }
+
+        @Override
+        public Object invoke(Object arg, Object row) {
+            return ((ShipItemListener) arg).body((ShipDto) row);
+        }
+    };
+
     private TableScriptCollection script;
     private final BodyMethod bodyMethod = new BodyMethod();
 
@@ -31,7 +44,7 @@ public class ShipItemProxy implements ShipItemListener {
 
     public static ShipItemProxy get() {
         instance.script = ScriptLoader.getTableScript(
-                AppConstants.SHIPTABLE_PREFIX, ShipItemListener.class);
+                AppConstants.SHIPTABLE_PREFIX, ShipItemListener.class, ShipItemBatchListener.class);
         return instance;
     }
 
@@ -42,6 +55,7 @@ public class ShipItemProxy implements ShipItemListener {
 
     @Override
     public void begin(final boolean specdiff, final ShipFilterDto filter, final int specdisp) {
+        this.script.beginReload();
         this.script.invoke(new MethodInvoke() {
             @Override
             public Object invoke(Object arg) {
@@ -57,6 +71,11 @@ public class ShipItemProxy implements ShipItemListener {
         return this.script.body(this.bodyMethod);
     }
 
+    @Override
+    public Comparable[][] bodies(ShipDto[] ships) {
+        return this.script.bodies(ships, BODIES_METHOD);
+    }
+
     @Override
     public void end() {
         this.script.invoke(new MethodInvoke() {
@@ -66,6 +85,7 @@ public class ShipItemProxy implements ShipItemListener {
                 return null;
             }
         });
+        this.script.endReload();
     }
 
 }
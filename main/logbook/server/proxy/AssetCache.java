@@ -0,0 +1,622 @@
+package logbook.server.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
+import logbook.internal.LoggerHolder;
+
+/**
+ * ゲームの画像・音声・スクリプトなど(/kcs2/, /kcs/)のディスクキャッシュ<br>
+ * <ul>
+ * <li>鎮守府サーバーのリクエストだけを対象にし、ホスト名とパスごとに1ファイルで保存します</li>
+ * <li>合計が上限を超えたら最後に使ってから長いものから消します</li>
+ * <li>versionクエリが保存したときと同じならサーバーに問い合わせずにキャッシュから返します</li>
+ * <li>versionが変わった(またはない)場合はETag/Last-Modifiedで更新を確認し、変わっていなければキャッシュから返します</li>
+ * </ul>
+ */
+public final class AssetCache {
+    private static final LoggerHolder LOG = new LoggerHolder(AssetCache.class);
+    private static AssetCache instance = null;
+
+    /** 索引ファイル */
+    private static final String INDEX_FILE = "index.dat";
+
+    /** 索引ファイルのバージョン(1はパスだけで保存していたので読み込まない) */
+    private static final int INDEX_VERSION = 2;
+
+    /** この回数変更があったら索引を保存する */
+    private static final int SAVE_INTERVAL = 64;
+
+    /** これより大きいレスポンスはキャッシュしない */
+    private static final long MAX_ENTRY_SIZE = 64L * 1024 * 1024;
+
+    /** キャッシュしたレスポンス */
+    public static final class Entry {
+        final String path;
+        /** 保存・確認したときのversionクエリ(ない場合はnull) */
+        volatile String version;
+        final String etag;
+        final String lastModified;
+        final String contentType;
+        final String contentEncoding;
+        final long length;
+        final File file;
+
+        Entry(String path, String version, String etag, String lastModified, String contentType,
+                String contentEncoding, long length, File file) {
+            this.path = path;
+            this.version = version;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.length = length;
+            this.file = file;
+        }
+
+        /**
+         * @return 保存・確認したときのversionクエリ
+         */
+        public String getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return サーバーに更新を確認できるか(ETagかLast-Modifiedがある)
+         */
+        public boolean isValidatable() {
+            return (this.etag != null) || (this.lastModified != null);
+        }
+    }
+
+    /**
+     * サーバーからのレスポンスを書き込んで、完了したらキャッシュに追加します
+     */
+    public final class Writer {
+        private final Entry entry;
+        private final FileChannel channel;
+        private final File tmp;
+        private long length;
+        private boolean closed;
+
+        private Writer(Entry entry) throws IOException {
+            this.entry = entry;
+            this.tmp = new File(entry.file.getPath() + ".tmp");
+            this.channel = FileChannel.open(this.tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * 内容を書き込みます(contentの位置は進めません)
+         *
+         * @param content 内容
+         */
+        public void write(ByteBuffer content) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.length += content.remaining();
+                if (this.length > MAX_ENTRY_SIZE) {
+                    this.abort();
+                    return;
+                }
+                ByteBuffer buffer = content.duplicate();
+                while (buffer.hasRemaining()) {
+                    this.channel.write(buffer);
+                }
+            } catch (IOException e) {
+                LOG.get().warn("キャッシュの書き込みに失敗しました", e);
+                this.abort();
+            }
+        }
+
+        /**
+         * 書き込みを完了してキャッシュに追加します
+         */
+        public void commit() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.channel.close();
+                Files.move(this.tmp.toPath(), this.entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                AssetCache.this.put(new Entry(this.entry.path, this.entry.version, this.entry.etag,
+                        this.entry.lastModified, this.entry.contentType, this.entry.contentEncoding, this.length,
+                        this.entry.file));
+            } catch (IOException e) {
+                LOG.get().warn("キャッシュの書き込みに失敗しました", e);
+                this.tmp.delete();
+            }
+        }
+
+        /**
+         * 書き込みを中止します
+         */
+        public void abort() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // 何もしない
+            }
+            this.tmp.delete();
+        }
+    }
+
+    /**
+     * キャッシュを取得します
+     *
+     * @return キャッシュ(使わない設定の場合はnull)
+     */
+    public static AssetCache get() {
+        if (!AppConfig.get().isUseAssetCache()) {
+            return null;
+        }
+        long maxBytes = AppConfig.get().getAssetCacheSize() * 1024L * 1024L;
+        synchronized (AssetCache.class) {
+            if (instance == null) {
+                instance = new AssetCache(AppConstants.ASSET_CACHE_DIR, maxBytes);
+            }
+            else {
+                instance.setMaxBytes(maxBytes);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * 保存先を指定してキャッシュを用意します(設定で使う場合だけ使われます)
+     *
+     * @param dir 保存先
+     */
+    public static synchronized void startup(File dir) {
+        end();
+        instance = new AssetCache(dir, AppConfig.get().getAssetCacheSize() * 1024L * 1024L);
+    }
+
+    /**
+     * 索引を保存して終了します
+     */
+    public static synchronized void end() {
+        if (instance != null) {
+            LOG.get().info("アセットキャッシュ " + instance.getStatus());
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * キャッシュの状態
+     *
+     * @return キャッシュの状態(使っていない場合はnull)
+     */
+    public static synchronized String getCurrentStatus() {
+        return (instance != null) ? instance.getStatus() : null;
+    }
+
+    /**
+     * キャッシュするリクエストか
+     *
+     * @param request リクエスト
+     * @return キャッシュするリクエストか
+     */
+    public static boolean isTarget(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return "GET".equals(request.getMethod())
+                && (uri.startsWith("/kcs2/") || uri.startsWith("/kcs/"))
+                // 他のサイトが同じパスで返した内容をゲームに返さないように鎮守府サーバーのものだけにする
+                && Filter.isNeed(request.getServerName())
+                // 部分的なリクエストはキャッシュしない
+                && (request.getHeader("Range") == null);
+    }
+
+    /**
+     * キャッシュのキー
+     *
+     * @param request リクエスト
+     * @return ホスト名:ポート + パス
+     */
+    public static String key(HttpServletRequest request) {
+        return request.getServerName() + ":" + request.getServerPort() + request.getRequestURI();
+    }
+
+    private final File dir;
+
+    /** キー(ホスト名:ポート + パス) → キャッシュ(最後に使ったものが末尾) */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private long maxBytes;
+
+    private long totalBytes;
+
+    private int changes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * コンストラクター
+     *
+     * @param dir 保存先
+     * @param maxBytes 合計サイズの上限
+     */
+    public AssetCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.load();
+    }
+
+    /**
+     * @param maxBytes 合計サイズの上限
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (this.maxBytes != maxBytes) {
+            this.maxBytes = maxBytes;
+            this.evict();
+        }
+    }
+
+    /**
+     * キャッシュを探します
+     *
+     * @param path キー(key()で作ったもの)
+     * @return キャッシュ(ない場合はnull)
+     */
+    public synchronized Entry lookup(String path) {
+        Entry entry = this.entries.get(path);
+        if ((entry != null) && !entry.file.exists()) {
+            this.remove(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * versionクエリが保存したときと同じなら、サーバーに問い合わせずにキャッシュから返します
+     *
+     * @param entry キャッシュ
+     * @param version リクエストのversionクエリ
+     * @param request リクエスト
+     * @param response レスポンス
+     * @return キャッシュから返した場合true
+     */
+    public boolean serve(Entry entry, String version, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if ((version == null) || !version.equals(entry.version)) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if ((ifNoneMatch != null) && (entry.etag != null) && ifNoneMatch.equals(entry.etag)) {
+            // ブラウザのキャッシュも同じ
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            this.hits.incrementAndGet();
+            this.bytesSaved.addAndGet(entry.length);
+            return true;
+        }
+        try (FileInputStream in = new FileInputStream(entry.file)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            writeHeaders(entry, response);
+            this.copy(entry, in, response.getOutputStream());
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            // ファイルが読めなければサーバーから取得する
+            response.reset();
+            synchronized (this) {
+                this.remove(entry);
+            }
+            return false;
+        }
+        this.hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 更新を確認してキャッシュが使えたとき(304)に、キャッシュの内容を返します
+     *
+     * @param entry キャッシュ
+     * @param version リクエストのversionクエリ
+     * @param out 書き込み先
+     */
+    public void serveRevalidated(Entry entry, String version, OutputStream out) throws IOException {
+        entry.version = version;
+        synchronized (this) {
+            this.changes++;
+        }
+        try (FileInputStream in = new FileInputStream(entry.file)) {
+            this.copy(entry, in, out);
+        }
+        this.revalidated.incrementAndGet();
+    }
+
+    /**
+     * キャッシュから返さなかったリクエストを数えます
+     */
+    public void countMiss() {
+        this.misses.incrementAndGet();
+    }
+
+    /**
+     * キャッシュしたレスポンスのヘッダを設定します
+     *
+     * @param entry キャッシュ
+     * @param response レスポンス
+     */
+    public static void writeHeaders(Entry entry, HttpServletResponse response) {
+        if (entry.contentType != null) {
+            response.setContentType(entry.contentType);
+        }
+        if (entry.contentEncoding != null) {
+            response.setHeader("Content-Encoding", entry.contentEncoding);
+        }
+        if (entry.etag != null) {
+            response.setHeader("ETag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            response.setHeader("Last-Modified", entry.lastModified);
+        }
+        response.setHeader("Content-Length", String.valueOf(entry.length));
+    }
+
+    /**
+     * サーバーからのレスポンスの書き込みを開始します
+     *
+     * @param path キー(key()で作ったもの)
+     * @param version versionクエリ
+     * @param etag ETag
+     * @param lastModified Last-Modified
+     * @param contentType Content-Type
+     * @param contentEncoding Content-Encoding
+     * @param contentLength Content-Length(不明な場合は負の値)
+     * @return 書き込み(キャッシュしない場合はnull)
+     */
+    public Writer newWriter(String path, String version, String etag, String lastModified, String contentType,
+            String contentEncoding, long contentLength) {
+        if ((contentLength > MAX_ENTRY_SIZE) || (contentLength > this.maxBytes)) {
+            return null;
+        }
+        try {
+            if (!this.dir.exists() && !this.dir.mkdirs()) {
+                throw new IOException(this.dir + "を作成できません");
+            }
+            File file = new File(this.dir, String.format("%016x.bin", this.sequence.incrementAndGet()));
+            return new Writer(new Entry(path, version, etag, lastModified, contentType, contentEncoding, 0, file));
+        } catch (IOException e) {
+            LOG.get().warn("キャッシュの書き込みに失敗しました", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return ヒット数(サーバーに問い合わせずに返した数)
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return 更新を確認してキャッシュを返した数
+     */
+    public long getRevalidated() {
+        return this.revalidated.get();
+    }
+
+    /**
+     * @return サーバーから取得した数
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return サーバーから取得せずに済んだバイト数
+     */
+    public long getBytesSaved() {
+        return this.bytesSaved.get();
+    }
+
+    /**
+     * @return キャッシュの合計サイズ
+     */
+    public synchronized long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * @return キャッシュの状態
+     */
+    public String getStatus() {
+        return String.format("ヒット:%d 確認:%d ミス:%d 節約:%.1fMB 使用:%.1fMB",
+                this.getHits(), this.getRevalidated(), this.getMisses(),
+                this.getBytesSaved() / (1024.0 * 1024.0), this.getTotalBytes() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * 索引を保存します
+     */
+    public synchronized void close() {
+        this.save();
+    }
+
+    private void copy(Entry entry, FileInputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        long copied = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            copied += read;
+        }
+        if (copied != entry.length) {
+            throw new IOException("キャッシュのサイズが一致しません: " + entry.file);
+        }
+        this.bytesSaved.addAndGet(copied);
+    }
+
+    private synchronized void put(Entry entry) {
+        Entry old = this.entries.put(entry.path, entry);
+        if (old != null) {
+            this.totalBytes -= old.length;
+            if (!old.file.equals(entry.file)) {
+                old.file.delete();
+            }
+        }
+        this.totalBytes += entry.length;
+        this.evict();
+        if (++this.changes >= SAVE_INTERVAL) {
+            this.save();
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (this.entries.get(entry.path) == entry) {
+            this.entries.remove(entry.path);
+            this.totalBytes -= entry.length;
+            this.changes++;
+        }
+        entry.file.delete();
+    }
+
+    /**
+     * 上限を超えている分を最後に使ってから長いものから消します
+     */
+    private void evict() {
+        Iterator<Entry> it = this.entries.values().iterator();
+        while ((this.totalBytes > this.maxBytes) && it.hasNext()) {
+            Entry entry = it.next();
+            it.remove();
+            this.totalBytes -= entry.length;
+            entry.file.delete();
+            this.changes++;
+        }
+    }
+
+    private void save() {
+        if (this.changes == 0) {
+            return;
+        }
+        File index = new File(this.dir, INDEX_FILE);
+        File tmp = new File(this.dir, INDEX_FILE + ".tmp");
+        try {
+            if (!this.dir.exists() && !this.dir.mkdirs()) {
+                throw new IOException(this.dir + "を作成できません");
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(this.entries.size());
+                // 最後に使った順が残るように古い順に書く
+                for (Entry entry : this.entries.values()) {
+                    out.writeUTF(entry.path);
+                    writeString(out, entry.version);
+                    writeString(out, entry.etag);
+                    writeString(out, entry.lastModified);
+                    writeString(out, entry.contentType);
+                    writeString(out, entry.contentEncoding);
+                    out.writeLong(entry.length);
+                    out.writeUTF(entry.file.getName());
+                }
+            }
+            Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            this.changes = 0;
+        } catch (IOException e) {
+            LOG.get().warn("キャッシュの索引の保存に失敗しました", e);
+        }
+    }
+
+    private void load() {
+        File index = new File(this.dir, INDEX_FILE);
+        Set<String> used = new HashSet<>();
+        if (index.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+                if (in.readInt() == INDEX_VERSION) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String path = in.readUTF();
+                        String version = readString(in);
+                        String etag = readString(in);
+                        String lastModified = readString(in);
+                        String contentType = readString(in);
+                        String contentEncoding = readString(in);
+                        long length = in.readLong();
+                        File file = new File(this.dir, in.readUTF());
+                        // ファイルが消えている・壊れているものは捨てる
+                        if (file.exists() && (file.length() == length)) {
+                            this.entries.put(path, new Entry(path, version, etag, lastModified, contentType,
+                                    contentEncoding, length, file));
+                            this.totalBytes += length;
+                            used.add(file.getName());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.get().warn("キャッシュの索引が読み込めません", e);
+            }
+        }
+        // 索引にないファイルを消す
+        File[] files = this.dir.listFiles();
+        if (files != null) {
+            long max = 0;
+            for (File file : files) {
+                String name = file.getName();
+                if (name.equals(INDEX_FILE)) {
+                    continue;
+                }
+                if (!used.contains(name)) {
+                    file.delete();
+                    this.changes++;
+                }
+                else {
+                    try {
+                        max = Math.max(max, Long.parseLong(name.substring(0, name.indexOf('.')), 16));
+                    } catch (NumberFormatException e) {
+                        // 何もしない
+                    }
+                }
+            }
+            this.sequence.set(max);
+        }
+        this.evict();
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
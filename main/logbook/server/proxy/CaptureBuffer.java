@@ -0,0 +1,141 @@
+package logbook.server.proxy;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * キャプチャしたリクエスト・レスポンスの内容を溜めるバッファ<br>
+ * 配列はサイズ(2の累乗)ごとにプールして使い回します<br>
+ * 受け取ったByteBufferから直接コピーし、解析には配列をコピーせずに読み取り専用のビューで渡します
+ */
+public final class CaptureBuffer {
+
+    /** プールする最小の配列サイズ(2^12 = 4KB) */
+    private static final int MIN_SHIFT = 12;
+
+    /** プールする最大の配列サイズ(2^23 = 8MB) これより大きい配列は使い捨て */
+    private static final int MAX_SHIFT = 23;
+
+    /** サイズごとにプールしておく配列の最大数 */
+    private static final int MAX_POOLED = 8;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final ConcurrentLinkedQueue<byte[]>[] POOL = new ConcurrentLinkedQueue[(MAX_SHIFT - MIN_SHIFT) + 1];
+
+    private static final AtomicInteger[] POOL_SIZE = new AtomicInteger[POOL.length];
+
+    static {
+        for (int i = 0; i < POOL.length; i++) {
+            POOL[i] = new ConcurrentLinkedQueue<>();
+            POOL_SIZE[i] = new AtomicInteger();
+        }
+    }
+
+    private byte[] array;
+
+    private int length;
+
+    private boolean released;
+
+    /**
+     * バッファを取得します
+     *
+     * @param expectedLength 予想される大きさ(Content-Lengthなど、不明な場合は0以下)
+     * @return バッファ
+     */
+    public static CaptureBuffer acquire(long expectedLength) {
+        CaptureBuffer buffer = new CaptureBuffer();
+        buffer.array = allocate((int) Math.min(Math.max(expectedLength, 0), Integer.MAX_VALUE - 8));
+        return buffer;
+    }
+
+    private CaptureBuffer() {
+    }
+
+    /**
+     * 内容を追加します(contentの位置は進めません)
+     *
+     * @param content 追加する内容
+     */
+    public void append(ByteBuffer content) {
+        int remaining = content.remaining();
+        this.ensureCapacity(this.length + remaining);
+        // ダイレクトバッファでも中間の配列を作らずに直接コピーする
+        content.duplicate().get(this.array, this.length, remaining);
+        this.length += remaining;
+    }
+
+    /**
+     * @return 溜まった大きさ
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * 溜まった内容の読み取り専用のビューを返します(コピーしません)<br>
+     * {@link #release()}した後は使わないこと
+     *
+     * @return ビュー
+     */
+    public ByteBuffer view() {
+        return ByteBuffer.wrap(this.array, 0, this.length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * バッファをプールに返します
+     */
+    public void release() {
+        if (!this.released) {
+            this.released = true;
+            recycle(this.array);
+            this.array = null;
+            this.length = 0;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.array.length) {
+            byte[] newArray = allocate(Math.max(capacity, this.array.length * 2));
+            System.arraycopy(this.array, 0, newArray, 0, this.length);
+            recycle(this.array);
+            this.array = newArray;
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+
+    private static byte[] allocate(int size) {
+        int index = sizeClass(size);
+        if (index >= POOL.length) {
+            return new byte[size];
+        }
+        byte[] array = POOL[index].poll();
+        if (array != null) {
+            POOL_SIZE[index].decrementAndGet();
+            return array;
+        }
+        return new byte[1 << (index + MIN_SHIFT)];
+    }
+
+    private static void recycle(byte[] array) {
+        int size = array.length;
+        // プールから取得した配列(2の累乗)だけを返す
+        if (Integer.bitCount(size) != 1) {
+            return;
+        }
+        int index = sizeClass(size);
+        if ((index < POOL.length) && ((1 << (index + MIN_SHIFT)) == size)) {
+            if (POOL_SIZE[index].incrementAndGet() <= MAX_POOLED) {
+                POOL[index].offer(array);
+            }
+            else {
+                POOL_SIZE[index].decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package logbook.server.proxy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.swt.widgets.Display;
+
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.UndefinedData;
+import logbook.data.context.GlobalContext;
+import logbook.internal.LatencyStat;
+import logbook.internal.LoggerHolder;
+
+/**
+ * キャプチャしたデータを受信順に処理するスレッド<br>
+ * 解凍とJSONの解析はこのスレッドで行い、GlobalContextの更新だけをUIスレッドに受信順で渡します<br>
+ * (GlobalContextはUIスレッドからのみ参照・更新されることを前提にしているため)
+ */
+public final class DataIngestThread extends Thread {
+    private static final LoggerHolder LOG = new LoggerHolder(DataIngestThread.class);
+    private static DataIngestThread instance = null;
+
+    /** キューの長さ(これを超えるとプロキシのスレッドを待たせる) */
+    private static final int QUEUE_CAPACITY = 256;
+
+    /** 統計をログに出力する間隔(処理件数) */
+    private static final int STAT_LOG_INTERVAL = 500;
+
+    /** キューで待たされた時間 */
+    private static final LatencyStat QUEUE_STAT = new LatencyStat("キュー待ち");
+    /** 解凍・JSON解析にかかった時間 */
+    private static final LatencyStat PARSE_STAT = new LatencyStat("解凍・JSON解析");
+    /** UIスレッドで実行されるまで待たされた時間 */
+    private static final LatencyStat DISPATCH_STAT = new LatencyStat("UI待ち");
+    /** GlobalContextの更新にかかった時間 */
+    private static final LatencyStat APPLY_STAT = new LatencyStat("更新");
+
+    private static class QueueItem {
+        public UndefinedData data;
+        public String contentEncoding;
+        public String serverName;
+        public long enqueueTime;
+        /** dataが参照しているバッファ(解析後に返却する) */
+        public CaptureBuffer[] buffers;
+
+        public QueueItem(UndefinedData data, String contentEncoding, String serverName, CaptureBuffer... buffers) {
+            this.data = data;
+            this.contentEncoding = contentEncoding;
+            this.serverName = serverName;
+            this.enqueueTime = System.nanoTime();
+            this.buffers = buffers;
+        }
+    }
+
+    private static synchronized DataIngestThread getInstance() {
+        if (instance == null) {
+            instance = new DataIngestThread();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * キャプチャしたデータを処理キューに追加します<br>
+     * キューが一杯の場合は空きができるまで待ちます(データは捨てません)
+     *
+     * @param data キャプチャしたデータ
+     * @param contentEncoding Content-Encoding
+     * @param serverName サーバー名
+     * @param buffers dataが参照しているバッファ(解析後に返却します、nullは無視します)
+     */
+    public static void send(UndefinedData data, String contentEncoding, String serverName,
+            CaptureBuffer... buffers) {
+        try {
+            getInstance().dataQueue.put(new QueueItem(data, contentEncoding, serverName, buffers));
+        } catch (InterruptedException e) {
+            LOG.get().warn("受信データをキューに追加できませんでした", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static synchronized void end() {
+        if (instance != null) {
+            instance.endRequested = true;
+            instance.dataQueue.offer(new QueueItem(null, null, null));
+            try {
+                instance.join();
+                instance = null;
+            } catch (InterruptedException e) {
+                LOG.get().fatal("DataIngestThreadスレッド終了時に何かのエラー", e);
+            }
+        }
+    }
+
+    /**
+     * 処理待ちのデータ数
+     * @return 処理待ちのデータ数
+     */
+    public static int getQueueSize() {
+        DataIngestThread thread = instance;
+        return (thread != null) ? thread.dataQueue.size() : 0;
+    }
+
+    /**
+     * 各段階の処理時間の統計
+     * @return 各段階の処理時間の統計
+     */
+    public static LatencyStat[] getStats() {
+        return new LatencyStat[] { QUEUE_STAT, PARSE_STAT, DISPATCH_STAT, APPLY_STAT };
+    }
+
+    private final BlockingQueue<QueueItem> dataQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private volatile boolean endRequested = false;
+
+    private DataIngestThread() {
+        this.setName("logbook_data_ingest");
+        this.setDaemon(true);
+    }
+
+    /* (非 Javadoc)
+     * @see java.lang.Thread#run()
+     */
+    @Override
+    public void run() {
+        try {
+            long processed = 0;
+            while (true) {
+                QueueItem item = this.dataQueue.take();
+                if (this.endRequested) {
+                    return;
+                }
+                try {
+                    this.process(item);
+                } catch (Exception e) {
+                    LOG.get().warn("受信データ処理に失敗", e);
+                }
+                if ((++processed % STAT_LOG_INTERVAL) == 0) {
+                    this.logStats();
+                }
+            }
+        } catch (Exception e) {
+            if (!this.endRequested) {
+                LOG.get().fatal("スレッドが異常終了しました", e);
+            }
+        }
+    }
+
+    private void process(QueueItem item) {
+        long start = System.nanoTime();
+        QUEUE_STAT.add(start - item.enqueueTime);
+        try {
+            this.parseAndDispatch(item, start);
+            // 記録はUIスレッドに渡した後で行う(キャプチャしたバイト列をそのまま書き込む)
+            TrafficRecorder.record(item.data, item.contentEncoding, item.serverName);
+        } finally {
+            // 解析と記録が終わればキャプチャしたバイト列は不要
+            for (CaptureBuffer buffer : item.buffers) {
+                if (buffer != null) {
+                    buffer.release();
+                }
+            }
+        }
+    }
+
+    private void parseAndDispatch(QueueItem item, long start) {
+        // キャプチャしたバイト配列は何のデータかを決定する
+        // gzipは解凍した配列を作らずに解凍しながら解析する
+        final Data data = item.data.toDefinedData();
+        final long parsed = System.nanoTime();
+        PARSE_STAT.add(parsed - start);
+
+        if (data.getDataType() == DataType.UNDEFINED) {
+            return;
+        }
+
+        final String serverName = item.serverName;
+        // GlobalContextの更新はUIスレッドで受信順に行う(asyncExecは投入順に実行される)
+        Display.getDefault().asyncExec(() -> {
+            long applyStart = System.nanoTime();
+            DISPATCH_STAT.add(applyStart - parsed);
+            try {
+                try {
+                    // 定義済みのデータの場合にキューに追加する
+                    GlobalContext.updateContext(data);
+
+                } catch (Exception e) {
+                    LOG.get().warn("データ更新に失敗", e);
+                }
+
+                // サーバー名が不明の場合、サーバー名をセットする
+                if (!Filter.isServerDetected()) {
+                    Filter.setServerName(serverName);
+                }
+
+                // TsunDB(https://tsundb.kc3.moe/api/)に送信する
+                TsunDBClient.send(data);
+            } catch (Exception e) {
+                LOG.get().warn("受信データ処理に失敗", e);
+            } finally {
+                APPLY_STAT.add(System.nanoTime() - applyStart);
+            }
+        });
+    }
+
+    private void logStats() {
+        StringBuilder sb = new StringBuilder("受信データ処理統計 キュー:").append(this.dataQueue.size());
+        for (LatencyStat stat : getStats()) {
+            sb.append(" / ").append(stat);
+        }
+        LOG.get().debug(sb.toString());
+    }
+}
@@ -1,14 +1,13 @@
 package logbook.server.proxy;
 
+import logbook.data.DataType;
+
 /**
  * 動作に必要なデータのみ取得するためのフィルターです。
  *
  */
 public class Filter {
 
-    /** フィルターするContent-Type */
-    public static final String CONTENT_TYPE_FILTER = "text/plain";
-
     /** キャプチャーするリクエストのバイトサイズ上限 */
     public static final int MAX_POST_FIELD_SIZE = 1024 * 1024;
 
@@ -18,6 +17,12 @@ public class Filter {
     /** setAttribute用のキー(Request) */
     public static final String REQUEST_BODY = "req-body";
 
+    /** setAttribute用のキー(キャプチャするリクエスト) */
+    public static final String CAPTURE = "logbook.capture";
+
+    /** setAttribute用のキー(アセットキャッシュの対象) */
+    public static final String ASSET = "logbook.asset";
+
     /** setAttribute用のキー(Content-Encoding) */
     public static final String CONTENT_ENCODING = "logbook.content-encoding";
 
@@ -66,19 +71,15 @@ public class Filter {
 
     /**
      * <p>
-     * 取得が必要なデータかを調べます<br>
-     * 鎮守府サーバーが検出された場合はサーバー名とContent-Typeから必要かどうかを判別します<br>
-     * 鎮守府サーバーが検出できていない場合はContent-Typeから必要かどうかを判別します<br>
+     * キャプチャが必要なリクエストかを調べます<br>
+     * 解析できるAPI(DataTypeに定義されているURL)だけをキャプチャします<br>
+     * 鎮守府サーバーが検出された場合はサーバー名も一致する必要があります<br>
      * 
      * @param name サーバー名
-     * @param contentType Content-Type
-     * @return 取得が必要なデータか
+     * @param uri リクエストURI
+     * @return キャプチャが必要なリクエストか
      */
-    public static boolean isNeed(String name, String contentType) {
-        if ((!isServerDetected() || serverName.equals(name))
-                && CONTENT_TYPE_FILTER.equals(contentType)) {
-            return true;
-        }
-        return false;
+    public static boolean isCaptureTarget(String name, String uri) {
+        return isNeed(name) && (uri != null) && DataType.TYPEMAP.containsKey(uri);
     }
 }
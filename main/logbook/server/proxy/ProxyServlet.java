@@ -441,6 +441,14 @@ public class ProxyServlet extends HttpServlet
         }
     }
 
+    /**
+     * レスポンスの内容を受け取った(下流に書き込む前に呼ばれます)<br>
+     * contentの位置を変更しないこと
+     */
+    protected void onResponseContent(HttpServletRequest request, Response proxyResponse, ByteBuffer content)
+    {
+    }
+
     protected void onResponseContent(HttpServletRequest request, HttpServletResponse response, Response proxyResponse,
             byte[] buffer, int offset, int length) throws IOException
     {
@@ -755,6 +763,8 @@ public class ProxyServlet extends HttpServlet
         @Override
         public void onContent(Response proxyResponse, ByteBuffer content)
         {
+            ProxyServlet.this.onResponseContent(this.request, proxyResponse, content);
+
             byte[] buffer;
             int offset;
             int length = content.remaining();
@@ -1,7 +1,6 @@
 package logbook.server.proxy;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -16,6 +15,9 @@ public final class RequestContentListener implements ContentListener {
 
     private final HttpServletRequest httpRequest;
 
+    /** 上限を超えたのでキャプチャしない */
+    private boolean overflow;
+
     /**
      * @param request
      */
@@ -25,12 +27,26 @@ public final class RequestContentListener implements ContentListener {
 
     /*
      * 必要なPOSTデータの場合キャプチャします
+     * (POSTデータは複数回に分けて送られることがあるので全部溜める)
      */
     @Override
     public void onContent(Request request, ByteBuffer buffer) {
-        if (((buffer.limit() > 0) && (buffer.limit() <= Filter.MAX_POST_FIELD_SIZE))
-                && Filter.isNeed(request.getHost())) {
-            this.httpRequest.setAttribute(Filter.REQUEST_BODY, Arrays.copyOf(buffer.array(), buffer.limit()));
+        if (!this.overflow && (buffer.remaining() > 0) && Filter.isNeed(request.getHost())) {
+            CaptureBuffer body = (CaptureBuffer) this.httpRequest.getAttribute(Filter.REQUEST_BODY);
+            int length = (body != null) ? body.length() : 0;
+            if ((length + buffer.remaining()) > Filter.MAX_POST_FIELD_SIZE) {
+                this.overflow = true;
+                if (body != null) {
+                    this.httpRequest.removeAttribute(Filter.REQUEST_BODY);
+                    body.release();
+                }
+                return;
+            }
+            if (body == null) {
+                body = CaptureBuffer.acquire(request.getContent() != null ? request.getContent().getLength() : -1);
+                this.httpRequest.setAttribute(Filter.REQUEST_BODY, body);
+            }
+            body.append(buffer);
         }
     }
 }
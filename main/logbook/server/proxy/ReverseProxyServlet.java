@@ -1,9 +1,9 @@
 package logbook.server.proxy;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -15,16 +15,12 @@ import org.eclipse.jetty.client.HttpRequest;
 import org.eclipse.jetty.client.api.ProxyConfiguration;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
-import org.eclipse.swt.widgets.Display;
 
 import logbook.config.AppConfig;
-import logbook.data.Data;
-import logbook.data.DataType;
 import logbook.data.UndefinedData;
-import logbook.data.context.GlobalContext;
-import logbook.internal.LoggerHolder;
 
 /**
  * リバースプロキシ
@@ -32,9 +28,6 @@ import logbook.internal.LoggerHolder;
  */
 public final class ReverseProxyServlet extends ProxyServlet {
 
-    /** ロガー */
-    private static final LoggerHolder LOG = new LoggerHolder(ReverseProxyServlet.class);
-
     /** ライブラリバグ対応 (HttpRequest#queryを上書きする) */
     private static final Field QUERY_FIELD = getDeclaredField(HttpRequest.class, "query");
 
@@ -50,6 +43,17 @@ public final class ReverseProxyServlet extends ProxyServlet {
                 return;
             }
         }
+        // 静的なファイルは同じバージョンがキャッシュにあればそれを返す
+        AssetCache cache = AssetCache.get();
+        if ((cache != null) && AssetCache.isTarget(request)) {
+            String version = request.getParameter("version");
+            AssetCache.Entry entry = cache.lookup(AssetCache.key(request));
+            if ((entry != null) && cache.serve(entry, version, request, response)) {
+                return;
+            }
+            cache.countMiss();
+            request.setAttribute(Filter.ASSET, new AssetRequest(cache, entry, version));
+        }
         super.service(request, response);
     }
 
@@ -58,7 +62,31 @@ public final class ReverseProxyServlet extends ProxyServlet {
      */
     @Override
     protected void customizeProxyRequest(Request proxyRequest, HttpServletRequest request) {
-        proxyRequest.onRequestContent(new RequestContentListener(request));
+        // キャプチャするかどうかはURLで決める(リトライの場合は前回の途中までの内容を捨てる)
+        releaseCapture(request);
+        if (Filter.isCaptureTarget(request.getServerName(), request.getRequestURI())) {
+            request.setAttribute(Filter.CAPTURE, Boolean.TRUE);
+            proxyRequest.onRequestContent(new RequestContentListener(request));
+        }
+        else {
+            request.removeAttribute(Filter.CAPTURE);
+        }
+
+        AssetRequest asset = (AssetRequest) request.getAttribute(Filter.ASSET);
+        if (asset != null) {
+            asset.abort();
+            // ブラウザの条件付きリクエストではなく、キャッシュの内容で更新を確認する
+            proxyRequest.getHeaders().remove(HttpHeader.IF_NONE_MATCH);
+            proxyRequest.getHeaders().remove(HttpHeader.IF_MODIFIED_SINCE);
+            if ((asset.entry != null) && asset.entry.isValidatable() && asset.entry.file.exists()) {
+                if (asset.entry.etag != null) {
+                    proxyRequest.header(HttpHeader.IF_NONE_MATCH, asset.entry.etag);
+                }
+                if (asset.entry.lastModified != null) {
+                    proxyRequest.header(HttpHeader.IF_MODIFIED_SINCE, asset.entry.lastModified);
+                }
+            }
+        }
 
         if (!AppConfig.get().isUseProxy()) { // アップストリームプロキシがある場合は除外
 
@@ -83,6 +111,32 @@ public final class ReverseProxyServlet extends ProxyServlet {
         super.customizeProxyRequest(proxyRequest, request);
     }
 
+    @Override
+    protected void onResponseHeaders(HttpServletRequest request, HttpServletResponse response,
+            Response proxyResponse) {
+        AssetRequest asset = (AssetRequest) request.getAttribute(Filter.ASSET);
+        if (asset != null) {
+            int status = proxyResponse.getStatus();
+            HttpFields headers = proxyResponse.getHeaders();
+            if ((status == HttpServletResponse.SC_NOT_MODIFIED) && (asset.entry != null)) {
+                // 更新されていないのでキャッシュの内容を返す
+                asset.revalidated = true;
+                response.setStatus(HttpServletResponse.SC_OK);
+                AssetCache.writeHeaders(asset.entry, response);
+                return;
+            }
+            String cacheControl = headers.get(HttpHeader.CACHE_CONTROL);
+            if ((status == HttpServletResponse.SC_OK)
+                    && ((cacheControl == null) || !cacheControl.contains("no-store"))) {
+                asset.writer = asset.cache.newWriter(AssetCache.key(request), asset.version,
+                        headers.get(HttpHeader.ETAG), headers.get(HttpHeader.LAST_MODIFIED),
+                        headers.get(HttpHeader.CONTENT_TYPE), headers.get(HttpHeader.CONTENT_ENCODING),
+                        headers.getLongField(HttpHeader.CONTENT_LENGTH.asString()));
+            }
+        }
+        super.onResponseHeaders(request, response, proxyResponse);
+    }
+
     @Override
     protected String filterResponseHeader(HttpServletRequest request,
             String headerName,
@@ -98,23 +152,23 @@ public final class ReverseProxyServlet extends ProxyServlet {
      * レスポンスが帰ってきた
      */
     @Override
-    protected void onResponseContent(HttpServletRequest request, HttpServletResponse response,
-            Response proxyResponse,
-            byte[] buffer, int offset, int length) throws IOException {
-
-        // フィルタークラスで必要かどうかを判別後、必要であれば内容をキャプチャする
+    protected void onResponseContent(HttpServletRequest request, Response proxyResponse, ByteBuffer content) {
+        AssetRequest asset = (AssetRequest) request.getAttribute(Filter.ASSET);
+        if ((asset != null) && (asset.writer != null)) {
+            asset.writer.write(content);
+        }
+        // 必要であれば内容をキャプチャする
         // 注意: 1回のリクエストで複数回の応答が帰ってくるので全ての応答をキャプチャする必要がある
-        if (Filter.isNeed(request.getServerName(), response.getContentType())) {
-            ByteArrayOutputStream stream = (ByteArrayOutputStream) request.getAttribute(Filter.RESPONSE_BODY);
-            if (stream == null) {
-                stream = new ByteArrayOutputStream();
-                request.setAttribute(Filter.RESPONSE_BODY, stream);
+        if (request.getAttribute(Filter.CAPTURE) != null) {
+            CaptureBuffer buffer = (CaptureBuffer) request.getAttribute(Filter.RESPONSE_BODY);
+            if (buffer == null) {
+                // Content-Lengthがあればその大きさで確保する
+                buffer = CaptureBuffer.acquire(proxyResponse.getHeaders().getLongField(
+                        HttpHeader.CONTENT_LENGTH.asString()));
+                request.setAttribute(Filter.RESPONSE_BODY, buffer);
             }
-            // ストリームに書き込む
-            stream.write(buffer, offset, length);
+            buffer.append(content);
         }
-
-        super.onResponseContent(request, response, proxyResponse, buffer, offset, length);
     }
 
     /*
@@ -124,47 +178,94 @@ public final class ReverseProxyServlet extends ProxyServlet {
     protected void onResponseSuccess(HttpServletRequest request, HttpServletResponse response,
             Response proxyResponse) {
 
-        if (Filter.isNeed(request.getServerName(), response.getContentType())) {
-            byte[] postField = (byte[]) request.getAttribute(Filter.REQUEST_BODY);
-            ByteArrayOutputStream stream = (ByteArrayOutputStream) request.getAttribute(Filter.RESPONSE_BODY);
-            if (stream != null) {
+        AssetRequest asset = (AssetRequest) request.getAttribute(Filter.ASSET);
+        if (asset != null) {
+            if (asset.revalidated) {
+                try {
+                    asset.cache.serveRevalidated(asset.entry, asset.version, response.getOutputStream());
+                } catch (IOException e) {
+                    this._log.warn("キャッシュの読み込みに失敗しました", e);
+                }
+            }
+            else if (asset.writer != null) {
+                asset.writer.commit();
+            }
+        }
+
+        if (request.getAttribute(Filter.CAPTURE) != null) {
+            CaptureBuffer requestBody = (CaptureBuffer) request.getAttribute(Filter.REQUEST_BODY);
+            CaptureBuffer responseBody = (CaptureBuffer) request.getAttribute(Filter.RESPONSE_BODY);
+            request.removeAttribute(Filter.REQUEST_BODY);
+            request.removeAttribute(Filter.RESPONSE_BODY);
+            if (responseBody != null) {
                 final UndefinedData rawData = new UndefinedData(request.getRequestURL().toString(),
-                        request.getRequestURI(), postField, stream.toByteArray());
+                        request.getRequestURI(), (requestBody != null) ? requestBody.view() : null,
+                        responseBody.view());
                 final String contentEncoding = (String) request.getAttribute(Filter.CONTENT_ENCODING);
                 final String serverName = request.getServerName();
 
-                Display.getDefault().asyncExec(() -> {
-                    try {
-                        UndefinedData decodedData = rawData.decode(contentEncoding);
-
-                        // キャプチャしたバイト配列は何のデータかを決定する
-                        Data data = decodedData.toDefinedData();
-                        if (data.getDataType() != DataType.UNDEFINED) {
-                            try {
-                                // 定義済みのデータの場合にキューに追加する
-                                GlobalContext.updateContext(data);
-
-                            } catch (Exception e) {
-                                LOG.get().warn("データ更新に失敗", e);
-                            }
-
-                            // サーバー名が不明の場合、サーバー名をセットする
-                            if (!Filter.isServerDetected()) {
-                                Filter.setServerName(serverName);
-                            }
-
-                            // TsunDB(https://tsundb.kc3.moe/api/)に送信する
-                            TsunDBClient.send(data);
-                        }
-                    } catch (Exception e) {
-                        LOG.get().warn("受信データ処理に失敗", e);
-                    }
-                });
+                // 解凍・解析は別スレッドで受信順に行う(バッファは解析後に返却される)
+                DataIngestThread.send(rawData, contentEncoding, serverName, requestBody, responseBody);
+            }
+            else if (requestBody != null) {
+                requestBody.release();
             }
         }
         super.onResponseSuccess(request, response, proxyResponse);
     }
 
+    @Override
+    protected void onResponseFailure(HttpServletRequest request, HttpServletResponse response,
+            Response proxyResponse, Throwable failure) {
+        releaseCapture(request);
+        AssetRequest asset = (AssetRequest) request.getAttribute(Filter.ASSET);
+        if (asset != null) {
+            asset.abort();
+        }
+        super.onResponseFailure(request, response, proxyResponse, failure);
+    }
+
+    /**
+     * キャプチャ中のバッファを返却します
+     */
+    private static void releaseCapture(HttpServletRequest request) {
+        for (String key : new String[] { Filter.REQUEST_BODY, Filter.RESPONSE_BODY }) {
+            CaptureBuffer buffer = (CaptureBuffer) request.getAttribute(key);
+            if (buffer != null) {
+                request.removeAttribute(key);
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * アセットキャッシュの対象のリクエストの状態
+     */
+    private static final class AssetRequest {
+        final AssetCache cache;
+        /** 更新を確認するキャッシュ(ない場合はnull) */
+        final AssetCache.Entry entry;
+        final String version;
+        /** サーバーから304が返ってきた */
+        boolean revalidated;
+        /** サーバーからのレスポンスを書き込み中 */
+        AssetCache.Writer writer;
+
+        AssetRequest(AssetCache cache, AssetCache.Entry entry, String version) {
+            this.cache = cache;
+            this.entry = entry;
+            this.version = version;
+        }
+
+        void abort() {
+            this.revalidated = false;
+            if (this.writer != null) {
+                this.writer.abort();
+                this.writer = null;
+            }
+        }
+    }
+
     /*
      * HttpClientを作成する
      */
@@ -0,0 +1,302 @@
+package logbook.server.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
+import logbook.data.UndefinedData;
+import logbook.internal.LoggerHolder;
+
+/**
+ * キャプチャした通信(URL・リクエスト・レスポンス・受信日時)を記録します<br>
+ * 起動ごとに1ファイルで、gzipで圧縮して1件ずつ追記します(途中で落ちても書き込んだところまでは読めます)<br>
+ * リクエストのapi_tokenは記録しません<br>
+ * 記録した通信は{@link Reader}で読み込めます(再生は logbook.test.TrafficReplay)
+ */
+public final class TrafficRecorder implements Closeable {
+    private static final LoggerHolder LOG = new LoggerHolder(TrafficRecorder.class);
+    private static TrafficRecorder instance = null;
+    /** 書き込みに失敗したら今回の起動中は記録しない */
+    private static boolean failed = false;
+
+    /** ファイルの先頭 */
+    private static final int MAGIC = 0x4c425452; // "LBTR"
+
+    /** ファイル形式のバージョン */
+    private static final int VERSION = 1;
+
+    /** ファイル名の拡張子 */
+    public static final String EXTENSION = ".traffic.gz";
+
+    /** 1件分の通信 */
+    public static final class Record {
+        /** 受信日時(ミリ秒) */
+        public final long time;
+        public final String fullUrl;
+        public final String url;
+        public final String contentEncoding;
+        public final String serverName;
+        /** リクエストの内容(ない場合はnull) */
+        public final byte[] request;
+        /** レスポンスの内容(受信したまま、gzipの場合もある) */
+        public final byte[] response;
+
+        Record(long time, String fullUrl, String url, String contentEncoding, String serverName,
+                byte[] request, byte[] response) {
+            this.time = time;
+            this.fullUrl = fullUrl;
+            this.url = url;
+            this.contentEncoding = contentEncoding;
+            this.serverName = serverName;
+            this.request = request;
+            this.response = response;
+        }
+
+        /**
+         * 受信したときと同じ未加工データを作ります
+         * @return 未加工データ
+         */
+        public UndefinedData toUndefinedData() {
+            return new UndefinedData(this.fullUrl, this.url,
+                    (this.request != null) ? ByteBuffer.wrap(this.request) : null,
+                    ByteBuffer.wrap(this.response), new Date(this.time));
+        }
+    }
+
+    /**
+     * 通信を記録します(設定が有効な場合のみ)<br>
+     * DataIngestThreadから受信順に呼ばれます
+     *
+     * @param data キャプチャしたデータ
+     * @param contentEncoding Content-Encoding
+     * @param serverName サーバー名
+     */
+    public static synchronized void record(UndefinedData data, String contentEncoding, String serverName) {
+        if (!AppConfig.get().isRecordTraffic() || failed) {
+            closeInstance();
+            return;
+        }
+        try {
+            if (instance == null) {
+                String name = new SimpleDateFormat("yyyy-MM-dd_HHmmss").format(new Date()) + EXTENSION;
+                instance = new TrafficRecorder(new File(AppConstants.TRAFFIC_DIR, name));
+                LOG.get().info("通信の記録を開始しました: " + instance.file.getPath());
+            }
+            instance.write(data, contentEncoding, serverName);
+        } catch (IOException e) {
+            LOG.get().warn("通信の記録に失敗しました(今回の起動中は記録しません)", e);
+            failed = true;
+            closeInstance();
+        }
+    }
+
+    public static synchronized void end() {
+        closeInstance();
+    }
+
+    private static void closeInstance() {
+        if (instance != null) {
+            try {
+                instance.close();
+                LOG.get().info("通信の記録を終了しました: " + instance.file.getPath() + " " + instance.count + "件");
+            } catch (IOException e) {
+                LOG.get().warn("通信の記録を閉じるのに失敗しました", e);
+            }
+            instance = null;
+        }
+    }
+
+    private final File file;
+    private final DataOutputStream out;
+    private final byte[] chunk = new byte[8192];
+    private int count;
+
+    /**
+     * 新しいファイルに記録します
+     *
+     * @param file ファイル(既にある場合は追記します)
+     * @throws IOException
+     */
+    public TrafficRecorder(File file) throws IOException {
+        this.file = file;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("フォルダを作成できません: " + dir);
+        }
+        // 追記した場合はgzipのメンバーが連結されるが、GZIPInputStreamはそのまま読める
+        OutputStream gzip = new GZIPOutputStream(new FileOutputStream(file, true), 64 * 1024, true) {
+            {
+                // 受信したレスポンスは大抵gzip済みなので速度を優先する
+                this.def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        this.out = new DataOutputStream(gzip);
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.flush();
+    }
+
+    /**
+     * 1件書き込みます(書き込んだらフラッシュします)
+     *
+     * @param data キャプチャしたデータ
+     * @param contentEncoding Content-Encoding
+     * @param serverName サーバー名
+     * @throws IOException
+     */
+    public void write(UndefinedData data, String contentEncoding, String serverName) throws IOException {
+        this.out.writeLong(data.getCreateDate().getTime());
+        writeString(this.out, data.getFullUrl());
+        writeString(this.out, data.getUrl());
+        writeString(this.out, contentEncoding);
+        writeString(this.out, serverName);
+        this.writeRequest(data.getRequestBuffer());
+        this.writeBuffer(data.getResponseBuffer());
+        this.out.flush();
+        this.count++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    private void writeRequest(ByteBuffer buffer) throws IOException {
+        if (buffer == null) {
+            this.out.writeInt(-1);
+            return;
+        }
+        // api_tokenを取り除く
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        String body = DatabaseClient.apiTokenPattern.matcher(new String(bytes, StandardCharsets.UTF_8))
+                .replaceAll("");
+        bytes = body.getBytes(StandardCharsets.UTF_8);
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+    }
+
+    private void writeBuffer(ByteBuffer buffer) throws IOException {
+        if (buffer == null) {
+            this.out.writeInt(-1);
+            return;
+        }
+        this.out.writeInt(buffer.remaining());
+        // キャプチャしたバッファは読み取り専用なので配列を直接参照できない
+        while (buffer.hasRemaining()) {
+            int n = Math.min(this.chunk.length, buffer.remaining());
+            buffer.get(this.chunk, 0, n);
+            this.out.write(this.chunk, 0, n);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * 記録した通信を先頭から読み込みます
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private boolean truncated;
+
+        /**
+         * @param file 記録したファイル
+         * @throws IOException 記録したファイルでない場合
+         */
+        public Reader(File file) throws IOException {
+            InputStream stream = new GZIPInputStream(new FileInputStream(file), 64 * 1024);
+            this.in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+            try {
+                if ((this.in.readInt() != MAGIC) || (this.in.readInt() != VERSION)) {
+                    throw new IOException("記録した通信のファイルではありません: " + file);
+                }
+            } catch (IOException e) {
+                this.in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 次の1件を読み込みます
+         *
+         * @return 次の1件(終わりの場合はnull)
+         * @throws IOException
+         */
+        public Record next() throws IOException {
+            long time;
+            try {
+                time = this.in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            try {
+                // 追記で連結された場合は途中にファイルの先頭がある
+                if ((time >>> 32) == MAGIC) {
+                    if ((int) time != VERSION) {
+                        throw new IOException("対応していないバージョンです: " + (int) time);
+                    }
+                    return this.next();
+                }
+                String fullUrl = readString(this.in);
+                String url = readString(this.in);
+                String contentEncoding = readString(this.in);
+                String serverName = readString(this.in);
+                byte[] request = this.readBytes();
+                byte[] response = this.readBytes();
+                return new Record(time, fullUrl, url, contentEncoding, serverName, request, response);
+            } catch (EOFException e) {
+                // 書き込み中に終了した場合は最後の1件が途切れている
+                this.truncated = true;
+                return null;
+            }
+        }
+
+        /**
+         * @return 最後の1件が途中で途切れていた
+         */
+        public boolean isTruncated() {
+            return this.truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+
+        private byte[] readBytes() throws IOException {
+            int length = this.in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            this.in.readFully(bytes);
+            return bytes;
+        }
+    }
+}
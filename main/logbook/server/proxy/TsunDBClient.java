@@ -1,22 +1,12 @@
 package logbook.server.proxy;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.math.BigDecimal;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Map.Entry;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.stream.Collectors;
 
 import javax.json.Json;
@@ -25,9 +15,6 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
 
 import logbook.config.AppConfig;
 import logbook.constants.AppConstants;
@@ -43,6 +30,9 @@ import logbook.dto.ShipDto;
 import logbook.gui.ApplicationMain;
 import logbook.gui.logic.SakutekiString;
 import logbook.internal.LoggerHolder;
+import logbook.internal.Uploader;
+import logbook.util.Crc32c;
+import logbook.util.JsonUtils;
 
 import org.eclipse.swt.widgets.Display;
 
@@ -77,26 +67,48 @@ import org.eclipse.swt.widgets.Display;
  * 
  * @author Nishikuma
  */
-public class TsunDBClient extends Thread {
+public class TsunDBClient {
     private static final LoggerHolder LOG = new LoggerHolder(TsunDBClient.class);
-    private static TsunDBClient instance = null;
 
-    private static class QueueItem {
-        public String target;
-        public String data;
+    /** 送信先の名前 */
+    private static final String DESTINATION = "tsundb";
 
-        public QueueItem(String target, String data) {
-            this.target = target;
-            this.data = data;
-        }
+    /**
+     * 送信先を登録します(前回送信できなかったものがあれば送信します)
+     */
+    public static void startup() {
+        Uploader.register(new Uploader.Destination(DESTINATION, 2)
+                .listener(new Uploader.Listener() {
+                    @Override
+                    public void sent(Uploader.Item item, String content) {
+                        // ログに出す
+                        if (AppConfig.get().isTsunDBSendLog()) {
+                            Display.getDefault().asyncExec(() -> {
+                                try {
+                                    if (!ApplicationMain.main.getShell().isDisposed()) {
+                                        ApplicationMain.main.printMessage("TsunDBへ送信(" + item.getLabel() + ")");
+                                    }
+                                } catch (Exception e) {
+                                    LOG.get().warn("TsunDB送信でエラー", e);
+                                }
+                            });
+                        }
+                    }
+
+                    @Override
+                    public void dropped(Uploader.Item item, String reason) {
+                        LOG.get().warn("TsunDBへ送信失敗(" + item.getLabel() + ") " + reason);
+                    }
+                }));
     }
 
-    private static synchronized TsunDBClient getInstance() {
-        if (instance == null) {
-            instance = new TsunDBClient();
-            instance.start();
-        }
-        return instance;
+    private static void submit(String target, String data) {
+        Uploader.submit(DESTINATION, new Uploader.Item("PUT", "https://tsundb.kc3.moe/api/" + target,
+                "application/json", data.getBytes(StandardCharsets.UTF_8))
+                .header("tsun-ver", "Kasumi Kai")
+                .header("dataorigin", "LogbookEx")
+                .header("version", AppConstants.VERSION)
+                .label(target));
     }
 
     public static void send(Data data) {
@@ -233,7 +245,7 @@ public class TsunDBClient extends Thread {
                 .add("counts", counts.build().toString())
                 .build()
                 .toString();
-        getInstance().dataQueue.offer(new QueueItem("drops", result));
+        submit("drops", result);
         processDropLoc(ship, map, node, rank, difficulty);
     }
 
@@ -246,7 +258,7 @@ public class TsunDBClient extends Thread {
                 .add("difficulty", difficulty)
                 .build()
                 .toString();
-        getInstance().dataQueue.offer(new QueueItem("droplocs", result));
+        submit("droplocs", result);
     }
 
     private static void processDevelopment(Data data) {
@@ -272,7 +284,7 @@ public class TsunDBClient extends Thread {
                     .add("success", slotitemId != -1)
                     .build()
                     .toString();
-            getInstance().dataQueue.offer(new QueueItem("development", result));
+            submit("development", result);
         });
     }
 
@@ -283,7 +295,7 @@ public class TsunDBClient extends Thread {
                 .add("rewards", rewards)
                 .build()
                 .toString();
-        getInstance().dataQueue.offer(new QueueItem("eventreward", result));
+        submit("eventreward", result);
     }
 
     private static void processCellData(Data data) {
@@ -305,7 +317,7 @@ public class TsunDBClient extends Thread {
                 .add("difficulty", mapHpInfo.getDifficulty())
                 .build()
                 .toString();
-        getInstance().dataQueue.offer(new QueueItem("celldata", result));
+        submit("celldata", result);
     }
 
     private static int amountOfNodes = 0;
@@ -437,7 +449,7 @@ public class TsunDBClient extends Thread {
                     .add("gaugeType", mapHpInfo.getGaugeType())
                     // 取るのが面倒くさい
                     .add("debuffSound", -1);
-            getInstance().dataQueue.offer(new QueueItem("eventrouting", job.build().toString()));
+            submit("eventrouting", job.build().toString());
         }
         else {
             job.addNull("currentMapHp")
@@ -446,7 +458,7 @@ public class TsunDBClient extends Thread {
                     .addNull("gaugeNum")
                     .addNull("gaugeType")
                     .addNull("debuffSound");
-            getInstance().dataQueue.offer(new QueueItem("routing", job.build().toString()));
+            submit("routing", job.build().toString());
         }
     }
 
@@ -493,7 +505,7 @@ public class TsunDBClient extends Thread {
                 .addNull("airBattle")
                 .build()
                 .toString();
-        getInstance().dataQueue.offer(new QueueItem("enemy-comp", result));
+        submit("enemy-comp", result);
     }
 
     private static void processFriendlyFleet(Data data) {
@@ -554,20 +566,23 @@ public class TsunDBClient extends Thread {
                 .add("node", map[2])
                 .add("difficulty", mapHpInfo.getDifficulty())
                 .add("gaugeNum", mapHpInfo.getGaugeIndex())
-                .add("variation", friendlyInfo.getInt("api_production_type"))
-                .add("fleet", fleet);
-        ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(getInstance().getClass().getResourceAsStream("crc32c.js")))) {
-            engine.eval(br.lines().collect(Collectors.joining("")));
-            long uniquekey = new BigDecimal(String.valueOf(
-                    engine.eval("crc32c(JSON.stringify(" + tmp.build().getJsonObject("fleet").toString() + "))")))
-                            .longValue();
-            String result = tmp.add("uniquekey", uniquekey).build().toString();
-            getInstance().dataQueue.offer(new QueueItem("friendlyfleet", result));
-        } catch (ScriptException | IOException e) {
-            LOG.get().fatal("スクリプト読込エラー", e);
-        }
+                .add("variation", friendlyInfo.getInt("api_production_type"));
+        JsonObject fleetJson = fleet.build();
+        String result = tmp.add("fleet", fleetJson)
+                .add("uniquekey", getUniqueKey(fleetJson))
+                .build().toString();
+        submit("friendlyfleet", result);
+    }
+
+    /**
+     * 友軍艦隊の<code>uniquekey</code>を計算します<br>
+     * TsunDBのクライアントの<code>crc32c(JSON.stringify(fleet))</code>と同じ値になります(crc32c.js参照)
+     *
+     * @param fleet 友軍艦隊
+     * @return uniquekey
+     */
+    static long getUniqueKey(JsonObject fleet) {
+        return Crc32c.ofString(JsonUtils.stringify(fleet));
     }
 
     private static JsonArray toJsonArray(int[] array) {
@@ -615,115 +630,4 @@ public class TsunDBClient extends Thread {
         }
         return result;
     }
-
-    public static synchronized void end() {
-        if (Objects.nonNull(instance)) {
-            instance.endRequested = true;
-            instance.dataQueue.offer(new QueueItem(null, null));
-            try {
-                instance.join();
-                instance = null;
-            } catch (InterruptedException e) {
-                LOG.get().fatal("TsunDBClientスレッド終了時に何かのエラー", e);
-            }
-        }
-    }
-
-    private final BlockingQueue<QueueItem> dataQueue = new ArrayBlockingQueue<>(32);
-
-    private boolean endRequested = false;
-
-    private int post(String target, String data) {
-        try {
-            URL url = new URL("https://tsundb.kc3.moe/api/" + target);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("PUT");
-            con.setDoOutput(true);
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("tsun-ver", "Kasumi Kai");
-            con.setRequestProperty("dataorigin", "LogbookEx");
-            con.setRequestProperty("version", AppConstants.VERSION);
-            con.setConnectTimeout(5000);
-            con.connect();
-            OutputStream os = con.getOutputStream();
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-            writer.write(data);
-            writer.flush();
-            writer.close();
-            os.close();
-            return con.getResponseCode();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return -1;
-        }
-    }
-
-    @Override
-    public void run() {
-        try {
-            int skipCount = 0;
-            int errorCount = 0;
-
-            while (true) {
-                final QueueItem queue = this.dataQueue.take();
-                final String target = queue.target;
-                final String data = queue.data;
-                if (this.endRequested)
-                    return;
-                if (skipCount > 0) {
-                    --skipCount;
-                    continue;
-                }
-                for (int retly = 0;; ++retly) {
-                    boolean error = false;
-                    try {
-                        int code = post(target, data);
-                        if (this.endRequested)
-                            return;
-                        if (code == HttpURLConnection.HTTP_OK) {
-                            // 成功したらエラーカウンタをリセット
-                            skipCount = errorCount = 0;
-                            // ログに出す
-                            if (AppConfig.get().isTsunDBSendLog()) {
-                                Display.getDefault().asyncExec(() -> {
-                                    try {
-                                        if (!ApplicationMain.main.getShell().isDisposed()) {
-                                            ApplicationMain.main.printMessage("TsunDBへ送信(" + target + ")");
-                                        }
-                                    } catch (Exception e) {
-                                        LOG.get().warn("TsunDB送信でエラー", e);
-                                    }
-                                });
-                            }
-                            break;
-                        }
-                        else if (code == HttpURLConnection.HTTP_BAD_REQUEST)
-                            break;
-                        error = true;
-                    } catch (Exception e) {
-                        error = true;
-                    }
-                    if (error) {
-                        // 少し時間をおいてリトライ
-                        Thread.sleep(1000);
-                        if (this.endRequested)
-                            return;
-                        if (retly >= 1) {
-                            // リトライが多すぎたらエラーにする
-                            skipCount = (errorCount++) * 4;
-                            LOG.get().warn("TsunDBへ送信失敗");
-                            if (skipCount > 0) {
-                                LOG.get().warn("以降 " + skipCount + " 個の送信をスキップします.");
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            if (!this.endRequested) {
-                LOG.get().fatal("スレッドが異常終了しました", e);
-            }
-        }
-    }
 }
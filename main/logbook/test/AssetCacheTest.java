@@ -0,0 +1,147 @@
+package logbook.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import logbook.config.AppConfig;
+import logbook.server.proxy.AssetCache;
+import logbook.server.proxy.Filter;
+import logbook.server.proxy.ReverseProxyServlet;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.ProxyConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+/**
+ * ローカルのサーバーをゲームサーバーの代わりにして、プロキシのアセットキャッシュをチェックします<br>
+ * <ol>
+ * <li>初回はサーバーから取得してキャッシュする</li>
+ * <li>同じversionはサーバーに問い合わせずにキャッシュから返す</li>
+ * <li>versionが変わって内容が同じなら304でキャッシュから返す</li>
+ * <li>内容が変わったら新しい内容を返してキャッシュを更新する</li>
+ * <li>再起動後もキャッシュが使える</li>
+ * <li>鎮守府サーバー以外のホストの同じパスはキャッシュしない</li>
+ * </ol>
+ */
+public class AssetCacheTest {
+
+    /** サーバーが返す内容 */
+    private static volatile byte[] content = newContent(1);
+
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static final AtomicInteger notModified = new AtomicInteger();
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        AppConfig.load();
+        AppConfig.get().setUseAssetCache(true);
+
+        Server upstream = new Server(0);
+        upstream.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request baseRequest,
+                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                requests.incrementAndGet();
+                byte[] body = content;
+                String etag = "\"" + Arrays.hashCode(body) + "\"";
+                response.setHeader("ETag", etag);
+                if (etag.equals(request.getHeader("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType("image/png");
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+            }
+        });
+        upstream.start();
+        int upstreamPort = ((ServerConnector) upstream.getConnectors()[0]).getLocalPort();
+
+        Server proxy = new Server(0);
+        ServletContextHandler context = new ServletContextHandler(proxy, "/", ServletContextHandler.SESSIONS);
+        context.addServlet(new ServletHolder(new ReverseProxyServlet()), "/*");
+        proxy.start();
+        int proxyPort = ((ServerConnector) proxy.getConnectors()[0]).getLocalPort();
+
+        HttpClient client = new HttpClient();
+        client.setProxyConfiguration(new ProxyConfiguration("127.0.0.1", proxyPort));
+        client.start();
+
+        File dir = Files.createTempDirectory("assetcache").toFile();
+        String url = "http://127.0.0.1:" + upstreamPort + "/kcs2/img/common/test.png?version=";
+        int failed = 0;
+        try {
+            AssetCache.startup(dir);
+            Filter.setServerName("127.0.0.1");
+            failed += check(client, url + "1", 1, 1, 0);
+            failed += check(client, url + "1", 1, 0, 0);
+            failed += check(client, url + "2", 1, 1, 1);
+            failed += check(client, url + "2", 1, 0, 0);
+            content = newContent(2);
+            failed += check(client, url + "3", 2, 1, 0);
+            failed += check(client, url + "3", 2, 0, 0);
+
+            // 再起動
+            AssetCache.startup(dir);
+            failed += check(client, url + "3", 2, 0, 0);
+
+            // 鎮守府サーバー以外は同じパスでもキャッシュから返さず、キャッシュもしない
+            String other = "http://localhost:" + upstreamPort + "/kcs2/img/common/test.png?version=3";
+            failed += check(client, other, 2, 1, 0);
+            failed += check(client, other, 2, 1, 0);
+            System.out.println(AssetCache.getCurrentStatus());
+            AssetCache.end();
+            System.out.println("完了 失敗 " + failed);
+        } finally {
+            client.stop();
+            proxy.stop();
+            upstream.stop();
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * @param expected 期待する内容
+     * @param expectedRequests サーバーへのリクエスト数
+     * @param expectedNotModified サーバーが304を返した数
+     * @return 失敗した数
+     */
+    private static int check(HttpClient client, String url, int expected, int expectedRequests,
+            int expectedNotModified) throws Exception {
+        requests.set(0);
+        notModified.set(0);
+        ContentResponse response = client.GET(url);
+        boolean ok = (response.getStatus() == HttpServletResponse.SC_OK)
+                && Arrays.equals(response.getContent(), newContent(expected))
+                && (requests.get() == expectedRequests)
+                && (notModified.get() == expectedNotModified);
+        System.out.println((ok ? "OK " : "NG ") + url + " status=" + response.getStatus()
+                + " requests=" + requests.get() + " 304=" + notModified.get());
+        return ok ? 0 : 1;
+    }
+
+    private static byte[] newContent(int n) {
+        byte[] body = new byte[100 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * n);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,193 @@
+package logbook.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+
+import logbook.dto.BattleExDto;
+import logbook.dto.EnemyShipDto;
+import logbook.dto.ItemInfoDto;
+import logbook.internal.BattleLogDictionary;
+import logbook.internal.MasterData;
+
+import org.apache.commons.io.FileUtils;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.ProtostuffIOUtil;
+import com.dyuproject.protostuff.Schema;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * 出撃ログのマスター情報の辞書をチェックします<br>
+ * <ol>
+ * <li>同じ戦闘を旧形式と辞書形式で書いてサイズを比べる</li>
+ * <li>両方とも読み込んで内容が同じで、マスター情報が共有されているか</li>
+ * <li>辞書ファイルがなくても現在のマスターで読めるか</li>
+ * </ol>
+ */
+public class BattleLogDictionaryTest {
+
+    private static final int NUM_SHIPS = 40;
+    private static final int NUM_ITEMS = 60;
+    private static final int NUM_BATTLES = 5000;
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        BattleLogDictionary.registerSchemas();
+        Schema<BattleExDto> schema = RuntimeSchema.getSchema(BattleExDto.class);
+        MasterData.updateMaster(createMaster());
+
+        List<BattleExDto> battles = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_BATTLES; i++) {
+            battles.add(createBattle(schema, random));
+        }
+
+        File dir = Files.createTempDirectory("battlelog").toFile();
+        try {
+            LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+            ByteArrayOutputStream oldFormat = new ByteArrayOutputStream();
+            ByteArrayOutputStream newFormat = new ByteArrayOutputStream();
+            BattleLogDictionary writer = BattleLogDictionary.forDirectory(dir);
+            for (BattleExDto battle : battles) {
+                ProtostuffIOUtil.writeDelimitedTo(oldFormat, battle, schema, buffer);
+                buffer.clear();
+                writer.writeDelimitedTo(newFormat, battle, schema, buffer);
+                buffer.clear();
+            }
+            File dicFile = new File(dir, BattleLogDictionary.FILE_NAME);
+            System.out.println("旧形式 " + oldFormat.size() + " bytes, 辞書形式 " + newFormat.size()
+                    + " bytes + 辞書 " + dicFile.length() + " bytes");
+
+            int failed = 0;
+            failed += check("旧形式", oldFormat.toByteArray(), new BattleLogDictionary(dicFile), schema, battles);
+            failed += check("辞書形式", newFormat.toByteArray(), new BattleLogDictionary(dicFile), schema, battles);
+            failed += check("辞書形式(辞書なし)", newFormat.toByteArray(), new BattleLogDictionary(null), schema,
+                    battles);
+            System.out.println("完了 失敗 " + failed);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static int check(String title, byte[] data, BattleLogDictionary dictionary, Schema<BattleExDto> schema,
+            List<BattleExDto> expected) throws Exception {
+        LinkedBuffer buffer = LinkedBuffer.allocate(128 * 1024);
+        List<BattleExDto> loaded = new ArrayList<>();
+        long start = System.nanoTime();
+        InputStream input = new ByteArrayInputStream(data);
+        while (input.available() > 0) {
+            BattleExDto battle = schema.newMessage();
+            dictionary.mergeDelimitedFrom(input, battle, schema, buffer);
+            battle.readFromJson();
+            dictionary.intern(battle);
+            loaded.add(battle);
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        int mismatch = 0;
+        Set<Object> shipInfos = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> itemInfos = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < expected.size(); i++) {
+            List<EnemyShipDto> a = expected.get(i).getEnemy();
+            List<EnemyShipDto> b = loaded.get(i).getEnemy();
+            for (int j = 0; j < a.size(); j++) {
+                // protostuffはリストのnullを書かないので比べない
+                if (!a.get(j).getShipInfo().getName().equals(b.get(j).getShipInfo().getName())
+                        || !nonNull(a.get(j).getItem()).equals(nonNull(b.get(j).getItem()))
+                        || (a.get(j).getShipInfo().getParam().getSoku() != b.get(j).getShipInfo().getParam()
+                                .getSoku())) {
+                    ++mismatch;
+                }
+                shipInfos.add(b.get(j).getShipInfo());
+                for (ItemInfoDto item : b.get(j).getItem()) {
+                    itemInfos.add(item);
+                }
+            }
+        }
+        System.out.println(title + ": " + loaded.size() + "件 " + elapsed + "ms 不一致 " + mismatch
+                + " 艦のインスタンス " + shipInfos.size() + " 装備のインスタンス " + itemInfos.size());
+        return ((loaded.size() == expected.size()) && (mismatch == 0)
+                && (shipInfos.size() <= NUM_SHIPS) && (itemInfos.size() <= NUM_ITEMS)) ? 0 : 1;
+    }
+
+    private static List<ItemInfoDto> nonNull(List<ItemInfoDto> items) {
+        List<ItemInfoDto> result = new ArrayList<>();
+        for (ItemInfoDto item : items) {
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static BattleExDto createBattle(Schema<BattleExDto> schema, Random random) throws Exception {
+        BattleExDto battle = schema.newMessage();
+        setField(battle, "exVersion", 1);
+        List<EnemyShipDto> enemy = new ArrayList<>();
+        setField(battle, "enemy", enemy);
+        for (int i = 0; i < 6; i++) {
+            int[] slot = new int[5];
+            for (int j = 0; j < 4; j++) {
+                slot[j] = 501 + random.nextInt(NUM_ITEMS);
+            }
+            slot[4] = -1;
+            enemy.add(new EnemyShipDto(1501 + random.nextInt(NUM_SHIPS), slot, new int[] { 10, 20, 30, 40 }, 1));
+        }
+        return battle;
+    }
+
+    private static javax.json.JsonObject createMaster() {
+        JsonArrayBuilder ships = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_SHIPS; i++) {
+            int id = 1501 + i;
+            ships.add(Json.createObjectBuilder()
+                    .add("api_id", id)
+                    .add("api_sort_id", 0)
+                    .add("api_name", "敵艦" + i)
+                    .add("api_yomi", ((i % 3) == 0) ? "flagship" : "-")
+                    .add("api_stype", 1 + (i % 10))
+                    .add("api_ctype", 1)
+                    .add("api_slot_num", 5)
+                    .add("api_soku", 10));
+        }
+        JsonArrayBuilder items = Json.createArrayBuilder();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            JsonObjectBuilder item = Json.createObjectBuilder()
+                    .add("api_id", 501 + i)
+                    .add("api_name", "深海装備" + i)
+                    .add("api_type", Json.createArrayBuilder().add(1).add(2).add(1 + (i % 20)).add(3));
+            for (String key : new String[] { "api_houg", "api_houk", "api_houm", "api_leng", "api_luck",
+                    "api_raig", "api_baku", "api_saku", "api_soku", "api_souk", "api_taik", "api_tais",
+                    "api_tyku" }) {
+                item.add(key, i % 7);
+            }
+            items.add(item);
+        }
+        return Json.createObjectBuilder()
+                .add("api_mst_ship", ships)
+                .add("api_mst_slotitem", items)
+                .build();
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
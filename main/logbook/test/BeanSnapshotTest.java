@@ -0,0 +1,275 @@
+package logbook.test;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.beans.XMLEncoder;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import logbook.config.bean.AppConfigBean;
+import logbook.config.bean.ShipGroupBean;
+import logbook.config.bean.ShipGroupListBean;
+import logbook.util.BeanUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * 設定ファイルのスナップショット(BeanSnapshotCodec)への書き込みと、XML形式からの移行をチェックします<br>
+ * 読み込んだ結果はgetterで取得できる値を再帰的にたどって元と比べます
+ * <ol>
+ * <li>全てのプロパティに値を入れたAppConfigBean・ShipGroupListBeanをスナップショットで書き込んで読み込めるか</li>
+ * <li>以前のバージョンが書き込んだXML形式(.zip)のファイルを読み込めるか</li>
+ * <li>それを書き込むとスナップショットになり、XML形式のファイルは.migrated.zipとして残るか</li>
+ * <li>移行後に読み込んだ内容が元と同じか</li>
+ * </ol>
+ */
+public class BeanSnapshotTest {
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("beansnapshot").toFile();
+        try {
+            Random random = new Random(1);
+            int failed = 0;
+
+            AppConfigBean config = new AppConfigBean();
+            populate(config, random, 0);
+            ShipGroupListBean group = new ShipGroupListBean();
+            for (int i = 0; i < 20; i++) {
+                ShipGroupBean bean = new ShipGroupBean();
+                bean.setId(i + 1);
+                bean.setName("グループ" + i);
+                for (int j = 0; j < 50; j++) {
+                    bean.getShips().add(random.nextInt(100000));
+                }
+                group.getGroup().add(bean);
+            }
+
+            // スナップショットで書き込んで読み込む
+            failed += roundTrip("internal.xml", config, AppConfigBean.class, dir);
+            failed += roundTrip("group.xml", group, ShipGroupListBean.class, dir);
+
+            // XML形式からの移行
+            failed += migrate("internal-old.xml", config, AppConfigBean.class, dir);
+            failed += migrate("group-old.xml", group, ShipGroupListBean.class, dir);
+
+            System.out.println("完了 失敗 " + failed);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static <T> int roundTrip(String name, T bean, Class<T> type, File dir) throws Exception {
+        File file = new File(dir, name);
+        BeanUtils.writeObject(file, bean);
+        File snapshot = new File(dir, name.replace(".xml", ".snapshot"));
+        T read = BeanUtils.readObject(file, type);
+        boolean ok = snapshot.exists() && same(bean, read);
+        System.out.println((ok ? "OK " : "NG ") + name + " スナップショット " + snapshot.length() + " bytes (XML "
+                + toXml(bean).length + " bytes)");
+        return ok ? 0 : 1;
+    }
+
+    private static <T> int migrate(String name, T bean, Class<T> type, File dir) throws Exception {
+        File file = new File(dir, name);
+        String base = name.replace(".xml", "");
+        File xml = new File(dir, base + ".zip");
+        File snapshot = new File(dir, base + ".snapshot");
+        File migrated = new File(dir, base + ".migrated.zip");
+        // 以前のバージョンと同じ書き込み方
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(xml)))) {
+            zos.putNextEntry(new ZipEntry(file.getName()));
+            XMLEncoder encoder = new XMLEncoder(zos);
+            encoder.writeObject(bean);
+            encoder.close();
+        }
+        T fromXml = BeanUtils.readObject(file, type);
+        boolean readXml = same(bean, fromXml);
+        BeanUtils.writeObject(file, fromXml);
+        boolean moved = snapshot.exists() && !xml.exists() && migrated.exists();
+        T fromSnapshot = BeanUtils.readObject(file, type);
+        boolean ok = readXml && moved && same(bean, fromSnapshot);
+        System.out.println((ok ? "OK " : "NG ") + name + " XML読み込み " + readXml + " 移行 " + moved
+                + " 移行後 " + same(bean, fromSnapshot));
+        return ok ? 0 : 1;
+    }
+
+    private static boolean same(Object expected, Object actual) {
+        try {
+            return (actual != null) && equalsDeep(expected, actual, expected.getClass().getSimpleName());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 値を比べます(JavaBeanはgetterとsetterのあるプロパティを比べます)
+     */
+    private static boolean equalsDeep(Object a, Object b, String path) throws Exception {
+        boolean equal;
+        if ((a == null) || (b == null)) {
+            equal = a == b;
+        }
+        else if (a.getClass().isArray()) {
+            equal = b.getClass().isArray() && (Array.getLength(a) == Array.getLength(b));
+            for (int i = 0; equal && (i < Array.getLength(a)); i++) {
+                equal = equalsDeep(Array.get(a, i), Array.get(b, i), path + "[" + i + "]");
+            }
+        }
+        else if (a instanceof List) {
+            List<?> la = (List<?>) a;
+            List<?> lb = (List<?>) b;
+            equal = la.size() == lb.size();
+            for (int i = 0; equal && (i < la.size()); i++) {
+                equal = equalsDeep(la.get(i), lb.get(i), path + "[" + i + "]");
+            }
+        }
+        else if (a instanceof Map) {
+            Map<?, ?> ma = (Map<?, ?>) a;
+            Map<?, ?> mb = (Map<?, ?>) b;
+            equal = ma.keySet().equals(mb.keySet());
+            for (Map.Entry<?, ?> entry : ma.entrySet()) {
+                if (!equal) {
+                    break;
+                }
+                equal = equalsDeep(entry.getValue(), mb.get(entry.getKey()), path + "[" + entry.getKey() + "]");
+            }
+        }
+        else if (a.getClass().getName().startsWith("logbook.")) {
+            equal = a.getClass() == b.getClass();
+            for (PropertyDescriptor property : Introspector.getBeanInfo(a.getClass()).getPropertyDescriptors()) {
+                if (!equal) {
+                    break;
+                }
+                Method reader = property.getReadMethod();
+                if ((reader == null) || (property.getWriteMethod() == null)) {
+                    continue;
+                }
+                equal = equalsDeep(reader.invoke(a), reader.invoke(b), path + "." + property.getName());
+            }
+            return equal;
+        }
+        else {
+            // Setなども含めてequalsで比べる
+            equal = a.equals(b);
+        }
+        if (!equal) {
+            System.out.println("違う値: " + path + " " + a + " != " + b);
+        }
+        return equal;
+    }
+
+    private static byte[] toXml(Object bean) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLEncoder encoder = new XMLEncoder(out);
+        encoder.writeObject(bean);
+        encoder.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * getterとsetterのあるプロパティに値を入れます(対応していない型はそのまま)
+     */
+    private static void populate(Object bean, Random random, int depth) throws Exception {
+        BeanInfo info = Introspector.getBeanInfo(bean.getClass());
+        for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+            Method writer = property.getWriteMethod();
+            if ((property.getReadMethod() == null) || (writer == null)) {
+                continue;
+            }
+            Object value = createValue(property.getPropertyType(), writer.getGenericParameterTypes()[0], random,
+                    depth);
+            if (value != null) {
+                writer.invoke(bean, value);
+            }
+        }
+    }
+
+    private static Object createValue(Class<?> type, Type genericType, Random random, int depth) throws Exception {
+        if ((type == boolean.class) || (type == Boolean.class)) {
+            return random.nextBoolean();
+        }
+        if ((type == int.class) || (type == Integer.class)) {
+            return random.nextInt(10000) - 100;
+        }
+        if ((type == long.class) || (type == Long.class)) {
+            return random.nextLong();
+        }
+        if ((type == double.class) || (type == Double.class)) {
+            return random.nextDouble();
+        }
+        if ((type == float.class) || (type == Float.class)) {
+            return random.nextFloat();
+        }
+        if (type == String.class) {
+            return "値" + random.nextInt(1000) + "\t<&>\"'";
+        }
+        if (type == RGB.class) {
+            return new RGB(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        if (type == int[].class) {
+            return new int[] { random.nextInt(), random.nextInt(), -1 };
+        }
+        if (type == String[].class) {
+            return new String[] { "a" + random.nextInt(100), "日本語", "" };
+        }
+        if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            return constants[random.nextInt(constants.length)];
+        }
+        if ((type == List.class) && (genericType instanceof ParameterizedType)
+                && (((ParameterizedType) genericType).getActualTypeArguments()[0] == String.class)) {
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                list.add("要素" + random.nextInt(100));
+            }
+            return list;
+        }
+        if ((type == Map.class) && (depth == 0) && (genericType instanceof ParameterizedType)) {
+            Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+            if ((args[0] == String.class) && (args[1] instanceof Class)
+                    && ((Class<?>) args[1]).getName().startsWith("logbook.config.bean.")) {
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < 3; i++) {
+                    Object value = ((Class<?>) args[1]).getDeclaredConstructor().newInstance();
+                    populate(value, random, depth + 1);
+                    map.put("key" + i, value);
+                }
+                return map;
+            }
+        }
+        if (type.isArray() && (depth == 0) && type.getComponentType().getName().startsWith("logbook.config.bean.")) {
+            Object[] array = (Object[]) Array.newInstance(type.getComponentType(), 2);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = type.getComponentType().getDeclaredConstructor().newInstance();
+                populate(array[i], random, depth + 1);
+            }
+            return array;
+        }
+        if (type.getName().startsWith("logbook.config.bean.") && (depth == 0)) {
+            Object value = type.getDeclaredConstructor().newInstance();
+            populate(value, random, depth + 1);
+            return value;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,185 @@
+package logbook.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import logbook.config.AppConfig;
+import logbook.data.ActionData;
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.internal.JsonArchive;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * JSONの保存ファイル(JsonArchive)をチェックします<br>
+ * <ol>
+ * <li>2日分のレスポンスを保存しても、セグメントファイルは書き込んだ日時で作られるか(レスポンスの日時で分かれないか)</li>
+ * <li>保存できないレスポンスが途中にあっても、残りのレスポンスは保存されるか</li>
+ * <li>Readerで全て読み込んで内容・順序・リクエストのパラメータ(api_tokenを除く)が同じか</li>
+ * <li>インデックスで時刻・DataTypeを指定して探し、その1件だけを読み込めるか</li>
+ * <li>ファイルの終わりが途切れていても、それより前は読み込めるか</li>
+ * </ol>
+ */
+public class JsonArchiveTest {
+
+    private static final int NUM_RESPONSES = 20000;
+
+    private static final DataType[] TYPES = { DataType.PORT, DataType.SHIP2, DataType.CHARGE, DataType.BATTLE,
+            DataType.BATTLE_RESULT, DataType.MATERIAL };
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        AppConfig.load();
+        File dir = Files.createTempDirectory("jsonarchive").toFile();
+        try {
+            AppConfig.get().setStoreJsonPath(dir.getAbsolutePath());
+
+            // 2日に分けて保存する
+            List<Data> expected = new ArrayList<>();
+            Random random = new Random(1);
+            long time = new Date().getTime() - (24 * 60 * 60 * 1000L);
+            String today = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_RESPONSES; i++) {
+                time += (2 * 24 * 60 * 60 * 1000L) / NUM_RESPONSES;
+                Data data = createData(random, time, i);
+                expected.add(data);
+                JsonArchive.store(data);
+                if (i == (NUM_RESPONSES / 2)) {
+                    // JSONのないレスポンス(保存できない)
+                    JsonArchive.store(new ActionData(DataType.PORT, new Date(time), null, new HashMap<>()));
+                }
+            }
+            long stored = System.nanoTime();
+            JsonArchive.end();
+            long written = System.nanoTime();
+
+            List<File> segments = JsonArchive.listSegments(dir);
+            long size = 0;
+            for (File file : dir.listFiles()) {
+                size += file.length();
+            }
+            long plainSize = 0;
+            for (Data data : expected) {
+                plainSize += data.getJsonObject().toString().getBytes("UTF-8").length;
+            }
+            System.out.println(String.format("保存 %d件 (呼び出し側 %.1fms, 書き込み完了まで %.1fms) セグメント %d個 %d bytes (JSONのまま %d bytes)",
+                    NUM_RESPONSES, (stored - start) / 1e6, (written - start) / 1e6, segments.size(), size,
+                    plainSize));
+
+            int failed = 0;
+            if ((segments.size() != 1) || !segments.get(0).getName().startsWith(today)) {
+                System.out.println("書き込んだ日時でセグメントが作られていません: " + segments);
+                ++failed;
+            }
+
+            // 全て読み込む
+            int mismatch = 0;
+            int count = 0;
+            try (JsonArchive.Reader reader = new JsonArchive.Reader(dir)) {
+                Data data;
+                while ((data = reader.next()) != null) {
+                    if ((count >= expected.size()) || !same(expected.get(count), data)) {
+                        ++mismatch;
+                    }
+                    ++count;
+                }
+            }
+            System.out.println("Reader: " + count + "件 不一致 " + mismatch);
+            if ((count != NUM_RESPONSES) || (mismatch != 0)) {
+                ++failed;
+            }
+
+            // インデックスで探す
+            Date from = expected.get(NUM_RESPONSES / 3).getCreateDate();
+            Date to = expected.get((NUM_RESPONSES * 2) / 3).getCreateDate();
+            int expectedFound = 0;
+            for (Data data : expected) {
+                if ((data.getDataType() == DataType.BATTLE) && !data.getCreateDate().before(from)
+                        && data.getCreateDate().before(to)) {
+                    ++expectedFound;
+                }
+            }
+            long findStart = System.nanoTime();
+            List<JsonArchive.Entry> found = JsonArchive.find(dir, from, to, DataType.BATTLE);
+            int readMismatch = 0;
+            for (JsonArchive.Entry entry : found) {
+                Data data = entry.read();
+                Data original = null;
+                for (Data e : expected) {
+                    if (e.getCreateDate().getTime() == entry.time) {
+                        original = e;
+                        break;
+                    }
+                }
+                if ((original == null) || !same(original, data)) {
+                    ++readMismatch;
+                }
+            }
+            System.out.println(String.format("find: %d件 (期待 %d件) 不一致 %d %.1fms", found.size(), expectedFound,
+                    readMismatch, (System.nanoTime() - findStart) / 1e6));
+            if ((found.size() != expectedFound) || (readMismatch != 0)) {
+                ++failed;
+            }
+
+            // 書き込み中に落ちた場合(gzipの終端がない)
+            File last = segments.get(segments.size() - 1);
+            try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+                file.setLength(file.length() - 20);
+            }
+            count = 0;
+            try (JsonArchive.Reader reader = new JsonArchive.Reader(dir)) {
+                while (reader.next() != null) {
+                    ++count;
+                }
+            }
+            System.out.println("途切れたファイル: " + count + "件");
+            if (count < (NUM_RESPONSES - 1)) {
+                ++failed;
+            }
+
+            System.out.println("完了 失敗 " + failed);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static Data createData(Random random, long time, int i) {
+        DataType type = TYPES[random.nextInt(TYPES.length)];
+        JsonObject json = Json.createObjectBuilder()
+                .add("api_result", 1)
+                .add("api_result_msg", "成功")
+                .add("api_data", Json.createObjectBuilder()
+                        .add("api_id", i)
+                        .add("api_value", random.nextInt(100000))
+                        .add("api_name", "テスト" + random.nextInt(100)))
+                .build();
+        Map<String, String> post = new HashMap<>();
+        post.put("api_verno", "1");
+        post.put("api_token", "0123456789abcdef");
+        post.put("api_deck_id", String.valueOf(1 + random.nextInt(4)));
+        return new ActionData(type, new Date(time), json, post);
+    }
+
+    private static boolean same(Data a, Data b) {
+        return (a.getDataType() == b.getDataType())
+                && (a.getCreateDate().getTime() == b.getCreateDate().getTime())
+                && a.getJsonObject().equals(b.getJsonObject())
+                && a.getField("api_deck_id").equals(b.getField("api_deck_id"))
+                && (b.getField("api_token") == null);
+    }
+}
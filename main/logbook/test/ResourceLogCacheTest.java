@@ -0,0 +1,215 @@
+package logbook.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
+import logbook.dto.chart.ResourceLog;
+import logbook.dto.chart.ResourceLog.SortableLog;
+
+/**
+ * 資材ログのキャッシュ(ResourceLogCache)をチェックします<br>
+ * カレントディレクトリのconfigにキャッシュファイルを作るので、作業用のディレクトリで実行してください
+ * <ol>
+ * <li>初回の読み込みが、全ての行を読み込んで並び替えたものと同じか</li>
+ * <li>追記された行だけを読み込んだ結果が同じか(メモリのキャッシュ・キャッシュファイルから)</li>
+ * <li>改行で終わっていない行を、書き終わってから読み込めるか</li>
+ * <li>資材ログを編集した・短くした場合に読み込み直すか</li>
+ * </ol>
+ */
+public class ResourceLogCacheTest {
+
+    private static final int NUM_LINES = 200000;
+
+    private static final String HEADER = "日付,直前のイベント,燃料,弾薬,鋼材,ボーキ,高速修復材,高速建造材,開発資材,ネジ";
+
+    private static long time = new Date().getTime() - (NUM_LINES * 60 * 1000L);
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        AppConfig.load();
+        File dir = Files.createTempDirectory("resourcelog").toFile();
+        try {
+            File file = new File(dir, AppConstants.LOG_RESOURCE);
+            Random random = new Random(1);
+            int failed = 0;
+
+            StringBuilder sb = new StringBuilder(HEADER).append("\r\n");
+            appendLines(sb, random, NUM_LINES);
+            write(file, sb.toString(), false);
+            failed += check("初回", file);
+            failed += check("変更なし", file);
+
+            // 追記
+            sb = new StringBuilder();
+            appendLines(sb, random, 100);
+            write(file, sb.toString(), true);
+            failed += check("追記", file);
+
+            // 書き込み途中の行
+            write(file, "2099-01-01 00:00:00,遠征,1,2,3", true);
+            failed += check("書き込み途中", file);
+            write(file, ",4,5,6,7,8\r\n", true);
+            failed += check("書き終わり", file);
+
+            // キャッシュファイルから
+            clearMemoryCache();
+            sb = new StringBuilder();
+            appendLines(sb, random, 100);
+            write(file, sb.toString(), true);
+            failed += check("キャッシュファイルから追記", file);
+
+            // 先頭の行を編集する
+            String text = FileUtils.readFileToString(file, Charset.defaultCharset());
+            int lineStart = text.indexOf('\n') + 1;
+            text = text.substring(0, lineStart) + text.substring(lineStart).replaceFirst(",\\d", ",9");
+            write(file, text, false);
+            failed += check("編集", file);
+
+            // 短くする
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(raf.length() / 2);
+            }
+            failed += check("短くする", file);
+
+            System.out.println("完了 失敗 " + failed);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static void appendLines(StringBuilder sb, Random random, int count) {
+        SimpleDateFormat original = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        SimpleDateFormat excel = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+        for (int i = 0; i < count; i++) {
+            time += 60 * 1000L;
+            // 時々時刻が前後する行・読めない行・本家の形式の行を混ぜる
+            long t = (random.nextInt(50) == 0) ? (time - (random.nextInt(600) * 60 * 1000L)) : time;
+            int kind = random.nextInt(100);
+            if (kind == 0) {
+                sb.append("壊れた行\r\n");
+                continue;
+            }
+            String date = (kind < 5) ? excel.format(new Date(t)) : original.format(new Date(t));
+            sb.append(date);
+            if (kind >= 10) {
+                sb.append(",遠征");
+            }
+            for (int j = 0; j < 8; j++) {
+                sb.append(',').append(random.nextInt(300000));
+            }
+            sb.append("\r\n");
+        }
+    }
+
+    private static void write(File file, String text, boolean append) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, append)) {
+            out.write(text.getBytes(Charset.defaultCharset()));
+        }
+    }
+
+    private static void clearMemoryCache() throws Exception {
+        Field field = Class.forName("logbook.dto.chart.ResourceLogCache").getDeclaredField("last");
+        field.setAccessible(true);
+        field.set(null, new SoftReference<>(null));
+    }
+
+    private static int check(String name, File file) throws Exception {
+        long start = System.nanoTime();
+        ResourceLog log = ResourceLog.getInstance(file);
+        long cached = System.nanoTime();
+        List<SortableLog> expected = readAll(file);
+        long full = System.nanoTime();
+
+        boolean same = log.time.length == expected.size();
+        for (int i = 0; same && (i < expected.size()); i++) {
+            SortableLog e = expected.get(i);
+            same = (log.time[i] == e.time)
+                    && Arrays.equals(new int[] { e.fuel, e.ammo, e.metal, e.bauxite, e.burner, e.bucket,
+                            e.research, e.screw }, column(log, i));
+        }
+        System.out.println(String.format("%s: %d行 %s (キャッシュ %.1fms, 全て読み込み %.1fms)", name,
+                log.time.length, same ? "OK" : "不一致", (cached - start) / 1e6, (full - cached) / 1e6));
+        return same ? 0 : 1;
+    }
+
+    private static int[] column(ResourceLog log, int i) {
+        int[] values = new int[log.resources.length];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = log.resources[j].values[i];
+        }
+        return values;
+    }
+
+    /**
+     * キャッシュを使わずに全ての行を読み込みます(キャッシュを入れる前の読み込み方)
+     */
+    private static List<SortableLog> readAll(File file) throws IOException {
+        SimpleDateFormat[] formats = new SimpleDateFormat[] {
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"),
+                new SimpleDateFormat("yyyy/MM/dd HH:mm")
+        };
+        List<SortableLog> logs = new ArrayList<>();
+        try (Reader reader = new BufferedReader(new FileReader(file))) {
+            LineIterator ite = new LineIterator(reader);
+            if (ite.hasNext()) {
+                ite.next();
+            }
+            ParsePosition pos = new ParsePosition(0);
+            while (ite.hasNext()) {
+                String line = ite.next();
+                String[] colums = line.contains("\t") ? line.split("\t", -1) : line.split(",", -1);
+                try {
+                    pos.setIndex(0);
+                    Date date = null;
+                    for (DateFormat format : formats) {
+                        date = format.parse(colums[0], pos);
+                        if (date != null) {
+                            break;
+                        }
+                    }
+                    if (date == null) {
+                        continue;
+                    }
+                    int baseIdx = NumberUtils.isNumber(colums[1]) ? 1 : 2;
+                    int screw = (colums.length > (baseIdx + 7)) ? Integer.parseInt(colums[baseIdx + 7]) : 0;
+                    logs.add(new SortableLog(date.getTime(),
+                            Integer.parseInt(colums[baseIdx + 0]), Integer.parseInt(colums[baseIdx + 1]),
+                            Integer.parseInt(colums[baseIdx + 2]), Integer.parseInt(colums[baseIdx + 3]),
+                            Integer.parseInt(colums[baseIdx + 5]), Integer.parseInt(colums[baseIdx + 4]),
+                            Integer.parseInt(colums[baseIdx + 6]), screw));
+                } catch (Exception e) {
+                    continue;
+                }
+            }
+        }
+        Collections.sort(logs);
+        return logs;
+    }
+}
@@ -0,0 +1,208 @@
+package logbook.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import logbook.config.AppConfig;
+import logbook.constants.AppConstants;
+import logbook.data.Data;
+import logbook.data.DataType;
+import logbook.data.context.GlobalContext;
+import logbook.internal.LatencyStat;
+import logbook.internal.LogWriter;
+import logbook.server.proxy.TrafficRecorder;
+
+/**
+ * 記録した通信(TrafficRecorder)をGUIなしで再生して、処理速度を計測します<br>
+ * 解凍・解析(toDefinedData) → GlobalContext.updateContext → リスナー の順に受信順で呼び出し、
+ * 1秒あたりの処理件数とDataTypeごとの処理時間を出力します<br>
+ * 最後に艦娘・装備の数などを出力するので、変更前後で比べれば状態の更新が変わっていないか確認できます
+ * <pre>
+ * TrafficReplay [--realtime] [--speed=倍率] [--repeat=回数] [ファイルまたはフォルダ...]
+ *   --realtime  記録したときの間隔で再生する(省略時は全速力)
+ *   --speed     --realtimeの再生速度の倍率
+ *   --repeat    繰り返す回数(2回目以降も同じ状態から始まるわけではありません)
+ *   ファイルを省略した場合は traffic フォルダのファイルを全て再生します
+ * </pre>
+ * ！注意！<br>
+ * GlobalContextを更新するのでログ出力も行います。カレントディレクトリを作業用のフォルダにして実行してください。<br>
+ * 艦これ統計データベースなどへの送信は行いません。
+ */
+public class TrafficReplay {
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        boolean realtime = false;
+        double speed = 1;
+        int repeat = 1;
+        List<File> files = new ArrayList<>();
+        boolean named = false;
+        for (String arg : args) {
+            if (arg.equals("--realtime")) {
+                realtime = true;
+            }
+            else if (arg.startsWith("--speed=")) {
+                speed = Double.parseDouble(arg.substring("--speed=".length()));
+            }
+            else if (arg.startsWith("--repeat=")) {
+                repeat = Integer.parseInt(arg.substring("--repeat=".length()));
+            }
+            else {
+                addFiles(files, new File(arg));
+                named = true;
+            }
+        }
+        if (!named) {
+            addFiles(files, AppConstants.TRAFFIC_DIR);
+        }
+        if (files.isEmpty()) {
+            System.out.println("再生するファイルがありません");
+            return;
+        }
+
+        AppConfig.load();
+        // 再生した通信をまた保存・記録しない
+        AppConfig.get().setStoreJson(false);
+        AppConfig.get().setRecordTraffic(false);
+        LogWriter.startup();
+
+        TrafficReplay replay = new TrafficReplay(realtime, speed);
+        try {
+            for (int i = 0; i < repeat; i++) {
+                for (File file : files) {
+                    replay.play(file);
+                }
+            }
+        } finally {
+            LogWriter.end();
+        }
+        replay.printReport();
+    }
+
+    private static void addFiles(List<File> files, File file) {
+        if (file.isDirectory()) {
+            File[] list = file.listFiles((dir, name) -> name.endsWith(TrafficRecorder.EXTENSION));
+            if (list != null) {
+                Arrays.sort(list);
+                files.addAll(Arrays.asList(list));
+            }
+        }
+        else if (file.exists()) {
+            files.add(file);
+        }
+    }
+
+    private final boolean realtime;
+    private final double speed;
+
+    /** DataTypeごとの解凍・解析の時間 */
+    private final Map<DataType, LatencyStat> parseStats = new EnumMap<>(DataType.class);
+    /** DataTypeごとのGlobalContextの更新(リスナーを含む)の時間 */
+    private final Map<DataType, LatencyStat> updateStats = new EnumMap<>(DataType.class);
+    private final LatencyStat totalParse = new LatencyStat("解凍・JSON解析");
+    private final LatencyStat totalUpdate = new LatencyStat("更新");
+
+    private long messages;
+    private long undefined;
+    private long responseBytes;
+    /** 処理にかかった時間(--realtimeで待った時間は含まない) */
+    private long busyNanos;
+    private long elapsedNanos;
+
+    public TrafficReplay(boolean realtime, double speed) {
+        this.realtime = realtime;
+        this.speed = speed;
+    }
+
+    /**
+     * 1ファイル分を再生します
+     *
+     * @param file 記録したファイル
+     */
+    public void play(File file) throws Exception {
+        long start = System.nanoTime();
+        long firstTime = -1;
+        int count = 0;
+        boolean truncated;
+        try (TrafficRecorder.Reader reader = new TrafficRecorder.Reader(file)) {
+            TrafficRecorder.Record record;
+            while ((record = reader.next()) != null) {
+                if (this.realtime) {
+                    if (firstTime == -1) {
+                        firstTime = record.time;
+                    }
+                    long due = start + (long) (((record.time - firstTime) * 1000000L) / this.speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                    }
+                }
+                long busy = System.nanoTime();
+                this.replay(record);
+                this.busyNanos += System.nanoTime() - busy;
+                count++;
+            }
+            truncated = reader.isTruncated();
+        }
+        this.elapsedNanos += System.nanoTime() - start;
+        System.out.println(file.getPath() + ": " + count + "件" + (truncated ? " (最後の1件が途切れていました)" : ""));
+    }
+
+    private void replay(TrafficRecorder.Record record) {
+        this.messages++;
+        this.responseBytes += record.response.length;
+
+        long start = System.nanoTime();
+        Data data = record.toUndefinedData().toDefinedData();
+        long parsed = System.nanoTime();
+        DataType type = data.getDataType();
+        this.totalParse.add(parsed - start);
+        if (type == DataType.UNDEFINED) {
+            this.undefined++;
+            return;
+        }
+        this.parseStats.computeIfAbsent(type, t -> new LatencyStat(t.name())).add(parsed - start);
+
+        GlobalContext.updateContext(data);
+        long updated = System.nanoTime();
+        this.totalUpdate.add(updated - parsed);
+        this.updateStats.computeIfAbsent(type, t -> new LatencyStat(t.name())).add(updated - parsed);
+    }
+
+    /**
+     * 結果を出力します
+     */
+    public void printReport() {
+        double seconds = this.busyNanos / 1e9;
+        System.out.println(String.format("%d件 (未定義 %d件) %.1fMB 経過 %.2f秒 処理 %.2f秒 %.0f件/秒",
+                this.messages, this.undefined, this.responseBytes / (1024.0 * 1024.0), this.elapsedNanos / 1e9,
+                seconds, (seconds > 0) ? (this.messages / seconds) : 0));
+        System.out.println(this.totalParse);
+        System.out.println(this.totalUpdate);
+
+        System.out.println(String.format("%-28s %6s %10s %10s %10s %10s %10s",
+                "DataType", "回数", "解析平均ms", "解析p99ms", "更新平均ms", "更新p99ms", "更新合計ms"));
+        List<DataType> types = new ArrayList<>(this.updateStats.keySet());
+        // 更新の合計時間が長い順
+        types.sort(Comparator.comparingDouble((DataType t) -> this.updateStats.get(t).getTotalMillis()).reversed());
+        for (DataType type : types) {
+            LatencyStat parse = this.parseStats.get(type);
+            LatencyStat update = this.updateStats.get(type);
+            System.out.println(String.format("%-28s %6d %10.3f %10.3f %10.3f %10.3f %10.1f",
+                    type, update.getCount(), parse.getAverageMillis(), parse.getPercentileMillis(99),
+                    update.getAverageMillis(), update.getPercentileMillis(99), update.getTotalMillis()));
+        }
+
+        // 変更前後で比べるための状態
+        System.out.println(String.format("状態: 更新 %d回 艦娘 %d隻 装備 %d個 司令部Lv %d",
+                GlobalContext.getUpdateCounter(), GlobalContext.getShipMap().size(),
+                GlobalContext.getItemMap().size(), GlobalContext.hqLevel()));
+    }
+}
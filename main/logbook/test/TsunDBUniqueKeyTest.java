@@ -0,0 +1,66 @@
+package logbook.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+import javax.json.JsonObject;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import logbook.server.proxy.TsunDBClient;
+import logbook.util.Crc32c;
+import logbook.util.JsonStreamReader;
+import logbook.util.JsonUtils;
+
+/**
+ * TsunDBの友軍艦隊のuniquekeyがcrc32c.js(JavaScript)と同じになるかチェックします
+ */
+public class TsunDBUniqueKeyTest {
+
+    private static final String[] FLEETS = {
+            "{\"ship\":[1,2],\"lvl\":[99,175],\"hp\":[35,77],\"nowhp\":[35,77],"
+                    + "\"stats\":[[10,20,30,40],[50,60,70,80]],\"equip\":[[-1,-1],[1,2,3]],"
+                    + "\"requestType\":1,\"voice\":[[141,0],[2,3]],\"fleet1\":[1,2,3],\"fleet2\":[]}",
+            "{\"a\":1.5,\"b\":-0.000001,\"c\":1e21,\"d\":123456789012,\"e\":0.1,\"f\":-0.0,\"g\":1.0E-7}",
+            "{\"b\":1,\"10\":2,\"2\":3,\"a\":4,\"01\":5,\"4294967295\":6,\"4294967294\":7}",
+            "{\"s\":\"\\\"\\\\/\\b\\f\\n\\r\\t\\u0001\\u001f\\u007f\",\"jp\":\"友軍艦隊\",\"t\":true,\"f\":false,\"n\":null}",
+    };
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+        if (engine == null) {
+            System.out.println("JavaScriptエンジンがありません");
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                TsunDBClient.class.getResourceAsStream("crc32c.js"), StandardCharsets.UTF_8))) {
+            engine.eval(br.lines().collect(Collectors.joining("\n")));
+            int mismatch = 0;
+            for (String fleet : FLEETS) {
+                JsonObject json = JsonStreamReader.readObject(new StringReader(fleet));
+                String expectedString = String.valueOf(engine.eval("JSON.stringify(" + json.toString() + ")"));
+                long expected = new BigDecimal(String.valueOf(
+                        engine.eval("crc32c(JSON.stringify(" + json.toString() + "))"))).longValue();
+                String actualString = JsonUtils.stringify(json);
+                long actual = Crc32c.ofString(actualString);
+                if (!expectedString.equals(actualString) || (expected != actual)) {
+                    System.out.println("不一致: 正解:" + expectedString + " (" + expected + ") 結果:"
+                            + actualString + " (" + actual + ")");
+                    ++mismatch;
+                }
+            }
+            System.out.println("完了 " + mismatch + "/" + FLEETS.length);
+        } catch (ScriptException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
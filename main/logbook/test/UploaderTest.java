@@ -0,0 +1,148 @@
+package logbook.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import logbook.internal.Uploader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Uploaderをローカルのサーバーに送信させてチェックします<br>
+ * <ol>
+ * <li>サーバーが止まっている(503を返す)間に送信し、終了する</li>
+ * <li>再起動してサーバーを復旧させ、前回の送信が全部届くか</li>
+ * <li>時々失敗するサーバーに送信して、全部届くか</li>
+ * <li>認証情報が送信待ちのファイルに保存されず、送信するときには付いているか</li>
+ * </ol>
+ */
+public class UploaderTest {
+
+    private static final String DESTINATION = "test";
+
+    /** 送信するときに付ける認証情報 */
+    private static final String SECRET = "secret-0123456789";
+
+    /** 受け取った内容 */
+    private static final Set<String> received = Collections.synchronizedSet(new HashSet<String>());
+
+    /** trueなら503を返す */
+    private static volatile boolean down = true;
+
+    /** 何回に1回失敗させるか */
+    private static volatile int failEvery = 0;
+
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        Server server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, org.eclipse.jetty.server.Request baseRequest,
+                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                int n = requests.incrementAndGet();
+                String body = IOUtils.toString(request.getInputStream(), StandardCharsets.UTF_8.name());
+                if (!SECRET.equals(request.getHeader("X-Secret"))) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    return;
+                }
+                if (down || ((failEvery > 0) && ((n % failEvery) == 0))) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    return;
+                }
+                received.add(body);
+                response.setStatus(HttpServletResponse.SC_OK);
+            }
+        });
+        server.start();
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        String url = "http://127.0.0.1:" + port + "/upload";
+        File dir = Files.createTempDirectory("uploader").toFile();
+        int numItems = 50;
+        try {
+            // サーバーが止まっている間に送信して終了
+            Uploader uploader = newUploader(dir);
+            for (int i = 0; i < numItems; i++) {
+                uploader.offer(DESTINATION, item(url, "first-" + i));
+            }
+            Thread.sleep(2000);
+            uploader.shutdown();
+            int secrets = 0;
+            for (File file : new File(dir, DESTINATION).listFiles()) {
+                if (new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains(SECRET)) {
+                    ++secrets;
+                }
+            }
+            System.out.println("1回目: 受信 " + received.size() + " リクエスト " + requests.get()
+                    + " 認証情報を含むファイル " + secrets);
+
+            // 再起動して復旧
+            down = false;
+            long before = System.currentTimeMillis();
+            uploader = newUploader(dir);
+            waitFor(uploader, 30000);
+            System.out.println("2回目: 受信 " + received.size() + "/" + numItems + " ("
+                    + (System.currentTimeMillis() - before) + " ms)");
+
+            // 時々失敗するサーバー
+            failEvery = 3;
+            before = System.currentTimeMillis();
+            for (int i = 0; i < numItems; i++) {
+                uploader.offer(DESTINATION, item(url, "second-" + i));
+            }
+            waitFor(uploader, 60000);
+            System.out.println("3回目: 受信 " + received.size() + "/" + (numItems * 2) + " ("
+                    + (System.currentTimeMillis() - before) + " ms) " + uploader.getStats().get(DESTINATION)[1]
+                    + "回再送");
+            uploader.shutdown();
+
+            int missing = 0;
+            for (int i = 0; i < numItems; i++) {
+                if (!received.contains("first-" + i) || !received.contains("second-" + i)) {
+                    ++missing;
+                }
+            }
+            String[] left = new File(dir, DESTINATION).list();
+            System.out.println("完了 届かなかった送信 " + missing + " 残ったファイル " + (left != null ? left.length : 0));
+        } finally {
+            server.stop();
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static Uploader newUploader(File dir) {
+        Uploader uploader = new Uploader(dir);
+        uploader.start();
+        uploader.addDestination(new Uploader.Destination(DESTINATION, 4)
+                .credentials(item -> item.withBody(item.getBody()).header("X-Secret", SECRET)));
+        return uploader;
+    }
+
+    private static Uploader.Item item(String url, String body) {
+        return new Uploader.Item("POST", url, "text/plain", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void waitFor(Uploader uploader, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while ((uploader.getPendingCount(DESTINATION) > 0) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package logbook.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import logbook.internal.LoggerHolder;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * JavaBeanのプロパティをバイナリ形式で書き込む{@link SnapshotCodec}<br>
+ * XMLEncoderと同じく、getterとsetterの両方があるプロパティを名前付きで書き込むので、
+ * プロパティが追加・削除されたり型が変わったりしても、読み込める部分は読み込みます<br>
+ * <br>
+ * 対応している値: null, プリミティブとそのラッパー, String, Date, enum, RGB, 配列, Collection, Map,
+ * logbookパッケージのJavaBean<br>
+ * それ以外の値が含まれている場合は{@link UnsupportedOperationException}を投げるので、
+ * 呼び出し側はXML形式で書き込んでください<br>
+ * <br>
+ * 非static内部クラスのJavaBeanは、XMLDecoderと同じく親オブジェクトのgetterが返す既存のオブジェクトに読み込みます
+ */
+public final class BeanSnapshotCodec implements SnapshotCodec {
+
+    /** ロガー */
+    private static final LoggerHolder LOG = new LoggerHolder(BeanSnapshotCodec.class);
+
+    private static final int VERSION = 1;
+
+    /** JavaBeanとして書き込むクラスのパッケージ */
+    private static final String BEAN_PACKAGE = "logbook.";
+
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_BYTE = 3;
+    private static final int T_SHORT = 4;
+    private static final int T_CHAR = 5;
+    private static final int T_INT = 6;
+    private static final int T_LONG = 7;
+    private static final int T_FLOAT = 8;
+    private static final int T_DOUBLE = 9;
+    private static final int T_STRING = 10;
+    private static final int T_DATE = 11;
+    private static final int T_ENUM = 12;
+    private static final int T_RGB = 13;
+    private static final int T_ARRAY = 14;
+    private static final int T_COLLECTION = 15;
+    private static final int T_MAP = 16;
+    private static final int T_BEAN = 17;
+
+    /** JavaBeanのプロパティの終わり */
+    private static final int END_OF_BEAN = 0;
+
+    /** 新しい名前(既出の名前は番号+2) */
+    private static final int NEW_NAME = 1;
+
+    /** クラス → 書き込むプロパティ(名前順) */
+    private static final Map<Class<?>, Map<String, PropertyDescriptor>> PROPERTIES = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "bean";
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public void write(OutputStream out, Object obj) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        new Writer(output).writeValue(obj);
+        output.flush();
+    }
+
+    @Override
+    public Object read(InputStream in) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        return new Reader(input).readValue(null);
+    }
+
+    /**
+     * 書き込み(クラス名とプロパティ名は2回目以降は番号で書き込みます)
+     */
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> names = new HashMap<>();
+        /** 書き込み中のJavaBean(循環参照の検出用) */
+        private final Map<Object, Boolean> visiting = new IdentityHashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                this.out.writeByte(T_NULL);
+            } else if (value instanceof Boolean) {
+                this.out.writeByte(((Boolean) value) ? T_TRUE : T_FALSE);
+            } else if (value instanceof Integer) {
+                this.out.writeByte(T_INT);
+                writeVarLong(this.out, (Integer) value);
+            } else if (value instanceof Long) {
+                this.out.writeByte(T_LONG);
+                writeVarLong(this.out, (Long) value);
+            } else if (value instanceof String) {
+                this.out.writeByte(T_STRING);
+                writeString(this.out, (String) value);
+            } else if (value instanceof Double) {
+                this.out.writeByte(T_DOUBLE);
+                this.out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                this.out.writeByte(T_FLOAT);
+                this.out.writeFloat((Float) value);
+            } else if (value instanceof Byte) {
+                this.out.writeByte(T_BYTE);
+                this.out.writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                this.out.writeByte(T_SHORT);
+                this.out.writeShort((Short) value);
+            } else if (value instanceof Character) {
+                this.out.writeByte(T_CHAR);
+                this.out.writeChar((Character) value);
+            } else if (value.getClass() == Date.class) {
+                this.out.writeByte(T_DATE);
+                this.out.writeLong(((Date) value).getTime());
+            } else if (value instanceof Enum) {
+                this.out.writeByte(T_ENUM);
+                this.writeName(((Enum<?>) value).getDeclaringClass().getName());
+                this.writeName(((Enum<?>) value).name());
+            } else if (value instanceof RGB) {
+                RGB rgb = (RGB) value;
+                this.out.writeByte(T_RGB);
+                writeVarLong(this.out, rgb.red);
+                writeVarLong(this.out, rgb.green);
+                writeVarLong(this.out, rgb.blue);
+            } else if (value.getClass().isArray()) {
+                this.writeArray(value);
+            } else if (value instanceof Collection) {
+                this.writeCollection((Collection<?>) value);
+            } else if (value instanceof Map) {
+                this.writeMap((Map<?, ?>) value);
+            } else if (value.getClass().getName().startsWith(BEAN_PACKAGE)) {
+                this.writeBean(value);
+            } else {
+                throw new UnsupportedOperationException(value.getClass().getName());
+            }
+        }
+
+        private void writeArray(Object array) throws IOException {
+            int length = Array.getLength(array);
+            this.out.writeByte(T_ARRAY);
+            this.writeName(array.getClass().getComponentType().getName());
+            writeVarLong(this.out, length);
+            for (int i = 0; i < length; ++i) {
+                this.writeValue(Array.get(array, i));
+            }
+        }
+
+        private void writeCollection(Collection<?> collection) throws IOException {
+            Class<?> type = collection.getClass();
+            if (!isInstantiable(type)) {
+                if (collection instanceof SortedSet) {
+                    type = TreeSet.class;
+                } else if (collection instanceof Set) {
+                    type = LinkedHashSet.class;
+                } else {
+                    type = ArrayList.class;
+                }
+            }
+            this.out.writeByte(T_COLLECTION);
+            this.writeName(type.getName());
+            writeVarLong(this.out, collection.size());
+            for (Object element : collection) {
+                this.writeValue(element);
+            }
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException {
+            Class<?> type = map.getClass();
+            if (!isInstantiable(type)) {
+                type = (map instanceof SortedMap) ? TreeMap.class : LinkedHashMap.class;
+            }
+            this.out.writeByte(T_MAP);
+            this.writeName(type.getName());
+            writeVarLong(this.out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.writeValue(entry.getKey());
+                this.writeValue(entry.getValue());
+            }
+        }
+
+        private void writeBean(Object bean) throws IOException {
+            Class<?> type = bean.getClass();
+            if (!Modifier.isPublic(type.getModifiers())
+                    || (!isInstantiable(type) && !isInnerClass(type))) {
+                throw new UnsupportedOperationException(type.getName());
+            }
+            if (this.visiting.put(bean, Boolean.TRUE) != null) {
+                throw new UnsupportedOperationException("循環参照: " + type.getName());
+            }
+            this.out.writeByte(T_BEAN);
+            this.writeName(type.getName());
+            for (PropertyDescriptor property : getProperties(type).values()) {
+                Object value;
+                try {
+                    value = property.getReadMethod().invoke(bean);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IOException(type.getName() + "." + property.getName() + "を取得できません", e);
+                }
+                this.writeName(property.getName());
+                this.writeValue(value);
+            }
+            writeVarLong(this.out, END_OF_BEAN);
+            this.visiting.remove(bean);
+        }
+
+        /**
+         * 名前を書き込みます(1: 新しい名前が続く, 2以上: 既出の名前の番号+2)
+         */
+        private void writeName(String name) throws IOException {
+            Integer index = this.names.get(name);
+            if (index != null) {
+                writeVarLong(this.out, index + 2);
+            } else {
+                this.names.put(name, this.names.size());
+                writeVarLong(this.out, NEW_NAME);
+                writeString(this.out, name);
+            }
+        }
+    }
+
+    /**
+     * 読み込み
+     */
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> names = new ArrayList<>();
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @param current 読み込み先のプロパティの現在の値(非static内部クラスのJavaBeanの読み込み先になります)
+         */
+        Object readValue(Object current) throws IOException {
+            int tag = this.in.readUnsignedByte();
+            switch (tag) {
+            case T_NULL:
+                return null;
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_BYTE:
+                return this.in.readByte();
+            case T_SHORT:
+                return this.in.readShort();
+            case T_CHAR:
+                return this.in.readChar();
+            case T_INT:
+                return (int) readVarLong(this.in);
+            case T_LONG:
+                return readVarLong(this.in);
+            case T_FLOAT:
+                return this.in.readFloat();
+            case T_DOUBLE:
+                return this.in.readDouble();
+            case T_STRING:
+                return readString(this.in);
+            case T_DATE:
+                return new Date(this.in.readLong());
+            case T_ENUM:
+                return this.readEnum();
+            case T_RGB:
+                return new RGB((int) readVarLong(this.in), (int) readVarLong(this.in), (int) readVarLong(this.in));
+            case T_ARRAY:
+                return this.readArray();
+            case T_COLLECTION:
+                return this.readCollection();
+            case T_MAP:
+                return this.readMap();
+            case T_BEAN:
+                return this.readBean(current);
+            default:
+                throw new IOException("不正なタグです: " + tag);
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Object readEnum() throws IOException {
+            String className = this.readName();
+            String name = this.readName();
+            Class<?> type = loadClass(className);
+            if ((type == null) || !type.isEnum()) {
+                return null;
+            }
+            try {
+                return Enum.valueOf((Class<Enum>) type, name);
+            } catch (IllegalArgumentException e) {
+                // 削除された定数
+                return null;
+            }
+        }
+
+        private Object readArray() throws IOException {
+            Class<?> componentType = loadClass(this.readName());
+            int length = (int) readVarLong(this.in);
+            Object array = (componentType != null) ? Array.newInstance(componentType, length) : null;
+            for (int i = 0; i < length; ++i) {
+                Object element = this.readValue(null);
+                if (array != null) {
+                    try {
+                        Array.set(array, i, element);
+                    } catch (IllegalArgumentException e) {
+                        // 型が変わった要素は読み飛ばす
+                    }
+                }
+            }
+            return array;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readCollection() throws IOException {
+            Collection<Object> collection = (Collection<Object>) newInstance(loadClass(this.readName()));
+            int size = (int) readVarLong(this.in);
+            if (collection == null) {
+                collection = new ArrayList<>(size);
+            }
+            for (int i = 0; i < size; ++i) {
+                collection.add(this.readValue(null));
+            }
+            return collection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readMap() throws IOException {
+            Map<Object, Object> map = (Map<Object, Object>) newInstance(loadClass(this.readName()));
+            int size = (int) readVarLong(this.in);
+            if (map == null) {
+                map = new LinkedHashMap<>();
+            }
+            for (int i = 0; i < size; ++i) {
+                Object key = this.readValue(null);
+                map.put(key, this.readValue(null));
+            }
+            return map;
+        }
+
+        private Object readBean(Object current) throws IOException {
+            Class<?> type = loadClass(this.readName());
+            Object bean = null;
+            if (type != null) {
+                if (isInstantiable(type)) {
+                    bean = newInstance(type);
+                } else if ((current != null) && (current.getClass() == type)) {
+                    bean = current;
+                }
+            }
+            // 読み込めないJavaBeanは読み飛ばす
+            Map<String, PropertyDescriptor> properties = (bean != null)
+                    ? getProperties(type)
+                    : Collections.<String, PropertyDescriptor> emptyMap();
+            for (String name = this.readPropertyName(); name != null; name = this.readPropertyName()) {
+                PropertyDescriptor property = properties.get(name);
+                if (property == null) {
+                    // 削除されたプロパティ
+                    this.readValue(null);
+                    continue;
+                }
+                try {
+                    Object value = this.readValue(currentValue(bean, property));
+                    property.getWriteMethod().invoke(bean, value);
+                } catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+                    // 型が変わったプロパティなど
+                    LOG.get().debug(type.getName() + "." + name + "を設定できません", e);
+                }
+            }
+            return bean;
+        }
+
+        private String readPropertyName() throws IOException {
+            int index = (int) readVarLong(this.in);
+            if (index == END_OF_BEAN) {
+                return null;
+            }
+            return this.readName(index);
+        }
+
+        private String readName() throws IOException {
+            return this.readName((int) readVarLong(this.in));
+        }
+
+        private String readName(int index) throws IOException {
+            if (index == NEW_NAME) {
+                String name = readString(this.in);
+                this.names.add(name);
+                return name;
+            }
+            if ((index < 2) || ((index - 2) >= this.names.size())) {
+                throw new IOException("不正な名前の番号です: " + index);
+            }
+            return this.names.get(index - 2);
+        }
+
+        /**
+         * 非static内部クラスのプロパティだけ、読み込み先として現在の値を取得します
+         */
+        private static Object currentValue(Object bean, PropertyDescriptor property)
+                throws IllegalAccessException, InvocationTargetException {
+            if (!isInnerClass(property.getPropertyType())) {
+                return null;
+            }
+            return property.getReadMethod().invoke(bean);
+        }
+    }
+
+    /**
+     * 書き込むプロパティ(getterとsetterの両方があり、transientでないもの)
+     */
+    private static Map<String, PropertyDescriptor> getProperties(Class<?> type) throws IOException {
+        Map<String, PropertyDescriptor> properties = PROPERTIES.get(type);
+        if (properties == null) {
+            BeanInfo info;
+            try {
+                info = Introspector.getBeanInfo(type);
+            } catch (IntrospectionException e) {
+                throw new IOException(type.getName() + "のプロパティを取得できません", e);
+            }
+            properties = new TreeMap<>();
+            for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+                Method reader = property.getReadMethod();
+                Method writer = property.getWriteMethod();
+                if ((reader == null) || (writer == null) || Boolean.TRUE.equals(property.getValue("transient"))) {
+                    continue;
+                }
+                reader.setAccessible(true);
+                writer.setAccessible(true);
+                properties.put(property.getName(), property);
+            }
+            PROPERTIES.put(type, properties);
+        }
+        return properties;
+    }
+
+    /**
+     * 引数なしのpublicコンストラクタで作れるクラスか
+     */
+    private static boolean isInstantiable(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())
+                || isInnerClass(type)) {
+            return false;
+        }
+        try {
+            type.getConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isInnerClass(Class<?> type) {
+        return type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
+    }
+
+    private static Object newInstance(Class<?> type) throws IOException {
+        if ((type == null) || !isInstantiable(type)) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = type.getConstructor();
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(type.getName() + "を作成できません", e);
+        }
+    }
+
+    /**
+     * クラスを読み込みます(削除されたクラスの場合はnull)
+     */
+    private static Class<?> loadClass(String name) {
+        try {
+            return ClassUtils.getClass(BeanSnapshotCodec.class.getClassLoader(), name);
+        } catch (ClassNotFoundException e) {
+            LOG.get().debug(name + "が見つかりません");
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length < 0) {
+            throw new IOException("不正な文字列の長さです: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * zigzag符号化した可変長整数を書き込みます
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("不正な可変長整数です");
+    }
+}
@@ -4,10 +4,15 @@ import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -16,10 +21,14 @@ import javax.annotation.CheckForNull;
 
 import logbook.internal.LoggerHolder;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 /**
- * JavaBeanのutilです
+ * JavaBeanのutilです<br>
+ * JavaBeanは{@link SnapshotCodec}の形式(.snapshot)で書き込みます<br>
+ * スナップショットで書き込めないJavaBeanと、以前のバージョンで書き込まれたファイルはXML形式(.zip)です<br>
+ * XML形式のファイルは読み込めたら次の書き込みでスナップショットに移行し、元のファイルは.migrated.zipとして残します
  *
  */
 public final class BeanUtils {
@@ -27,92 +36,283 @@ public final class BeanUtils {
     /** ロガー */
     private static final LoggerHolder LOG = new LoggerHolder(BeanUtils.class);
 
+    /** スナップショットのファイルの先頭 */
+    private static final byte[] SNAPSHOT_MAGIC = { 'L', 'B', 'S', 'N', 'A', 'P' };
+
+    /** スナップショットのヘッダの形式のバージョン */
+    private static final int SNAPSHOT_HEADER_VERSION = 1;
+
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private static final String BACKUP_SNAPSHOT_EXTENSION = ".backup.snapshot";
+
+    private static final String XML_EXTENSION = ".zip";
+
+    private static final String BACKUP_XML_EXTENSION = ".backup.zip";
+
+    private static final String MIGRATED_XML_EXTENSION = ".migrated.zip";
+
+    /** スナップショットの形式 */
+    private static volatile SnapshotCodec codec = new BeanSnapshotCodec();
+
     /**
-     * JavaBeanオブジェクトをXML形式でファイルに書き込みます
-     * 
+     * スナップショットの形式を設定します
+     *
+     * @param snapshotCodec スナップショットの形式
+     */
+    public static void setSnapshotCodec(SnapshotCodec snapshotCodec) {
+        codec = snapshotCodec;
+    }
+
+    /**
+     * 書き込む形にしたJavaBeanオブジェクト
+     */
+    public static final class Encoded {
+        private final byte[] data;
+        /** スナップショットか(falseの場合はXML) */
+        private final boolean snapshot;
+
+        private Encoded(byte[] data, boolean snapshot) {
+            this.data = data;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * サイズ
+         * @return バイト数
+         */
+        public int size() {
+            return this.data.length;
+        }
+    }
+
+    /**
+     * JavaBeanオブジェクトをファイルに書き込みます<br>
+     * 前回書き込んだファイルはバックアップ(.backup.snapshot)として残します
+     *
      * @param file ファイル
      * @param obj JavaBean
      * @throws IOException IOException
      */
     public static void writeObject(File file, Object obj) throws IOException {
-        File main = new File(FilenameUtils.removeExtension(file.getAbsolutePath()) + ".zip");
-        if (main.exists()) {
-            if (main.isDirectory()) {
-                throw new IOException("File '" + main + "' exists but is a directory");
-            }
-            if (!(main.canWrite()))
-                throw new IOException("File '" + main + "' cannot be written to");
-        } else {
-            File parent = main.getParentFile();
-            if ((parent != null) &&
-                    (!(parent.mkdirs())) && (!(parent.isDirectory()))) {
-                throw new IOException("Directory '" + parent + "' could not be created");
-            }
-        }
-        File backup = new File(FilenameUtils.removeExtension(file.getAbsolutePath()) + ".backup.zip");
-        if ((main.exists() && (main.length() > 0)) && (!backup.exists() || backup.delete())) {
-            // ファイルが存在してかつサイズが0を超える場合、バックアップを削除した後、ファイルをバックアップにリネームする
-            main.renameTo(backup);
-        }
-        try (ZipOutputStream zos = new ZipOutputStream(
-                new BufferedOutputStream(new FileOutputStream(main))))
-        {
-            ZipEntry zipentry = new ZipEntry(file.getName());
-            zos.putNextEntry(zipentry);
-            XMLEncoder oos = new XMLEncoder(zos);
+        writeEncoded(file, encodeObject(file, obj));
+    }
+
+    /**
+     * JavaBeanオブジェクトを書き込む形にします<br>
+     * 書き込みを別のスレッドで行う場合に、オブジェクトを変更するスレッドで呼び出してください
+     *
+     * @param file ファイル
+     * @param obj JavaBean
+     * @return 書き込む形にしたJavaBeanオブジェクト
+     * @throws IOException IOException
+     */
+    public static Encoded encodeObject(File file, Object obj) throws IOException {
+        try {
+            return new Encoded(encodeSnapshot(obj), true);
+        } catch (UnsupportedOperationException e) {
+            LOG.get().info(file.getName() + "はスナップショットで書き込めないのでXML形式で書き込みます: " + e.getMessage());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            XMLEncoder oos = new XMLEncoder(bytes);
             oos.writeObject(obj);
             oos.close();
+            return new Encoded(bytes.toByteArray(), false);
+        }
+    }
+
+    /**
+     * {@link #encodeObject(File, Object)}で書き込む形にしたJavaBeanオブジェクトをファイルに書き込みます
+     *
+     * @param file ファイル
+     * @param encoded 書き込む形にしたJavaBeanオブジェクト
+     * @throws IOException IOException
+     */
+    public static void writeEncoded(File file, Encoded encoded) throws IOException {
+        String base = FilenameUtils.removeExtension(file.getAbsolutePath());
+        File main = new File(base + SNAPSHOT_EXTENSION);
+        File backup = new File(base + BACKUP_SNAPSHOT_EXTENSION);
+        if (!encoded.snapshot) {
+            writeXml(file, encoded.data);
+            // 古いスナップショットが先に読み込まれないようにする
+            FileUtils.deleteQuietly(main);
+            FileUtils.deleteQuietly(backup);
+            return;
+        }
+        byte[] data = encoded.data;
+        checkWritable(main);
+        rotate(main, backup);
+        File tmp = new File(base + SNAPSHOT_EXTENSION + ".tmp");
+        try {
+            FileUtils.writeByteArrayToFile(tmp, data);
+            if (!tmp.renameTo(main)) {
+                throw new IOException("File '" + tmp + "' could not be renamed to '" + main + "'");
+            }
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+        // XML形式からの移行
+        File xml = new File(base + XML_EXTENSION);
+        if (xml.exists()) {
+            File migrated = new File(base + MIGRATED_XML_EXTENSION);
+            if ((!migrated.exists() || migrated.delete()) && xml.renameTo(migrated)) {
+                LOG.get().info(file.getName() + "をスナップショットに移行しました");
+            }
         }
     }
 
     /**
      * <p>
-     * XML形式で書き込まれたファイルからJavaBeanオブジェクトを復元します<br>
+     * ファイルからJavaBeanオブジェクトを復元します<br>
+     * スナップショット、スナップショットのバックアップ、XML形式、XML形式のバックアップ、旧形式の順に読み込めたものを返します<br>
      * 復元時に型の検査を行います
      * </p>
-     * 
+     *
      * @param file ファイル
      * @param clazz 期待する型
      * @return オブジェクト
      */
     @CheckForNull
     public static <T> T readObject(File file, Class<T> clazz) {
-        File target = new File(FilenameUtils.removeExtension(file.getAbsolutePath()) + ".zip");
+        String base = FilenameUtils.removeExtension(file.getAbsolutePath());
+        File main = new File(base + SNAPSHOT_EXTENSION);
+        File backup = new File(base + BACKUP_SNAPSHOT_EXTENSION);
+        File xml = new File(base + XML_EXTENSION);
+        File xmlBackup = new File(base + BACKUP_XML_EXTENSION);
+
+        T obj = readSnapshot(main, clazz);
+        if (obj != null) {
+            return obj;
+        }
+        if (backup.exists()) {
+            LOG.get().warn("次のファイルをバックアップから読み込みます: " + main.getName());
+            obj = readSnapshot(backup, clazz);
+            if (obj != null) {
+                return obj;
+            }
+        }
+        if (xml.exists() || xmlBackup.exists()) {
+            LOG.get().info("XML形式のファイルを読み込みます(次の書き込みでスナップショットに移行します): " + file.getName());
+        }
+        obj = readXmlZip(xml, clazz);
+        if (obj != null) {
+            return obj;
+        }
+        // ファイルが読み込めないまたはサイズがゼロの場合バックアップファイルを読み込む
+        LOG.get().warn("次のファイルをバックアップから読み込みます: " + file.getName());
+        obj = readXmlZip(xmlBackup, clazz);
+        if (obj != null) {
+            return obj;
+        }
+        LOG.get().warn("バックアップも読み込めないので旧形式ファイルを読み込みます: " + file.getName());
+        if (!file.canRead()) {
+            // バックアップファイルも読めない場合nullを返す
+            LOG.get().warn("旧形式ファイルも読み込めなかったので諦めます: " + file.getName());
+            return null;
+        }
+        try (XMLDecoder decoder = new XMLDecoder(new FileInputStream(file))) {
+            return cast(decoder.readObject(), clazz);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
+    private static byte[] encodeSnapshot(Object obj) throws IOException {
+        SnapshotCodec snapshotCodec = codec;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.write(SNAPSHOT_MAGIC);
+        header.writeInt(SNAPSHOT_HEADER_VERSION);
+        header.writeUTF(snapshotCodec.getName());
+        header.writeInt(snapshotCodec.getVersion());
+        header.flush();
+        snapshotCodec.write(bytes, obj);
+        return bytes.toByteArray();
+    }
+
+    @CheckForNull
+    private static <T> T readSnapshot(File target, Class<T> clazz) {
         if (!target.canRead() || (target.length() <= 0)) {
-            // ファイルが読み込めないまたはサイズがゼロの場合バックアップファイルを読み込む
-            LOG.get().warn("次のファイルをバックアップから読み込みます: " + file.getName());
-            target = new File(FilenameUtils.removeExtension(file.getAbsolutePath()) + ".backup.zip");
-            if (!target.canRead()) {
-                LOG.get().warn("バックアップも読み込めないので旧形式ファイルを読み込みます: " + file.getName());
-                target = file;
-                if (!target.canRead()) {
-                    // バックアップファイルも読めない場合nullを返す
-                    LOG.get().warn("旧形式ファイルも読み込めなかったので諦めます: " + file.getName());
-                    return null;
-                }
-                try (XMLDecoder decoder = new XMLDecoder(new FileInputStream(target))) {
-                    Object obj = decoder.readObject();
-                    if (clazz.isInstance(obj)) {
-                        return (T) obj;
-                    }
-                    return null;
-                } catch (Exception e) {
-                    return null;
-                }
+            return null;
+        }
+        SnapshotCodec snapshotCodec = codec;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(target))) {
+            DataInputStream header = new DataInputStream(in);
+            byte[] magic = new byte[SNAPSHOT_MAGIC.length];
+            header.readFully(magic);
+            if (!Arrays.equals(magic, SNAPSHOT_MAGIC) || (header.readInt() != SNAPSHOT_HEADER_VERSION)) {
+                throw new IOException("スナップショットではありません");
+            }
+            String name = header.readUTF();
+            int version = header.readInt();
+            if (!snapshotCodec.getName().equals(name) || (snapshotCodec.getVersion() != version)) {
+                throw new IOException("スナップショットの形式が違います: " + name + " " + version);
             }
+            return cast(snapshotCodec.read(in), clazz);
+        } catch (Exception e) {
+            LOG.get().warn("スナップショットの読み込みに失敗しました: " + target.getName(), e);
+            return null;
+        }
+    }
+
+    private static void writeXml(File file, byte[] xml) throws IOException {
+        String base = FilenameUtils.removeExtension(file.getAbsolutePath());
+        File main = new File(base + XML_EXTENSION);
+        checkWritable(main);
+        rotate(main, new File(base + BACKUP_XML_EXTENSION));
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(main))))
+        {
+            ZipEntry zipentry = new ZipEntry(file.getName());
+            zos.putNextEntry(zipentry);
+            zos.write(xml);
+            zos.closeEntry();
+        }
+    }
+
+    @CheckForNull
+    private static <T> T readXmlZip(File target, Class<T> clazz) {
+        if (!target.canRead() || (target.length() <= 0)) {
+            return null;
         }
         try (ZipInputStream zis = new ZipInputStream(
                 new BufferedInputStream(new FileInputStream(target))))
         {
             zis.getNextEntry();
-            Object obj = (new XMLDecoder(zis).readObject());
-            if (clazz.isInstance(obj)) {
-                return (T) obj;
-            }
-            return null;
+            return cast(new XMLDecoder(zis).readObject(), clazz);
         } catch (Exception e) {
             return null;
         }
     }
+
+    private static void checkWritable(File main) throws IOException {
+        if (main.exists()) {
+            if (main.isDirectory()) {
+                throw new IOException("File '" + main + "' exists but is a directory");
+            }
+            if (!(main.canWrite()))
+                throw new IOException("File '" + main + "' cannot be written to");
+        } else {
+            File parent = main.getParentFile();
+            if ((parent != null) &&
+                    (!(parent.mkdirs())) && (!(parent.isDirectory()))) {
+                throw new IOException("Directory '" + parent + "' could not be created");
+            }
+        }
+    }
+
+    private static void rotate(File main, File backup) {
+        if ((main.exists() && (main.length() > 0)) && (!backup.exists() || backup.delete())) {
+            // ファイルが存在してかつサイズが0を超える場合、バックアップを削除した後、ファイルをバックアップにリネームする
+            main.renameTo(backup);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @CheckForNull
+    private static <T> T cast(Object obj, Class<T> clazz) {
+        if (clazz.isInstance(obj)) {
+            return (T) obj;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,38 @@
+package logbook.util;
+
+/**
+ * CRC32C(Castagnoli)
+ */
+public final class Crc32c {
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = ((crc & 1) != 0) ? ((crc >>> 1) ^ 0x82F63B78) : (crc >>> 1);
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private Crc32c() {
+    }
+
+    /**
+     * 文字列のCRC32Cを計算します<br>
+     * TsunDBのクライアント(JavaScript)と同じく、UTF-16の各文字の下位8ビットだけを使います
+     * (ASCIIだけの文字列ならバイト列のCRC32Cと同じ値になります)
+     *
+     * @param str 文字列
+     * @return CRC32C(符号なし32ビット)
+     */
+    public static long ofString(String str) {
+        int crc = -1;
+        for (int i = 0; i < str.length(); i++) {
+            crc = TABLE[(crc ^ str.charAt(i)) & 0xff] ^ (crc >>> 8);
+        }
+        return (crc ^ -1) & 0xffffffffL;
+    }
+}
@@ -0,0 +1,335 @@
+package logbook.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+/**
+ * JsonParserのイベントから直接JsonObjectを組み立てます<br>
+ * Json.createReader()と同じ結果になりますが、以下の点で生成するオブジェクトが少なくなります
+ * <ul>
+ * <li>ファクトリを使い回す(Json.createXXX()は呼び出しごとにプロバイダを検索する)</li>
+ * <li>キー名を共有する("api_id"などは艦娘や装備の数だけ現れる)</li>
+ * <li>よく現れる小さい整数のJsonNumberを共有する</li>
+ * </ul>
+ * 母港のような大きいレスポンスは、{@link #createParser(InputStream)}と{@link #readObject(JsonParser, KeyHandler)}で
+ * 艦娘などの配列だけ木を作らずに読み込めます
+ */
+public final class JsonStreamReader {
+
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    /** 共有するキー名の上限 */
+    private static final int MAX_KEY_POOL_SIZE = 4096;
+
+    /** 共有する整数の範囲 */
+    private static final int NUMBER_CACHE_MIN = -1;
+    private static final int NUMBER_CACHE_MAX = 1024;
+
+    private static final JsonNumber[] NUMBER_CACHE;
+
+    private static final Map<String, String> KEY_POOL = new ConcurrentHashMap<>();
+
+    static {
+        JsonArrayBuilder builder = BUILDER_FACTORY.createArrayBuilder();
+        for (int i = NUMBER_CACHE_MIN; i <= NUMBER_CACHE_MAX; i++) {
+            builder.add(i);
+        }
+        JsonArray array = builder.build();
+        NUMBER_CACHE = new JsonNumber[array.size()];
+        for (int i = 0; i < NUMBER_CACHE.length; i++) {
+            NUMBER_CACHE[i] = array.getJsonNumber(i);
+        }
+    }
+
+    /**
+     * UTF-8のストリームからJSONオブジェクトを読み込みます
+     *
+     * @param stream 入力
+     * @return JSONオブジェクト
+     */
+    public static JsonObject readObject(InputStream stream) {
+        try (JsonParser parser = PARSER_FACTORY.createParser(stream, StandardCharsets.UTF_8)) {
+            return readTopLevelObject(parser);
+        }
+    }
+
+    /**
+     * JSONオブジェクトを読み込みます
+     *
+     * @param reader 入力
+     * @return JSONオブジェクト
+     */
+    public static JsonObject readObject(Reader reader) {
+        try (JsonParser parser = PARSER_FACTORY.createParser(reader)) {
+            return readTopLevelObject(parser);
+        }
+    }
+
+    /**
+     * UTF-8のストリームを読み込むJsonParserを作ります(イベントから直接DTOを作る場合に使います)
+     *
+     * @param stream 入力
+     * @return JsonParser
+     */
+    public static JsonParser createParser(InputStream stream) {
+        return PARSER_FACTORY.createParser(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * JSONオブジェクトを辿るJsonParserを作ります<br>
+     * JsonObjectしかない場合でも、ストリームと同じ読み込み処理を使えます
+     *
+     * @param object JSONオブジェクト
+     * @return JsonParser
+     */
+    public static JsonParser createParser(JsonObject object) {
+        return PARSER_FACTORY.createParser(object);
+    }
+
+    /**
+     * キーごとに値の読み込み方を変える場合のハンドラ
+     */
+    public interface KeyHandler {
+        /**
+         * @param key キー
+         * @param parser JsonParser(値の最初のイベントを読んだ位置)
+         * @param event 値の最初のイベント
+         * @return 値を読み込んだ場合true、JsonObjectに入れる場合false
+         */
+        boolean read(String key, JsonParser parser, JsonParser.Event event);
+    }
+
+    /**
+     * START_OBJECTの直後からJSONオブジェクトを読み込みます<br>
+     * handlerが読み込んだキーはJsonObjectに入れません
+     *
+     * @param parser JsonParser
+     * @param handler キーごとの読み込み(nullの場合は全てJsonObjectに入れる)
+     * @return handlerが読み込まなかった値のJSONオブジェクト
+     */
+    public static JsonObject readObject(JsonParser parser, KeyHandler handler) {
+        JsonObjectBuilder builder = BUILDER_FACTORY.createObjectBuilder();
+        String key = null;
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.KEY_NAME) {
+                key = internKey(parser.getString());
+                continue;
+            }
+            if (event == JsonParser.Event.END_OBJECT) {
+                return builder.build();
+            }
+            if ((handler == null) || !handler.read(key, parser, event)) {
+                add(builder, key, parser, event);
+            }
+        }
+        throw new JsonException("JSONオブジェクトが閉じられていません");
+    }
+
+    /**
+     * 値を読み飛ばします
+     *
+     * @param parser JsonParser
+     * @param event 値の最初のイベント
+     */
+    public static void skipValue(JsonParser parser, JsonParser.Event event) {
+        if ((event != JsonParser.Event.START_OBJECT) && (event != JsonParser.Event.START_ARRAY)) {
+            return;
+        }
+        int depth = 1;
+        while ((depth > 0) && parser.hasNext()) {
+            switch (parser.next()) {
+            case START_OBJECT:
+            case START_ARRAY:
+                depth++;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                depth--;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * 整数を読み込みます(文字列の場合も数値として読みます)
+     *
+     * @param parser JsonParser
+     * @param event 値のイベント
+     * @return 整数
+     */
+    public static long readLong(JsonParser parser, JsonParser.Event event) {
+        switch (event) {
+        case VALUE_NUMBER:
+            return parser.getLong();
+        case VALUE_STRING:
+            return Long.parseLong(parser.getString());
+        default:
+            throw new JsonException("整数ではありません: " + event);
+        }
+    }
+
+    /**
+     * 整数を読み込みます(文字列の場合も数値として読みます)
+     *
+     * @param parser JsonParser
+     * @param event 値のイベント
+     * @return 整数
+     */
+    public static int readInt(JsonParser parser, JsonParser.Event event) {
+        return (int) readLong(parser, event);
+    }
+
+    /**
+     * 整数の配列を読み込みます
+     *
+     * @param parser JsonParser
+     * @param event 値の最初のイベント
+     * @return 整数の配列
+     */
+    public static int[] readIntArray(JsonParser parser, JsonParser.Event event) {
+        if (event != JsonParser.Event.START_ARRAY) {
+            throw new JsonException("配列ではありません: " + event);
+        }
+        int[] values = new int[8];
+        int size = 0;
+        while (parser.hasNext()) {
+            JsonParser.Event next = parser.next();
+            if (next == JsonParser.Event.END_ARRAY) {
+                return Arrays.copyOf(values, size);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = readInt(parser, next);
+        }
+        throw new JsonException("JSON配列が閉じられていません");
+    }
+
+    private static JsonObject readTopLevelObject(JsonParser parser) {
+        if (!parser.hasNext() || (parser.next() != JsonParser.Event.START_OBJECT)) {
+            throw new JsonException("JSONオブジェクトではありません");
+        }
+        return readObjectBody(parser);
+    }
+
+    private static JsonObject readObjectBody(JsonParser parser) {
+        return readObject(parser, null);
+    }
+
+    private static void add(JsonObjectBuilder builder, String key, JsonParser parser, JsonParser.Event event) {
+        switch (event) {
+        case START_OBJECT:
+            builder.add(key, readObjectBody(parser));
+            break;
+        case START_ARRAY:
+            builder.add(key, readArrayBody(parser));
+            break;
+        case VALUE_STRING:
+            builder.add(key, parser.getString());
+            break;
+        case VALUE_NUMBER:
+            if (parser.isIntegralNumber()) {
+                long value = parser.getLong();
+                if ((value >= NUMBER_CACHE_MIN) && (value <= NUMBER_CACHE_MAX)) {
+                    builder.add(key, NUMBER_CACHE[(int) value - NUMBER_CACHE_MIN]);
+                } else if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE)) {
+                    builder.add(key, (int) value);
+                } else {
+                    builder.add(key, parser.getBigDecimal());
+                }
+            } else {
+                builder.add(key, parser.getBigDecimal());
+            }
+            break;
+        case VALUE_TRUE:
+            builder.add(key, JsonValue.TRUE);
+            break;
+        case VALUE_FALSE:
+            builder.add(key, JsonValue.FALSE);
+            break;
+        case VALUE_NULL:
+            builder.addNull(key);
+            break;
+        default:
+            throw new JsonException("不正なJSONです: " + event);
+        }
+    }
+
+    private static JsonArray readArrayBody(JsonParser parser) {
+        JsonArrayBuilder builder = BUILDER_FACTORY.createArrayBuilder();
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            switch (event) {
+            case START_OBJECT:
+                builder.add(readObjectBody(parser));
+                break;
+            case START_ARRAY:
+                builder.add(readArrayBody(parser));
+                break;
+            case VALUE_STRING:
+                builder.add(parser.getString());
+                break;
+            case VALUE_NUMBER:
+                if (parser.isIntegralNumber()) {
+                    long value = parser.getLong();
+                    if ((value >= NUMBER_CACHE_MIN) && (value <= NUMBER_CACHE_MAX)) {
+                        builder.add(NUMBER_CACHE[(int) value - NUMBER_CACHE_MIN]);
+                    } else if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE)) {
+                        builder.add((int) value);
+                    } else {
+                        builder.add(parser.getBigDecimal());
+                    }
+                } else {
+                    builder.add(parser.getBigDecimal());
+                }
+                break;
+            case VALUE_TRUE:
+                builder.add(JsonValue.TRUE);
+                break;
+            case VALUE_FALSE:
+                builder.add(JsonValue.FALSE);
+                break;
+            case VALUE_NULL:
+                builder.addNull();
+                break;
+            case END_ARRAY:
+                return builder.build();
+            default:
+                throw new JsonException("不正なJSONです: " + event);
+            }
+        }
+        throw new JsonException("JSON配列が閉じられていません");
+    }
+
+    private static String internKey(String key) {
+        String pooled = KEY_POOL.get(key);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (KEY_POOL.size() < MAX_KEY_POOL_SIZE) {
+            KEY_POOL.putIfAbsent(key, key);
+        }
+        return key;
+    }
+}
@@ -4,12 +4,15 @@
 package logbook.util;
 
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
-import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
+import javax.json.JsonString;
 import javax.json.JsonValue;
 
 /**
@@ -80,9 +83,183 @@ public class JsonUtils {
     }
 
     public static JsonObject fromString(String str) {
-        JsonReader jsonReader = Json.createReader(new StringReader(str));
-        JsonObject object = jsonReader.readObject();
-        jsonReader.close();
-        return object;
+        return JsonStreamReader.readObject(new StringReader(str));
+    }
+
+    /**
+     * JavaScriptの<code>JSON.stringify(value)</code>と同じ文字列にします<br>
+     * キーの順序(配列のインデックスになるキーが昇順で先頭)、数値の表記、文字列のエスケープを合わせています
+     *
+     * @param value JSON
+     * @return 文字列
+     */
+    public static String stringify(JsonValue value) {
+        StringBuilder sb = new StringBuilder();
+        stringify(sb, value);
+        return sb.toString();
+    }
+
+    private static void stringify(StringBuilder sb, JsonValue value) {
+        switch (value.getValueType()) {
+        case OBJECT: {
+            Map<String, JsonValue> object = (JsonObject) value;
+            // JavaScriptのオブジェクトは配列のインデックスになるキーを数値の昇順で先に列挙する
+            List<String> keys = new ArrayList<>();
+            List<String> indexKeys = new ArrayList<>();
+            for (String key : object.keySet()) {
+                if (isArrayIndex(key)) {
+                    int pos = 0;
+                    while ((pos < indexKeys.size()) && (Long.parseLong(indexKeys.get(pos)) < Long.parseLong(key))) {
+                        pos++;
+                    }
+                    indexKeys.add(pos, key);
+                }
+                else {
+                    keys.add(key);
+                }
+            }
+            indexKeys.addAll(keys);
+            sb.append('{');
+            boolean first = true;
+            for (String key : indexKeys) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                quote(sb, key);
+                sb.append(':');
+                stringify(sb, object.get(key));
+            }
+            sb.append('}');
+            break;
+        }
+        case ARRAY: {
+            sb.append('[');
+            boolean first = true;
+            for (JsonValue element : (JsonArray) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                stringify(sb, element);
+            }
+            sb.append(']');
+            break;
+        }
+        case STRING:
+            quote(sb, ((JsonString) value).getString());
+            break;
+        case NUMBER:
+            sb.append(numberToString(((JsonNumber) value).doubleValue()));
+            break;
+        case TRUE:
+            sb.append("true");
+            break;
+        case FALSE:
+            sb.append("false");
+            break;
+        default:
+            sb.append("null");
+            break;
+        }
+    }
+
+    private static boolean isArrayIndex(String key) {
+        if (key.isEmpty() || (key.length() > 10) || ((key.length() > 1) && (key.charAt(0) == '0'))) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return false;
+            }
+        }
+        return Long.parseLong(key) < 0xFFFFFFFFL;
+    }
+
+    private static void quote(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\b':
+                sb.append("\\b");
+                break;
+            case '\f':
+                sb.append("\\f");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    sb.append(c);
+                }
+                break;
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * JavaScriptのNumber#toString()と同じ表記にします
+     */
+    private static String numberToString(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            // JSON.stringifyはnullにする
+            return "null";
+        }
+        if (d == 0) {
+            return "0";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (d < 0) {
+            sb.append('-');
+            d = -d;
+        }
+        // 最短の10進表記の桁(digits)と、値 = 0.digits * 10^n となるn
+        BigDecimal decimal = new BigDecimal(Double.toString(d)).stripTrailingZeros();
+        String digits = decimal.unscaledValue().toString();
+        int k = digits.length();
+        int n = k - decimal.scale();
+        if ((k <= n) && (n <= 21)) {
+            sb.append(digits);
+            for (int i = k; i < n; i++) {
+                sb.append('0');
+            }
+        }
+        else if ((0 < n) && (n <= 21)) {
+            sb.append(digits, 0, n).append('.').append(digits, n, k);
+        }
+        else if ((-6 < n) && (n <= 0)) {
+            sb.append("0.");
+            for (int i = n; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        else {
+            sb.append(digits.charAt(0));
+            if (k > 1) {
+                sb.append('.').append(digits, 1, k);
+            }
+            sb.append('e').append((n - 1) >= 0 ? "+" : "-").append(Math.abs(n - 1));
+        }
+        return sb.toString();
     }
 }
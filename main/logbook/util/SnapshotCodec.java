@@ -0,0 +1,45 @@
+package logbook.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 設定ファイルのスナップショットの形式<br>
+ * {@link BeanUtils}が設定ファイルの書き込み・読み込みに使います
+ */
+public interface SnapshotCodec {
+
+    /**
+     * 形式の名前(ファイルのヘッダに書き込まれ、読み込み時に一致するか検査されます)
+     *
+     * @return 形式の名前
+     */
+    String getName();
+
+    /**
+     * 形式のバージョン(互換性の無い変更をしたら上げること)
+     *
+     * @return 形式のバージョン
+     */
+    int getVersion();
+
+    /**
+     * オブジェクトを書き込みます
+     *
+     * @param out 出力先
+     * @param obj オブジェクト
+     * @throws UnsupportedOperationException この形式で書き込めないオブジェクトが含まれている場合
+     * @throws IOException 書き込みに失敗した場合
+     */
+    void write(OutputStream out, Object obj) throws IOException;
+
+    /**
+     * オブジェクトを読み込みます
+     *
+     * @param in 入力元
+     * @return オブジェクト
+     * @throws IOException 読み込みに失敗した場合
+     */
+    Object read(InputStream in) throws IOException;
+}
@@ -1,5 +1,6 @@
 
 ComparableArrayType = Java.type("java.lang.Comparable[]");
+ComparableBlockType = Java.type("java.lang.Comparable[][]");
 AppConstants = Java.type("logbook.constants.AppConstants");
 
 function hasTaihaInFleet(nowhp, maxhp) {
@@ -59,4 +60,13 @@ function body(battle) {
 	return ret;
 }
 
+// 複数の戦闘結果をまとめて処理する
+function bodies(battles) {
+	var ret = new ComparableBlockType(battles.length);
+	for (var i = 0; i < battles.length; ++i) {
+		ret[i] = body(battles[i]);
+	}
+	return ret;
+}
+
 function end() { }
@@ -41,4 +41,8 @@ function body(battle) {
 	return toComparable([shipName, kindName]);
 }
 
+function bodies(battles) {
+	return toComparableBlock(battles, body);
+}
+
 function end() { }
@@ -22,4 +22,8 @@ function body(data) {
 					locked | 0 ]);
 }
 
+function bodies(items) {
+	return toComparableBlock(items, body);
+}
+
 function end() { }
@@ -14,4 +14,8 @@ function body(data) {
 					param.tais, param.tyku, param.souk ]);
 }
 
+function bodies(items) {
+	return toComparableBlock(items, body);
+}
+
 function end() { }
@@ -61,4 +61,8 @@ function body(data) {
 	return toComparable([ sb.toString() ]);
 }
 
+function bodies(items) {
+	return toComparableBlock(items, body);
+}
+
 function end() { }
@@ -120,4 +120,8 @@ function body(data) {
 	return toComparable([ sb.toString(), remain | 0 ]);
 }
 
+function bodies(items) {
+	return toComparableBlock(items, body);
+}
+
 function end() { }
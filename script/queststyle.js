@@ -25,6 +25,8 @@ var stateIndex = -1
 var categoryIndex = -1
 var progressIndex = -1
 
+// begin～create～endは表示される行をまとめて作成するたびに呼ばれる(1回の更新で何度か呼ばれることがある)
+// createは表示される行についてだけ呼ばれる
 function begin(header) {
     for (var i = 1; i < header.length; ++i) {
         if (header[i].equals("表示位置")) {
@@ -127,4 +127,8 @@ function body(ship) {
 					getSokuryoku(ship.param.soku)]);
 }
 
+function bodies(ships) {
+	return toComparableBlock(ships, body);
+}
+
 function end() { }
@@ -62,4 +62,8 @@ function body(ship) {
 					slotExName ]);
 }
 
+function bodies(ships) {
+	return toComparableBlock(ships, body);
+}
+
 function end() { }
@@ -75,4 +75,8 @@ function body(ship) {
 
 }
 
+function bodies(ships) {
+	return toComparableBlock(ships, body);
+}
+
 function end() { }
@@ -14,4 +14,8 @@ function body(ship) {
 	return toComparable([ canRemodel ? "可能" : null ]);
 }
 
+function bodies(ships) {
+	return toComparableBlock(ships, body);
+}
+
 function end() { }
@@ -18,9 +18,11 @@ function sallyArea(area) {
 }
 
 function body(ship) {
-	if(ship.json == null || isJsonNull(ship.json.api_sally_area))
-		return null;
-	return toComparable([ sallyArea(ship.json.api_sally_area.intValue()) ]);
+	return toComparable([ sallyArea(ship.sallyArea) ]);
+}
+
+function bodies(ships) {
+	return toComparableBlock(ships, body);
 }
 
 function end() { }
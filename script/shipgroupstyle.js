@@ -9,6 +9,8 @@ AppConstants = Java.type("logbook.constants.AppConstants");
 ReportUtils = Java.type("logbook.util.ReportUtils");
 
 var condIndex = 12;
+// begin～create～endは表示される行をまとめて作成するたびに呼ばれる(1回の更新で何度か呼ばれることがある)
+// createは表示される行についてだけ呼ばれる
 function begin(header) {
     missionShips = GlobalContext.getMissionShipSet();
     ndockShips = GlobalContext.getNDockShipSet();
@@ -28,7 +28,6 @@ function doCheck() {
 }
 
 function update(type, data){
-	var json = data.getJsonObject();
 	switch(type){
 		case DataType.PORT:
 		case DataType.DECK: